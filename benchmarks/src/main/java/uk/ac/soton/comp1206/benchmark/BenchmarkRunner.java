@@ -0,0 +1,34 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so every result includes its allocation rate, and writes the results as JSON.
+ * Any standard JMH command line options, such as a benchmark name pattern, are passed through.
+ * The JSON file from a baseline run can be compared with a later run to measure an engine change.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks
+     * @param args JMH command line options
+     * @throws CommandLineOptionException if the options are invalid
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        var commandLine = new CommandLineOptions(args);
+        var options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse("jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameClock;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Game.afterPiece, which clears lines, updates the score, multiplier and level and resets the timer.
+ * Each operation fills a row so that every call clears a line, which is the expensive path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    /**
+     * The game being measured, on a manual clock so no timer thread runs
+     */
+    private Game game;
+
+    /**
+     * Index of the next row to fill
+     */
+    private int row;
+
+    /**
+     * Creates and starts the game
+     */
+    @Setup
+    public void setup() {
+        game = new Game(5, 5, GameClock.manual(), PieceGenerator.uniform(42));
+        game.start();
+    }
+
+    /**
+     * Fills a row and runs afterPiece, which clears it
+     * @return the score, so the work can't be removed
+     */
+    @Benchmark
+    public int afterPieceClearingLine() {
+        var grid = game.getGrid();
+        var y = row++ % grid.getRows();
+        for (int x = 0; x < grid.getCols(); x++) {
+            grid.set(x, y, 1);
+        }
+        game.afterPiece();
+        return game.getScore();
+    }
+
+    /**
+     * Runs afterPiece when nothing has changed, which only resets the multiplier and timer
+     * @return the multiplier, so the work can't be removed
+     */
+    @Benchmark
+    public int afterPieceNoLines() {
+        game.afterPiece();
+        return game.getMultiplier();
+    }
+}
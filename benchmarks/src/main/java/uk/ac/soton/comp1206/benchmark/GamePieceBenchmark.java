@@ -0,0 +1,56 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks creating and rotating GamePieces.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+@State(Scope.Thread)
+public class GamePieceBenchmark {
+
+    /**
+     * The piece that is rotated
+     */
+    private GamePiece piece;
+
+    /**
+     * The next piece number to create
+     */
+    private int next;
+
+    /**
+     * Creates the piece to rotate
+     */
+    @Setup
+    public void setup() {
+        piece = GamePiece.createPiece(5);
+    }
+
+    /**
+     * Rotates the piece once, keeping the result for the next rotation
+     * @return the rotated piece
+     */
+    @Benchmark
+    public GamePiece rotate() {
+        piece = piece.rotate();
+        return piece;
+    }
+
+    /**
+     * Creates the next piece number in turn
+     * @return the created piece
+     */
+    @Benchmark
+    public GamePiece createPiece() {
+        next = next == GamePiece.PIECES - 1 ? 0 : next + 1;
+        return GamePiece.createPiece(next);
+    }
+}
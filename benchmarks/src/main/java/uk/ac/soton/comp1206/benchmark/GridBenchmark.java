@@ -0,0 +1,88 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Grid's placement checks and placements.
+ * The grid is filled with a fixed random pattern, and every piece in every rotation is tried at every position in turn,
+ * so the branch predictor can't learn a single answer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+@State(Scope.Thread)
+public class GridBenchmark {
+
+    /**
+     * The grid checked by canPlayPiece, about a third full
+     */
+    private Grid partlyFilled;
+
+    /**
+     * The grid pieces are placed into
+     */
+    private Grid placement;
+
+    /**
+     * Every piece in every rotation
+     */
+    private GamePiece[] pieces;
+
+    /**
+     * Index of the next move to try, which walks through every piece and position
+     */
+    private int move;
+
+    /**
+     * Builds the grids and pieces
+     */
+    @Setup
+    public void setup() {
+        partlyFilled = new Grid(5, 5);
+        var random = new SplittableRandom(42);
+        for (int x = 0; x < 5; x++) {
+            for (int y = 0; y < 5; y++) {
+                if (random.nextInt(3) == 0) {
+                    partlyFilled.set(x, y, 1 + random.nextInt(GamePiece.PIECES));
+                }
+            }
+        }
+        placement = new Grid(5, 5);
+
+        pieces = new GamePiece[GamePiece.PIECES * GamePiece.ROTATIONS];
+        for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+            for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                pieces[piece * GamePiece.ROTATIONS + rotation] = GamePiece.createPiece(piece, rotation);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the next piece fits at the next position
+     * @return whether it fits
+     */
+    @Benchmark
+    public boolean canPlayPiece() {
+        var index = move++;
+        var piece = pieces[(index / 25) % pieces.length];
+        return partlyFilled.canPlayPiece(piece, index % 5, (index / 5) % 5);
+    }
+
+    /**
+     * Places the next piece in the middle of the grid, overwriting the last piece so every block written changes value
+     * @param blackhole consumes the grid's state so the placement can't be removed
+     */
+    @Benchmark
+    public void playPiece(Blackhole blackhole) {
+        placement.playPiece(pieces[move++ % pieces.length], 2, 2);
+        blackhole.consume(placement.getOccupied());
+    }
+}
@@ -0,0 +1,109 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.game.MultiplayerGame;
+import uk.ac.soton.comp1206.network.Communicator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing the server's SCORES, BOARD and BOARDDELTA messages in a MultiplayerGame.
+ * The game has no communicator, as these methods only update the game's lists.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+@State(Scope.Thread)
+public class MultiplayerGameBenchmark {
+
+    /**
+     * The number of players in the channel
+     */
+    @Param({"2", "8"})
+    public int players;
+
+    /**
+     * The game being measured
+     */
+    private MultiplayerGame game;
+
+    /**
+     * The body of a SCORES message for every player
+     */
+    private String scores;
+
+    /**
+     * The bodies of BOARD messages, one for each player
+     */
+    private String[] boards;
+
+    /**
+     * The bodies of BOARDDELTA messages placing a 3 block piece, one for each player
+     */
+    private String[] deltas;
+
+    /**
+     * Index of the next board message to parse
+     */
+    private int next;
+
+    /**
+     * Builds the game and the messages
+     */
+    @Setup
+    public void setup() {
+        game = new MultiplayerGame(5, 5, (Communicator) null);
+
+        var scoresBuilder = new StringBuilder();
+        boards = new String[players];
+        deltas = new String[players];
+        for (int player = 0; player < players; player++) {
+            if (player > 0) scoresBuilder.append('\n');
+            scoresBuilder.append("player").append(player).append(':').append(player * 370).append(':').append(player % 4);
+
+            var boardBuilder = new StringBuilder("player").append(player).append(':');
+            for (int block = 0; block < 25; block++) {
+                if (block > 0) boardBuilder.append(' ');
+                boardBuilder.append((block * 7 + player) % 16);
+            }
+            boards[player] = boardBuilder.toString();
+            deltas[player] = "player" + player + ":" + (player % 5) + "=3 " + (player % 5 + 5) + "=3 " + (player % 5 + 10) + "=3";
+        }
+        scores = scoresBuilder.toString();
+
+        //The game boards are ordered by the leaderboard, so it needs filling first
+        game.updateLeaderboard(scores);
+    }
+
+    /**
+     * Parses a SCORES message and rebuilds the leaderboard
+     * @return the number of leaderboard entries
+     */
+    @Benchmark
+    public int updateLeaderboard() {
+        game.updateLeaderboard(scores);
+        return game.getLeaderboardEntriesProperty().size();
+    }
+
+    /**
+     * Parses the next player's BOARD message and updates their game board
+     * @return the number of game boards
+     */
+    @Benchmark
+    public int updateGameBoards() {
+        game.updateGameBoards(boards[next++ % boards.length]);
+        return game.getGameBoardsProperty().size();
+    }
+
+    /**
+     * Parses the next player's BOARDDELTA message and updates their game board
+     * @return the number of game boards
+     */
+    @Benchmark
+    public int updateGameBoardDelta() {
+        game.updateGameBoardDelta(deltas[next++ % deltas.length]);
+        return game.getGameBoardsProperty().size();
+    }
+}
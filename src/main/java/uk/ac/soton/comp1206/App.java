@@ -24,6 +24,7 @@ public class App extends Application {
     private static App instance;
     private static final Logger logger = LogManager.getLogger(App.class);
     private Stage stage;
+    private GameWindow gameWindow;
 
     /**
      * Starts the game
@@ -54,7 +55,7 @@ public class App extends Application {
         logger.info("Opening game window");
 
         //Change the width and height in this class to change the base rendering resolution for all game parts
-        var gameWindow = new GameWindow(stage,width,height);
+        gameWindow = new GameWindow(stage,width,height);
 
         //Display the GameWindow
         stage.show();
@@ -65,6 +66,9 @@ public class App extends Application {
      */
     public void shutdown() {
         logger.info("Shutting down");
+        if (gameWindow != null) {
+            gameWindow.close();
+        }
         System.exit(0);
     }
 
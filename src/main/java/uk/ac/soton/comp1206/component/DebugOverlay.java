@@ -0,0 +1,94 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import javafx.util.Duration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.network.Communicator;
+
+/**
+ * The Visual User Interface component showing the communicator's metrics on top of whatever scene is displayed.
+ * It refreshes once a second while it is visible, adding how many messages were sent and received in the last second.
+ */
+public class DebugOverlay extends VBox {
+
+    private static final Logger logger = LogManager.getLogger(DebugOverlay.class);
+
+    /**
+     * The communicator whose metrics are shown
+     */
+    private final Communicator communicator;
+
+    /**
+     * The text showing the metrics
+     */
+    private final Text metrics = new Text();
+
+    /**
+     * Refreshes the metrics once a second
+     */
+    private final Timeline refresher;
+
+    /**
+     * The number of messages sent when the metrics were last refreshed
+     */
+    private long lastSent;
+
+    /**
+     * The number of messages received when the metrics were last refreshed
+     */
+    private long lastReceived;
+
+    /**
+     * Creates a new hidden debug overlay
+     * @param communicator the communicator whose metrics are shown
+     */
+    public DebugOverlay(Communicator communicator) {
+        this.communicator = communicator;
+        this.getStyleClass().add("debug-overlay");
+        metrics.getStyleClass().add("debug-text");
+        this.getChildren().add(metrics);
+        this.setAlignment(Pos.TOP_LEFT);
+        this.setPadding(new Insets(5));
+        this.setMaxSize(USE_PREF_SIZE, USE_PREF_SIZE);
+        this.setMouseTransparent(true);
+        this.setVisible(false);
+
+        refresher = new Timeline(new KeyFrame(Duration.seconds(1), (event) -> this.refresh()));
+        refresher.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    /**
+     * Shows the overlay if it is hidden, or hides it if it is shown
+     */
+    public void toggle() {
+        logger.info("Toggling debug overlay");
+        if (this.isVisible()) {
+            refresher.stop();
+            this.setVisible(false);
+        } else {
+            lastSent = communicator.getMessagesSent();
+            lastReceived = communicator.getMetrics().getMessagesReceived();
+            this.refresh();
+            this.setVisible(true);
+            refresher.play();
+        }
+    }
+
+    /**
+     * Updates the metrics shown
+     */
+    public void refresh() {
+        var sent = communicator.getMessagesSent();
+        var received = communicator.getMetrics().getMessagesReceived();
+        metrics.setText(String.format("Last second: sent %d, received %d%n", sent - lastSent, received - lastReceived)
+                + communicator.getMetricsReport());
+        lastSent = sent;
+        lastReceived = received;
+    }
+}
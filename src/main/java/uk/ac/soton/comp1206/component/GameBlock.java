@@ -1,21 +1,16 @@
 package uk.ac.soton.comp1206.component;
 
-import javafx.animation.AnimationTimer;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleDoubleProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.beans.value.ObservableValue;
-import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * The Visual User Interface component representing a single block in the grid.
- * Extends Canvas and is responsible for drawing itself.
+ * It is not a node of its own: it holds how the block should look, and its GameBoard draws it onto the board's shared canvas.
  * Displays an empty square (when the value is 0) or a coloured square depending on value.
  */
-public class GameBlock extends Canvas {
+public class GameBlock {
 
     private static final Logger logger = LogManager.getLogger(GameBlock.class);
 
@@ -41,6 +36,16 @@ public class GameBlock extends Canvas {
             Color.PURPLE
     };
 
+    /**
+     * The opacity a fade out starts from, above 1 so the block stays fully green for a few frames
+     */
+    private static final double FADE_START = 1.2;
+
+    /**
+     * The opacity a fade out loses every frame
+     */
+    private static final double FADE_STEP = 0.02;
+
     private final GameBoard gameBoard;
 
     private final double width;
@@ -57,17 +62,27 @@ public class GameBlock extends Canvas {
     private final int y;
 
     /**
-     * The value of this block (0 = empty, otherwise specifies the colour to render as)
+     * Whether this block is painted as hovered over
+     */
+    private boolean hovered;
+
+    /**
+     * Whether this block has an indicator drawn in its centre
+     */
+    private boolean indicator;
+
+    /**
+     * The opacity of the fade out over this block, or 0 if it isn't fading
      */
-    private final IntegerProperty value = new SimpleIntegerProperty(0);
+    private double fade;
 
     /**
      * Creates a new single Game Block
      * @param gameBoard the board this block belongs to
      * @param x the column the block exists in
      * @param y the row the block exists in
-     * @param width the width of the canvas to render
-     * @param height the height of the canvas to render
+     * @param width the width of the block
+     * @param height the height of the block
      */
     public GameBlock(GameBoard gameBoard, int x, int y, double width, double height) {
         this.gameBoard = gameBoard;
@@ -75,50 +90,75 @@ public class GameBlock extends Canvas {
         this.height = height;
         this.x = x;
         this.y = y;
-
-        //A canvas needs a fixed width and height
-        setWidth(width);
-        setHeight(height);
-
-        //Do an initial paint
-        paint();
-
-        //When the value property is updated, call the internal updateValue method
-        value.addListener(this::updateValue);
     }
 
     /**
-     * Updates the value of this block
-     * @param observable what was updated
-     * @param oldValue the old value
-     * @param newValue the new value
+     * Paints this block plainly, removing any hover or indicator
      */
-    private void updateValue(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-        paint();
+    public void paint() {
+        hovered = false;
+        indicator = false;
+        gameBoard.markDirty(this);
     }
 
     /**
-     * Handles painting the block canvas
+     * Draws this block onto the board's canvas at its own position
+     * Everything is clipped to this block, so its border can't spill onto the blocks around it
+     * @param gc the board's graphics context
      */
-    public void paint() {
+    void draw(GraphicsContext gc) {
+        var left = x * width;
+        var top = y * height;
+        gc.save();
+        gc.beginPath();
+        gc.rect(left, top, width, height);
+        gc.clip();
+        gc.translate(left, top);
+
+        //Clear
+        gc.clearRect(0,0,width,height);
+
         //If the block is empty, paint as empty
-        if(value.get() == 0) {
-            paintEmpty();
+        var value = this.getValue();
+        if(value == 0) {
+            paintEmpty(gc);
         } else {
             //If the block is not empty, paint with the colour represented by the value
-            paintColor(COLOURS[value.get()]);
+            paintColor(gc, COLOURS[value]);
+        }
+
+        //Adds white transparent layer
+        if (hovered) {
+            gc.setFill(Color.WHITE);
+            gc.setGlobalAlpha(0.5);
+            gc.fillRect(0, 0, width, height);
+            gc.setGlobalAlpha(1);
         }
+
+        //Draws Circle
+        if (indicator) {
+            gc.setFill(Color.WHITE);
+            gc.setGlobalAlpha(0.5);
+            gc.fillOval(width/4, height/4, width/2, height/2);
+            gc.setGlobalAlpha(1);
+        }
+
+        //Colours block green with decreasing opacity
+        if (fade > 0) {
+            gc.setGlobalAlpha(Math.min(1, fade));
+            gc.setFill(Color.LIME);
+            gc.fillRect(0, 0, width, height);
+            gc.setGlobalAlpha(1);
+        }
+
+        gc.restore();
     }
 
     /**
-     * Paints this canvas empty
+     * Paints this block empty
+     * @param gc the graphics context, translated to this block
      */
-    private void paintEmpty() {
-        var gc = getGraphicsContext2D();
-
-        //Clear
-        gc.clearRect(0,0,width,height);
-
+    private void paintEmpty(GraphicsContext gc) {
         //Fill
         gc.setFill(Color.BLACK);
         gc.setGlobalAlpha(0.3);
@@ -131,15 +171,11 @@ public class GameBlock extends Canvas {
     }
 
     /**
-     * Paints this canvas with the given colour
+     * Paints this block with the given colour
+     * @param gc the graphics context, translated to this block
      * @param colour the colour to paint
      */
-    private void paintColor(Color colour) {
-        var gc = getGraphicsContext2D();
-
-        //Clear
-        gc.clearRect(0,0,width,height);
-
+    private void paintColor(GraphicsContext gc, Color colour) {
         //Colour fill
         gc.setFill(colour);
         gc.fillPolygon(new double[]{0, width, width}, new double[]{0, 0, height}, 3);
@@ -174,99 +210,57 @@ public class GameBlock extends Canvas {
      * @return value
      */
     public int getValue() {
-        return this.value.get();
-    }
-
-    /**
-     * Binds the value of this block to another property
-     * Used to link the visual block to a corresponding block in the Grid
-     * @param input property to bind the value to
-     */
-    public void bind(ObservableValue<? extends Number> input) {
-        value.bind(input);
+        return gameBoard.grid.get(x, y);
     }
 
     /**
      * Draws a white transparent circle in the middle of this game block
      */
     public void drawIndicator() {
-        logger.info("Drawing indicator at the centre of " + this);
-        var gc = getGraphicsContext2D();
-
-        //Draws Circle
-        gc.setFill(Color.WHITE);
-        gc.setGlobalAlpha(0.5);
-        gc.fillOval(width/4, height/4, width/2, height/2);
-        gc.setGlobalAlpha(1);
+        logger.info("Drawing indicator at the centre of {}", this);
+        indicator = true;
+        gameBoard.markDirty(this);
     }
 
     /**
      * Handles painting this block as a hovered over block
      */
     public void hoverOver() {
-        var gc = getGraphicsContext2D();
+        hovered = true;
+        gameBoard.markDirty(this);
+    }
 
-        //Clear
-        gc.clearRect(0,0,width,height);
+    /**
+     * Fades this block out
+     */
+    public void fadeOut() {
+        fade = FADE_START;
+        gameBoard.markFading(this);
+    }
 
-        //Colours
-        this.paint();
+    /**
+     * Moves the fade out on by one frame
+     * @return true if this block is still fading
+     */
+    boolean stepFade() {
+        fade = Math.max(0, fade - FADE_STEP);
+        return fade > 0;
+    }
 
-        //Adds white transparent layer
-        gc.setFill(Color.WHITE);
-        gc.setGlobalAlpha(0.5);
-        gc.fillRect(0, 0, width, height);
-        gc.setGlobalAlpha(1);
+    /**
+     * Removes the hover and indicator, as happens whenever the value of this block changes
+     */
+    void reset() {
+        hovered = false;
+        indicator = false;
     }
 
     /**
-     * Fades this block out
+     * Returns the string representation of this block
+     * @return the column and row of this block
      */
-    public void fadeOut() {
-        var gc = getGraphicsContext2D();
-
-        //Opacity of this block
-        var opacity = new SimpleDoubleProperty(1.2);
-
-        //Animation timer used to decrease opacity of this block
-        var timer = new AnimationTimer() {
-
-            /**
-             * Handles what the timer should do each frame
-             * @param now
-             *            The timestamp of the current frame given in nanoseconds. This
-             *            value will be the same for all {@code AnimationTimers} called
-             *            during one frame.
-             */
-            @Override
-            public void handle(long now) {
-                //Clears block
-                gc.clearRect(0,0,width,height);
-
-                //Colours block green with decreased opacity
-                paint();
-                opacity.set(opacity.get() - 0.02);
-                gc.setGlobalAlpha(opacity.get());
-                gc.setFill(Color.LIME);
-                gc.fillRect(0, 0, width, height);
-                gc.setGlobalAlpha(1);
-            }
-        };
-
-        //Starts the animation timer
-        timer.start();
-
-        //Stops the animation timer when this block is completely transparent
-        opacity.addListener(((observable, oldValue, newValue) -> {
-            if(newValue.doubleValue() <= 0) {
-                timer.stop();
-
-                //Clears block
-                gc.clearRect(0,0,width,height);
-
-                //Colours block
-                paint();
-            }
-        }));
+    @Override
+    public String toString() {
+        return "GameBlock(" + x + ", " + y + ")";
     }
 }
@@ -1,24 +1,26 @@
 package uk.ac.soton.comp1206.component;
 
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.GridPane;
+import javafx.scene.layout.StackPane;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.BlockClickedListener;
 import uk.ac.soton.comp1206.event.BlockHoveredListener;
 import uk.ac.soton.comp1206.event.RightClickedListener;
+import uk.ac.soton.comp1206.game.ClearedBlocks;
 import uk.ac.soton.comp1206.game.Grid;
 
-import java.util.Set;
-
 /**
  * A GameBoard is a visual component to represent the visual GameBoard.
- * It extends a GridPane to hold a grid of GameBlocks.
+ * It draws the whole grid of GameBlocks onto a single Canvas, and works out which block the mouse is over itself.
+ * Changes to the grid only mark their blocks as dirty, and the dirty blocks are repainted once on the next pulse.
  * The GameBoard can hold an internal grid of its own, for example, for displaying an upcoming block.
  * It also is linked to an external grid, for the main game board.
  */
-public class GameBoard extends GridPane {
+public class GameBoard extends StackPane {
 
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
 
@@ -45,13 +47,48 @@ public class GameBoard extends GridPane {
     /**
      * The grid this GameBoard represents
      */
-    final Grid grid;
+    Grid grid;
+
+    /**
+     * The canvas every block is drawn on
+     */
+    private final Canvas canvas;
 
     /**
      * The blocks inside the grid
      */
     GameBlock[][] blocks;
 
+    /**
+     * Blocks which need repainting on the next pulse, one bit per block in the same order as the grid's bitboard
+     */
+    private long dirty;
+
+    /**
+     * Blocks which are fading out, one bit per block in the same order as the grid's bitboard
+     */
+    private long fading;
+
+    /**
+     * Whether the repaint timer is running
+     */
+    private boolean repainting;
+
+    /**
+     * Repaints the dirty blocks on each pulse, and stops itself once nothing is left to repaint
+     */
+    private final AnimationTimer repaintTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            repaint();
+        }
+    };
+
+    /**
+     * The block the mouse is over, or null if it is outside the board
+     */
+    private GameBlock mouseBlock;
+
     /**
      * The listener to call when a specific block is left-clicked
      */
@@ -78,10 +115,11 @@ public class GameBoard extends GridPane {
         this.rows = grid.getRows();
         this.width = width;
         this.height = height;
-        this.grid = grid;
+        this.canvas = new Canvas(width, height);
 
         //Build the GameBoard
         build();
+        setGrid(grid);
     }
 
     /**
@@ -92,14 +130,7 @@ public class GameBoard extends GridPane {
      * @param height the visual height
      */
     public GameBoard(int cols, int rows, double width, double height) {
-        this.cols = cols;
-        this.rows = rows;
-        this.width = width;
-        this.height = height;
-        this.grid = new Grid(cols,rows);
-
-        //Build the GameBoard
-        build();
+        this(new Grid(cols, rows), width, height);
     }
 
     /**
@@ -113,15 +144,46 @@ public class GameBoard extends GridPane {
     }
 
     /**
-     * Builds the GameBoard by creating a block at every x and y column and row
+     * Gets the grid this GameBoard represents
+     * @return the grid
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Shows a different grid of the same size on this GameBoard, which is repainted on the next pulse
+     * Lets a board be reused for a new grid instead of being rebuilt
+     * @param grid the grid to show
+     */
+    public void setGrid(Grid grid) {
+        if (grid.getCols() != cols || grid.getRows() != rows) {
+            throw new IllegalArgumentException("Grid of " + grid.getCols() + " x " + grid.getRows() + " doesn't fit a board of " + cols + " x " + rows);
+        }
+        if (this.grid != null && this.grid != grid) {
+            this.grid.setOnCellChanged(null);
+        }
+        this.grid = grid;
+
+        //Marks the blocks dirty whenever the grid changes
+        grid.setOnCellChanged(this::cellChanged);
+        for (var column : blocks) {
+            for (var block : column) {
+                block.reset();
+            }
+        }
+        this.markAllDirty();
+    }
+
+    /**
+     * Builds the GameBoard by creating a block at every x and y column and row, and the canvas they are drawn on
      */
     protected void build() {
         logger.info("Building grid: {} x {}",cols,rows);
 
         setMaxWidth(width);
         setMaxHeight(height);
-
-        setGridLinesVisible(true);
+        getChildren().add(canvas);
 
         blocks = new GameBlock[cols][rows];
 
@@ -130,38 +192,29 @@ public class GameBoard extends GridPane {
                 createBlock(x,y);
             }
         }
+
+        //Works out which block the mouse is over from its position on the canvas
+        canvas.setOnMouseClicked(this::mouseClicked);
+        canvas.setOnMouseMoved(this::mouseMoved);
+        canvas.setOnMouseExited((e) -> this.setMouseBlock(null));
     }
 
     /**
      * Creates a block at the given x and y position in the GameBoard
      * @param x column
      * @param y row
+     * @return the block created
      */
     protected GameBlock createBlock(int x, int y) {
         var blockWidth = width / cols;
         var blockHeight = height / rows;
 
-        //Create a new GameBlock UI component
+        //Create a new GameBlock, drawn by this board
         GameBlock block = new GameBlock(this, x, y, blockWidth, blockHeight);
 
-        //Add to the GridPane
-        add(block,x,y);
-
         //Add to our block directory
         blocks[x][y] = block;
 
-        //Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x,y));
-
-        //Adds a mouse click handler to the block to trigger GameBoard's blockClicked method
-        block.setOnMouseClicked((e) -> this.blockClicked(e, block));
-
-        //Adds a mouse entered handler to the block to trigger GameBoard's blockHovered() method
-        block.setOnMouseEntered((e) -> this.blockHovered(block));
-
-        //Adds a mouse exited handler to the block to trigger GameBoard's blockHoveredOff() method
-        block.setOnMouseExited((e) -> this.blockHoveredOff(block));
-
         return block;
     }
 
@@ -189,6 +242,57 @@ public class GameBoard extends GridPane {
         this.blockHoveredListener = listener;
     }
 
+    /**
+     * Gets the block at a position on the canvas
+     * @param canvasX horizontal position
+     * @param canvasY vertical position
+     * @return the block, or null if the position is outside the board
+     */
+    private GameBlock blockAt(double canvasX, double canvasY) {
+        var x = (int) Math.floor(canvasX / (width / cols));
+        var y = (int) Math.floor(canvasY / (height / rows));
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            return null;
+        }
+        return blocks[x][y];
+    }
+
+    /**
+     * Handles the mouse moving over the canvas
+     * @param event mouse event
+     */
+    private void mouseMoved(MouseEvent event) {
+        this.setMouseBlock(this.blockAt(event.getX(), event.getY()));
+    }
+
+    /**
+     * Handles the mouse clicking on the canvas
+     * @param event mouse event
+     */
+    private void mouseClicked(MouseEvent event) {
+        var block = this.blockAt(event.getX(), event.getY());
+        if (block != null) {
+            this.blockClicked(event, block);
+        }
+    }
+
+    /**
+     * Moves the mouse onto a different block, hovering off the old block and onto the new one
+     * @param block the block the mouse is now over, or null if it left the board
+     */
+    private void setMouseBlock(GameBlock block) {
+        if (block == mouseBlock) {
+            return;
+        }
+        if (mouseBlock != null) {
+            this.blockHoveredOff(mouseBlock);
+        }
+        mouseBlock = block;
+        if (block != null) {
+            this.blockHovered(block);
+        }
+    }
+
     /**
      * Triggered when a block is clicked
      * Calls the attached listener
@@ -238,12 +342,97 @@ public class GameBoard extends GridPane {
 
     /**
      * Fades a set of game blocks out
-     * @param gameBlockCoordinates set of game blocks coordinates in this game board
+     * @param clearedBlocks the game blocks in this game board to fade out
+     */
+    public void fadeOut(ClearedBlocks clearedBlocks) {
+        for (int i = 0; i < clearedBlocks.size(); i++) {
+            var block = this.getBlock(clearedBlocks.getX(i), clearedBlocks.getY(i));
+            logger.info("Fading {} out", block);
+            block.fadeOut();
+        }
+    }
+
+    /**
+     * Handles the value of a block in the grid changing
+     * @param x column
+     * @param y row
+     * @param value the new value
+     */
+    private void cellChanged(int x, int y, int value) {
+        var block = blocks[x][y];
+        block.reset();
+        this.markDirty(block);
+    }
+
+    /**
+     * Marks a block as needing to be repainted on the next pulse
+     * @param block the block
+     */
+    void markDirty(GameBlock block) {
+        dirty |= 1L << this.indexOf(block);
+        this.requestRepaint();
+    }
+
+    /**
+     * Marks a block as fading out, so it is repainted on every pulse until the fade ends
+     * @param block the block
+     */
+    void markFading(GameBlock block) {
+        fading |= 1L << this.indexOf(block);
+        this.markDirty(block);
+    }
+
+    /**
+     * Marks every block as needing to be repainted on the next pulse
      */
-    public void fadeOut(Set<GameBlockCoordinate> gameBlockCoordinates) {
-        for (var i: gameBlockCoordinates) {
-            logger.info("Fading " + this.getBlock(i.getX(), i.getY()) + " out");
-            this.getBlock(i.getX(), i.getY()).fadeOut();
+    private void markAllDirty() {
+        dirty = cols * rows == Long.SIZE ? -1L : (1L << (cols * rows)) - 1;
+        this.requestRepaint();
+    }
+
+    /**
+     * Starts the repaint timer if it isn't running
+     */
+    private void requestRepaint() {
+        if (!repainting) {
+            repainting = true;
+            repaintTimer.start();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Moves every fade out on by a frame and repaints the dirty blocks onto the canvas
+     */
+    private void repaint() {
+        //Fading blocks change every frame, so they are always repainted
+        for (var pending = fading; pending != 0; pending &= pending - 1) {
+            var index = Long.numberOfTrailingZeros(pending);
+            if (!blocks[index % cols][index / cols].stepFade()) {
+                fading &= ~(1L << index);
+            }
+            dirty |= 1L << index;
+        }
+
+        var gc = canvas.getGraphicsContext2D();
+        for (var pending = dirty; pending != 0; pending &= pending - 1) {
+            var index = Long.numberOfTrailingZeros(pending);
+            blocks[index % cols][index / cols].draw(gc);
+        }
+        dirty = 0;
+
+        //Stops until something else changes once no block is still fading
+        if (fading == 0) {
+            repaintTimer.stop();
+            repainting = false;
+        }
+    }
+
+    /**
+     * Gets the index of a block in the same order as the grid's bitboard
+     * @param block the block
+     * @return the index
+     */
+    private int indexOf(GameBlock block) {
+        return block.getY() * cols + block.getX();
+    }
+}
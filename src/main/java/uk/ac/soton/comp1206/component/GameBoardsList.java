@@ -15,6 +15,7 @@ import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.game.Grid;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The Visual User Interface component representing a game boards list in the multiplayer scene.
@@ -36,6 +37,16 @@ public class GameBoardsList extends VBox {
      */
     protected final ArrayList<VBox> gameBoardDisplays = new ArrayList<>();
 
+    /**
+     * The heading of each game board display, in the same order
+     */
+    private final ArrayList<Text> gameBoardHeadings = new ArrayList<>();
+
+    /**
+     * The game board of each game board display, in the same order
+     */
+    private final ArrayList<GameBoard> gameBoardBoards = new ArrayList<>();
+
     /**
      * The player's name
      */
@@ -62,26 +73,44 @@ public class GameBoardsList extends VBox {
 
     /**
      * Builds the game boards list
+     * Existing entries and their game boards are reused, so only players who are new to the list create any nodes
      */
     public void build() {
         logger.info("Building game boards list");
 
-        //Removes all the game boards currently in this game boards list
-        this.getChildren().clear();
-        gameBoardDisplays.clear();
-
-        //Adds each grid in the updated game boards list property to be displayed in this game boards list
-        for (var gameBoard : gameBoardsList) {
-            var entry = new VBox();
-            entry.setAlignment(Pos.CENTER);
-            var entryHeading = new Text(gameBoard.getKey());
-            entryHeading.getStyleClass().add("heading");
-            var entryBoard = new GameBoard(gameBoard.getValue(), 100, 100);
-            entry.getChildren().addAll(entryHeading, entryBoard);
-            this.getChildren().add(entry);
-            gameBoardDisplays.add(entry);
+        //Removes the entries for any players no longer in the game boards list
+        while (gameBoardDisplays.size() > gameBoardsList.size()) {
+            var last = gameBoardDisplays.size() - 1;
+            this.getChildren().remove(gameBoardDisplays.remove(last));
+            gameBoardHeadings.remove(last);
+            gameBoardBoards.remove(last);
+        }
+
+        //Shows each grid in the updated game boards list property, creating an entry only if there isn't one to reuse
+        var added = new ArrayList<VBox>();
+        for (int i = 0; i < gameBoardsList.size(); i++) {
+            var gameBoard = gameBoardsList.get(i);
+            if (i == gameBoardDisplays.size()) {
+                var entry = new VBox();
+                entry.setAlignment(Pos.CENTER);
+                var entryHeading = new Text();
+                entryHeading.getStyleClass().add("heading");
+                var entryBoard = new GameBoard(gameBoard.getValue(), 100, 100);
+                entry.getChildren().addAll(entryHeading, entryBoard);
+                this.getChildren().add(entry);
+                gameBoardDisplays.add(entry);
+                gameBoardHeadings.add(entryHeading);
+                gameBoardBoards.add(entryBoard);
+                added.add(entry);
+            }
+            var entryHeading = gameBoardHeadings.get(i);
+            entryHeading.setText(gameBoard.getKey());
+            if (gameBoardBoards.get(i).getGrid() != gameBoard.getValue()) {
+                gameBoardBoards.get(i).setGrid(gameBoard.getValue());
+            }
 
             //Highlights game board heading if game board is the player's game board
+            entryHeading.getStyleClass().remove("player-heading");
             if (entryHeading.getText().equals(playerName.get())) {
                 entryHeading.getStyleClass().add("player-heading");
             }
@@ -90,8 +119,8 @@ public class GameBoardsList extends VBox {
         //Fades out any game board in this game boards list if the game board's player has run out of lives
         this.trackLives();
 
-        //Reveals the game boards list
-        this.reveal();
+        //Reveals any game boards that were just added
+        this.reveal(added);
     }
 
     /**
@@ -103,9 +132,11 @@ public class GameBoardsList extends VBox {
         //Loops through each display in this game boards list
         for (int i = 0; i < gameBoardDisplays.size(); i++) {
             //Checks if a player is dead
-            if (!lifeStatuses.isEmpty() && lifeStatuses.get(i).getValue().equals("DEAD")) {
+            if (i < lifeStatuses.size() && lifeStatuses.get(i).getValue().equals("DEAD")) {
                 //If so fades out their game board display
                 gameBoardDisplays.get(i).setOpacity(0.3);
+            } else {
+                gameBoardDisplays.get(i).setOpacity(1);
             }
         }
     }
@@ -135,16 +166,27 @@ public class GameBoardsList extends VBox {
     }
 
     /**
-     * Animates the game boards in this list to fade in one after the other
+     * Animates every game board in this list to fade in one after the other
      */
     public void reveal() {
+        this.reveal(gameBoardDisplays);
+    }
+
+    /**
+     * Animates the given game boards in this list to fade in one after the other
+     * @param gameBoards the game board displays to reveal
+     */
+    private void reveal(List<VBox> gameBoards) {
+        if (gameBoards.isEmpty()) {
+            return;
+        }
         logger.info("Revealing game boards");
 
         //Creates a sequential transition to store each game board's animation
         var reveal = new SequentialTransition();
 
         //Animates each game board and adds them to the sequential transition
-        for (var gameBoard : this.getChildren()) {
+        for (var gameBoard : gameBoards) {
             var fade = new FadeTransition(new Duration(300), gameBoard);
             fade.setFromValue(0);
             fade.setToValue(gameBoard.getOpacity());
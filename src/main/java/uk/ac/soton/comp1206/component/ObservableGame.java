@@ -0,0 +1,214 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.util.Duration;
+import uk.ac.soton.comp1206.event.GameEventListener;
+import uk.ac.soton.comp1206.event.LineClearedListener;
+import uk.ac.soton.comp1206.game.ClearedBlocks;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameSound;
+import uk.ac.soton.comp1206.game.Multimedia;
+
+/**
+ * An ObservableGame adapts a Game for the user interface.
+ * It listens to the game's events on the JavaFX thread and exposes the game's state as properties for UI components to bind to.
+ * It also animates the score, plays the game's sound effects and runs the game loop on the JavaFX thread.
+ */
+public class ObservableGame implements GameEventListener {
+
+    /**
+     * The game this adapter observes
+     */
+    private final Game game;
+
+    /**
+     * The displayed score, which animates towards the game's score
+     */
+    private final SimpleIntegerProperty score = new SimpleIntegerProperty(0);
+
+    /**
+     * The game's actual score, which the displayed score animates towards
+     */
+    private final SimpleIntegerProperty newScore = new SimpleIntegerProperty(0);
+
+    /**
+     * The level number
+     */
+    private final SimpleIntegerProperty level = new SimpleIntegerProperty(0);
+
+    /**
+     * The number of lives that the player has
+     */
+    private final SimpleIntegerProperty lives = new SimpleIntegerProperty(0);
+
+    /**
+     * The multiplier value
+     */
+    private final SimpleIntegerProperty multiplier = new SimpleIntegerProperty(0);
+
+    /**
+     * The listener to call when a line is cleared
+     */
+    private LineClearedListener lineClearedListener;
+
+    /**
+     * Creates a new ObservableGame which observes the given game
+     * The game's events and game loop are moved onto the JavaFX thread
+     * @param game the game to observe
+     */
+    public ObservableGame(Game game) {
+        this.game = game;
+        score.set(game.getScore());
+        newScore.set(game.getScore());
+        level.set(game.getLevel());
+        lives.set(game.getLives());
+        multiplier.set(game.getMultiplier());
+
+        game.setLoopExecutor(Platform::runLater);
+        game.setGameEventListener(this);
+    }
+
+    /**
+     * Gets the game this adapter observes
+     * @return the game
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Stops observing the game and clears the listener
+     */
+    public void detach() {
+        game.setGameEventListener(null);
+        lineClearedListener = null;
+    }
+
+    /**
+     * Sets a listener to handle an event when a line is cleared
+     * @param listener the listener to add
+     */
+    public void setLineClearedListener(LineClearedListener listener) {
+        this.lineClearedListener = listener;
+    }
+
+    /**
+     * Gets the displayed score property, which animates towards the game's score
+     * @return score property
+     */
+    public SimpleIntegerProperty getScoreProperty() {
+        return score;
+    }
+
+    /**
+     * Gets the new score property, which holds the game's actual score
+     * @return new score property
+     */
+    public SimpleIntegerProperty getNewScoreProperty() {
+        return newScore;
+    }
+
+    /**
+     * Gets the level property
+     * @return level property
+     */
+    public SimpleIntegerProperty getLevelProperty() {
+        return level;
+    }
+
+    /**
+     * Gets the lives property
+     * @return lives property
+     */
+    public SimpleIntegerProperty getLivesProperty() {
+        return lives;
+    }
+
+    /**
+     * Gets the multiplier property
+     * @return multiplier property
+     */
+    public SimpleIntegerProperty getMultiplierProperty() {
+        return multiplier;
+    }
+
+    /**
+     * Updates the score and animates the displayed score increasing
+     * @param score the new score
+     */
+    @Override
+    public void scoreChanged(int score) {
+        runOnFxThread(() -> {
+            newScore.set(score);
+            var timeLine = new Timeline();
+            timeLine.getKeyFrames().add(
+                    new KeyFrame(Duration.millis(1000), new KeyValue(this.score, score))
+            );
+            timeLine.play();
+        });
+    }
+
+    /**
+     * Updates the level
+     * @param level the new level
+     */
+    @Override
+    public void levelChanged(int level) {
+        runOnFxThread(() -> this.level.set(level));
+    }
+
+    /**
+     * Updates the number of lives
+     * @param lives the new number of lives
+     */
+    @Override
+    public void livesChanged(int lives) {
+        runOnFxThread(() -> this.lives.set(lives));
+    }
+
+    /**
+     * Updates the multiplier
+     * @param multiplier the new multiplier
+     */
+    @Override
+    public void multiplierChanged(int multiplier) {
+        runOnFxThread(() -> this.multiplier.set(multiplier));
+    }
+
+    /**
+     * Calls the line cleared listener
+     * This is only called on the JavaFX thread, as the buffer is reused once the game moves on
+     * @param clearedBlocks the game blocks in the cleared lines
+     */
+    @Override
+    public void linesCleared(ClearedBlocks clearedBlocks) {
+        if (lineClearedListener != null && Platform.isFxApplicationThread()) {
+            lineClearedListener.lineCleared(clearedBlocks);
+        }
+    }
+
+    /**
+     * Plays a sound effect
+     * @param sound the sound effect to play
+     */
+    @Override
+    public void soundPlayed(GameSound sound) {
+        runOnFxThread(() -> Multimedia.playSound(sound));
+    }
+
+    /**
+     * Runs an update straight away on the JavaFX thread, or moves it onto the JavaFX thread otherwise
+     * @param update the update to run
+     */
+    private static void runOnFxThread(Runnable update) {
+        if (Platform.isFxApplicationThread()) {
+            update.run();
+        } else {
+            Platform.runLater(update);
+        }
+    }
+}
@@ -25,16 +25,15 @@ public class PieceBoard extends GameBoard {
 
     /**
      * Displays a GamePiece within this PieceBoard
-     * @param gamePiece GamePiece to display
+     * @param gamePiece GamePiece to display, or null to leave the piece board empty
      */
     public void setPieceToDisplay(GamePiece gamePiece) {
         logger.info("Setting " + gamePiece + " to be displayed at the centre of " + this + "piece board");
 
         //Clears the piece board's grid
-        for (int j = 0; j < grid.getRows(); j++) {
-            for (int i = 0; i < grid.getCols(); i++) {
-                grid.set(i, j, 0);
-            }
+        grid.clear();
+        if (gamePiece == null) {
+            return;
         }
 
         //Displays gamePiece within the centre of the piece board's grid
@@ -0,0 +1,15 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The Cell Changed listener is used to handle the event when the value of a block in a Grid changes.
+ */
+public interface CellChangedListener {
+
+    /**
+     * Handles a cell changed event
+     * @param x column of the block that changed
+     * @param y row of the block that changed
+     * @param value the new value of the block
+     */
+    void cellChanged(int x, int y, int value);
+}
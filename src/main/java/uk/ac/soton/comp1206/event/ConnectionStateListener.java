@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.network.ConnectionState;
+
+/**
+ * The Connection State listener is used to handle the event when a Communicator connects to, or loses, the server.
+ * It is called on the communicator's own threads, not the JavaFX thread.
+ */
+public interface ConnectionStateListener {
+
+    /**
+     * Handles the connection state changing
+     * @param state the new connection state
+     */
+    void connectionStateChanged(ConnectionState state);
+}
@@ -0,0 +1,49 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.ClearedBlocks;
+import uk.ac.soton.comp1206.game.GameSound;
+
+/**
+ * The Game Event listener is used to receive the changes to a Game's state as they happen.
+ * It is how a user interface, or anything else, follows a Game without the Game depending on it.
+ * Every method does nothing by default, so a listener only needs to handle the events it cares about.
+ */
+public interface GameEventListener {
+
+    /**
+     * Handles the score changing
+     * @param score the new score
+     */
+    default void scoreChanged(int score) {}
+
+    /**
+     * Handles the level changing
+     * @param level the new level
+     */
+    default void levelChanged(int level) {}
+
+    /**
+     * Handles the number of lives changing
+     * @param lives the new number of lives
+     */
+    default void livesChanged(int lives) {}
+
+    /**
+     * Handles the multiplier changing
+     * @param multiplier the new multiplier
+     */
+    default void multiplierChanged(int multiplier) {}
+
+    /**
+     * Handles lines being cleared
+     * The buffer is reused for the next clear, so it must not be kept after this call
+     * @param clearedBlocks the game blocks in the cleared lines
+     */
+    default void linesCleared(ClearedBlocks clearedBlocks) {}
+
+    /**
+     * Handles a sound effect being requested
+     * @param sound the sound effect to play
+     */
+    default void soundPlayed(GameSound sound) {}
+}
@@ -0,0 +1,15 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.storage.GameRecord;
+
+/**
+ * The Game Record Requested listener is used to handle the event when the record of last game is requested.
+ */
+public interface GameRecordRequestedListener {
+
+    /**
+     * Handles a game record requested event
+     * @return the record of last game, which may not have a player yet
+     */
+    GameRecord gameRecordRequested();
+}
@@ -1,8 +1,6 @@
 package uk.ac.soton.comp1206.event;
 
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
-
-import java.util.Set;
+import uk.ac.soton.comp1206.game.ClearedBlocks;
 
 /**
  * The Line Cleared listener is used to handle the event when a line in a Game is cleared.
@@ -11,7 +9,8 @@ public interface LineClearedListener {
 
     /**
      * Handles a line cleared event
-     * @param gameBlockCoordinates coordinates of game blocks in that line
+     * The buffer is reused for the next clear, so it must not be kept after this call
+     * @param clearedBlocks the game blocks in the cleared lines
      */
-    void lineCleared(Set<GameBlockCoordinate> gameBlockCoordinates);
+    void lineCleared(ClearedBlocks clearedBlocks);
 }
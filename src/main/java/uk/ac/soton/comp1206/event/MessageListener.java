@@ -0,0 +1,17 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.network.Message;
+
+/**
+ * The Message listener is used for listening to one type of message received by the communicator, already parsed.
+ * It is called through the communicator's dispatcher, which in the game is the JavaFX thread.
+ * @param <T> the type of message listened to
+ */
+public interface MessageListener<T extends Message> {
+
+    /**
+     * Handles an incoming message of the subscribed type
+     * @param message the message that was received
+     */
+    void receiveMessage(T message);
+}
@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.replay.Replay;
+
+/**
+ * The Replay Loaded listener is used to handle the event when a replay asked for from a ReplayLibrary has been read.
+ * It is called through the library's dispatcher.
+ */
+public interface ReplayLoadedListener {
+
+    /**
+     * Handles the replay being read
+     * @param replay the replay, or null if there isn't one or it couldn't be read
+     */
+    void replayLoaded(Replay replay);
+}
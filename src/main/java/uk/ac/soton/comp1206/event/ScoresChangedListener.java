@@ -0,0 +1,18 @@
+package uk.ac.soton.comp1206.event;
+
+import javafx.util.Pair;
+
+import java.util.List;
+
+/**
+ * The Scores Changed listener is used to handle the event when the high scores in a ScoreStore change.
+ * It is called once for each batch of changes, such as loading the scores or adding one, through the store's dispatcher.
+ */
+public interface ScoresChangedListener {
+
+    /**
+     * Handles the high scores changing
+     * @param topScores the best high scores afterwards, best first
+     */
+    void scoresChanged(List<Pair<String, Integer>> topScores);
+}
@@ -0,0 +1,76 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * The Bag Piece Generator puts one of every piece in a bag, shuffles it, and deals the whole bag before refilling it.
+ * Every piece is dealt once in every run of GamePiece.PIECES pieces, so long droughts of a piece can't happen.
+ */
+public class BagPieceGenerator implements PieceGenerator {
+
+    /**
+     * The seed this generator was created with
+     */
+    private final long seed;
+
+    /**
+     * The random number generator used to shuffle the bag
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The piece numbers in the bag, in the order they are dealt
+     */
+    private final int[] bag = new int[GamePiece.PIECES];
+
+    /**
+     * Index of the next piece number to deal from the bag
+     */
+    private int position = GamePiece.PIECES;
+
+    /**
+     * Creates a new bag generator
+     * @param seed the seed
+     */
+    public BagPieceGenerator(long seed) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+            bag[piece] = piece;
+        }
+    }
+
+    /**
+     * Generates the next piece number, reshuffling the bag once it has been dealt
+     * @return piece number
+     */
+    @Override
+    public int next() {
+        if (position == bag.length) {
+            this.shuffle();
+            position = 0;
+        }
+        return bag[position++];
+    }
+
+    /**
+     * Gets the seed this generator was created with
+     * @return the seed
+     */
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Shuffles the bag in place with a Fisher-Yates shuffle
+     */
+    private void shuffle() {
+        for (int i = bag.length - 1; i > 0; i--) {
+            var j = random.nextInt(i + 1);
+            var temp = bag[i];
+            bag[i] = bag[j];
+            bag[j] = temp;
+        }
+    }
+}
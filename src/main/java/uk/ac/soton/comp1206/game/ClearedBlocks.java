@@ -0,0 +1,107 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * ClearedBlocks is a reusable buffer holding the blocks removed from a Grid by one line clear.
+ * The columns and rows are stored in primitive arrays sized for the whole grid, so a clear never allocates.
+ * The contents are only valid until the buffer is next passed to Grid.clearLines, so listeners must not keep it.
+ */
+public class ClearedBlocks {
+
+    /**
+     * The column of each cleared block
+     */
+    private final int[] xs;
+
+    /**
+     * The row of each cleared block
+     */
+    private final int[] ys;
+
+    /**
+     * The number of cleared blocks held in this buffer
+     */
+    private int size;
+
+    /**
+     * The number of full lines that were cleared
+     */
+    private int lines;
+
+    /**
+     * Creates a new buffer large enough to hold every block in the given grid
+     * @param grid the grid the buffer is used with
+     */
+    public ClearedBlocks(Grid grid) {
+        this(grid.getCols() * grid.getRows());
+    }
+
+    /**
+     * Creates a new buffer which can hold the given number of blocks
+     * @param capacity the maximum number of blocks
+     */
+    public ClearedBlocks(int capacity) {
+        xs = new int[capacity];
+        ys = new int[capacity];
+    }
+
+    /**
+     * Empties this buffer
+     */
+    void reset() {
+        size = 0;
+        lines = 0;
+    }
+
+    /**
+     * Adds a cleared block to this buffer
+     * @param x column
+     * @param y row
+     */
+    void add(int x, int y) {
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /**
+     * Sets the number of full lines that were cleared
+     * @param lines number of lines
+     */
+    void setLines(int lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Gets the number of cleared blocks
+     * @return number of blocks
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of full lines that were cleared
+     * @return number of lines
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the column of a cleared block
+     * @param i index of the block in this buffer
+     * @return column
+     */
+    public int getX(int i) {
+        return xs[i];
+    }
+
+    /**
+     * Gets the row of a cleared block
+     * @param i index of the block in this buffer
+     * @return row
+     */
+    public int getY(int i) {
+        return ys[i];
+    }
+}
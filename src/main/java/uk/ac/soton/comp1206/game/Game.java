@@ -1,31 +1,29 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.KeyValue;
-import javafx.animation.Timeline;
-import javafx.application.Platform;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.event.GameEventListener;
 import uk.ac.soton.comp1206.event.GameLoopListener;
-import uk.ac.soton.comp1206.event.LineClearedListener;
 import uk.ac.soton.comp1206.event.NextPieceListener;
+import uk.ac.soton.comp1206.replay.ReplayRecorder;
 
-import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * The Game class handles the main logic, state and properties of the TetrECS game.
+ * The Game class handles the main logic and state of the TetrECS game.
+ * It has no dependency on JavaFX, so it can run headless. Changes to its state are reported to a GameEventListener,
+ * and timer callbacks are run on the loop executor, which a user interface sets to its own thread.
  */
 public class Game {
 
     private static final Logger logger = LogManager.getLogger(Game.class);
 
+    /**
+     * The number of piece numbers generated at a time
+     */
+    private static final int PIECES_PER_BATCH = 64;
+
     /**
      * Number of rows
      */
@@ -41,6 +39,21 @@ public class Game {
      */
     protected final Grid grid;
 
+    /**
+     * Buffer reused to hold the blocks cleared after each placement
+     */
+    private final ClearedBlocks clearedBlocks;
+
+    /**
+     * The generator the game pieces are dealt from
+     */
+    private final PieceGenerator pieceGenerator;
+
+    /**
+     * Piece numbers generated in bulk and waiting to be dealt
+     */
+    private final PieceBuffer upcomingPieces = new PieceBuffer(PIECES_PER_BATCH);
+
     /**
      * The current game piece that the player has
      */
@@ -57,9 +70,9 @@ public class Game {
     private NextPieceListener nextPieceListener;
 
     /**
-     * The listener to call when a line is cleared
+     * The listener to call when the game's state changes
      */
-    private LineClearedListener lineClearedListener;
+    private GameEventListener gameEventListener;
 
     /**
      * The listener to call when the timer resets
@@ -67,34 +80,59 @@ public class Game {
     private GameLoopListener gameLoopListener;
 
     /**
-     * The score value, used for binding to UI components
-     */
-    protected final SimpleIntegerProperty score = new SimpleIntegerProperty(0);
-
-    /**
-     * The value the score value is about to become, used for calculations and access the score value
+     * The score value
      */
-    protected SimpleIntegerProperty newScore = new SimpleIntegerProperty(0);
+    private int score = 0;
 
     /**
      * The level number
      */
-    private final SimpleIntegerProperty level = new SimpleIntegerProperty(0);
+    private int level = 0;
 
     /**
      * The number of lives that the player has
      */
-    protected final SimpleIntegerProperty lives = new SimpleIntegerProperty(3);
+    private int lives = 3;
 
     /**
      * The multiplier value
      */
-    private final SimpleIntegerProperty multiplier = new SimpleIntegerProperty(1);
+    private int multiplier = 1;
+
+    /**
+     * The number of lines cleared
+     */
+    private int linesCleared;
+
+    /**
+     * The number of game pieces placed
+     */
+    private int piecesPlaced;
+
+    /**
+     * When the game was initialised, from System.nanoTime
+     */
+    private long startNanos;
+
+    /**
+     * When the game was stopped, from System.nanoTime, or 0 while it is running
+     */
+    private long stopNanos;
 
     /**
      * The timer
      */
-    private ScheduledExecutorService executor;
+    private final GameClock clock;
+
+    /**
+     * The executor the game loop is run on when the timer reaches 0
+     */
+    private Executor loopExecutor = Runnable::run;
+
+    /**
+     * The recorder every move is recorded to, or null if the game isn't recorded
+     */
+    private ReplayRecorder replayRecorder;
 
 
     /**
@@ -104,11 +142,37 @@ public class Game {
      * @param rows number of rows
      */
     public Game(int cols, int rows) {
+        this(cols, rows, new GameClock());
+    }
+
+    /**
+     * Creates a new game with the specified rows and columns, timed by the given clock
+     * Creates a corresponding grid model
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param clock the clock that times each game piece
+     */
+    public Game(int cols, int rows, GameClock clock) {
+        this(cols, rows, clock, PieceGenerator.uniform(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+     * Creates a new game with the specified rows and columns, timed by the given clock and dealt pieces by the given generator
+     * Creates a corresponding grid model
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param clock the clock that times each game piece
+     * @param pieceGenerator the generator the game pieces are dealt from
+     */
+    public Game(int cols, int rows, GameClock clock, PieceGenerator pieceGenerator) {
         this.cols = cols;
         this.rows = rows;
+        this.clock = clock;
+        this.pieceGenerator = pieceGenerator;
 
         //Create a new grid model to represent the game state
         this.grid = new Grid(cols,rows);
+        this.clearedBlocks = new ClearedBlocks(grid);
     }
 
     /**
@@ -148,6 +212,11 @@ public class Game {
      */
     public void initialiseGame() {
         logger.info("Initialising game");
+        startNanos = System.nanoTime();
+        stopNanos = 0;
+        if (replayRecorder != null) {
+            replayRecorder.start();
+        }
 
         //Creates a game piece and sets it as the current game piece
         currentPiece = this.spawnPiece();
@@ -160,46 +229,120 @@ public class Game {
             nextPieceListener.nextPiece(currentPiece, followingPiece);
         }
 
-        //Initialises the timer to repeat the game loop at the interval specified by the getTimeDelay() method
-        executor = Executors.newSingleThreadScheduledExecutor();
-        executor.scheduleAtFixedRate(() -> Platform.runLater(this::gameLoop), this.getTimerDelay(), this.getTimerDelay(), TimeUnit.MILLISECONDS);
+        //Starts the timer, which runs the game loop when it reaches 0
+        clock.setOnExpired(() -> loopExecutor.execute(this::timerExpired));
+        clock.reset(this.getTimerDelay());
     }
 
     /**
      * Handles what should happen when a particular block is clicked
-     * @param gameBlock the block that was clicked
+     * @param x column of the block that was clicked
+     * @param y row of the block that was clicked
+     * @return true if the current game piece was placed
      */
-    public void blockClicked(GameBlock gameBlock) {
-        //Get the position of this block
-        var x = gameBlock.getX();
-        var y = gameBlock.getY();
-
+    public boolean blockClicked(int x, int y) {
         //Checks if the current game piece can be placed at the game block that was just clicked
         if (grid.canPlayPiece(currentPiece, x, y)) {
+            if (replayRecorder != null) {
+                replayRecorder.place(x, y);
+            }
+
             //If so, places the game piece there
             grid.playPiece(currentPiece, x, y);
-            Multimedia.playAudio("sounds/place.wav");
+            this.playSound(GameSound.PLACE);
 
             //Clears any lines if needed after placing the current game piece and updates the score, level and multiplier if needed
             this.afterPiece();
 
             //Sets the next game piece as the current game piece and sets a new game piece as the next game piece
             this.nextPiece();
+            return true;
         } else {
-            Multimedia.playAudio("sounds/fail.wav");
+            logger.info("{} can't be placed at column {} and row {}", currentPiece, x, y);
+            this.playSound(GameSound.FAIL);
+            return false;
         }
     }
 
     /**
-     * Creates a new random game piece
+     * Creates a new game piece dealt by the piece generator
      * @return game piece created
      */
     public GamePiece spawnPiece() {
         logger.info("Spawning new game piece");
 
-        //Creates a new random game piece using a random generated integer that is between 0 and 14
-        var rand = new Random();
-        return GamePiece.createPiece(rand.nextInt(15));
+        //Generates the next batch of piece numbers once the last batch has been dealt
+        if (upcomingPieces.isEmpty()) {
+            upcomingPieces.fill(pieceGenerator);
+        }
+        var piece = GamePiece.createPiece(upcomingPieces.remove());
+        this.recordPiece(piece);
+        return piece;
+    }
+
+    /**
+     * Records a game piece being dealt, if the game is recorded
+     * @param piece the game piece, or null if there isn't one yet
+     */
+    protected void recordPiece(GamePiece piece) {
+        if (replayRecorder != null && piece != null) {
+            replayRecorder.piece(piece.getPiece());
+        }
+    }
+
+    /**
+     * Sets the recorder every move is recorded to, before the game starts
+     * @param replayRecorder the recorder, or null to stop recording
+     */
+    public void setReplayRecorder(ReplayRecorder replayRecorder) {
+        this.replayRecorder = replayRecorder;
+    }
+
+    /**
+     * Gets the recorder every move is recorded to
+     * @return the recorder, or null if the game isn't recorded
+     */
+    public ReplayRecorder getReplayRecorder() {
+        return replayRecorder;
+    }
+
+    /**
+     * Gets the generator the game pieces are dealt from
+     * @return the piece generator
+     */
+    public PieceGenerator getPieceGenerator() {
+        return pieceGenerator;
+    }
+
+    /**
+     * Gets the current game piece that the player has
+     * @return the current game piece
+     */
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * Gets the next game piece that the player will be given
+     * @return the following game piece
+     */
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * Replaces the current and following game pieces, for games that deal pieces spawnPiece couldn't create in time
+     * @param currentPiece the current game piece, or null if there isn't one yet
+     * @param followingPiece the following game piece, or null if there isn't one yet
+     */
+    protected void setPieces(GamePiece currentPiece, GamePiece followingPiece) {
+        this.currentPiece = currentPiece;
+        this.followingPiece = followingPiece;
+
+        //Updates the current and next game pieces displays
+        if (nextPieceListener != null) {
+            nextPieceListener.nextPiece(currentPiece, followingPiece);
+        }
     }
 
     /**
@@ -224,86 +367,38 @@ public class Game {
      * Handles what should happen when a game piece is placed
      */
     public void afterPiece() {
-        //Stores number of lines that are full
-        var fullLines = 0;
-
-        //Stores the x and y coordinates of the blocks that need to be cleared
-        var blocksToBeCleared = new HashSet<GameBlockCoordinate>();
-
-        //Checks if each row is full
-        logger.info("Checking if any horizontal lines need to be cleared");
-        for (int j = 0; j < this.getRows(); j++) {
-            int blocksInRow = 0;
-            for (int i = 0; i < this.getCols(); i++) {
-                if (grid.get(i, j) != 0) {
-                    blocksInRow += 1;
-                }
-            }
-            //If a row is full, adds each block in that row to the hash set to later be reset
-            if (blocksInRow == this.getCols()) {
-                for (int i = 0; i < this.getCols(); i++) {
-                    blocksToBeCleared.add(new GameBlockCoordinate(i, j));
-                }
-                //Increments number of full lines
-                fullLines ++;
-            }
-        }
-
-        //Checks if each column is full
-        logger.info("Checking if any vertical lines need to be cleared");
-        for (int i = 0; i < this.getCols(); i++) {
-            int blocksInColumn = 0;
-            for (int j = 0; j < this.getRows(); j++) {
-                if (grid.get(i, j) != 0) {
-                    blocksInColumn += 1;
-                }
-            }
-            //If a column is full, adds each block in that column to the hash set, if they aren't in it already, to later be reset
-            if (blocksInColumn == this.getCols()) {
-                for (int j = 0; j < this.getCols(); j++) {
-                    blocksToBeCleared.add(new GameBlockCoordinate(i, j));
-                }
-                //Increments number of full lines
-                fullLines ++;
-            }
-        }
-        logger.info(fullLines + " lines need to be cleared");
-
+        //Clears any full rows and columns touched by the game piece just placed
+        var fullLines = grid.clearLines(clearedBlocks);
+        logger.info("{} lines were cleared", fullLines);
+        piecesPlaced++;
+        linesCleared += fullLines;
 
         //Clears any lines needed and updates the score, multiplier and level if needed
         if (fullLines != 0) {
-            //Clears each block in a full line
-            for (GameBlockCoordinate i: blocksToBeCleared) {
-                grid.set(i.getX(), i.getY(), 0);
-                logger.info("Clearing (" + i.getX() + ", " + i.getY() + ") block");
-            } if (lineClearedListener != null) {
-                lineClearedListener.lineCleared(blocksToBeCleared);
+            //Notifies the listener of the blocks that were cleared
+            if (gameEventListener != null) {
+                gameEventListener.linesCleared(clearedBlocks);
             }
-            Multimedia.playAudio("sounds/clear.wav");
+            this.playSound(GameSound.CLEAR);
 
             //Updates score based on the number of lines and blocks that were just cleared
-            this.score(fullLines, blocksToBeCleared.size());
+            this.score(fullLines, clearedBlocks.size());
 
             //Increments the multiplier as lines were just cleared
-            multiplier.set(multiplier.get() + 1);
-            logger.info("Multiplier has been updated");
+            this.setMultiplier(multiplier + 1);
 
             //Updates level based on the current score
-            if (level.get() != newScore.get()/1000) {
-                level.set(newScore.get() / 1000);
-                Multimedia.playAudio("sounds/level.wav");
-                logger.info("Level has been updated");
+            if (level != score / 1000) {
+                this.setLevel(score / 1000);
+                this.playSound(GameSound.LEVEL);
             }
         } //Otherwise, resets the multiplier as no lines were just cleared
         else {
-            multiplier.set(1);
-            logger.info("Multiplier has been updated");
+            this.setMultiplier(1);
         }
 
         //Resets the timer
-        executor.shutdownNow();
-        executor = Executors.newSingleThreadScheduledExecutor();
-        executor.scheduleAtFixedRate(() -> Platform.runLater(this::gameLoop), this.getTimerDelay(), this.getTimerDelay(), TimeUnit.MILLISECONDS);
+        clock.reset(this.getTimerDelay());
 
         //Resets the timer bar
         if (gameLoopListener != null) {
@@ -317,67 +412,173 @@ public class Game {
      * @param blocks number of blocks reset
      */
     public void score(int lines, int blocks) {
-        logger.info("Updating score based on " + lines + "lines and " + blocks + " blocks cleared");
+        logger.info("Updating score based on {} lines and {} blocks cleared", lines, blocks);
 
         //Calculates the new score based on the number of lines and blocks that were just cleared
-        newScore.set(newScore.get() + (lines * blocks * 10 * multiplier.get()));
-
-        //Updates the score and animates it increasing
-        var timeLine = new Timeline();
-        timeLine.getKeyFrames().add(
-                new KeyFrame(Duration.millis(1000), new KeyValue(score, newScore.get()))
-        );
-        timeLine.play();
+        score += lines * blocks * 10 * multiplier;
+        if (gameEventListener != null) {
+            gameEventListener.scoreChanged(score);
+        }
     }
 
     /**
-     * Sets a listener to handle an event when a line is cleared
+     * Sets a listener to handle the events when the game's state changes
      * @param listener the listener to add
      */
-    public void setLineClearedListener(LineClearedListener listener) {
-        this.lineClearedListener = listener;
+    public void setGameEventListener(GameEventListener listener) {
+        this.gameEventListener = listener;
     }
 
     /**
-     * Gets the score property
-     * @return score property
+     * Sets the executor the game loop is run on when the timer reaches 0
+     * By default the game loop is run on the timer's own thread
+     * @param executor the executor to run the game loop on
      */
-    public SimpleIntegerProperty getScoreProperty() {
-        return score;
+    public void setLoopExecutor(Executor executor) {
+        this.loopExecutor = executor;
     }
 
     /**
-     * Gets the new score property
-     * @return new score property
+     * Gets the score
+     * @return score
      */
-    public SimpleIntegerProperty getNewScoreProperty() {
-        return newScore;
+    public int getScore() {
+        return score;
     }
 
     /**
-     * Gets the level property
-     * @return level property
+     * Gets the level
+     * @return level
      */
-    public SimpleIntegerProperty getLevelProperty() {
+    public int getLevel() {
         return level;
     }
 
     /**
-     * Gets the lives property
-     * @return lives property
+     * Gets the number of lives
+     * @return lives
      */
-    public SimpleIntegerProperty getLivesProperty() {
+    public int getLives() {
         return lives;
     }
 
     /**
-     * Gets the multiplier property
-     * @return multiplier property
+     * Gets the number of lines cleared
+     * @return number of lines
+     */
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+
+    /**
+     * Gets the number of game pieces placed
+     * @return number of game pieces
+     */
+    public int getPiecesPlaced() {
+        return piecesPlaced;
+    }
+
+    /**
+     * Gets how long the game has been played, or was played for once it is stopped
+     * @return the duration in milliseconds, or 0 if it hasn't started
+     */
+    public long getDurationMillis() {
+        if (startNanos == 0) {
+            return 0;
+        }
+        return ((stopNanos == 0 ? System.nanoTime() : stopNanos) - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Gets the multiplier
+     * @return multiplier
      */
-    public SimpleIntegerProperty getMultiplierProperty() {
+    public int getMultiplier() {
         return multiplier;
     }
 
+    /**
+     * Takes a snapshot of the game's state, which restore can return the game to
+     * @return the snapshot
+     */
+    public GameSnapshot snapshot() {
+        var values = new int[cols * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                values[y * cols + x] = grid.get(x, y);
+            }
+        }
+        return new GameSnapshot(values, score, level, lives, multiplier, linesCleared, piecesPlaced, currentPiece, followingPiece);
+    }
+
+    /**
+     * Returns the game to the state in a snapshot and notifies the listeners
+     * @param snapshot the snapshot, taken from a game of the same size
+     */
+    public void restore(GameSnapshot snapshot) {
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                grid.set(x, y, snapshot.values()[y * cols + x]);
+            }
+        }
+        linesCleared = snapshot.linesCleared();
+        piecesPlaced = snapshot.piecesPlaced();
+        score = snapshot.score();
+        if (gameEventListener != null) {
+            gameEventListener.scoreChanged(score);
+        }
+        this.setLevel(snapshot.level());
+        this.setLives(snapshot.lives());
+        this.setMultiplier(snapshot.multiplier());
+        this.setPieces(snapshot.currentPiece(), snapshot.followingPiece());
+        clock.reset(this.getTimerDelay());
+    }
+
+    /**
+     * Sets the level and notifies the listener
+     * @param level the new level
+     */
+    private void setLevel(int level) {
+        this.level = level;
+        logger.info("Level has been updated");
+        if (gameEventListener != null) {
+            gameEventListener.levelChanged(level);
+        }
+    }
+
+    /**
+     * Sets the number of lives and notifies the listener
+     * @param lives the new number of lives
+     */
+    private void setLives(int lives) {
+        this.lives = lives;
+        if (gameEventListener != null) {
+            gameEventListener.livesChanged(lives);
+        }
+    }
+
+    /**
+     * Sets the multiplier and notifies the listener
+     * @param multiplier the new multiplier
+     */
+    private void setMultiplier(int multiplier) {
+        this.multiplier = multiplier;
+        logger.info("Multiplier has been updated");
+        if (gameEventListener != null) {
+            gameEventListener.multiplierChanged(multiplier);
+        }
+    }
+
+    /**
+     * Asks the listener to play a sound effect
+     * @param sound the sound effect to play
+     */
+    protected void playSound(GameSound sound) {
+        if (gameEventListener != null) {
+            gameEventListener.soundPlayed(sound);
+        }
+    }
+
 
     /**
      * Sets a listener to handle an event when the next game piece is created
@@ -393,12 +594,15 @@ public class Game {
      */
     public void rotateCurrentPiece(int rotations) {
         logger.info("Rotating current game piece");
+        if (replayRecorder != null) {
+            replayRecorder.rotate(rotations);
+        }
 
         //Rotates the current game piece
-        currentPiece.rotate(rotations);
+        currentPiece = currentPiece.rotate(rotations);
 
         //Plays a sound effect
-        Multimedia.playAudio("sounds/rotate.wav");
+        this.playSound(GameSound.ROTATE);
 
         //Updates the current and next game pieces displays
         if (nextPieceListener != null) {
@@ -411,6 +615,9 @@ public class Game {
      */
     public void swapCurrentPiece() {
         logger.info("Swapping current game piece with the following game piece");
+        if (replayRecorder != null) {
+            replayRecorder.swap();
+        }
 
         //Swaps the current game piece with the following game piece
         var tempPiece = currentPiece;
@@ -418,7 +625,7 @@ public class Game {
         followingPiece = tempPiece;
 
         //Plays a sound effect
-        Multimedia.playAudio("sounds/rotate.wav");
+        this.playSound(GameSound.ROTATE);
 
         //Updates the current and next game pieces displays
         if (nextPieceListener != null) {
@@ -432,7 +639,7 @@ public class Game {
      */
     public int getTimerDelay() {
         //Calculates the timer delay according to the level
-        var timerDelay = 12000 - (500 * level.get());
+        var timerDelay = 12000 - (500 * level);
 
         //Sets timer delay to 2500 milliseconds if it is below 2500 milliseconds
         if (timerDelay < 2500) {
@@ -447,8 +654,31 @@ public class Game {
      * Gets the game timer
      * @return the game timer
      */
-    public ScheduledExecutorService getTimer() {
-        return executor;
+    public GameClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Stops the game timer
+     */
+    public void stop() {
+        logger.info("Stopping game");
+        clock.stop();
+        if (stopNanos == 0) {
+            stopNanos = System.nanoTime();
+        }
+        if (replayRecorder != null) {
+            replayRecorder.end();
+        }
+    }
+
+    /**
+     * Handles the timer reaching 0, ignoring it if the timer was reset, paused or stopped before this ran
+     */
+    private void timerExpired() {
+        if (clock.isExpired()) {
+            this.gameLoop();
+        }
     }
 
     /**
@@ -460,20 +690,29 @@ public class Game {
     }
 
     /**
-     * Handles what should happen when the timer reaches 0
+     * Handles what should happen when the timer reaches 0, unless the game has been stopped
      */
     public void gameLoop() {
+        if (stopNanos != 0) {
+            return;
+        }
         logger.info("Timer reached 0");
+        if (replayRecorder != null) {
+            replayRecorder.expire();
+        }
+
+        //Restarts the timer before anything else, so that losing the last life can still stop it
+        clock.reset(this.getTimerDelay());
 
         //Decrements the lives by 1
-        lives.set(lives.get() - 1);
-        Multimedia.playAudio("sounds/lifelose.wav");
+        this.setLives(lives - 1);
+        this.playSound(GameSound.LIFE_LOSE);
 
         //Discards the current game piece
         this.nextPiece();
 
         //Resets the multiplier to 1
-        multiplier.set(1);
+        this.setMultiplier(1);
 
         //Resets the timer bar
         if (gameLoopListener != null) {
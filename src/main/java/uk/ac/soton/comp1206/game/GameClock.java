@@ -0,0 +1,234 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameClock counts down the time a player has to place a game piece.
+ * It keeps a deadline rather than a running thread, so resetting, pausing and resuming are just arithmetic on that deadline.
+ * When the deadline passes, the expiry callback is run by a scheduler which is shared by every clock.
+ * A manual clock has no scheduler and never expires by itself, which suits headless simulations that advance time themselves.
+ */
+public class GameClock {
+
+    private static final Logger logger = LogManager.getLogger(GameClock.class);
+
+    /**
+     * The scheduler shared by every clock which isn't given its own, created when first needed
+     */
+    private static ScheduledThreadPoolExecutor sharedScheduler;
+
+    /**
+     * The scheduler used to run the expiry callback, or null if this clock is manual
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The callback to run when the deadline passes
+     */
+    private Runnable onExpired;
+
+    /**
+     * The length of the current countdown in milliseconds
+     */
+    private long delay;
+
+    /**
+     * The time the current countdown ends, in System.nanoTime() terms
+     */
+    private long deadline;
+
+    /**
+     * The time that was left in nanoseconds when this clock was paused
+     */
+    private long remainingWhenPaused;
+
+    /**
+     * Whether this clock is counting down
+     */
+    private boolean running;
+
+    /**
+     * Whether this clock is paused
+     */
+    private boolean paused;
+
+    /**
+     * The pending expiry callback, if there is one
+     */
+    private ScheduledFuture<?> expiry;
+
+    /**
+     * Creates a new clock which runs its expiry callback on the shared scheduler
+     */
+    public GameClock() {
+        this(getSharedScheduler());
+    }
+
+    /**
+     * Creates a new clock which runs its expiry callback on the given scheduler
+     * @param scheduler the scheduler, or null for a manual clock
+     */
+    public GameClock(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Creates a manual clock, which keeps time but never runs its expiry callback
+     * @return the manual clock
+     */
+    public static GameClock manual() {
+        return new GameClock(null);
+    }
+
+    /**
+     * Gets the scheduler shared by every clock, creating it if needed
+     * @return the shared scheduler
+     */
+    private static synchronized ScheduledExecutorService getSharedScheduler() {
+        if (sharedScheduler == null) {
+            logger.info("Creating shared game clock scheduler");
+            sharedScheduler = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+                var thread = new Thread(runnable, "game-clock");
+                thread.setDaemon(true);
+                return thread;
+            });
+            //Cancelled countdowns are removed straight away instead of waiting for their deadline
+            sharedScheduler.setRemoveOnCancelPolicy(true);
+        }
+        return sharedScheduler;
+    }
+
+    /**
+     * Sets the callback to run when the deadline passes
+     * It is run on the scheduler's thread
+     * @param onExpired the callback
+     */
+    public synchronized void setOnExpired(Runnable onExpired) {
+        this.onExpired = onExpired;
+    }
+
+    /**
+     * Starts a new countdown of the given length, replacing any current countdown
+     * @param delayMillis length of the countdown in milliseconds
+     */
+    public synchronized void reset(long delayMillis) {
+        delay = delayMillis;
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        running = true;
+        paused = false;
+        this.schedule(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    }
+
+    /**
+     * Pauses the countdown, keeping the time that is left
+     */
+    public synchronized void pause() {
+        if (!running || paused) {
+            return;
+        }
+        remainingWhenPaused = Math.max(0, deadline - System.nanoTime());
+        paused = true;
+        this.cancel();
+    }
+
+    /**
+     * Resumes a paused countdown with the time that was left when it was paused
+     */
+    public synchronized void resume() {
+        if (!paused) {
+            return;
+        }
+        deadline = System.nanoTime() + remainingWhenPaused;
+        paused = false;
+        this.schedule(remainingWhenPaused);
+    }
+
+    /**
+     * Stops the countdown without running the expiry callback
+     */
+    public synchronized void stop() {
+        running = false;
+        paused = false;
+        this.cancel();
+    }
+
+    /**
+     * Gets the time left in the current countdown
+     * @return time left in milliseconds, or 0 if the clock is stopped or has expired
+     */
+    public synchronized long getRemaining() {
+        if (!running) {
+            return 0;
+        }
+        var remaining = paused ? remainingWhenPaused : deadline - System.nanoTime();
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remaining));
+    }
+
+    /**
+     * Checks whether the current countdown has run out, as opposed to being stopped or paused
+     * @return true if the clock is running, not paused and past its deadline
+     */
+    public synchronized boolean isExpired() {
+        return running && !paused && deadline - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Gets the length of the current countdown
+     * @return length in milliseconds
+     */
+    public synchronized long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Checks whether this clock is paused
+     * @return true if paused
+     */
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Schedules the expiry callback, cancelling any pending one
+     * @param nanos time until the deadline in nanoseconds
+     */
+    private void schedule(long nanos) {
+        this.cancel();
+        if (scheduler != null) {
+            expiry = scheduler.schedule(this::expire, nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Cancels the pending expiry callback, if there is one
+     */
+    private void cancel() {
+        if (expiry != null) {
+            expiry.cancel(false);
+            expiry = null;
+        }
+    }
+
+    /**
+     * Runs the expiry callback, unless the countdown was reset, paused or stopped after it was scheduled
+     */
+    private void expire() {
+        Runnable callback;
+        synchronized (this) {
+            if (!this.isExpired()) {
+                return;
+            }
+            expiry = null;
+            callback = onExpired;
+        }
+        if (callback != null) {
+            callback.run();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package uk.ac.soton.comp1206.game;
 
 /**
- * Instances of GamePiece Represents the model of a specific Game Piece with its block makeup.
+ * Instances of GamePiece Represents the model of a specific Game Piece with its block makeup in one rotation.
+ * Every piece in every rotation is precomputed once into a static table, together with its placement masks and block offsets.
+ * GamePieces are immutable handles into that table, so creating or rotating a piece never allocates.
  * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by its number.
  */
 public class GamePiece {
@@ -12,120 +14,130 @@ public class GamePiece {
     public static final int PIECES = 15;
 
     /**
-     * The 2D grid representation of the shape of this piece
+     * The number of distinct rotations of every piece
      */
-    private int[][] blocks;
+    public static final int ROTATIONS = 4;
 
     /**
-     * The value of this piece
+     * The names of the pieces, indexed by piece number
      */
-    private final int value;
+    private static final String[] NAMES = {
+            "Line", "C", "Plus", "Dot", "Square", "L", "J", "S", "Z", "T", "X", "Corner", "Inverse Corner", "Diagonal", "Double"
+    };
 
     /**
-     * The name of this piece
+     * The 3x3 shapes of the pieces in their initial rotation, indexed by piece number, then column, then row
      */
-    private final String name;
-
-    /**
-     * Creates a new GamePiece of the specified piece number
-     * @param piece piece number
-     * @return the created GamePiece
-     */
-    public static GamePiece createPiece(int piece) {
-        switch (piece) {
+    private static final int[][][] SHAPES = {
             //Line
-            case 0 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Line", blocks, 1);
-            }
-
+            {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}},
             //C
-            case 1 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}};
-                return new GamePiece("C", blocks, 2);
-            }
-
+            {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}},
             //Plus
-            case 2 -> {
-                int[][] blocks = {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}};
-                return new GamePiece("Plus", blocks, 3);
-            }
-
+            {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}},
             //Dot
-            case 3 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Dot", blocks, 4);
-            }
-
+            {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}},
             //Square
-            case 4 -> {
-                int[][] blocks = {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Square", blocks, 5);
-            }
-
+            {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}},
             //L
-            case 5 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}};
-                return new GamePiece("L", blocks, 6);
-            }
-
+            {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}},
             //J
-            case 6 -> {
-                int[][] blocks = {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("J", blocks, 7);
-            }
-
+            {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}},
             //S
-            case 7 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}};
-                return new GamePiece("S", blocks, 8);
-            }
-
+            {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}},
             //Z
-            case 8 -> {
-                int[][] blocks = {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Z", blocks, 9);
-            }
-
+            {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}},
             //T
-            case 9 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("T", blocks, 10);
-            }
-
+            {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}},
             //X
-            case 10 -> {
-                int[][] blocks = {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}};
-                return new GamePiece("X", blocks, 11);
-            }
-
+            {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}},
             //Corner
-            case 11 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("Corner", blocks, 12);
-            }
-
+            {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}},
             //Inverse Corner
-            case 12 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Inverse Corner", blocks, 13);
-            }
-
+            {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}},
             //Diagonal
-            case 13 -> {
-                int[][] blocks = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
-                return new GamePiece("Diagonal", blocks, 14);
-            }
-
+            {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}},
             //Double
-            case 14 -> {
-                int[][] blocks = {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Double", blocks, 15);
+            {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}}
+    };
+
+    /**
+     * Every piece in every rotation, indexed by piece number then rotation
+     */
+    private static final GamePiece[][] TABLE = new GamePiece[PIECES][ROTATIONS];
+
+    static {
+        for (int piece = 0; piece < PIECES; piece++) {
+            var blocks = SHAPES[piece];
+            for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+                TABLE[piece][rotation] = new GamePiece(piece, rotation, blocks);
+                blocks = rotate(blocks);
             }
         }
+    }
+
+    /**
+     * The piece number of this piece
+     */
+    private final int piece;
+
+    /**
+     * The number of times this piece has been rotated from its initial rotation
+     */
+    private final int rotation;
+
+    /**
+     * The value of this piece
+     */
+    private final int value;
+
+    /**
+     * The name of this piece
+     */
+    private final String name;
+
+    /**
+     * The 3x3 shape of this piece as a bitmask, where the block at offset (dx, dy) from the centre is bit ((dy + 1) * 3 + dx + 1)
+     */
+    private final int mask;
+
+    /**
+     * The offsets from the centre of every block in this piece, stored as consecutive (dx, dy) pairs
+     */
+    private final int[] offsets;
+
+    /**
+     * The smallest column offset of any block in this piece
+     */
+    private final int minX;
 
-        //Not a valid piece number
-        throw new IndexOutOfBoundsException("No such piece: " + piece);
+    /**
+     * The largest column offset of any block in this piece
+     */
+    private final int maxX;
+
+    /**
+     * The smallest row offset of any block in this piece
+     */
+    private final int minY;
+
+    /**
+     * The largest row offset of any block in this piece
+     */
+    private final int maxY;
+
+    /**
+     * One mask per row of this piece from minY to maxY, where bit c is the block at column offset (minX + c)
+     */
+    private final int[] rowMasks;
+
+    /**
+     * Creates a new GamePiece of the specified piece number
+     * @param piece piece number
+     * @return the created GamePiece
+     */
+    public static GamePiece createPiece(int piece) {
+        return createPiece(piece, 0);
     }
 
     /**
@@ -135,28 +147,55 @@ public class GamePiece {
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
-
-        newPiece.rotate(rotation);
-        return newPiece;
+        if (piece < 0 || piece >= PIECES) {
+            //Not a valid piece number
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
+        }
+        return TABLE[piece][Math.floorMod(rotation, ROTATIONS)];
     }
 
     /**
-     * Creates a new GamePiece with the given name, block makeup and value
-     * @param name name of the piece
-     * @param blocks block makeup of the piece
-     * @param value the value of this piece
+     * Creates the table entry for a piece in one rotation
+     * @param piece piece number
+     * @param rotation the rotation these blocks are in
+     * @param blocks block makeup of the piece in this rotation
      */
-    private GamePiece(String name, int[][] blocks, int value) {
-        this.name = name;
-        this.blocks = blocks;
-        this.value = value;
-
-        //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
-        for(int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                if(blocks[x][y] == 0) continue;
-                blocks[x][y] = value;
+    private GamePiece(int piece, int rotation, int[][] blocks) {
+        this.piece = piece;
+        this.rotation = rotation;
+        this.name = NAMES[piece];
+        this.value = piece + 1;
+
+        //Works out the shape mask, block offsets and bounds of the occupied blocks
+        var shapeMask = 0;
+        var blockCount = 0;
+        int lowX = 1, highX = -1, lowY = 1, highY = -1;
+        for (int dy = -1; dy < 2; dy++) {
+            for (int dx = -1; dx < 2; dx++) {
+                if (blocks[dx+1][dy+1] == 0) continue;
+                shapeMask |= 1 << ((dy + 1) * 3 + dx + 1);
+                blockCount++;
+                lowX = Math.min(lowX, dx);
+                highX = Math.max(highX, dx);
+                lowY = Math.min(lowY, dy);
+                highY = Math.max(highY, dy);
+            }
+        }
+        this.mask = shapeMask;
+        this.minX = lowX;
+        this.maxX = highX;
+        this.minY = lowY;
+        this.maxY = highY;
+
+        offsets = new int[blockCount * 2];
+        rowMasks = new int[maxY - minY + 1];
+        var i = 0;
+        for (int dy = minY; dy <= maxY; dy++) {
+            for (int dx = minX; dx <= maxX; dx++) {
+                if (blocks[dx+1][dy+1] == 0) continue;
+                offsets[i++] = dx;
+                offsets[i++] = dy;
+                rowMasks[dy - minY] |= 1 << (dx - minX);
             }
         }
     }
@@ -169,28 +208,117 @@ public class GamePiece {
         return value;
     }
 
+    /**
+     * Gets the piece number of this piece
+     * @return piece number
+     */
+    public int getPiece() {
+        return piece;
+    }
+
+    /**
+     * Gets the number of times this piece has been rotated from its initial rotation
+     * @return rotation between 0 and 3
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
     /**
      * Gets the block makeup of this piece
+     * The array is a new copy built from the piece's mask, so changing it does not change the piece
      * @return 2D grid of the blocks representing the piece shape
      */
     public int[][] getBlocks() {
+        var blocks = new int[3][3];
+        for (int i = 0; i < offsets.length; i += 2) {
+            blocks[offsets[i] + 1][offsets[i+1] + 1] = value;
+        }
         return blocks;
     }
 
     /**
-     * Rotates this piece the given number of rotations
+     * Gets the 3x3 shape of this piece as a bitmask, where the block at offset (dx, dy) from the centre is bit ((dy + 1) * 3 + dx + 1)
+     * @return the shape mask
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Gets the offsets from the centre of every block in this piece, stored as consecutive (dx, dy) pairs
+     * The returned array is shared and must not be modified
+     * @return the block offsets
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Gets one mask per row of this piece, from the row at getMinY() to the row at getMaxY()
+     * Bit c of each mask is the block at column offset (getMinX() + c)
+     * The returned array is shared and must not be modified
+     * @return the row masks
+     */
+    public int[] getRowMasks() {
+        return rowMasks;
+    }
+
+    /**
+     * Gets the smallest column offset of any block in this piece
+     * @return the smallest column offset
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * Gets the largest column offset of any block in this piece
+     * @return the largest column offset
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Gets the smallest row offset of any block in this piece
+     * @return the smallest row offset
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * Gets the largest row offset of any block in this piece
+     * @return the largest row offset
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Gets this piece rotated the given number of rotations
      * @param rotations number of rotations
+     * @return the rotated piece
      */
-    public void rotate(int rotations) {
-        for(int rotated = 0; rotated < rotations; rotated ++) {
-            rotate();
-        }
+    public GamePiece rotate(int rotations) {
+        return TABLE[piece][Math.floorMod(rotation + rotations, ROTATIONS)];
+    }
+
+    /**
+     * Gets this piece rotated exactly once
+     * @return the rotated piece
+     */
+    public GamePiece rotate() {
+        return rotate(1);
     }
 
     /**
-     * Rotates this piece exactly once by rotating its 3x3 grid
+     * Rotates a 3x3 grid of blocks exactly once, used to build the table
+     * @param blocks the blocks to rotate
+     * @return the rotated blocks
      */
-    public void rotate() {
+    private static int[][] rotate(int[][] blocks) {
         int[][] rotated = new int[blocks.length][blocks[0].length];
         rotated[2][0] = blocks[0][0];
         rotated[1][0] = blocks[0][1];
@@ -204,7 +332,7 @@ public class GamePiece {
         rotated[1][2] = blocks[2][1];
         rotated[0][2] = blocks[2][2];
 
-        blocks = rotated;
+        return rotated;
     }
 
     /**
@@ -0,0 +1,18 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A Game Snapshot is the state of a game at one moment, which the game can be restored to.
+ * Replays take one every few moves, so they can seek without playing the whole game again from the start.
+ * @param values the value of every block in the grid, row by row
+ * @param score the score
+ * @param level the level
+ * @param lives the number of lives
+ * @param multiplier the multiplier
+ * @param linesCleared the number of lines cleared
+ * @param piecesPlaced the number of game pieces placed
+ * @param currentPiece the current game piece
+ * @param followingPiece the following game piece
+ */
+public record GameSnapshot(int[] values, int score, int level, int lives, int multiplier, int linesCleared, int piecesPlaced,
+                           GamePiece currentPiece, GamePiece followingPiece) {
+}
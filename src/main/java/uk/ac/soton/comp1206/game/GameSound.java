@@ -0,0 +1,64 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The sound effects a Game can ask to be played.
+ * Each sound effect knows the audio file it is played from.
+ */
+public enum GameSound {
+
+    /**
+     * A game piece was placed
+     */
+    PLACE("sounds/place.wav"),
+
+    /**
+     * A game piece could not be placed
+     */
+    FAIL("sounds/fail.wav"),
+
+    /**
+     * A line was cleared
+     */
+    CLEAR("sounds/clear.wav"),
+
+    /**
+     * The level went up
+     */
+    LEVEL("sounds/level.wav"),
+
+    /**
+     * A game piece was rotated or swapped
+     */
+    ROTATE("sounds/rotate.wav"),
+
+    /**
+     * A life was lost
+     */
+    LIFE_LOSE("sounds/lifelose.wav"),
+
+    /**
+     * A chat message was received
+     */
+    MESSAGE("sounds/message.wav");
+
+    /**
+     * The audio file this sound effect is played from
+     */
+    private final String file;
+
+    /**
+     * Creates a sound effect played from the given audio file
+     * @param file name of the audio file
+     */
+    GameSound(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the audio file this sound effect is played from
+     * @return name of the audio file
+     */
+    public String getFile() {
+        return file;
+    }
+}
@@ -1,18 +1,30 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.CellChangedListener;
 
 /**
- * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D arrow, with rows and columns.
- * Each value inside the Grid is an IntegerProperty can be bound to enable modification and display of the contents of the grid.
+ * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D array, with rows and columns.
+ * Which blocks are occupied is stored as a bitboard inside a single long, one bit per block, and the value of each block is stored in a byte array.
+ * This keeps the Grid free of JavaFX, so placement checks are mask AND operations rather than property lookups.
+ * The Grid also counts the occupied blocks in every row and column as they change, so full lines are found without rescanning.
+ * The GameBoard observes the Grid through a CellChangedListener and repaints each block as it changes.
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  */
 public class Grid {
 
-    private static final Logger logger = LogManager.getLogger(Game.class);
+    private static final Logger logger = LogManager.getLogger(Grid.class);
+
+    /**
+     * The maximum number of blocks a grid can hold, one for every bit in the bitboard
+     */
+    public static final int MAX_BLOCKS = Long.SIZE;
+
+    /**
+     * Mask returned when a game piece would be placed outside this grid
+     */
+    public static final long OUT_OF_BOUNDS = -1L;
 
     /**
      * The number of columns in this grid
@@ -25,9 +37,49 @@ public class Grid {
     private final int rows;
 
     /**
-     * The grid is a 2D arrow with rows and columns of SimpleIntegerProperties.
+     * Bitboard of occupied blocks, where the block at column x and row y is bit (y * cols + x)
+     */
+    private long occupied;
+
+    /**
+     * The value of each block, indexed in the same order as the bitboard
+     */
+    private final byte[] values;
+
+    /**
+     * The number of occupied blocks in each row
+     */
+    private final int[] rowCounts;
+
+    /**
+     * The number of occupied blocks in each column
+     */
+    private final int[] colCounts;
+
+    /**
+     * The bitboard mask of every block in each row
+     */
+    private final long[] rowMasks;
+
+    /**
+     * The bitboard mask of every block in each column
+     */
+    private final long[] colMasks;
+
+    /**
+     * Rows that have had a block filled since lines were last cleared, one bit per row
      */
-    private final SimpleIntegerProperty[][] grid;
+    private long touchedRows;
+
+    /**
+     * Columns that have had a block filled since lines were last cleared, one bit per column
+     */
+    private long touchedCols;
+
+    /**
+     * The listener to call when the value of a block changes
+     */
+    private CellChangedListener cellChangedListener;
 
     /**
      * Creates a new Grid with the specified number of columns and rows and initialise them
@@ -35,28 +87,34 @@ public class Grid {
      * @param rows number of rows
      */
     public Grid(int cols, int rows) {
+        if (cols <= 0 || rows <= 0 || cols * rows > MAX_BLOCKS) {
+            throw new IllegalArgumentException("Grid of " + cols + " x " + rows + " does not fit in a " + MAX_BLOCKS + " block bitboard");
+        }
         this.cols = cols;
         this.rows = rows;
 
-        //Create the grid itself
-        grid = new SimpleIntegerProperty[cols][rows];
+        //Create the grid itself, with every block empty
+        values = new byte[cols * rows];
+        rowCounts = new int[rows];
+        colCounts = new int[cols];
 
-        //Add a SimpleIntegerProperty to every block in the grid
-        for(var y = 0; y < rows; y++) {
-            for(var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
+        //Works out the bitboard mask of every row and column
+        rowMasks = new long[rows];
+        colMasks = new long[cols];
+        for (int y = 0; y < rows; y++) {
+            rowMasks[y] = (-1L >>> (Long.SIZE - cols)) << (y * cols);
+            for (int x = 0; x < cols; x++) {
+                colMasks[x] |= 1L << (y * cols + x);
             }
         }
     }
 
     /**
-     * Gets the Integer property contained inside the grid at a given row and column index
-     * @param x column
-     * @param y row
-     * @return the IntegerProperty at the given x and y in this grid
+     * Sets a listener to handle an event when the value of a block changes
+     * @param listener the listener to add
      */
-    public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+    public void setOnCellChanged(CellChangedListener listener) {
+        this.cellChangedListener = listener;
     }
 
     /**
@@ -66,23 +124,50 @@ public class Grid {
      * @param value the new value
      */
     public void set(int x, int y, int value) {
-        grid[x][y].set(value);
+        if (!this.contains(x, y)) {
+            throw new IndexOutOfBoundsException("No such block: " + x + ", " + y);
+        }
+        this.write(y * cols + x, x, y, value);
     }
 
     /**
      * Gets the value represented at the given x and y index within the grid
      * @param x column
      * @param y row
-     * @return the value
+     * @return the value, or -1 if there is no such block
      */
     public int get(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
+        if (!this.contains(x, y)) {
             //No such index
             return -1;
         }
+        return values[y * cols + x];
+    }
+
+    /**
+     * Gets the bitboard of occupied blocks, where the block at column x and row y is bit (y * cols + x)
+     * @return the occupied blocks
+     */
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * Gets the bitboard mask of every block in a row
+     * @param y row
+     * @return the row's mask
+     */
+    public long getRowMask(int y) {
+        return rowMasks[y];
+    }
+
+    /**
+     * Gets the bitboard mask of every block in a column
+     * @param x column
+     * @return the column's mask
+     */
+    public long getColMask(int x) {
+        return colMasks[x];
     }
 
     /**
@@ -101,6 +186,16 @@ public class Grid {
         return rows;
     }
 
+    /**
+     * Empties every block in this grid
+     */
+    public void clear() {
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                this.write(y * cols + x, x, y, 0);
+            }
+        }
+    }
 
     /**
      * Checks if a game piece can be placed in this grid
@@ -110,26 +205,10 @@ public class Grid {
      * @return true if game piece can be placed and false if it can't
      */
     public boolean canPlayPiece(GamePiece gamePiece, int x, int y) {
-        //gets the game piece's blocks
-        var gamePieceBlocks = gamePiece.getBlocks();
-
-        //checks if each block stores a value
-        for (int j = -1; j < 2; j++) {
-            for (int i = -1; i < 2; i++) {
-                if (gamePieceBlocks[i+1][j+1] != 0) {
-                    //If so, checks if where that block would be placed in this grid also stores a value
-                    if (this.get(x+i, y+j) != 0) {
-                        //If so, returns false as the game piece can't be placed in this grid at column x and row y
-                        logger.info(gamePiece + " can't be placed at column " + x + " and row " + y);
-                        return false;
-                    }
-                }
-            }
-        }
+        var mask = this.getPieceMask(gamePiece, x, y);
 
-        //Otherwise, returns true as game piece can be placed in this grid at column x and row y
-        logger.info(gamePiece + " can be placed at column " + x + " and row " + y);
-        return true;
+        //The game piece can be placed if it stays inside this grid and none of its blocks overlap an occupied block
+        return mask != OUT_OF_BOUNDS && (occupied & mask) == 0;
     }
 
     /**
@@ -139,19 +218,120 @@ public class Grid {
      * @param y row where centre of game piece is being placed in
      */
     public void playPiece(GamePiece gamePiece, int x, int y) {
-        logger.info("Placing " + gamePiece + " at " + x + " and " + y);
-
-        //gets the game piece's blocks
-        var gamePieceBlocks = gamePiece.getBlocks();
-
-        //checks if each block stores a value
-        for (int j = -1; j < 2; j++) {
-            for (int i = -1; i < 2; i++) {
-                if (gamePieceBlocks[i+1][j+1] != 0) {
-                    //If so it places that block in this grid at column x and row y
-                    this.set(x+i, y+j, gamePiece.getValue());
-                }
+        logger.info("Placing {} at {} and {}", gamePiece, x, y);
+
+        //Places each block of the game piece in this grid around column x and row y
+        var offsets = gamePiece.getOffsets();
+        for (int i = 0; i < offsets.length; i += 2) {
+            this.set(x + offsets[i], y + offsets[i+1], gamePiece.getValue());
+        }
+    }
+
+    /**
+     * Clears every full row and column, checking only the rows and columns that have had a block filled since the last clear.
+     * A block in both a full row and a full column is only cleared once.
+     * @param cleared buffer to fill with the blocks that were cleared and the number of lines
+     * @return the number of full lines that were cleared
+     */
+    public int clearLines(ClearedBlocks cleared) {
+        cleared.reset();
+
+        //Finds every full line among the rows and columns that were touched
+        var lines = 0;
+        var clearMask = 0L;
+        for (var pendingRows = touchedRows; pendingRows != 0; pendingRows &= pendingRows - 1) {
+            var y = Long.numberOfTrailingZeros(pendingRows);
+            if (rowCounts[y] == cols) {
+                clearMask |= rowMasks[y];
+                lines++;
             }
         }
+        for (var pendingCols = touchedCols; pendingCols != 0; pendingCols &= pendingCols - 1) {
+            var x = Long.numberOfTrailingZeros(pendingCols);
+            if (colCounts[x] == rows) {
+                clearMask |= colMasks[x];
+                lines++;
+            }
+        }
+        touchedRows = 0;
+        touchedCols = 0;
+
+        //Empties each block in a full line and records it in the buffer
+        for (var blocks = clearMask; blocks != 0; blocks &= blocks - 1) {
+            var index = Long.numberOfTrailingZeros(blocks);
+            var x = index % cols;
+            var y = index / cols;
+            this.write(index, x, y, 0);
+            cleared.add(x, y);
+        }
+        cleared.setLines(lines);
+        return lines;
+    }
+
+    /**
+     * Builds the bitboard mask of the blocks a game piece would cover in this grid
+     * @param gamePiece game piece to be placed
+     * @param x column where centre of game piece is to be placed in
+     * @param y row where centre of game piece is to be placed in
+     * @return the mask, or OUT_OF_BOUNDS if any block of the game piece would be outside this grid
+     */
+    public long getPieceMask(GamePiece gamePiece, int x, int y) {
+        //Checks the bounds of the game piece's blocks against the edges of this grid
+        if (x + gamePiece.getMinX() < 0 || x + gamePiece.getMaxX() >= cols
+                || y + gamePiece.getMinY() < 0 || y + gamePiece.getMaxY() >= rows) {
+            return OUT_OF_BOUNDS;
+        }
+
+        //Shifts each of the game piece's row masks to the row and column it covers
+        var rowMasks = gamePiece.getRowMasks();
+        var shift = (y + gamePiece.getMinY()) * cols + x + gamePiece.getMinX();
+        var mask = 0L;
+        for (int row = 0; row < rowMasks.length; row++) {
+            mask |= (long) rowMasks[row] << shift;
+            shift += cols;
+        }
+        return mask;
+    }
+
+    /**
+     * Checks if the given column and row are inside this grid
+     * @param x column
+     * @param y row
+     * @return true if the block exists
+     */
+    private boolean contains(int x, int y) {
+        return x >= 0 && x < cols && y >= 0 && y < rows;
+    }
+
+    /**
+     * Writes a value into the bitboard and value array and notifies the listener if it changed
+     * @param index index of the block in the bitboard
+     * @param x column
+     * @param y row
+     * @param value the new value
+     */
+    private void write(int index, int x, int y, int value) {
+        if (values[index] == value) {
+            return;
+        }
+        var wasOccupied = values[index] != 0;
+        values[index] = (byte) value;
+
+        //Keeps the bitboard and the row and column counts in step with the values
+        if (value == 0 && wasOccupied) {
+            occupied &= ~(1L << index);
+            rowCounts[y]--;
+            colCounts[x]--;
+        } else if (value != 0 && !wasOccupied) {
+            occupied |= 1L << index;
+            rowCounts[y]++;
+            colCounts[x]++;
+            touchedRows |= 1L << y;
+            touchedCols |= 1L << x;
+        }
+
+        if (cellChangedListener != null) {
+            cellChangedListener.cellChanged(x, y, value);
+        }
     }
 }
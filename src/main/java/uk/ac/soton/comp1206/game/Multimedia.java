@@ -1,45 +1,154 @@
 package uk.ac.soton.comp1206.game;
 
+import javafx.scene.media.AudioClip;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
 /**
  *The Multimedia Class.
  * Plays audio and looped music.
+ * Short sound effects are decoded once into AudioClips, which play with low latency and without creating a player each time.
+ * Each sound effect has a small pool of clips, which caps how many copies of it can play at once,
+ * and a sound effect triggered more than once in the same frame is only played once.
  */
 public class Multimedia {
 
     private static final Logger logger = LogManager.getLogger(Multimedia.class);
 
     /**
-     * Audio Player
+     * The number of copies of one sound effect that can play at once
+     */
+    private static final int VOICES = 3;
+
+    /**
+     * The time in which a repeated sound effect is ignored, about one frame
+     */
+    private static final long REPEAT_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    /**
+     * The loaded sound effects, by file name
      */
-    private static MediaPlayer audioPlayer;
+    private static final HashMap<String, SoundEffect> soundEffects = new HashMap<>();
 
     /**
      * Music Player
      */
     private static MediaPlayer musicPlayer;
 
+    /**
+     * Loads sound effects ahead of time, so the first time each one plays doesn't wait for it to be decoded
+     * @param files names of the audio files to load
+     */
+    public static void preloadAudio(String... files) {
+        for (var file : files) {
+            Multimedia.getSoundEffect(file);
+        }
+    }
+
     /**
      * Plays an audio
      * @param file name of audio file to play
      */
     public static void playAudio(String file) {
-        //Gets audio file
-        var toPlay = Multimedia.class.getResource("/" + file).toExternalForm();
+        var soundEffect = Multimedia.getSoundEffect(file);
+        if (soundEffect != null) {
+            soundEffect.play();
+        }
+    }
 
-        //Tries to play audio file
-        try {
-            var play = new Media(toPlay);
-            audioPlayer = new MediaPlayer(play);
-            audioPlayer.play();
-            logger.info("Playing audio: " + toPlay);
-        } catch (Exception e) {
-            e.printStackTrace();
-            logger.error("Unable to play audio file");
+    /**
+     * Plays a game's sound effect
+     * @param sound the sound effect to play
+     */
+    public static void playSound(GameSound sound) {
+        Multimedia.playAudio(sound.getFile());
+    }
+
+    /**
+     * Gets a loaded sound effect, loading it if this is the first time it is needed
+     * @param file name of the audio file
+     * @return the sound effect, or null if it couldn't be loaded
+     */
+    private static SoundEffect getSoundEffect(String file) {
+        synchronized (soundEffects) {
+            if (soundEffects.containsKey(file)) {
+                return soundEffects.get(file);
+            }
+
+            //Remembers a file that couldn't be loaded as null, so it isn't retried on every play
+            SoundEffect soundEffect = null;
+            var resource = Multimedia.class.getResource("/" + file);
+            if (resource == null) {
+                logger.error("No such audio file: {}", file);
+            } else {
+                try {
+                    soundEffect = new SoundEffect(resource.toExternalForm());
+                    logger.info("Loaded audio: {}", file);
+                } catch (Exception e) {
+                    logger.error("Unable to load audio file {}", file, e);
+                }
+            }
+            soundEffects.put(file, soundEffect);
+            return soundEffect;
+        }
+    }
+
+    /**
+     * A sound effect decoded into a small pool of clips, which are played in turn
+     */
+    private static class SoundEffect {
+
+        /**
+         * The clips, each of which plays one copy of the sound effect at a time
+         */
+        private final AudioClip[] clips = new AudioClip[VOICES];
+
+        /**
+         * Index of the clip to play next, which is the one that was played longest ago
+         */
+        private int next;
+
+        /**
+         * The time this sound effect was last played, in System.nanoTime() terms
+         */
+        private long lastPlayed;
+
+        /**
+         * Whether this sound effect has been played yet
+         */
+        private boolean played;
+
+        /**
+         * Decodes a sound effect into its pool of clips
+         * @param url location of the audio file
+         */
+        SoundEffect(String url) {
+            for (int i = 0; i < clips.length; i++) {
+                clips[i] = new AudioClip(url);
+            }
+        }
+
+        /**
+         * Plays this sound effect on the clip that was played longest ago, cutting that clip off if it is still playing
+         * Does nothing if this sound effect was already played within the last frame
+         */
+        synchronized void play() {
+            var now = System.nanoTime();
+            if (played && now - lastPlayed < REPEAT_NANOS) {
+                return;
+            }
+            played = true;
+            lastPlayed = now;
+
+            var clip = clips[next];
+            next = (next + 1) % clips.length;
+            clip.stop();
+            clip.play();
         }
     }
 
@@ -56,7 +165,7 @@ public class Multimedia {
             var play = new Media(toPlay);
             musicPlayer = new MediaPlayer(play);
             musicPlayer.play();
-            logger.info("Playing audio: " + toPlay);
+            logger.info("Playing audio: {}", toPlay);
             //Sets the music file to be played on a loop
             musicPlayer.setCycleCount(MediaPlayer.INDEFINITE);
         } catch (Exception e) {
@@ -1,6 +1,5 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.application.Platform;
 import javafx.beans.property.ListProperty;
 import javafx.beans.property.SimpleListProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -9,12 +8,18 @@ import javafx.collections.ObservableList;
 import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.network.BoardCodec;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.Delivery;
+import uk.ac.soton.comp1206.network.Message;
+import uk.ac.soton.comp1206.network.Subscription;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The Multiplayer Game class handles the main logic, state and properties of the multiplayer version of the TetrECS game.
@@ -25,6 +30,16 @@ public class MultiplayerGame extends Game {
 
     private static final Logger logger = LogManager.getLogger(MultiplayerGame.class);
 
+    /**
+     * The number of game piece values kept buffered or requested beyond the current and following game pieces by default
+     */
+    public static final int DEFAULT_LOOKAHEAD = 3;
+
+    /**
+     * The number of game piece values needed before the game can start: the current and following game pieces
+     */
+    private static final int STARTING_PIECES = 2;
+
     protected GameWindow gameWindow;
 
     /**
@@ -32,15 +47,51 @@ public class MultiplayerGame extends Game {
      */
     private final Communicator communicator;
 
+    /**
+     * The handles of the listeners this game added to the communicator, cancelled when the game stops
+     */
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
     /**
      * Queue storing game piece values received from the server
      */
-    private final LinkedBlockingQueue<Integer> gamePieceQueue = new LinkedBlockingQueue<>();
+    private final PieceBuffer gamePieceQueue = new PieceBuffer(8);
 
     /**
-     * Number of game piece values received from the server
+     * The number of game piece values kept buffered or requested beyond the current and following game pieces
      */
-    private int piecesReceived = 0;
+    private final int lookahead;
+
+    /**
+     * The number of PIECE requests sent which the server hasn't answered yet
+     */
+    private int requestedPieces;
+
+    /**
+     * The number of game pieces the game needed before the server dealt them, which are dealt as soon as they arrive
+     */
+    private int missingPieces;
+
+    /**
+     * Whether the game has received its first game pieces and started
+     */
+    private boolean started;
+
+    /**
+     * ArrayList used to hold the game pieces buffered after the following game piece, in the order they will be dealt
+     */
+    private final ArrayList<GamePiece> upcomingPieces = new ArrayList<>();
+
+    /**
+     * ObservableArrayList wrapped around the upcomingPieces ArrayList
+     */
+    private final ObservableList<GamePiece> upcomingPiecesList = FXCollections.observableArrayList(upcomingPieces);
+
+    /**
+     * SimpleListProperty used to represent the upcomingPiecesList as a property
+     * This allows for binding and adding listeners to the upcomingPiecesList
+     */
+    private final ListProperty<GamePiece> upcomingPiecesWrapper = new SimpleListProperty<>(upcomingPiecesList);
 
     /**
      * ArrayList used to hold the leaderboard's entries
@@ -103,6 +154,31 @@ public class MultiplayerGame extends Game {
      */
     private final ListProperty<Pair<String, Grid>> gameBoardsWrapper = new SimpleListProperty<>(gameBoardsList);
 
+    /**
+     * Each player's grid, kept and updated in place as their BOARD and BOARDDELTA messages arrive
+     */
+    private final Map<String, Grid> playerGrids = new HashMap<>();
+
+    /**
+     * Whether the server agreed to send and receive BOARDDELTA messages
+     */
+    private boolean boardDelta;
+
+    /**
+     * The board values last sent to the server, in the order they are sent
+     */
+    private final int[] sentBoard;
+
+    /**
+     * The board values now, in the order they are sent, reused for every board sent
+     */
+    private final int[] currentBoard;
+
+    /**
+     * Board values or index and value pairs read from a received message, reused for every message
+     */
+    private final int[] receivedCells;
+
     /**
      * Game's chat
      */
@@ -113,11 +189,43 @@ public class MultiplayerGame extends Game {
      * Creates a corresponding grid model
      * @param cols number of columns
      * @param rows number of rows
+     * @param gameWindow the game window whose communicator the game uses
      */
     public MultiplayerGame(int cols, int rows, GameWindow gameWindow) {
-        super(cols, rows);
+        this(cols, rows, gameWindow.getCommunicator(), Integer.getInteger("tetrecs.lookahead", DEFAULT_LOOKAHEAD));
         this.gameWindow = gameWindow;
-        communicator = gameWindow.getCommunicator();
+    }
+
+    /**
+     * Creates a new game with the specified rows and columns which talks to the server through the given communicator
+     * Creates a corresponding grid model
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param communicator the communicator
+     */
+    public MultiplayerGame(int cols, int rows, Communicator communicator) {
+        this(cols, rows, communicator, DEFAULT_LOOKAHEAD);
+    }
+
+    /**
+     * Creates a new game with the specified rows and columns which talks to the server through the given communicator,
+     * keeping the given number of game piece values buffered or requested beyond the current and following game pieces
+     * Creates a corresponding grid model
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param communicator the communicator
+     * @param lookahead the number of game piece values to keep buffered or requested
+     */
+    public MultiplayerGame(int cols, int rows, Communicator communicator, int lookahead) {
+        super(cols, rows);
+        if (lookahead < 1) {
+            throw new IllegalArgumentException("Lookahead must be at least 1: " + lookahead);
+        }
+        this.lookahead = lookahead;
+        this.communicator = communicator;
+        this.sentBoard = new int[cols * rows];
+        this.currentBoard = new int[cols * rows];
+        this.receivedCells = new int[cols * rows * 2];
     }
 
     /**
@@ -125,76 +233,177 @@ public class MultiplayerGame extends Game {
      */
     @Override
     public void initialiseGame() {
-        //Handles receiving a message from the communicator
-        communicator.addListener((communication) -> Platform.runLater(() -> {
-            var messageSplit = communication.split(" ", 2);
-            switch (messageSplit[0]) {
-                //If message received is a game piece value, adds it to the game piece queue
-                case "PIECE" -> this.addToQueue(Integer.parseInt(messageSplit[1]));
-                //If message received is an update on all players, their scores and their number of lives, updates property storing them
-                case "SCORES" -> this.updateLeaderboard(messageSplit[1]);
-                //If message received is a message to the game's chat, adds message to the game's chat
-                case "MSG" -> this.updateChat(messageSplit[1]);
-                //If message received is an update on a player's game board, updates the display of the players' game boards
-                case "BOARD" -> this.updateGameBoards(messageSplit[1]);
-            }
+        //Handles receiving the messages the game needs from the communicator
+        //If message received is a game piece value, adds it to the game piece queue
+        subscriptions.add(communicator.subscribe(Message.Piece.class, (piece) -> this.addToQueue(piece.value())));
+        //If message received is an update on all players, their scores and their number of lives, parses and sorts it on the network thread,
+        //then updates the properties storing them on the JavaFX thread
+        subscriptions.add(communicator.subscribe(Message.Scores.class, Delivery.NETWORK_THREAD, (scores) -> {
+            var update = this.parseLeaderboard(scores.entries());
+            communicator.getDispatcher().execute(() -> this.showLeaderboard(update));
         }));
+        //If message received is a message to the game's chat, adds message to the game's chat
+        subscriptions.add(communicator.subscribe(Message.Msg.class, (msg) -> this.updateChat(msg.player(), msg.text())));
+        //If message received is an update on a player's game board, updates the display of the players' game boards
+        subscriptions.add(communicator.subscribe(Message.Board.class, (board) -> this.updateGameBoards(board.board())));
+        //If message received is the changed blocks of a player's game board, updates that player's game board
+        subscriptions.add(communicator.subscribe(Message.BoardDelta.class, (delta) -> this.updateGameBoardDelta(delta.delta())));
+        //If message received is the features the server agreed to, starts sending board deltas if it agreed to them
+        subscriptions.add(communicator.subscribe(Message.Features.class, (features) -> boardDelta = features.supports(BoardCodec.BOARD_DELTA)));
+
+        //Asks the server to use board deltas, which a server that doesn't support them ignores or answers with an error
+        communicator.send("FEATURES " + BoardCodec.BOARD_DELTA);
 
-        //Requests the server for three game piece values using the communicator
-        communicator.send("PIECE");
-        communicator.send("PIECE");
-        communicator.send("PIECE");
+        //Requests the current and following game pieces and fills the lookahead, all without waiting for any answers
+        this.requestPieces();
 
         //Requests the server for a status update on all players, their scores and their number of lives using the communicator
         communicator.send("SCORES");
 
-        //Updates the server on the player running out of lives
-        lives.addListener((observable, oldValue, newValue) -> {if (newValue.equals(-1)) this.leaveChannel();});
-
         //Updates the server on the player's initial game board values
-        communicator.send("BOARD 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0");
+        this.sendBoard();
     }
 
     /**
      * Handles receiving a game piece value from the server
      * @param pieceValue game piece value received
      */
-    public void addToQueue(Integer pieceValue) {
-        logger.info("Adding game piece value " + pieceValue + " to the game piece queue");
+    public void addToQueue(int pieceValue) {
+        logger.info("Adding game piece value {} to the game piece queue", pieceValue);
 
         //Adds game piece value received from the server to the game piece queue
         gamePieceQueue.add(pieceValue);
+        requestedPieces = Math.max(0, requestedPieces - 1);
 
-        //Increments the number of game piece values received from the server
-        piecesReceived++;
-
-        //Finishes initialising the game once three game piece values have been received from the server
-        if (piecesReceived == 3) {
-            super.initialiseGame();
+        if (!started) {
+            //Finishes initialising the game once the current and following game pieces have been received from the server
+            if (gamePieceQueue.size() >= STARTING_PIECES) {
+                started = true;
+                super.initialiseGame();
+            }
+        } else if (missingPieces > 0) {
+            //Deals the game piece straight away if the game has been waiting for it
+            this.dealMissingPieces();
         }
+        this.updateUpcomingPieces();
     }
 
     /**
-     * Creates a new random game piece
-     * @return game piece created
+     * Creates a new game piece dealt by the server
+     * If the server hasn't dealt one yet, the game waits for it instead, and it is dealt as soon as it arrives
+     * @return game piece created, or null if there isn't one yet
      */
     @Override
     public GamePiece spawnPiece() {
         logger.info("Spawning new game piece");
 
-        //Creates a new game piece using an integer from the game piece queue
-        return GamePiece.createPiece(gamePieceQueue.remove());
+        GamePiece piece = null;
+        if (gamePieceQueue.isEmpty()) {
+            logger.info("Waiting for the server to deal a game piece");
+            missingPieces++;
+        } else {
+            //Creates a new game piece using an integer from the game piece queue
+            piece = GamePiece.createPiece(gamePieceQueue.remove());
+            this.recordPiece(piece);
+        }
+
+        //Requests another game piece value to replace the one just taken
+        this.requestPieces();
+        this.updateUpcomingPieces();
+        return piece;
+    }
+
+    /**
+     * Deals the game pieces that arrived after the game needed them, filling the current game piece before the following one
+     */
+    private void dealMissingPieces() {
+        while (missingPieces > 0 && !gamePieceQueue.isEmpty()) {
+            var piece = GamePiece.createPiece(gamePieceQueue.remove());
+            this.recordPiece(piece);
+            missingPieces--;
+            if (getCurrentPiece() == null) {
+                this.setPieces(piece, getFollowingPiece());
+            } else {
+                this.setPieces(getCurrentPiece(), piece);
+            }
+        }
+        this.requestPieces();
     }
 
     /**
-     * Sets the next game piece as the current game piece and sets a new game piece as the next game piece
+     * Sends PIECE requests until the game piece values buffered and requested cover the game pieces the game is waiting for
+     * and the lookahead, so several requests can be waiting for an answer at once
+     */
+    private void requestPieces() {
+        var needed = lookahead + missingPieces + (started ? 0 : STARTING_PIECES);
+        while (gamePieceQueue.size() + requestedPieces < needed) {
+            communicator.send("PIECE");
+            requestedPieces++;
+        }
+    }
+
+    /**
+     * Updates the upcoming pieces list with the game piece values buffered, in the order they will be dealt
+     */
+    private void updateUpcomingPieces() {
+        var pieces = new ArrayList<GamePiece>(gamePieceQueue.size());
+        for (int i = 0; i < gamePieceQueue.size(); i++) {
+            pieces.add(GamePiece.createPiece(gamePieceQueue.peek(i)));
+        }
+        upcomingPiecesWrapper.setAll(pieces);
+    }
+
+    /**
+     * Gets the upcoming pieces property, holding the game pieces buffered after the following game piece
+     * @return upcoming pieces property
+     */
+    public ListProperty<GamePiece> getUpcomingPiecesProperty() {
+        return upcomingPiecesWrapper;
+    }
+
+    /**
+     * Gets the number of game piece values kept buffered or requested beyond the current and following game pieces
+     * @return lookahead
+     */
+    public int getLookahead() {
+        return lookahead;
+    }
+
+    /**
+     * Handles what should happen when a particular block is clicked
+     * Nothing is placed while the game is waiting for the server to deal the current game piece
+     * @param x column of the block that was clicked
+     * @param y row of the block that was clicked
+     * @return true if the current game piece was placed
      */
     @Override
-    public void nextPiece() {
-        super.nextPiece();
+    public boolean blockClicked(int x, int y) {
+        if (getCurrentPiece() == null) {
+            logger.info("Waiting for the current game piece, so nothing can be placed");
+            return false;
+        }
+        return super.blockClicked(x, y);
+    }
 
-        //Requests the server for another game piece value using the communicator
-        communicator.send("PIECE");
+    /**
+     * Rotates the current game piece the given number of rotations, unless the game is still waiting for it
+     * @param rotations number of rotations
+     */
+    @Override
+    public void rotateCurrentPiece(int rotations) {
+        if (getCurrentPiece() != null) {
+            super.rotateCurrentPiece(rotations);
+        }
+    }
+
+    /**
+     * Swaps the current piece with the following piece, unless the game is still waiting for either of them
+     */
+    @Override
+    public void swapCurrentPiece() {
+        if (getCurrentPiece() != null && getFollowingPiece() != null) {
+            super.swapCurrentPiece();
+        }
     }
 
     /**
@@ -205,13 +414,22 @@ public class MultiplayerGame extends Game {
         super.afterPiece();
 
         //Updates the server on the player's current game board values
-        StringBuilder message = new StringBuilder("BOARD");
-        for (int i = 0; i < cols; i++) {
-            for (int j = 0; j < rows; j++) {
-                message.append(" ").append(grid.get(i, j));
-            }
+        this.sendBoard();
+    }
+
+    /**
+     * Sends the server the player's game board
+     * Once the server has agreed to board deltas, only the blocks that changed since the last board are sent,
+     * unless so many changed that the full board is shorter
+     */
+    private void sendBoard() {
+        BoardCodec.readGrid(grid, currentBoard);
+        var message = new StringBuilder();
+        var changed = BoardCodec.writeUpdate(message, sentBoard, currentBoard, currentBoard.length, boardDelta);
+        if (changed > 0) {
+            communicator.send(message.toString());
         }
-        communicator.send(message.toString());
+        System.arraycopy(currentBoard, 0, sentBoard, 0, currentBoard.length);
     }
 
     /**
@@ -224,7 +442,7 @@ public class MultiplayerGame extends Game {
         super.score(lines, blocks);
 
         //Sends the server the player's new score value using the communicator
-        communicator.send("SCORE " + newScore.get());
+        communicator.send("SCORE " + getScore());
     }
 
     /**
@@ -234,8 +452,13 @@ public class MultiplayerGame extends Game {
     public void gameLoop() {
         super.gameLoop();
 
+        //Updates the server on the player running out of lives
+        if (getLives() == -1) {
+            this.leaveChannel();
+        }
+
         //Sends the server the player's new number of lives using the communicator
-        communicator.send("LIVES " + lives.get());
+        communicator.send("LIVES " + getLives());
     }
 
     /**
@@ -259,11 +482,17 @@ public class MultiplayerGame extends Game {
      * @param entriesReceived the leaderboard entries received
      */
     public void updateLeaderboard(String entriesReceived) {
-        logger.info("Updating leaderboard");
+        this.showLeaderboard(this.parseLeaderboard(entriesReceived));
+    }
 
-        //Clears the leaderboard entries and life statuses lists
-        leaderboardEntriesWrapper.clear();
-        lifeStatusesWrapper.clear();
+    /**
+     * Parses and sorts the leaderboard entries received from the server, without changing the game's lists
+     * It only reads final fields, so it can run on the network thread while the JavaFX thread keeps showing the last leaderboard
+     * @param entriesReceived the leaderboard entries received
+     * @return the top 5 leaderboard entries and their life statuses, in leaderboard order
+     */
+    public LeaderboardUpdate parseLeaderboard(String entriesReceived) {
+        logger.info("Parsing leaderboard");
 
         //Creates two array lists to temporarily act as the leaderboard entries and life statuses lists
         var tempLeaderboardEntriesList = new ArrayList<Pair<String, Integer>>();
@@ -272,7 +501,6 @@ public class MultiplayerGame extends Game {
         //Stores each leaderboard entry received in a string array
         var leaderboardSplit = entriesReceived.split("\n");
 
-
         //Stores each leaderboard's entry's name and score as a pair in the temporary leaderboard entries list
         //Stores each leaderboard's entry's name and life status as a pair in the temporary life statuses list
         for (var entry : leaderboardSplit) {
@@ -286,16 +514,31 @@ public class MultiplayerGame extends Game {
         tempLifeStatusesList = this.sortLifeStatusList(tempLifeStatusesList, tempLeaderboardEntriesList);
 
         //Only keeps the top 5 items in the temporary leaderboard entries and life statuses lists
-        for (int i = 5; i < tempLeaderboardEntriesList.size(); i++) {
-            tempLeaderboardEntriesList.remove(i);
-            tempLifeStatusesList.remove(i);
-        }
+        var kept = Math.min(5, tempLeaderboardEntriesList.size());
+        return new LeaderboardUpdate(List.copyOf(tempLeaderboardEntriesList.subList(0, kept)), List.copyOf(tempLifeStatusesList.subList(0, kept)));
+    }
 
-        //Adds all the contents in the temporary leaderboard entries and life statuses lists to the actual lists
-        leaderboardEntriesWrapper.addAll(tempLeaderboardEntriesList);
-        lifeStatusesWrapper.addAll(tempLifeStatusesList);
+    /**
+     * Shows a parsed leaderboard, replacing the leaderboard entries and life statuses lists in one change each
+     * @param update the parsed leaderboard
+     */
+    public void showLeaderboard(LeaderboardUpdate update) {
+        logger.info("Updating leaderboard");
+
+        leaderboardEntriesWrapper.setAll(update.entries());
+        lifeStatusesWrapper.setAll(update.lifeStatuses());
+
+        //Shows the game boards of the new top 3 players
+        this.refreshGameBoards();
     }
 
+    /**
+     * A leaderboard parsed from the server's SCORES message, ready to be shown
+     * @param entries the top players' names and scores, in leaderboard order
+     * @param lifeStatuses the same players' names and number of lives or DEAD, in the same order
+     */
+    public record LeaderboardUpdate(List<Pair<String, Integer>> entries, List<Pair<String, String>> lifeStatuses) {}
+
     /**
      * Sorts the life statuses list according to the leaderboard entries list using the player names in both lists
      * @param list1 life statuses list
@@ -329,94 +572,76 @@ public class MultiplayerGame extends Game {
     }
 
     /**
-     * Updates the game boards list using the game board value received from the server
-     * @param gameBoard the game board value received
+     * Updates a player's game board using the game board values received from the server
+     * The player's grid is updated in place, so only the blocks that changed are redrawn
+     * @param gameBoard the player name and game board values received, as "name:v v v ..."
      */
     public void updateGameBoards(String gameBoard) {
         logger.info("Updating game boards list");
 
-        //Creates an array list to temporarily act as the game boards list
-        var tempGameBoardsList = new ArrayList<>(gameBoardsWrapper);
-
-        //Clears the game boards list
-        gameBoardsWrapper.clear();
-
-        //Sorts the game boards list according to the leaderboard entries list using the player names in both lists
-        tempGameBoardsList = this.sortGameBoards(tempGameBoardsList);
-
-        //Stores the player name and game board value received in a string array
-        var boardSplit = gameBoard.split(":");
-
-        //Checks if the game board value received belong to one of the top 3 players
-        var temp = Math.min(leaderboardEntriesWrapper.getSize(), 3);
-        for (int i = 0; i < temp; i++) {
-            if (leaderboardEntriesWrapper.get(i).getKey().equals(boardSplit[0])) {
-
-                //If so, updates the temporary game boards list
-                var playerName = boardSplit[0];
-                boardSplit = boardSplit[1].split(" ");
-                var playerGrid = new Grid(5, 5);
-                var j = 0;
-                for (int x = 0; x < 5; x++) {
-                    for (int y = 0; y < 5; y++) {
-                        playerGrid.set(x, y, Integer.parseInt(boardSplit[j]));
-                        j++;
-                    }
-                }
-                tempGameBoardsList.set(i, new Pair<>(playerName, playerGrid));
-            }
+        //Reads the game board values received straight into the player's grid
+        var colon = gameBoard.indexOf(':');
+        var playerGrid = this.getPlayerGrid(gameBoard.substring(0, colon));
+        var values = BoardCodec.readBoard(gameBoard, colon + 1, receivedCells);
+        for (int i = 0; i < values && i < cols * rows; i++) {
+            playerGrid.set(i / rows, i % rows, receivedCells[i]);
         }
 
-        //Adds all the contents in the temporary game boards list to the actual list
-        gameBoardsWrapper.addAll(tempGameBoardsList);
+        this.refreshGameBoards();
     }
 
     /**
-     * Sorts the game boards list according to the leaderboard entries list using the player names in both lists
-     * @param list the game boards list
-     * @return the sorted game boards
+     * Updates the blocks of a player's game board that changed, using a board delta received from the server
+     * @param gameBoardDelta the player name and changed blocks received, as "name:index=value index=value ..."
      */
-    public ArrayList<Pair<String, Grid>> sortGameBoards(ArrayList<Pair<String, Grid>> list) {
-        logger.info("Sorting game boards list");
-
-        //Creates a temporary list to hold the game boards list's contents
-        ArrayList<Pair<String, Grid>> tempList = new ArrayList<>(list);
-
-        //Clears the game boards list
-        list.clear();
+    public void updateGameBoardDelta(String gameBoardDelta) {
+        logger.info("Updating game board from delta");
 
-        //Fills the game boards list with empty grids
-        list = this.createDefaultGameBoards(list);
-
-        //Adds the original contents of the game boards list back to it in the sorted order
-        //Note that the game boards list only contains up to 3 grids so some grids might not be added back
-        var loopLimit = Math.min(leaderboardEntriesWrapper.getSize(), 3);
-        for (int i = 0; i < loopLimit; i++) {
-            for (var entry: tempList) {
-                if (leaderboardEntriesWrapper.get(i).getKey().equals(entry.getKey())) {
-                    list.set(i, entry);
-                }
+        //Writes each changed block straight into the player's grid
+        var colon = gameBoardDelta.indexOf(':');
+        var playerGrid = this.getPlayerGrid(gameBoardDelta.substring(0, colon));
+        var pairs = BoardCodec.readDelta(gameBoardDelta, colon + 1, receivedCells);
+        for (int i = 0; i < pairs; i++) {
+            var index = receivedCells[i * 2];
+            if (index < cols * rows) {
+                playerGrid.set(index / rows, index % rows, receivedCells[i * 2 + 1]);
             }
         }
 
-        //Returns the sorted game boards list
-        return list;
+        this.refreshGameBoards();
     }
 
     /**
-     * Fills the game boards list with empty grids
+     * Gets a player's grid, creating an empty one the first time they are seen
+     * @param playerName the player's name
+     * @return the player's grid
      */
-    public ArrayList<Pair<String, Grid>> createDefaultGameBoards(ArrayList<Pair<String, Grid>> list) {
-        logger.info("Filling game boards list with empty grids");
+    private Grid getPlayerGrid(String playerName) {
+        return playerGrids.computeIfAbsent(playerName, (name) -> new Grid(cols, rows));
+    }
 
-        //Fills the game boards list with up to 3 empty grids depending on the number of players in the game
-        var loopLimit = Math.min(leaderboardEntriesWrapper.getSize(), 3);
-        for (int i = 0; i < loopLimit; i++) {
-            list.add(new Pair<>(leaderboardEntriesWrapper.get(i).getKey(), new Grid(5, 5)));
+    /**
+     * Makes the game boards list show the grids of the top 3 players on the leaderboard, in leaderboard order
+     * The list is only changed if the players in it have changed, as updating a grid redraws its game board by itself
+     */
+    private void refreshGameBoards() {
+        var count = Math.min(leaderboardEntriesWrapper.getSize(), 3);
+        var changed = count != gameBoardsWrapper.size();
+        for (int i = 0; i < count && !changed; i++) {
+            var playerName = leaderboardEntriesWrapper.get(i).getKey();
+            var shown = gameBoardsWrapper.get(i);
+            changed = !shown.getKey().equals(playerName) || shown.getValue() != playerGrids.get(playerName);
+        }
+        if (!changed) {
+            return;
         }
 
-        //Returns the filled game boards list
-        return list;
+        var topGameBoards = new ArrayList<Pair<String, Grid>>();
+        for (int i = 0; i < count; i++) {
+            var playerName = leaderboardEntriesWrapper.get(i).getKey();
+            topGameBoards.add(new Pair<>(playerName, this.getPlayerGrid(playerName)));
+        }
+        gameBoardsWrapper.setAll(topGameBoards);
     }
 
     /**
@@ -429,26 +654,17 @@ public class MultiplayerGame extends Game {
 
     /**
      * Adds a message received from the communicator to the game's chat
-     * @param messageReceived the message received
+     * @param playerName the name of the player who sent the message
+     * @param message the message received
      */
-    public void updateChat(String messageReceived) {
+    public void updateChat(String playerName, String message) {
         logger.info("Updating game's chat");
 
-        //Splits received message into player name and message
-        var messageSplit = messageReceived.split(":");
-        var playerName = messageSplit[0];
-        String message;
-        if (messageSplit.length == 2) {
-            message = messageSplit[1];
-        } else {
-            message = " ";
-        }
-
         //Add the Text to the game's chat
         gameChat.set(playerName + ": " + message);
 
         //Plays sound effect
-        Multimedia.playAudio("sounds/message.wav");
+        this.playSound(GameSound.MESSAGE);
     }
 
     /**
@@ -459,6 +675,16 @@ public class MultiplayerGame extends Game {
         communicator.send("MSG " + message);
     }
 
+    /**
+     * Stops the game timer and removes this game's listeners from the communicator
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        subscriptions.forEach(Subscription::cancel);
+        subscriptions.clear();
+    }
+
     /**
      * Updates the server on the player "dying"
      */
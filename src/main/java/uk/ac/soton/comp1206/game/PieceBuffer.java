@@ -0,0 +1,125 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.NoSuchElementException;
+
+/**
+ * The Piece Buffer is a first-in first-out ring buffer of piece numbers held in a primitive array.
+ * Pieces can be generated into it in bulk, and it grows when more pieces are added than it can hold, so it never boxes a piece number.
+ * It is not thread safe, so it should only be used from the thread its game is played on.
+ */
+public class PieceBuffer {
+
+    /**
+     * The piece numbers, stored in a ring starting at head
+     */
+    private int[] pieces;
+
+    /**
+     * Index of the oldest piece number
+     */
+    private int head;
+
+    /**
+     * The number of piece numbers held
+     */
+    private int size;
+
+    /**
+     * Creates a new empty buffer
+     * @param capacity the number of piece numbers it can hold before growing
+     */
+    public PieceBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        pieces = new int[capacity];
+    }
+
+    /**
+     * Adds a piece number to the end of this buffer
+     * @param piece the piece number
+     */
+    public void add(int piece) {
+        if (size == pieces.length) {
+            this.grow();
+        }
+        pieces[(head + size) % pieces.length] = piece;
+        size++;
+    }
+
+    /**
+     * Removes the oldest piece number from this buffer
+     * @return the piece number
+     */
+    public int remove() {
+        if (size == 0) {
+            throw new NoSuchElementException("Piece buffer is empty");
+        }
+        var piece = pieces[head];
+        head = (head + 1) % pieces.length;
+        size--;
+        return piece;
+    }
+
+    /**
+     * Gets a piece number without removing it
+     * @param index position in this buffer, where 0 is the oldest piece number
+     * @return the piece number
+     */
+    public int peek(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No piece at " + index + " in a buffer of " + size);
+        }
+        return pieces[(head + index) % pieces.length];
+    }
+
+    /**
+     * Generates piece numbers until this buffer is full, writing them straight into the ring
+     * @param generator the generator to take the piece numbers from
+     */
+    public void fill(PieceGenerator generator) {
+        //The free space is at most two runs of the array, one after the newest piece and one wrapped around to the start
+        var tail = (head + size) % pieces.length;
+        var free = pieces.length - size;
+        var firstRun = Math.min(free, pieces.length - tail);
+        generator.fill(pieces, tail, firstRun);
+        generator.fill(pieces, 0, free - firstRun);
+        size = pieces.length;
+    }
+
+    /**
+     * Removes every piece number from this buffer
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Gets the number of piece numbers held
+     * @return number of piece numbers
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether this buffer holds no piece numbers
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Doubles the capacity of this buffer, moving the piece numbers to the start of the new array
+     */
+    private void grow() {
+        var grown = new int[pieces.length * 2];
+        for (int i = 0; i < size; i++) {
+            grown[i] = pieces[(head + i) % pieces.length];
+        }
+        pieces = grown;
+        head = 0;
+    }
+}
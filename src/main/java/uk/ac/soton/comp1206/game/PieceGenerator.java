@@ -0,0 +1,61 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A Piece Generator produces the sequence of piece numbers a game is dealt.
+ * Each generator owns a single seeded random number generator, so the same seed always deals the same pieces.
+ * This is what lets simulations, replays and multiplayer games be reproduced exactly.
+ */
+public interface PieceGenerator {
+
+    /**
+     * Generates the next piece number
+     * @return piece number between 0 and GamePiece.PIECES - 1
+     */
+    int next();
+
+    /**
+     * Gets the seed this generator was created with
+     * @return the seed
+     */
+    long getSeed();
+
+    /**
+     * Generates piece numbers in bulk into an array
+     * @param pieces array to write the piece numbers into
+     * @param offset index of the first piece number to write
+     * @param length number of piece numbers to write
+     */
+    default void fill(int[] pieces, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            pieces[i] = this.next();
+        }
+    }
+
+    /**
+     * Creates a generator where every piece is equally likely every time
+     * @param seed the seed
+     * @return the generator
+     */
+    static PieceGenerator uniform(long seed) {
+        return new UniformPieceGenerator(seed);
+    }
+
+    /**
+     * Creates a generator which deals every piece once, in a shuffled order, before dealing any piece again
+     * @param seed the seed
+     * @return the generator
+     */
+    static PieceGenerator bag(long seed) {
+        return new BagPieceGenerator(seed);
+    }
+
+    /**
+     * Creates a generator where each piece is dealt in proportion to its weight
+     * @param seed the seed
+     * @param weights one weight per piece number
+     * @return the generator
+     */
+    static PieceGenerator weighted(long seed, int[] weights) {
+        return new WeightedPieceGenerator(seed, weights);
+    }
+}
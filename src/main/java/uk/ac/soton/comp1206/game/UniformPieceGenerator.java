@@ -0,0 +1,47 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * The Uniform Piece Generator deals every piece with equal probability, independently of the pieces before it.
+ * This is how pieces have always been dealt in single player games.
+ */
+public class UniformPieceGenerator implements PieceGenerator {
+
+    /**
+     * The seed this generator was created with
+     */
+    private final long seed;
+
+    /**
+     * The random number generator the pieces are drawn from
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Creates a new uniform generator
+     * @param seed the seed
+     */
+    public UniformPieceGenerator(long seed) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Generates the next piece number
+     * @return piece number
+     */
+    @Override
+    public int next() {
+        return random.nextInt(GamePiece.PIECES);
+    }
+
+    /**
+     * Gets the seed this generator was created with
+     * @return the seed
+     */
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,80 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The Weighted Piece Generator deals each piece in proportion to its weight, independently of the pieces before it.
+ * It is used to make awkward pieces rarer or more common when tuning the game's difficulty.
+ */
+public class WeightedPieceGenerator implements PieceGenerator {
+
+    /**
+     * The seed this generator was created with
+     */
+    private final long seed;
+
+    /**
+     * The random number generator the pieces are drawn from
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The running total of the weights, where piece p is dealt for draws from cumulative[p - 1] up to cumulative[p]
+     */
+    private final int[] cumulative = new int[GamePiece.PIECES];
+
+    /**
+     * Creates a new weighted generator
+     * @param seed the seed
+     * @param weights one weight per piece number, none negative and at least one positive
+     */
+    public WeightedPieceGenerator(long seed, int[] weights) {
+        if (weights.length != GamePiece.PIECES) {
+            throw new IllegalArgumentException("Expected " + GamePiece.PIECES + " weights but got " + weights.length);
+        }
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+
+        var total = 0;
+        for (int piece = 0; piece < weights.length; piece++) {
+            if (weights[piece] < 0) {
+                throw new IllegalArgumentException("Negative weight for piece " + piece);
+            }
+            total = Math.addExact(total, weights[piece]);
+            cumulative[piece] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Every weight is 0");
+        }
+    }
+
+    /**
+     * Generates the next piece number
+     * @return piece number
+     */
+    @Override
+    public int next() {
+        var draw = random.nextInt(cumulative[cumulative.length - 1]);
+
+        //Finds the first piece whose running total is above the draw, which skips any piece with no weight
+        var index = Arrays.binarySearch(cumulative, draw + 1);
+        if (index < 0) {
+            return -index - 1;
+        }
+        //Several pieces can share a running total when some weights are 0, so steps back to the first of them
+        while (index > 0 && cumulative[index - 1] == cumulative[index]) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * Gets the seed this generator was created with
+     * @return the seed
+     */
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+}
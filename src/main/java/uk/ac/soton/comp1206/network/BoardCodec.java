@@ -0,0 +1,184 @@
+package uk.ac.soton.comp1206.network;
+
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * The Board Codec reads and writes the board values carried by BOARD and BOARDDELTA messages, without splitting strings.
+ * A board is a list of block values, one per block, going down each column in turn, as a MultiplayerGame sends it.
+ * A BOARD message lists every value, separated by spaces.
+ * A BOARDDELTA message lists only the blocks that changed since the last board sent, as "index=value" pairs separated by spaces.
+ */
+public final class BoardCodec {
+
+    /**
+     * The feature a client asks for with FEATURES to send and receive BOARDDELTA messages
+     */
+    public static final String BOARD_DELTA = "BOARDDELTA";
+
+    private BoardCodec() {
+    }
+
+    /**
+     * Reads every value of a board
+     * @param text the text holding the values
+     * @param from the index in the text the values start at
+     * @param board the array to read the values into
+     * @return the number of values read
+     */
+    public static int readBoard(String text, int from, int[] board) {
+        var count = 0;
+        var i = from;
+        while (count < board.length) {
+            i = skipSpaces(text, i);
+            if (i == text.length()) {
+                break;
+            }
+            var end = endOfNumber(text, i);
+            board[count++] = parseNumber(text, i, end);
+            i = end;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the index and value pairs of a board delta
+     * @param text the text holding the pairs
+     * @param from the index in the text the pairs start at
+     * @param pairs the array to read the pairs into, each index followed by its value
+     * @return the number of pairs read
+     */
+    public static int readDelta(String text, int from, int[] pairs) {
+        var count = 0;
+        var i = from;
+        while (count * 2 + 1 < pairs.length) {
+            i = skipSpaces(text, i);
+            if (i == text.length()) {
+                break;
+            }
+            var equals = endOfNumber(text, i);
+            if (equals == text.length() || text.charAt(equals) != '=') {
+                throw new IllegalArgumentException("Malformed board delta: " + text);
+            }
+            var end = endOfNumber(text, equals + 1);
+            pairs[count * 2] = parseNumber(text, i, equals);
+            pairs[count * 2 + 1] = parseNumber(text, equals + 1, end);
+            count++;
+            i = end;
+        }
+        return count;
+    }
+
+    /**
+     * Writes every value of a board, each preceded by a space
+     * @param message the message to write to
+     * @param board the board values
+     * @param length the number of values
+     */
+    public static void writeBoard(StringBuilder message, int[] board, int length) {
+        for (int i = 0; i < length; i++) {
+            message.append(' ').append(board[i]);
+        }
+    }
+
+    /**
+     * Writes the values that differ between two boards as index and value pairs, each preceded by a space
+     * @param message the message to write to
+     * @param previous the board last sent
+     * @param current the board now
+     * @param length the number of values
+     * @return the number of pairs written
+     */
+    public static int writeDelta(StringBuilder message, int[] previous, int[] current, int length) {
+        var count = 0;
+        for (int i = 0; i < length; i++) {
+            if (previous[i] != current[i]) {
+                message.append(' ').append(i).append('=').append(current[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the block values of a grid into a board, going down each column in turn
+     * @param grid the grid
+     * @param board the array to read the values into
+     * @return the number of values read
+     */
+    public static int readGrid(Grid grid, int[] board) {
+        var length = 0;
+        for (int x = 0; x < grid.getCols(); x++) {
+            for (int y = 0; y < grid.getRows(); y++) {
+                board[length++] = grid.get(x, y);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes the message updating the server on a board, replacing anything already in the message
+     * A BOARDDELTA message is written if board deltas are in use and no more than a third of the values changed, as it is shorter,
+     * otherwise a BOARD message listing every value is written
+     * @param message the message to write to
+     * @param previous the board last sent
+     * @param current the board now
+     * @param length the number of values
+     * @param delta whether board deltas are in use
+     * @return the number of values that changed, or the number of values if board deltas aren't in use, so 0 means nothing needs sending
+     */
+    public static int writeUpdate(StringBuilder message, int[] previous, int[] current, int length, boolean delta) {
+        message.setLength(0);
+        message.append(BOARD_DELTA);
+        var changed = delta ? writeDelta(message, previous, current, length) : length;
+        if (changed * 3 > length) {
+            message.setLength(0);
+            message.append("BOARD");
+            writeBoard(message, current, length);
+        }
+        return changed;
+    }
+
+    /**
+     * Skips past any spaces
+     * @param text the text
+     * @param i the index to start at
+     * @return the index of the next character that isn't a space
+     */
+    private static int skipSpaces(String text, int i) {
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the end of a number
+     * @param text the text
+     * @param i the index the number starts at
+     * @return the index after its last digit
+     */
+    private static int endOfNumber(String text, int i) {
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Parses a non-negative number
+     * @param text the text
+     * @param start the index of its first digit
+     * @param end the index after its last digit
+     * @return the number
+     */
+    private static int parseNumber(String text, int start, int end) {
+        if (start == end) {
+            throw new IllegalArgumentException("Expected a number at " + start + " in: " + text);
+        }
+        var value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+        return value;
+    }
+}
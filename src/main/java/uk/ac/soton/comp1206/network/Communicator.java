@@ -4,41 +4,457 @@ import com.neovisionaries.ws.client.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.CommunicationsListener;
+import uk.ac.soton.comp1206.event.ConnectionStateListener;
+import uk.ac.soton.comp1206.event.MessageListener;
+import uk.ac.soton.comp1206.game.Grid;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Uses web sockets to talk to a web socket server and relays communication to attached listeners
+ * Outgoing messages are put on a queue and written by a dedicated writer thread, so sending never blocks the caller.
+ * The writer sends everything queued within a short window as one batch with a single flush,
+ * and drops any BOARD or SCORE update in a batch that a later one in the same batch replaces.
+ * Nothing connects until the server is first needed, and connecting happens on a background thread, so creating a communicator never waits on the network.
+ * If the connection is lost, the communicator reconnects with exponential backoff, holding outgoing messages until it is back.
+ * It then resumes the session by replaying the player's features, name, channel, unanswered PIECE requests and latest board, SCORE and LIVES.
+ * Each received message is parsed once into a Message record and only handed to the listeners subscribed to its type,
+ * so messages nobody listens to are never passed to the JavaFX thread.
+ * Each listener says whether it runs on the network thread or through the dispatcher, and is removed again through its Subscription.
+ * The listener registry is copy on write, so listeners can be added and removed on any thread while messages are being delivered.
+ * Every message sent and received is counted in the communicator's metrics, which can be described or dumped to a file.
  */
 public class Communicator {
 
     private static final Logger logger = LogManager.getLogger(Communicator.class);
 
+    /**
+     * How long the writer waits after the first message of a batch for the rest of the batch to be queued
+     */
+    private static final long BATCH_WINDOW_MILLIS = 2;
+
+    /**
+     * Commands whose messages carry the player's whole current state, so only the latest one in a batch needs sending
+     */
+    private static final List<String> SUPERSEDED_COMMANDS = List.of("BOARD", "SCORE");
+
+    /**
+     * Commands whose latest message is sent again when the session is resumed, in this order
+     */
+    private static final List<String> RESUMED_COMMANDS = List.of("FEATURES", "NICK", "JOIN", "BOARD", "SCORE", "LIVES");
+
+    /**
+     * How long to wait for a connection to be made before giving up on that attempt
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * The delay before the first reconnect attempt, which doubles with every failed attempt
+     */
+    private static final long BASE_BACKOFF_MILLIS = 500;
+
+    /**
+     * The longest delay between reconnect attempts
+     */
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    /**
+     * An empty message queued to wake the writer thread up without sending anything
+     */
+    private static final String WAKE_UP = "";
+
     /**
      * Attached communication listeners listening to messages on this Communicator
-     * Each will be sent any messages
+     * Each will be sent any messages, on the network thread
+     */
+    private final List<HandlerSubscription> handlers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Listeners subscribed to each type of parsed message
+     */
+    private final Map<Class<? extends Message>, List<MessageSubscription>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the subscribed listeners for each received message, by default on the thread that received it
+     */
+    private volatile Executor dispatcher = Runnable::run;
+
+    /**
+     * The server this communicator connects to
      */
-    private final List<CommunicationsListener> handlers = new ArrayList<>();
+    private final String server;
 
-    private WebSocket ws = null;
+    /**
+     * The factory the web sockets are created with
+     */
+    private final WebSocketFactory socketFactory = new WebSocketFactory().setConnectionTimeout(CONNECT_TIMEOUT_MILLIS);
+
+    /**
+     * The current web socket, replaced on every reconnect
+     */
+    private volatile WebSocket ws = null;
+
+    /**
+     * The state of the connection
+     */
+    private volatile ConnectionState state = ConnectionState.IDLE;
+
+    /**
+     * Whether the first connection attempt has been started
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * The listener to call when the connection state changes
+     */
+    private volatile ConnectionStateListener connectionStateListener;
+
+    /**
+     * Lock the writer waits on while there is no connection
+     */
+    private final Object connectionLock = new Object();
+
+    /**
+     * Runs the reconnect attempts
+     */
+    private final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+        var thread = new Thread(runnable, "communicator-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The number of reconnect attempts that have failed in a row, only used on the reconnect thread
+     */
+    private int failedAttempts;
+
+    /**
+     * Whether a connection has ever been made, so any later connection is a reconnect, only used on the reconnect thread
+     */
+    private boolean everConnected;
+
+    /**
+     * Whether the session needs resuming before the next batch is written
+     */
+    private volatile boolean resumeNeeded;
+
+    /**
+     * The latest message written for each resumed command, only used by the writer thread
+     */
+    private final Map<String, String> latestMessages = new ConcurrentHashMap<>();
+
+    /**
+     * The latest board written, kept up to date by BOARD and BOARDDELTA messages, only used by the writer thread
+     */
+    private final int[] latestBoard = new int[Grid.MAX_BLOCKS];
+
+    /**
+     * The number of values in the latest board, or 0 if no board has been written
+     */
+    private int latestBoardLength;
+
+    /**
+     * Index and value pairs read from a BOARDDELTA message, only used by the writer thread
+     */
+    private final int[] deltaPairs = new int[Grid.MAX_BLOCKS * 2];
+
+    /**
+     * The number of PIECE requests written that haven't been answered yet
+     */
+    private final AtomicInteger unansweredPieces = new AtomicInteger();
+
+    /**
+     * Messages waiting to be written to the server
+     */
+    private final LinkedBlockingQueue<String> outbound = new LinkedBlockingQueue<>();
+
+    /**
+     * The largest number of messages that have been waiting at once
+     */
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /**
+     * The number of messages written to the server
+     */
+    private final AtomicLong messagesSent = new AtomicLong();
+
+    /**
+     * The number of messages dropped because a later message in the same batch replaced them
+     */
+    private final AtomicLong messagesDropped = new AtomicLong();
+
+    /**
+     * The number of batches written to the server
+     */
+    private final AtomicLong batchesSent = new AtomicLong();
+
+    /**
+     * The number of times the connection was made again after being lost
+     */
+    private final AtomicLong reconnects = new AtomicLong();
+
+    /**
+     * Counts and times the messages sent and received by command
+     */
+    private final CommunicatorMetrics metrics = new CommunicatorMetrics();
 
     /**
      * Creates a new communicator to the given web socket server
+     * It doesn't connect until the first message is sent or start is called, so this never waits on the network
      * @param server server to connect to
      */
     public Communicator(String server) {
+        this.server = server;
+
+        //Starts the writer thread, which sends the queued messages until the communicator is closed
+        var writer = new Thread(this::writeLoop, "communicator-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
 
+    /**
+     * Starts connecting to the server in the background, if it hasn't started already
+     * This returns straight away, and the connection state listener hears when the connection is made
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        this.setState(ConnectionState.CONNECTING);
         try {
-            var socketFactory = new WebSocketFactory();
+            reconnector.execute(this::connect);
+        } catch (RejectedExecutionException e) {
+            logger.info("Communicator closed, not connecting");
+        }
+    }
 
-            //Connect to the server
-            ws = socketFactory.createSocket(server);
-            ws.connect();
-            logger.info("Connected to " + server);
+    /** Sends a message to the server
+     * The message is queued and written by the writer thread, so this returns straight away
+     * The first message sent starts connecting, and messages sent while disconnected are held until the connection is there
+     * Messages sent once the communicator is closed are dropped
+     * @param message Message to send
+     */
+    public void send(String message) {
+        if (state == ConnectionState.CLOSED) {
+            logger.info("Communicator closed, not sending: {}", message);
+            return;
+        }
+        logger.info("Queueing message: {}", message);
+
+        this.start();
+        outbound.add(message);
+        maxQueueDepth.accumulateAndGet(outbound.size(), Math::max);
+    }
+
+    /**
+     * Adds a new listener to receive every message from the server, unparsed, on the network thread
+     * @param listener the listener to add
+     * @return the subscription, which removes the listener when cancelled
+     */
+    public Subscription addListener(CommunicationsListener listener) {
+        var subscription = new HandlerSubscription(listener);
+        this.handlers.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Subscribes a listener to one type of message received from the server
+     * The listener is called through the dispatcher, and only for messages of that type
+     * @param type the type of message
+     * @param listener the listener to add
+     * @param <T> the type of message
+     * @return the subscription, which removes the listener when cancelled
+     */
+    public <T extends Message> Subscription subscribe(Class<T> type, MessageListener<? super T> listener) {
+        return this.subscribe(type, Delivery.DISPATCHER, listener);
+    }
+
+    /**
+     * Subscribes a listener to one type of message received from the server, called on the given thread
+     * @param type the type of message
+     * @param delivery whether the listener is called on the network thread or through the dispatcher
+     * @param listener the listener to add
+     * @param <T> the type of message
+     * @return the subscription, which removes the listener when cancelled
+     */
+    public <T extends Message> Subscription subscribe(Class<T> type, Delivery delivery, MessageListener<? super T> listener) {
+        var subscription = new MessageSubscription(type, delivery, listener);
+        this.subscribers.computeIfAbsent(type, (key) -> new CopyOnWriteArrayList<>()).add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Removes a listener from one type of message
+     * @param type the type of message
+     * @param listener the listener to remove
+     * @param <T> the type of message
+     */
+    public <T extends Message> void unsubscribe(Class<T> type, MessageListener<? super T> listener) {
+        var listeners = this.subscribers.get(type);
+        if (listeners != null) {
+            for (var subscription : listeners) {
+                if (subscription.listener == listener) {
+                    subscription.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the executor the subscribed listeners are called through, such as Platform::runLater to call them on the JavaFX thread
+     * @param dispatcher the executor
+     */
+    public void setDispatcher(Executor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Gets the executor the subscribed listeners are called through
+     * Listeners on the network thread use it to hand their results to the JavaFX thread
+     * @return the executor
+     */
+    public Executor getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Sets a listener to handle an event when the connection state changes
+     * @param listener the listener to add
+     */
+    public void setOnConnectionStateChanged(ConnectionStateListener listener) {
+        this.connectionStateListener = listener;
+    }
+
+    /**
+     * Gets the state of the connection
+     * @return the connection state
+     */
+    public ConnectionState getState() {
+        return state;
+    }
+
+    /**
+     * Closes the connection for good, discarding any messages still waiting to be written
+     */
+    public void close() {
+        logger.info("Closing communicator");
+        reconnector.shutdownNow();
+        this.setState(ConnectionState.CLOSED);
+        outbound.clear();
+
+        //Wakes the writer if it is waiting for a message, so it sees the communicator is closed and its thread ends
+        outbound.add(WAKE_UP);
+        var socket = ws;
+        if (socket != null) {
+            socket.disconnect();
+        }
+    }
+
+    /**
+     * Gets the number of messages waiting to be written to the server
+     * @return number of messages
+     */
+    public int getQueueDepth() {
+        return outbound.size();
+    }
+
+    /**
+     * Gets the largest number of messages that have been waiting to be written at once
+     * @return number of messages
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Gets the number of messages written to the server
+     * @return number of messages
+     */
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    /**
+     * Gets the number of messages dropped because a later message in the same batch replaced them
+     * @return number of messages
+     */
+    public long getMessagesDropped() {
+        return messagesDropped.get();
+    }
+
+    /**
+     * Gets the number of batches written to the server
+     * @return number of batches
+     */
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    /**
+     * Gets the number of times the connection was made again after being lost
+     * @return number of reconnects
+     */
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    /**
+     * Gets the metrics counting and timing the messages sent and received
+     * @return the metrics
+     */
+    public CommunicatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Describes the connection and the metrics of the messages sent and received
+     * @return the description
+     */
+    public String getMetricsReport() {
+        var uptime = metrics.getUptimeSeconds();
+        var received = metrics.getMessagesReceived();
+        return String.format("Server %s, %s, metrics over %.1f s%n", server, state, uptime)
+                + String.format("Sent %d messages (%.1f/s) in %d batches, dropped %d, queued %d (max %d), reconnects %d%n",
+                        getMessagesSent(), getMessagesSent() / uptime, getBatchesSent(), getMessagesDropped(),
+                        getQueueDepth(), getMaxQueueDepth(), getReconnects())
+                + String.format("Received %d messages (%.1f/s)%n%n", received, received / uptime)
+                + metrics.report();
+    }
+
+    /**
+     * Writes the description of the connection and metrics to a file, replacing anything already in it
+     * @param file the file
+     * @throws IOException if the file can't be written
+     */
+    public void dumpMetrics(Path file) throws IOException {
+        Files.writeString(file, this.getMetricsReport());
+        logger.info("Dumped communicator metrics to {}", file);
+    }
+
+    /**
+     * Makes one attempt to connect to the server, scheduling another attempt if it fails
+     */
+    private void connect() {
+        if (state == ConnectionState.CLOSED) {
+            return;
+        }
+        try {
+            var socket = socketFactory.createSocket(server);
+
+            //Frames are flushed once per batch by the writer thread, rather than once per message
+            socket.setAutoFlush(false);
 
             //When a message is received, call the receive method
-            ws.addListener(new WebSocketAdapter() {
+            socket.addListener(new WebSocketAdapter() {
                 @Override
                 public void onTextMessage(WebSocket websocket, String message) throws Exception {
                     Communicator.this.receive(websocket, message);
@@ -47,10 +463,14 @@ public class Communicator {
                 public void onPingFrame(WebSocket webSocket, WebSocketFrame webSocketFrame) throws Exception {
                     logger.info("Ping? Pong!");
                 }
+                @Override
+                public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
+                    Communicator.this.disconnected(websocket);
+                }
             });
 
             //Error handling
-            ws.addListener(new WebSocketAdapter() {
+            socket.addListener(new WebSocketAdapter() {
                 @Override
                 public void onTextMessage(WebSocket websocket, String message) throws Exception {
                     if(message.startsWith("ERROR")) {
@@ -59,53 +479,481 @@ public class Communicator {
                 }
                 @Override
                 public void handleCallbackError(WebSocket webSocket, Throwable throwable) throws Exception {
-                    logger.error("Callback Error:" + throwable.getMessage());
-                    throwable.printStackTrace();
+                    logger.error("Callback Error: {}", throwable.getMessage(), throwable);
                 }
                 @Override
                 public void onError(WebSocket webSocket, WebSocketException e) throws Exception {
-                    logger.error("Error:" + e.getMessage());
-                    e.printStackTrace();
+                    logger.error("Error: {}", e.getMessage());
                 }
             });
 
-        } catch (Exception ignored){}
+            //Connect to the server
+            socket.connect();
+            logger.info("Connected to {}", server);
+            ws = socket;
+
+            //A connection after a lost one needs the session resuming before anything else is written
+            var reconnected = everConnected;
+            everConnected = true;
+            failedAttempts = 0;
+            if (reconnected) {
+                reconnects.incrementAndGet();
+                resumeNeeded = true;
+                outbound.add(WAKE_UP);
+            }
+            this.setState(ConnectionState.CONNECTED);
+        } catch (Exception e) {
+            logger.error("Unable to connect to {}: {}", server, e.getMessage());
+            this.scheduleReconnect();
+        }
     }
 
-    /** Sends a message to the server
-     * @param message Message to send
+    /**
+     * Handles a web socket being disconnected, reconnecting if it was the current one
+     * @param socket the socket that was disconnected
      */
-    public void send(String message) {
-        logger.info("Sending message: " + message);
+    private void disconnected(WebSocket socket) {
+        if (socket != ws || state == ConnectionState.CLOSED) {
+            return;
+        }
+        logger.error("Lost connection to {}", server);
+        metrics.connectionLost();
 
-        ws.sendText(message);
+        //The backoff is worked out on the reconnect thread, which is the only thread that touches it
+        try {
+            reconnector.execute(this::scheduleReconnect);
+        } catch (RejectedExecutionException e) {
+            logger.info("Communicator closed, not reconnecting");
+        }
     }
 
     /**
-     * Adds a new listener to receive messages from the server
-     * @param listener the listener to add
+     * Schedules the next connection attempt after an exponential backoff with jitter, on the reconnect thread
+     * Half of each delay is random, so many clients which lost the server together don't all return at the same moment
      */
-    public void addListener(CommunicationsListener listener) {
-        this.handlers.add(listener);
+    private void scheduleReconnect() {
+        if (state == ConnectionState.CLOSED) {
+            return;
+        }
+        this.setState(ConnectionState.RECONNECTING);
+        var backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(failedAttempts, 16));
+        var delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        failedAttempts++;
+        logger.info("Reconnecting to {} in {} ms (attempt {})", server, delay, failedAttempts);
+        try {
+            reconnector.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.info("Communicator closed, not reconnecting");
+        }
     }
 
     /**
-     * Clears all current listeners
+     * Changes the connection state, wakes the writer and notifies the listener
+     * @param newState the new connection state
      */
-    public void clearListeners() {
-        this.handlers.clear();
+    private void setState(ConnectionState newState) {
+        synchronized (connectionLock) {
+            if (state == newState || state == ConnectionState.CLOSED) {
+                return;
+            }
+            state = newState;
+            connectionLock.notifyAll();
+        }
+        logger.info("Connection state: {}", newState);
+        var listener = connectionStateListener;
+        if (listener != null) {
+            listener.connectionStateChanged(newState);
+        }
+    }
+
+    /**
+     * Waits until there is a connection to write to
+     * @return false if the communicator was closed instead
+     * @throws InterruptedException if the writer is interrupted while waiting
+     */
+    private boolean awaitConnection() throws InterruptedException {
+        synchronized (connectionLock) {
+            while (state != ConnectionState.CONNECTED) {
+                if (state == ConnectionState.CLOSED) {
+                    return false;
+                }
+                connectionLock.wait();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Waits until the connection a batch was cut short on has been replaced or given up on
+     * @param socket the socket that closed
+     * @throws InterruptedException if the writer is interrupted while waiting
+     */
+    private void awaitReplacement(WebSocket socket) throws InterruptedException {
+        synchronized (connectionLock) {
+            while (ws == socket && state != ConnectionState.CLOSED) {
+                connectionLock.wait(BATCH_WINDOW_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Writes queued messages to the server in batches until the thread is interrupted or the communicator is closed
+     */
+    private void writeLoop() {
+        var batch = new ArrayList<String>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                //Waits for a message, then gives the rest of the same tick a moment to be queued behind it
+                //A batch cut short by a lost connection is kept, and written first once there is a connection again
+                if (batch.isEmpty()) {
+                    batch.add(outbound.take());
+                    TimeUnit.MILLISECONDS.sleep(BATCH_WINDOW_MILLIS);
+                }
+
+                //Holds the batch while there is no connection, then adds everything queued in the meantime
+                if (!this.awaitConnection()) {
+                    return;
+                }
+                outbound.drainTo(batch);
+                batch.removeIf(WAKE_UP::equals);
+
+                //Puts the session back first if the connection was lost
+                if (resumeNeeded) {
+                    resumeNeeded = false;
+                    batch.addAll(0, this.resumeMessages());
+                }
+
+                var socket = ws;
+                var written = this.writeBatch(socket, batch);
+                batch.subList(0, written).clear();
+                if (!batch.isEmpty()) {
+                    this.awaitReplacement(socket);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Builds the messages that put the player's session back after a reconnect
+     * @return the messages, in the order they should be written
+     */
+    private List<String> resumeMessages() {
+        var messages = new ArrayList<String>();
+        for (var command : RESUMED_COMMANDS) {
+            var message = latestMessages.get(command);
+            if (command.equals("BOARD") && latestBoardLength > 0) {
+                //Deltas sent since the last full board are folded into one full board
+                var board = new StringBuilder("BOARD");
+                BoardCodec.writeBoard(board, latestBoard, latestBoardLength);
+                messages.add(board.toString());
+            } else if (message != null) {
+                messages.add(message);
+            }
+        }
+
+        //The answers to any unanswered PIECE requests were lost with the connection, so they are asked for again
+        var pieces = unansweredPieces.getAndSet(0);
+        for (int i = 0; i < pieces; i++) {
+            messages.add("PIECE");
+        }
+        logger.info("Resuming session with {} messages", messages.size());
+        return messages;
+    }
+
+    /**
+     * Writes one batch of messages to the server and flushes it, leaving out superseded updates
+     * If the socket closes part way through, the rest of the batch is left unwritten rather than lost on the dead socket
+     * @param socket the socket to write to
+     * @param batch the messages, in the order they were sent
+     * @return the number of messages written or dropped from the front of the batch
+     */
+    private int writeBatch(WebSocket socket, List<String> batch) {
+        var now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            var message = batch.get(i);
+            if (!socket.isOpen()) {
+                logger.info("Connection closed, holding {} messages until it is back", batch.size() - i);
+                if (i > 0) {
+                    batchesSent.incrementAndGet();
+                }
+                return i;
+            }
+            if (this.isSuperseded(batch, i)) {
+                logger.info("Dropping superseded message: {}", message);
+                messagesDropped.incrementAndGet();
+                continue;
+            }
+            logger.info("Sending message: {}", message);
+            socket.sendText(message);
+            messagesSent.incrementAndGet();
+            metrics.messageSent(commandOf(message), message, now);
+            this.remember(message);
+        }
+        socket.flush();
+        batchesSent.incrementAndGet();
+        return batch.size();
+    }
+
+    /**
+     * Remembers what a written message means for the session, so it can be resumed after a reconnect
+     * @param message the message that was written
+     */
+    private void remember(String message) {
+        var command = commandOf(message);
+        if (command.equals("PIECE")) {
+            unansweredPieces.incrementAndGet();
+        } else if (command.equals("PART") || command.equals("DIE")) {
+            //Leaving the channel ends the game, so there is nothing left to resume
+            latestMessages.remove("JOIN");
+            latestBoardLength = 0;
+            latestMessages.remove("SCORE");
+            latestMessages.remove("LIVES");
+            unansweredPieces.set(0);
+        } else if (command.equals("CREATE")) {
+            //The player is in the channel they created, so it is joined again on resume
+            latestMessages.put("JOIN", "JOIN" + message.substring(command.length()));
+        } else if (command.equals("BOARD") || command.equals("BOARDDELTA")) {
+            try {
+                this.rememberBoard(command, message);
+            } catch (IllegalArgumentException e) {
+                //The server reports the malformed board back, so it is only logged here
+                logger.error("Not resuming malformed board: " + e.getMessage());
+            }
+        } else if (RESUMED_COMMANDS.contains(command)) {
+            latestMessages.put(command, message);
+        }
+    }
+
+    /**
+     * Updates the latest board with a BOARD or BOARDDELTA message that was written
+     * @param command the command
+     * @param message the message
+     */
+    private void rememberBoard(String command, String message) {
+        if (command.equals("BOARD")) {
+            latestBoardLength = BoardCodec.readBoard(message, command.length(), latestBoard);
+            return;
+        }
+        var pairs = BoardCodec.readDelta(message, command.length(), deltaPairs);
+        for (int i = 0; i < pairs; i++) {
+            var index = deltaPairs[i * 2];
+            if (index < latestBoard.length) {
+                latestBoard[index] = deltaPairs[i * 2 + 1];
+                latestBoardLength = Math.max(latestBoardLength, index + 1);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a message is replaced by a later message with the same command in the same batch
+     * @param batch the batch
+     * @param index index of the message in the batch
+     * @return true if the message doesn't need sending
+     */
+    private boolean isSuperseded(List<String> batch, int index) {
+        var command = commandOf(batch.get(index));
+        if (!SUPERSEDED_COMMANDS.contains(command)) {
+            return false;
+        }
+        for (int later = index + 1; later < batch.size(); later++) {
+            if (command.equals(commandOf(batch.get(later)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the command a message starts with
+     * @param message the message
+     * @return the command
+     */
+    private static String commandOf(String message) {
+        var space = message.indexOf(' ');
+        return space == -1 ? message : message.substring(0, space);
     }
 
     /** Receives a message from the server
-     * Relays to any attached listeners
+     * Relays to any attached listeners, then parses it and dispatches it to the listeners subscribed to its type
      * @param websocket the socket
      * @param message the message that was received
      */
     private void receive(WebSocket websocket, String message) {
-        logger.info("Received: " + message);
+        logger.info("Received: {}", message);
+        var received = System.nanoTime();
+        var command = commandOf(message);
+        metrics.messageReceived(command, message, received);
+
+        //Counts off the PIECE requests as they are answered
+        if (command.equals("PIECE")) {
+            unansweredPieces.getAndUpdate((pieces) -> Math.max(0, pieces - 1));
+        }
+
+        for (var handler : handlers) {
+            handler.deliver(message);
+        }
+
+        //Listeners on the network thread are called now, and the rest are handed to the dispatcher together
+        var parsed = Message.parse(message);
+        var listeners = subscribers.get(parsed.getClass());
+        var dispatched = false;
+        if (listeners != null) {
+            for (var subscription : listeners) {
+                if (subscription.delivery == Delivery.NETWORK_THREAD) {
+                    subscription.deliver(parsed);
+                } else {
+                    dispatched = true;
+                }
+            }
+        }
+        var handlerNanos = System.nanoTime() - received;
+
+        //Only messages somebody has subscribed to through the dispatcher are handed to it
+        if (!dispatched) {
+            metrics.messageHandled(command, handlerNanos);
+            return;
+        }
+        dispatcher.execute(() -> this.dispatch(listeners, parsed, command, received, handlerNanos));
+    }
+
+    /**
+     * Calls each listener subscribed to a message through the dispatcher,
+     * timing how long the message waited for the dispatcher and how long the listeners took
+     * @param listeners the subscribed listeners
+     * @param message the message
+     * @param command the message's command
+     * @param received when the message was received, from System.nanoTime
+     * @param handlerNanos the time already spent handling the message on the network thread
+     */
+    private void dispatch(List<MessageSubscription> listeners, Message message, String command, long received, long handlerNanos) {
+        var start = System.nanoTime();
+        metrics.messageDispatched(start - received);
+        for (var subscription : listeners) {
+            if (subscription.delivery == Delivery.DISPATCHER) {
+                subscription.deliver(message);
+            }
+        }
+        metrics.messageHandled(command, handlerNanos + System.nanoTime() - start);
+    }
+
+    /**
+     * A listener subscribed to one type of parsed message
+     */
+    private final class MessageSubscription implements Subscription {
+
+        /**
+         * The type of message
+         */
+        private final Class<? extends Message> type;
+
+        /**
+         * The thread the listener is called on
+         */
+        private final Delivery delivery;
+
+        /**
+         * The listener
+         */
+        private final MessageListener<? extends Message> listener;
+
+        /**
+         * Whether the listener still receives messages
+         */
+        private volatile boolean active = true;
+
+        /**
+         * Creates a new subscription
+         * @param type the type of message
+         * @param delivery the thread the listener is called on
+         * @param listener the listener
+         */
+        private MessageSubscription(Class<? extends Message> type, Delivery delivery, MessageListener<? extends Message> listener) {
+            this.type = type;
+            this.delivery = delivery;
+            this.listener = listener;
+        }
+
+        /**
+         * Calls the listener with a message, unless it has been cancelled
+         * A listener that throws is logged, so the listeners after it still get the message
+         * @param message the message, which is of the subscribed type
+         */
+        @SuppressWarnings("unchecked")
+        private void deliver(Message message) {
+            if (!active) {
+                return;
+            }
+            try {
+                ((MessageListener<Message>) listener).receiveMessage(message);
+            } catch (RuntimeException e) {
+                logger.error("Listener for {} failed: {}", type.getSimpleName(), e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            active = false;
+            var listeners = subscribers.get(type);
+            if (listeners != null) {
+                listeners.remove(this);
+            }
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+    /**
+     * A listener attached to every unparsed message
+     */
+    private final class HandlerSubscription implements Subscription {
+
+        /**
+         * The listener
+         */
+        private final CommunicationsListener listener;
+
+        /**
+         * Whether the listener still receives messages
+         */
+        private volatile boolean active = true;
+
+        /**
+         * Creates a new subscription
+         * @param listener the listener
+         */
+        private HandlerSubscription(CommunicationsListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Calls the listener with a message, unless it has been cancelled
+         * @param message the message
+         */
+        private void deliver(String message) {
+            if (!active) {
+                return;
+            }
+            try {
+                listener.receiveCommunication(message);
+            } catch (RuntimeException e) {
+                logger.error("Communications listener failed: {}", e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            active = false;
+            handlers.remove(this);
+        }
 
-        for(CommunicationsListener handler : handlers) {
-            handler.receiveCommunication(message);
+        @Override
+        public boolean isActive() {
+            return active;
         }
     }
 
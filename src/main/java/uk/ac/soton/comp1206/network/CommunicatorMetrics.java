@@ -0,0 +1,275 @@
+package uk.ac.soton.comp1206.network;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Communicator Metrics count every message a Communicator sends and receives, by command, in messages and bytes.
+ * Requests the server answers with the same command, PIECE and HISCORES, are paired with their answers to time each round trip,
+ * which is the network and the server together.
+ * The time a received message waits for the dispatcher is the JavaFX thread's backlog, and the time spent in the listeners is the game's own.
+ * Together these tell a laggy match caused by the network or server apart from one caused by the game.
+ */
+public class CommunicatorMetrics {
+
+    /**
+     * Requests whose round trip is timed, each answered by a message with the same command, in the order they are asked
+     */
+    public static final List<String> TIMED_REQUESTS = List.of("PIECE", "HISCORES");
+
+    /**
+     * When the metrics started counting
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The counters for each command seen
+     */
+    private final Map<String, CommandCounters> commands = new ConcurrentHashMap<>();
+
+    /**
+     * When each unanswered timed request was written, oldest first, for each timed request
+     */
+    private final Map<String, Queue<Long>> unansweredRequests = new ConcurrentHashMap<>();
+
+    /**
+     * The round trips of each timed request
+     */
+    private final Map<String, LatencyHistogram> roundTrips = new ConcurrentHashMap<>();
+
+    /**
+     * How long received messages waited for the dispatcher to run their listeners
+     */
+    private final LatencyHistogram dispatchDelay = new LatencyHistogram();
+
+    /**
+     * How long the listeners took to handle each received message
+     */
+    private final LatencyHistogram handlerTime = new LatencyHistogram();
+
+    /**
+     * The total number of messages received
+     */
+    private final LongAdder messagesReceived = new LongAdder();
+
+    /**
+     * Creates new metrics with nothing counted
+     */
+    public CommunicatorMetrics() {
+        for (var request : TIMED_REQUESTS) {
+            unansweredRequests.put(request, new ConcurrentLinkedQueue<>());
+            roundTrips.put(request, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Counts a message written to the server, starting the clock on it if it is a timed request
+     * @param command the message's command
+     * @param message the message
+     * @param now when it was written, from System.nanoTime
+     */
+    void messageSent(String command, String message, long now) {
+        var counters = this.countersFor(command);
+        counters.sent.increment();
+        counters.sentBytes.add(utf8Length(message));
+        var unanswered = unansweredRequests.get(command);
+        if (unanswered != null) {
+            unanswered.add(now);
+        }
+    }
+
+    /**
+     * Counts a message received from the server, stopping the clock on the oldest request it answers
+     * @param command the message's command
+     * @param message the message
+     * @param now when it was received, from System.nanoTime
+     */
+    void messageReceived(String command, String message, long now) {
+        var counters = this.countersFor(command);
+        counters.received.increment();
+        counters.receivedBytes.add(utf8Length(message));
+        messagesReceived.increment();
+        var unanswered = unansweredRequests.get(command);
+        if (unanswered != null) {
+            var sent = unanswered.poll();
+            if (sent != null) {
+                roundTrips.get(command).recordNanos(now - sent);
+            }
+        }
+    }
+
+    /**
+     * Records how long a received message waited for the dispatcher
+     * @param nanos the wait in nanoseconds
+     */
+    void messageDispatched(long nanos) {
+        dispatchDelay.recordNanos(nanos);
+    }
+
+    /**
+     * Records how long the listeners took to handle a received message
+     * @param command the message's command
+     * @param nanos the time taken in nanoseconds
+     */
+    void messageHandled(String command, long nanos) {
+        this.countersFor(command).handlerNanos.add(nanos);
+        handlerTime.recordNanos(nanos);
+    }
+
+    /**
+     * Forgets the unanswered requests when the connection is lost, as their answers were lost with it
+     */
+    void connectionLost() {
+        for (var unanswered : unansweredRequests.values()) {
+            unanswered.clear();
+        }
+    }
+
+    /**
+     * Gets the total number of messages received
+     * @return number of messages
+     */
+    public long getMessagesReceived() {
+        return messagesReceived.sum();
+    }
+
+    /**
+     * Gets the round trips of a timed request
+     * @param request the request's command, one of TIMED_REQUESTS
+     * @return the round trips, or null if the request isn't timed
+     */
+    public LatencyHistogram getRoundTrips(String request) {
+        return roundTrips.get(request);
+    }
+
+    /**
+     * Gets how long received messages waited for the dispatcher to run their listeners
+     * @return the waits
+     */
+    public LatencyHistogram getDispatchDelay() {
+        return dispatchDelay;
+    }
+
+    /**
+     * Gets how long the listeners took to handle each received message
+     * @return the times taken
+     */
+    public LatencyHistogram getHandlerTime() {
+        return handlerTime;
+    }
+
+    /**
+     * Gets how long the metrics have been counting
+     * @return the time in seconds
+     */
+    public double getUptimeSeconds() {
+        return (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Describes the metrics as a table of every command followed by the latency distributions
+     * @return the description
+     */
+    public String report() {
+        var report = new StringBuilder();
+        report.append(String.format("%-12s %9s %11s %9s %11s %13s%n", "command", "sent", "sent bytes", "received", "recv bytes", "handler (us)"));
+        for (var entry : new TreeMap<>(commands).entrySet()) {
+            var counters = entry.getValue();
+            var received = counters.received.sum();
+            report.append(String.format("%-12s %9d %11d %9d %11d %13.1f%n", entry.getKey(), counters.sent.sum(), counters.sentBytes.sum(),
+                    received, counters.receivedBytes.sum(), received == 0 ? 0 : counters.handlerNanos.sum() / 1000.0 / received));
+        }
+
+        report.append(String.format("%n%-16s %8s %8s %8s %8s %8s%n", "latency (us)", "count", "p50", "p90", "p99", "max"));
+        for (var request : TIMED_REQUESTS) {
+            appendLatency(report, request + " rtt", roundTrips.get(request));
+        }
+        appendLatency(report, "dispatch delay", dispatchDelay);
+        appendLatency(report, "handler time", handlerTime);
+        return report.toString();
+    }
+
+    /**
+     * Gets the counters for a command, creating them the first time the command is seen
+     * @param command the command
+     * @return the counters
+     */
+    private CommandCounters countersFor(String command) {
+        var counters = commands.get(command);
+        if (counters == null) {
+            counters = commands.computeIfAbsent(command, (key) -> new CommandCounters());
+        }
+        return counters;
+    }
+
+    /**
+     * Adds one row of a latency distribution to a report
+     * @param report the report
+     * @param name the name of the row
+     * @param histogram the distribution
+     */
+    private static void appendLatency(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(String.format("%-16s %8d %8d %8d %8d %8d%n", name, histogram.getCount(), histogram.getPercentile(50),
+                histogram.getPercentile(90), histogram.getPercentile(99), histogram.getMax()));
+    }
+
+    /**
+     * Works out how many bytes a message takes in UTF-8, without encoding it
+     * @param message the message
+     * @return number of bytes
+     */
+    private static int utf8Length(String message) {
+        var bytes = 0;
+        for (int i = 0; i < message.length(); i++) {
+            var c = message.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * The counters kept for one command
+     */
+    private static class CommandCounters {
+
+        /**
+         * The number of messages written with the command
+         */
+        private final LongAdder sent = new LongAdder();
+
+        /**
+         * The bytes written in messages with the command
+         */
+        private final LongAdder sentBytes = new LongAdder();
+
+        /**
+         * The number of messages received with the command
+         */
+        private final LongAdder received = new LongAdder();
+
+        /**
+         * The bytes received in messages with the command
+         */
+        private final LongAdder receivedBytes = new LongAdder();
+
+        /**
+         * The total time the listeners took to handle messages with the command, in nanoseconds
+         */
+        private final LongAdder handlerNanos = new LongAdder();
+    }
+}
@@ -0,0 +1,32 @@
+package uk.ac.soton.comp1206.network;
+
+/**
+ * The states of a Communicator's connection to the server.
+ */
+public enum ConnectionState {
+
+    /**
+     * Not connected yet, because nothing has needed the server: the first message sent, or a call to start, starts connecting
+     */
+    IDLE,
+
+    /**
+     * Connecting to the server for the first time
+     */
+    CONNECTING,
+
+    /**
+     * Connected to the server, so messages are being written
+     */
+    CONNECTED,
+
+    /**
+     * The connection was lost or couldn't be made, and another attempt is waiting to be made
+     */
+    RECONNECTING,
+
+    /**
+     * The communicator was closed and won't connect again
+     */
+    CLOSED
+}
@@ -0,0 +1,18 @@
+package uk.ac.soton.comp1206.network;
+
+/**
+ * The thread a listener subscribed to a Communicator is called on.
+ */
+public enum Delivery {
+
+    /**
+     * Called straight away on the thread that received the message, for work such as parsing and sorting that shouldn't wait for,
+     * or hold up, the JavaFX thread. The listener must be thread safe
+     */
+    NETWORK_THREAD,
+
+    /**
+     * Called through the communicator's dispatcher, which is the JavaFX thread in the game, for work that touches the UI
+     */
+    DISPATCHER
+}
@@ -0,0 +1,134 @@
+package uk.ac.soton.comp1206.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Latency Histogram counts durations in microseconds into buckets of fixed memory, so it can record for as long as the game runs.
+ * Values below 8 have a bucket each, and every power of two above that is split into 8 buckets, so a percentile is within an eighth of the truth.
+ * Recording is lock free, so any thread can record while another reads.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of buckets each power of two is split into
+     */
+    private static final int SUB_BUCKETS = 8;
+
+    /**
+     * The number of bits needed to pick a bucket within a power of two
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * Enough buckets for any non-negative long
+     */
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    /**
+     * The number of values recorded in each bucket
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * The number of values recorded
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The sum of the values recorded
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * The largest value recorded
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration
+     * @param nanos the duration in nanoseconds, which is recorded in microseconds
+     */
+    public void recordNanos(long nanos) {
+        var micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        count.increment();
+        sum.add(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Gets the number of values recorded
+     * @return number of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the mean of the values recorded
+     * @return the mean in microseconds, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+        var values = count.sum();
+        return values == 0 ? 0 : sum.sum() / (double) values;
+    }
+
+    /**
+     * Gets the largest value recorded
+     * @return the largest value in microseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets a percentile of the values recorded
+     * @param percentile the percentile, from 0 to 100
+     * @return the largest value in the bucket holding the percentile in microseconds, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        var values = count.sum();
+        if (values == 0) {
+            return 0;
+        }
+        var rank = Math.max(1, (long) Math.ceil(values * percentile / 100));
+        var seen = 0L;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(lowestValueOf(bucket + 1) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Finds the bucket a value is counted in
+     * @param value the value
+     * @return index of the bucket
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        var power = 63 - Long.numberOfLeadingZeros(value);
+        var subBucket = (int) (value >> (power - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (power - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Finds the smallest value counted in a bucket
+     * @param bucket index of the bucket
+     * @return the smallest value
+     */
+    private static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        var power = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        var subBucket = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (power - SUB_BUCKET_BITS);
+    }
+}
@@ -0,0 +1,181 @@
+package uk.ac.soton.comp1206.network;
+
+/**
+ * A Message is a message received from the server, parsed once by the Communicator into a typed record.
+ * There is one record for every command the game handles, and any other command is kept as an Other message.
+ * Listeners subscribe to the record type of the command they handle, so they never see messages meant for someone else.
+ */
+public sealed interface Message {
+
+    /**
+     * The channels currently open on the server
+     * @param channels the channel names, one per line, which may be empty
+     */
+    record Channels(String channels) implements Message {}
+
+    /**
+     * Confirmation of having joined a channel
+     * @param channel the channel joined
+     */
+    record Join(String channel) implements Message {}
+
+    /**
+     * A player's name, either the player's own name or "old:new" when a player changes their name
+     * @param nick the name
+     */
+    record Nick(String nick) implements Message {}
+
+    /**
+     * The names of the players in the current channel
+     * @param users the player names, one per line
+     */
+    record Users(String users) implements Message {}
+
+    /**
+     * A chat message sent to the current channel
+     * @param player the name of the player who sent it
+     * @param text the message itself
+     */
+    record Msg(String player, String text) implements Message {}
+
+    /**
+     * Confirmation of having left a channel
+     */
+    record Parted() implements Message {}
+
+    /**
+     * Confirmation of being the host of the current channel
+     */
+    record Host() implements Message {}
+
+    /**
+     * Confirmation of the game starting
+     */
+    record Start() implements Message {}
+
+    /**
+     * An error reported by the server
+     * @param reason what went wrong
+     */
+    record Error(String reason) implements Message {}
+
+    /**
+     * A game piece value dealt by the server
+     * @param value the game piece value
+     */
+    record Piece(int value) implements Message {}
+
+    /**
+     * Every player in the game with their score and number of lives
+     * @param entries the entries, one "name:score:lives" per line
+     */
+    record Scores(String entries) implements Message {}
+
+    /**
+     * A player's game board
+     * @param board the player name and their board values, as "name:v v v ..."
+     */
+    record Board(String board) implements Message {}
+
+    /**
+     * The blocks of a player's game board that changed since their last board
+     * @param delta the player name and the changed blocks, as "name:index=value index=value ..."
+     */
+    record BoardDelta(String delta) implements Message {}
+
+    /**
+     * The optional features the server agreed to use, in answer to a FEATURES request
+     * @param features the feature names, separated by spaces
+     */
+    record Features(String features) implements Message {
+
+        /**
+         * Checks whether the server agreed to use a feature
+         * @param feature the feature name
+         * @return true if the feature is in the list
+         */
+        public boolean supports(String feature) {
+            for (var name : features.split(" ")) {
+                if (name.equals(feature)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The online high scores
+     * @param scores the scores, one "name:score" per line
+     */
+    record HiScores(String scores) implements Message {}
+
+    /**
+     * Confirmation of a high score being submitted
+     * @param score the score that was submitted
+     */
+    record NewScore(String score) implements Message {}
+
+    /**
+     * A message with a command the game doesn't handle, or which couldn't be parsed
+     * @param command the command
+     * @param body everything after the command, which may be empty
+     */
+    record Other(String command, String body) implements Message {}
+
+    /**
+     * Parses a message received from the server into its record
+     * @param message the message as received
+     * @return the parsed message
+     */
+    static Message parse(String message) {
+        var space = message.indexOf(' ');
+        var command = space == -1 ? message : message.substring(0, space);
+        var body = space == -1 ? "" : message.substring(space + 1);
+        return switch (command) {
+            case "CHANNELS" -> new Channels(body);
+            case "JOIN" -> new Join(body);
+            case "NICK" -> new Nick(body);
+            case "USERS" -> new Users(body);
+            case "MSG" -> parseMsg(body);
+            case "PARTED" -> new Parted();
+            case "HOST" -> new Host();
+            case "START" -> new Start();
+            case "ERROR" -> new Error(body);
+            case "PIECE" -> parsePiece(body);
+            case "SCORES" -> new Scores(body);
+            case "BOARD" -> new Board(body);
+            case "BOARDDELTA" -> new BoardDelta(body);
+            case "FEATURES" -> new Features(body);
+            case "HISCORES" -> new HiScores(body);
+            case "NEWSCORE" -> new NewScore(body);
+            default -> new Other(command, body);
+        };
+    }
+
+    /**
+     * Parses the body of a MSG message, splitting the player name from the text at the first colon
+     * @param body the body
+     * @return the parsed message
+     */
+    private static Message parseMsg(String body) {
+        var colon = body.indexOf(':');
+        if (colon == -1) {
+            return new Msg(body, " ");
+        }
+        return new Msg(body.substring(0, colon), body.substring(colon + 1));
+    }
+
+    /**
+     * Parses the body of a PIECE message
+     * @param body the body
+     * @return the parsed message, or an Other message if the value isn't a number
+     */
+    private static Message parsePiece(String body) {
+        try {
+            return new Piece(Integer.parseInt(body.trim()));
+        } catch (NumberFormatException e) {
+            return new Other("PIECE", body);
+        }
+    }
+}
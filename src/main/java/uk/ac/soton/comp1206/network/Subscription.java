@@ -0,0 +1,19 @@
+package uk.ac.soton.comp1206.network;
+
+/**
+ * A Subscription is the handle returned when a listener is added to a Communicator, and removes that listener again.
+ * Once cancelled, the listener is never called again, even for a message that was already waiting for the dispatcher.
+ */
+public interface Subscription {
+
+    /**
+     * Removes the listener, so it receives no more messages
+     */
+    void cancel();
+
+    /**
+     * Checks whether the listener still receives messages
+     * @return true if it hasn't been cancelled
+     */
+    boolean isActive();
+}
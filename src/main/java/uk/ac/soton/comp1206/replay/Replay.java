@@ -0,0 +1,368 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static uk.ac.soton.comp1206.replay.ReplayRecorder.*;
+
+/**
+ * A Replay is a recorded game decoded for playback.
+ * The game pieces dealt are kept apart from the player's moves, as they are dealt whenever the game asks for one,
+ * and the moves are kept in parallel arrays in the order they were made, each with the time it was made at.
+ */
+public class Replay {
+
+    /**
+     * A move rotating the current game piece
+     */
+    public static final int ROTATE = ReplayRecorder.ROTATE;
+
+    /**
+     * A move swapping the current and following game pieces
+     */
+    public static final int SWAP = ReplayRecorder.SWAP;
+
+    /**
+     * A move placing the current game piece
+     */
+    public static final int PLACE = ReplayRecorder.PLACE;
+
+    /**
+     * The timer running out
+     */
+    public static final int EXPIRE = ReplayRecorder.EXPIRE;
+
+    /**
+     * Number of columns in the game's grid
+     */
+    private final int cols;
+
+    /**
+     * Number of rows in the game's grid
+     */
+    private final int rows;
+
+    /**
+     * The seed the game pieces were dealt from, or 0 if they were dealt by the server
+     */
+    private final long seed;
+
+    /**
+     * The piece number of every game piece dealt, in order
+     */
+    private int[] pieces = new int[64];
+
+    /**
+     * The number of game pieces dealt
+     */
+    private int pieceCount;
+
+    /**
+     * The type of each move
+     */
+    private byte[] types = new byte[64];
+
+    /**
+     * When each move was made, in milliseconds since the game started
+     */
+    private long[] times = new long[64];
+
+    /**
+     * The number of rotations of each rotate move, or the column of each place move
+     */
+    private int[] xs = new int[64];
+
+    /**
+     * The row of each place move
+     */
+    private int[] ys = new int[64];
+
+    /**
+     * The number of moves
+     */
+    private int moveCount;
+
+    /**
+     * How long the game lasted in milliseconds
+     */
+    private long duration;
+
+    /**
+     * Decodes a replay from the recorded events, without their header
+     * @param events the recorded events, from their position to their limit
+     */
+    private Replay(ByteBuffer events) {
+        this.cols = (int) readVarLong(events);
+        this.rows = (int) readVarLong(events);
+        var zigZagged = readVarLong(events);
+        this.seed = (zigZagged >>> 1) ^ -(zigZagged & 1);
+
+        var time = 0L;
+        while (events.hasRemaining()) {
+            var event = readVarLong(events);
+            time += event >>> TYPE_BITS;
+            var type = (int) (event & ((1 << TYPE_BITS) - 1));
+            switch (type) {
+                case ReplayRecorder.PIECE -> this.addPiece((int) readVarLong(events));
+                case ReplayRecorder.ROTATE -> this.addMove(type, time, (int) readVarLong(events), 0);
+                case ReplayRecorder.SWAP, ReplayRecorder.EXPIRE -> this.addMove(type, time, 0, 0);
+                case ReplayRecorder.PLACE -> this.addMove(type, time, readZigZag(events), readZigZag(events));
+                case END -> events.position(events.limit());
+                default -> throw new IllegalArgumentException("Unknown replay event: " + type);
+            }
+            duration = time;
+        }
+    }
+
+    /**
+     * Decodes a replay
+     * @param replay the replay, as written by ReplayRecorder.toBytes
+     * @return the decoded replay
+     * @throws IllegalArgumentException if it isn't a replay or is damaged
+     */
+    public static Replay read(byte[] replay) {
+        return read(ByteBuffer.wrap(replay));
+    }
+
+    /**
+     * Decodes a replay straight from a buffer, such as a slice of a memory mapped file, without copying it first
+     * The buffer's position and limit are left as they were
+     * @param replay the replay, as written by ReplayRecorder.toBytes, from the buffer's position to its limit
+     * @return the decoded replay
+     * @throws IllegalArgumentException if it isn't a replay or is damaged
+     */
+    public static Replay read(ByteBuffer replay) {
+        var start = replay.position();
+        var length = replay.remaining();
+        if (length < 6 || replay.getInt(start) != MAGIC) {
+            throw new IllegalArgumentException("Not a replay");
+        }
+        if (replay.get(start + 4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported replay version: " + replay.get(start + 4));
+        }
+        if ((replay.get(start + 5) & COMPRESSED) == 0) {
+            return new Replay(replay.slice(start + 6, length - 6));
+        }
+
+        var inflater = new Inflater();
+        inflater.setInput(replay.slice(start + 6, length - 6));
+        var events = new byte[Math.max(256, length * 4)];
+        var inflatedLength = 0;
+        try {
+            while (!inflater.finished()) {
+                if (inflatedLength == events.length) {
+                    events = Arrays.copyOf(events, events.length * 2);
+                }
+                var inflated = inflater.inflate(events, inflatedLength, events.length - inflatedLength);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Replay is truncated");
+                }
+                inflatedLength += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Replay is damaged", e);
+        } finally {
+            inflater.end();
+        }
+        return new Replay(ByteBuffer.wrap(events, 0, inflatedLength));
+    }
+
+    /**
+     * Reads and decodes a replay from a file
+     * @param file the file
+     * @return the decoded replay
+     * @throws IOException if the file couldn't be read
+     */
+    public static Replay read(Path file) throws IOException {
+        return read(Files.readAllBytes(file));
+    }
+
+    /**
+     * Gets the number of columns in the game's grid
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Gets the number of rows in the game's grid
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the seed the game pieces were dealt from
+     * @return the seed, or 0 if they were dealt by the server
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of game pieces dealt
+     * @return number of game pieces
+     */
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    /**
+     * Gets the piece number of a game piece dealt
+     * @param index the game piece's position in the order they were dealt
+     * @return the piece number
+     */
+    public int getPiece(int index) {
+        return pieces[index];
+    }
+
+    /**
+     * Gets the number of moves
+     * @return number of moves
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Gets the type of a move: ROTATE, SWAP, PLACE or EXPIRE
+     * @param move the move's index
+     * @return the type
+     */
+    public int getType(int move) {
+        return types[move];
+    }
+
+    /**
+     * Gets when a move was made
+     * @param move the move's index
+     * @return milliseconds since the game started
+     */
+    public long getTime(int move) {
+        return times[move];
+    }
+
+    /**
+     * Gets the number of rotations of a rotate move, or the column of a place move
+     * @param move the move's index
+     * @return rotations or column
+     */
+    public int getX(int move) {
+        return xs[move];
+    }
+
+    /**
+     * Gets the row of a place move
+     * @param move the move's index
+     * @return row
+     */
+    public int getY(int move) {
+        return ys[move];
+    }
+
+    /**
+     * Gets how long the game lasted
+     * @return the duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Creates a generator which deals the recorded game pieces, then carries on with a uniform generator
+     * This lets the simulator play the same pieces a player was dealt
+     * @param seed the seed the uniform generator is created with
+     * @return the generator
+     */
+    public PieceGenerator toPieceGenerator(long seed) {
+        var fallback = PieceGenerator.uniform(seed);
+        return new PieceGenerator() {
+            private int dealt;
+
+            @Override
+            public int next() {
+                return dealt < pieceCount ? pieces[dealt++] : fallback.next();
+            }
+
+            @Override
+            public long getSeed() {
+                return seed;
+            }
+        };
+    }
+
+    /**
+     * Adds a game piece dealt
+     * @param piece the piece number
+     */
+    private void addPiece(int piece) {
+        if (piece < 0 || piece >= GamePiece.PIECES) {
+            throw new IllegalArgumentException("No such piece: " + piece);
+        }
+        if (pieceCount == pieces.length) {
+            pieces = Arrays.copyOf(pieces, pieceCount * 2);
+        }
+        pieces[pieceCount++] = piece;
+    }
+
+    /**
+     * Adds a move
+     * @param type the move's type
+     * @param time when it was made, in milliseconds since the game started
+     * @param x the number of rotations or column
+     * @param y the row
+     */
+    private void addMove(int type, long time, int x, int y) {
+        if (moveCount == types.length) {
+            types = Arrays.copyOf(types, moveCount * 2);
+            times = Arrays.copyOf(times, moveCount * 2);
+            xs = Arrays.copyOf(xs, moveCount * 2);
+            ys = Arrays.copyOf(ys, moveCount * 2);
+        }
+        types[moveCount] = (byte) type;
+        times[moveCount] = time;
+        xs[moveCount] = x;
+        ys[moveCount] = y;
+        moveCount++;
+    }
+
+    /**
+     * Reads a number written 7 bits at a time
+     * @param events the recorded events
+     * @return the number
+     */
+    private static long readVarLong(ByteBuffer events) {
+        var value = 0L;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            if (!events.hasRemaining()) {
+                throw new IllegalArgumentException("Replay is truncated");
+            }
+            var b = events.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Replay is damaged");
+    }
+
+    /**
+     * Reads a signed number written as a zigzag varint
+     * @param events the recorded events
+     * @return the number
+     */
+    private static int readZigZag(ByteBuffer events) {
+        var value = readVarLong(events);
+        return (int) ((value >>> 1) ^ -(value & 1));
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameClock;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.GameSnapshot;
+import uk.ac.soton.comp1206.game.GameSound;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+/**
+ * A Replay Game plays a recorded game back, one move at a time.
+ * It is dealt the recorded game pieces in order and its timer never runs out by itself, as the recorded expiries are moves too,
+ * so applying the same moves always reaches the same state.
+ */
+public class ReplayGame extends Game {
+
+    /**
+     * The replay being played back
+     */
+    private final Replay replay;
+
+    /**
+     * The number of recorded game pieces dealt so far
+     */
+    private int dealt;
+
+    /**
+     * Whether sound effects are muted, such as while seeking
+     */
+    private boolean muted;
+
+    /**
+     * Creates a new game which plays a replay back
+     * @param replay the replay
+     */
+    public ReplayGame(Replay replay) {
+        super(replay.getCols(), replay.getRows(), GameClock.manual(), PieceGenerator.uniform(replay.getSeed()));
+        this.replay = replay;
+    }
+
+    /**
+     * Deals the next recorded game piece
+     * @return game piece created
+     */
+    @Override
+    public GamePiece spawnPiece() {
+        //A replay cut short runs out of pieces, so carries on with the first piece rather than failing
+        return GamePiece.createPiece(dealt < replay.getPieceCount() ? replay.getPiece(dealt++) : 0);
+    }
+
+    /**
+     * Applies a recorded move
+     * @param move the move's index
+     */
+    public void apply(int move) {
+        switch (replay.getType(move)) {
+            case Replay.ROTATE -> this.rotateCurrentPiece(replay.getX(move));
+            case Replay.SWAP -> this.swapCurrentPiece();
+            case Replay.PLACE -> this.blockClicked(replay.getX(move), replay.getY(move));
+            case Replay.EXPIRE -> this.gameLoop();
+            default -> throw new IllegalStateException("Unknown move: " + replay.getType(move));
+        }
+    }
+
+    /**
+     * Gets the number of recorded game pieces dealt so far, which a snapshot needs to be restored
+     * @return number of game pieces
+     */
+    public int getDealt() {
+        return dealt;
+    }
+
+    /**
+     * Returns the game to the state in a snapshot
+     * @param snapshot the snapshot
+     * @param dealt the number of recorded game pieces dealt when it was taken
+     */
+    public void restore(GameSnapshot snapshot, int dealt) {
+        this.dealt = dealt;
+        this.restore(snapshot);
+    }
+
+    /**
+     * Mutes or unmutes the sound effects
+     * @param muted whether to mute them
+     */
+    public void setMuted(boolean muted) {
+        this.muted = muted;
+    }
+
+    /**
+     * Plays a sound effect unless muted
+     * @param sound the sound effect to play
+     */
+    @Override
+    protected void playSound(GameSound sound) {
+        if (!muted) {
+            super.playSound(sound);
+        }
+    }
+}
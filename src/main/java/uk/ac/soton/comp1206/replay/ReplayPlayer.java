@@ -0,0 +1,156 @@
+package uk.ac.soton.comp1206.replay;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameSnapshot;
+
+/**
+ * A Replay Player moves a ReplayGame through a replay, either in time or straight to a move.
+ * The whole replay is played once without a user interface when the player is created, taking a snapshot every few moves,
+ * so seeking restores the nearest snapshot and only plays the few moves after it.
+ */
+public class ReplayPlayer {
+
+    private static final Logger logger = LogManager.getLogger(ReplayPlayer.class);
+
+    /**
+     * The number of moves between snapshots
+     */
+    private static final int SNAPSHOT_INTERVAL = 32;
+
+    /**
+     * The replay being played
+     */
+    private final Replay replay;
+
+    /**
+     * The game the replay is played in
+     */
+    private final ReplayGame game;
+
+    /**
+     * The snapshot taken before every SNAPSHOT_INTERVAL moves
+     */
+    private final GameSnapshot[] snapshots;
+
+    /**
+     * The number of recorded game pieces dealt when each snapshot was taken
+     */
+    private final int[] snapshotDealt;
+
+    /**
+     * The number of moves applied to the game
+     */
+    private int position;
+
+    /**
+     * Creates a new player, taking the replay's snapshots
+     * @param replay the replay
+     */
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+        this.game = new ReplayGame(replay);
+
+        var count = replay.getMoveCount() / SNAPSHOT_INTERVAL + 1;
+        snapshots = new GameSnapshot[count];
+        snapshotDealt = new int[count];
+        var headless = new ReplayGame(replay);
+        headless.start();
+        for (int move = 0; move < replay.getMoveCount(); move++) {
+            if (move % SNAPSHOT_INTERVAL == 0) {
+                snapshots[move / SNAPSHOT_INTERVAL] = headless.snapshot();
+                snapshotDealt[move / SNAPSHOT_INTERVAL] = headless.getDealt();
+            }
+            headless.apply(move);
+        }
+        if (replay.getMoveCount() % SNAPSHOT_INTERVAL == 0) {
+            snapshots[count - 1] = headless.snapshot();
+            snapshotDealt[count - 1] = headless.getDealt();
+        }
+        logger.info("Loaded replay of {} moves with {} snapshots", replay.getMoveCount(), count);
+    }
+
+    /**
+     * Gets the game the replay is played in, for the user interface to observe
+     * @return the game
+     */
+    public ReplayGame getGame() {
+        return game;
+    }
+
+    /**
+     * Starts the game at the beginning of the replay
+     */
+    public void start() {
+        game.start();
+        position = 0;
+    }
+
+    /**
+     * Applies every move made up to a time
+     * @param millis the time, in milliseconds since the game started
+     * @return true if the end of the replay has been reached
+     */
+    public boolean advanceTo(long millis) {
+        //Only the last of a burst of moves plays its sound effects
+        while (position < replay.getMoveCount() && replay.getTime(position) <= millis) {
+            var last = position + 1 == replay.getMoveCount() || replay.getTime(position + 1) > millis;
+            game.setMuted(!last);
+            game.apply(position++);
+        }
+        game.setMuted(false);
+        return position == replay.getMoveCount();
+    }
+
+    /**
+     * Jumps to just before a move, restoring the nearest snapshot before it
+     * @param move the move's index, or the number of moves to jump to the end
+     */
+    public void seek(int move) {
+        move = Math.max(0, Math.min(move, replay.getMoveCount()));
+
+        //Plays on from where the game is if the move is ahead of it and no snapshot is nearer
+        if (move < position || move / SNAPSHOT_INTERVAL > position / SNAPSHOT_INTERVAL) {
+            var snapshot = move / SNAPSHOT_INTERVAL;
+            game.restore(snapshots[snapshot], snapshotDealt[snapshot]);
+            position = snapshot * SNAPSHOT_INTERVAL;
+        }
+        game.setMuted(true);
+        while (position < move) {
+            game.apply(position++);
+        }
+        game.setMuted(false);
+    }
+
+    /**
+     * Gets the number of moves applied to the game
+     * @return number of moves
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets the time of the last move applied to the game
+     * @return milliseconds since the game started
+     */
+    public long getTime() {
+        return position == 0 ? 0 : replay.getTime(position - 1);
+    }
+
+    /**
+     * Gets the number of moves in the replay
+     * @return number of moves
+     */
+    public int getMoveCount() {
+        return replay.getMoveCount();
+    }
+
+    /**
+     * Gets how long the replayed game lasted
+     * @return the duration in milliseconds
+     */
+    public long getDuration() {
+        return replay.getDuration();
+    }
+}
@@ -0,0 +1,242 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * A Replay Recorder records everything that happens in one game, so the game can be played back exactly.
+ * Each event is appended to a growing byte array as a few varints, holding the milliseconds since the last event and the event's
+ * type in the first varint, so recording an event costs a clock read and a few bytes and never allocates unless the array fills.
+ * The recorder is only used on the thread the game runs on.
+ */
+public class ReplayRecorder {
+
+    /**
+     * The first bytes of a replay, "TRPL"
+     */
+    static final int MAGIC = 0x5452504C;
+
+    /**
+     * The version of the replay format
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The flag set when the events are compressed with a Deflater
+     */
+    static final int COMPRESSED = 1;
+
+    /**
+     * The number of bits the event type takes in the first varint of an event
+     */
+    static final int TYPE_BITS = 3;
+
+    /**
+     * A game piece was dealt, followed by its piece number
+     */
+    static final int PIECE = 0;
+
+    /**
+     * The current game piece was rotated, followed by the number of rotations
+     */
+    static final int ROTATE = 1;
+
+    /**
+     * The current and following game pieces were swapped
+     */
+    static final int SWAP = 2;
+
+    /**
+     * The current game piece was placed, followed by its column and row
+     */
+    static final int PLACE = 3;
+
+    /**
+     * The timer ran out
+     */
+    static final int EXPIRE = 4;
+
+    /**
+     * The game ended
+     */
+    static final int END = 5;
+
+    /**
+     * The recorded bytes, of which only the first length are used
+     */
+    private byte[] bytes = new byte[256];
+
+    /**
+     * The number of recorded bytes
+     */
+    private int length;
+
+    /**
+     * When the game started, from System.nanoTime, or 0 if it hasn't
+     */
+    private long startNanos;
+
+    /**
+     * When the last event happened, in milliseconds since the game started
+     */
+    private long lastMillis;
+
+    /**
+     * Whether the game has ended
+     */
+    private boolean ended;
+
+    /**
+     * Creates a new recorder for a game
+     * @param cols number of columns in the game's grid
+     * @param rows number of rows in the game's grid
+     * @param seed the seed the game pieces are dealt from, or 0 if they are dealt by the server
+     */
+    public ReplayRecorder(int cols, int rows, long seed) {
+        this.writeVarLong(cols);
+        this.writeVarLong(rows);
+        this.writeVarLong(zigZag(seed));
+    }
+
+    /**
+     * Starts the clock events are timed by, when the game starts
+     */
+    public void start() {
+        if (startNanos == 0) {
+            startNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records a game piece being dealt
+     * @param piece the piece number
+     */
+    public void piece(int piece) {
+        if (this.event(PIECE)) {
+            this.writeVarLong(piece);
+        }
+    }
+
+    /**
+     * Records the current game piece being rotated
+     * @param rotations number of rotations
+     */
+    public void rotate(int rotations) {
+        if (this.event(ROTATE)) {
+            this.writeVarLong(Math.floorMod(rotations, 4));
+        }
+    }
+
+    /**
+     * Records the current and following game pieces being swapped
+     */
+    public void swap() {
+        this.event(SWAP);
+    }
+
+    /**
+     * Records the current game piece being placed
+     * @param x column the centre of the game piece was placed in
+     * @param y row the centre of the game piece was placed in
+     */
+    public void place(int x, int y) {
+        if (this.event(PLACE)) {
+            this.writeVarLong(zigZag(x));
+            this.writeVarLong(zigZag(y));
+        }
+    }
+
+    /**
+     * Records the timer running out
+     */
+    public void expire() {
+        this.event(EXPIRE);
+    }
+
+    /**
+     * Records the game ending, after which nothing else is recorded
+     */
+    public void end() {
+        this.event(END);
+        ended = true;
+    }
+
+    /**
+     * Checks whether the game has ended
+     * @return true if it has ended
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Gets the replay: a header, then the recorded bytes, compressed if asked
+     * @param compress whether to compress the recorded bytes
+     * @return the replay
+     */
+    public byte[] toBytes(boolean compress) {
+        var replay = new ByteArrayOutputStream(length + 8);
+        replay.write(MAGIC >>> 24);
+        replay.write(MAGIC >>> 16);
+        replay.write(MAGIC >>> 8);
+        replay.write(MAGIC);
+        replay.write(VERSION);
+        replay.write(compress ? COMPRESSED : 0);
+        if (!compress) {
+            replay.write(bytes, 0, length);
+            return replay.toByteArray();
+        }
+
+        var deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(bytes, 0, length);
+        deflater.finish();
+        var buffer = new byte[1024];
+        while (!deflater.finished()) {
+            replay.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return replay.toByteArray();
+    }
+
+    /**
+     * Starts an event, writing the time since the last event and the event's type
+     * @param type the event's type
+     * @return true if the event was started, or false if the game has ended
+     */
+    private boolean event(int type) {
+        if (ended) {
+            return false;
+        }
+        this.start();
+        var millis = (System.nanoTime() - startNanos) / 1_000_000;
+        var delta = Math.max(0, millis - lastMillis);
+        lastMillis = millis;
+        this.writeVarLong(delta << TYPE_BITS | type);
+        return true;
+    }
+
+    /**
+     * Writes a non-negative number 7 bits at a time, lowest first, with the top bit of each byte set if more follow
+     * @param value the number
+     */
+    private void writeVarLong(long value) {
+        if (length + 10 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+    }
+
+    /**
+     * Maps a signed number to an unsigned one, so small negative numbers stay short as varints
+     * @param value the signed number
+     * @return the unsigned number
+     */
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
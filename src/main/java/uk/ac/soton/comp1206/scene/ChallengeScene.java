@@ -14,22 +14,19 @@ import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
+import uk.ac.soton.comp1206.component.ObservableGame;
 import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.game.ClearedBlocks;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.game.Grid;
 import uk.ac.soton.comp1206.game.Multimedia;
+import uk.ac.soton.comp1206.replay.ReplayRecorder;
+import uk.ac.soton.comp1206.storage.GameRecord;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.Scanner;
-import java.util.Set;
-
 /**
  * The Single Player challenge scene.
  * Holds the UI for the single player challenge mode in the game.
@@ -39,6 +36,11 @@ public class ChallengeScene extends BaseScene {
     private static final Logger logger = LogManager.getLogger(MenuScene.class);
     protected Game game;
 
+    /**
+     * Adapter exposing the game's state as properties, on the JavaFX thread
+     */
+    protected ObservableGame observableGame;
+
     /**
      * Current aim's x coordinate
      */
@@ -122,9 +124,9 @@ public class ChallengeScene extends BaseScene {
     private Rectangle timerBar;
 
     /**
-     * The time bar's animation
+     * The time bar's animation, which follows the game's clock every frame
      */
-    private Transition timerBarAnimation;
+    private AnimationTimer timerBarAnimation;
 
     /**
      * Creates a new Single Player challenge scene
@@ -145,6 +147,14 @@ public class ChallengeScene extends BaseScene {
         game = new Game(5, 5);
     }
 
+    /**
+     * Gets the seed the game's replay is recorded with
+     * @return the seed the game pieces are dealt from
+     */
+    protected long recordedSeed() {
+        return game.getPieceGenerator().getSeed();
+    }
+
     /**
      * Initialises the scene, starts the game and sets up anything that needs to be done at the start
      */
@@ -166,7 +176,7 @@ public class ChallengeScene extends BaseScene {
         scene.setOnKeyPressed(this::keyboardSupport);
 
         //Ends the game if the player has no more lives
-        game.getLivesProperty().addListener((observable, oldValue, newValue) -> {if (newValue.equals(-1)) this.endGame();});
+        observableGame.getLivesProperty().addListener((observable, oldValue, newValue) -> {if (newValue.equals(-1)) this.endGame();});
     }
 
     /**
@@ -177,6 +187,8 @@ public class ChallengeScene extends BaseScene {
         logger.info("Building " + this.getClass().getName());
 
         this.setupGame();
+        game.setReplayRecorder(new ReplayRecorder(game.getCols(), game.getRows(), this.recordedSeed()));
+        observableGame = new ObservableGame(game);
 
         root = new GamePane(gameWindow.getWidth(),gameWindow.getHeight());
 
@@ -203,7 +215,7 @@ public class ChallengeScene extends BaseScene {
         board.setOnBlockHovered(this::blockHovered);
 
         //Handles a line of game blocks in the game board being cleared
-        game.setLineClearedListener(this::lineCleared);
+        observableGame.setLineClearedListener(this::lineCleared);
 
         //Creates a UI component structure to display the score
         //Bind the UI component that displays the score value itself to a simple integer property in the Game Class
@@ -213,7 +225,7 @@ public class ChallengeScene extends BaseScene {
         scoreHeading.getStyleClass().add("heading");
         scoreText = new Text();
         scoreText.getStyleClass().add("score");
-        scoreText.textProperty().bind(game.getScoreProperty().asString());
+        scoreText.textProperty().bind(observableGame.getScoreProperty().asString());
         score.getChildren().addAll(scoreHeading, scoreText);
 
         //Handles current score exceeding high score
@@ -227,7 +239,7 @@ public class ChallengeScene extends BaseScene {
         livesHeading.getStyleClass().add("heading");
         livesText = new Text();
         livesText.getStyleClass().add("lives");
-        livesText.textProperty().bind(game.getLivesProperty().asString());
+        livesText.textProperty().bind(observableGame.getLivesProperty().asString());
         lives.getChildren().addAll(livesHeading, livesText);
 
         //Creates a BorderPane to display the heading
@@ -248,7 +260,7 @@ public class ChallengeScene extends BaseScene {
         levelHeading.getStyleClass().add("heading");
         levelText = new Text();
         levelText.getStyleClass().add("level");
-        levelText.textProperty().bind(game.getLevelProperty().asString());
+        levelText.textProperty().bind(observableGame.getLevelProperty().asString());
         level.getChildren().addAll(levelHeading, levelText);
 
         //Creates a UI component structure to display the multiplier
@@ -259,7 +271,7 @@ public class ChallengeScene extends BaseScene {
         multiplierHeading.getStyleClass().add("heading");
         multiplierText = new Text();
         multiplierText.getStyleClass().add("multiplier");
-        multiplierText.textProperty().bind(Bindings.concat(game.getMultiplierProperty().asString(), "x"));
+        multiplierText.textProperty().bind(Bindings.concat(observableGame.getMultiplierProperty().asString(), "x"));
         multiplier.getChildren().addAll(multiplierHeading, multiplierText);
 
         //Creates a UI component structure to display the current and following game pieces' piece boards
@@ -289,6 +301,8 @@ public class ChallengeScene extends BaseScene {
         highScoreHeading.getStyleClass().add("heading");
         highScoreText = new Text(this.getHighScore());
         highScoreText.getStyleClass().add("high-score");
+        //Shows the local high score again if it changes, such as when the scores finish loading after this scene is built
+        gameWindow.getScoreStore().setOnScoresChanged((topScores) -> {if (!highScoreText.textProperty().isBound()) highScoreText.setText(this.getHighScore());});
         highScore.getChildren().addAll(highScoreHeading, highScoreText);
 
         //Creates a sidebar on the right side using VBox
@@ -304,10 +318,7 @@ public class ChallengeScene extends BaseScene {
         timerBar.setHeight(20);
         mainPane.setBottom(timerBar);
         timerBarAnimation = this.animateTimeBar();
-        timerBarAnimation.play();
-
-        //Handles resetting the timer bar
-        game.setOnGameLoop(this::resetTimerBar);
+        timerBarAnimation.start();
     }
 
     /**
@@ -315,7 +326,7 @@ public class ChallengeScene extends BaseScene {
      * @param gameBlock the Game Block that was left-clicked
      */
     private void blockClicked(GameBlock gameBlock) {
-        game.blockClicked(gameBlock);
+        game.blockClicked(gameBlock.getX(), gameBlock.getY());
     }
 
     /**
@@ -336,10 +347,10 @@ public class ChallengeScene extends BaseScene {
 
     /**
      * Handles a line of game blocks in the game board being cleared
-     * @param gameBlockCoordinates set of the coordinates of the game blocks that were cleared
+     * @param clearedBlocks the game blocks that were cleared
      */
-    public void lineCleared(Set<GameBlockCoordinate> gameBlockCoordinates) {
-        board.fadeOut(gameBlockCoordinates);
+    public void lineCleared(ClearedBlocks clearedBlocks) {
+        board.fadeOut(clearedBlocks);
     }
 
     /**
@@ -348,36 +359,7 @@ public class ChallengeScene extends BaseScene {
      */
     public String getHighScore() {
         logger.info("Getting local high score");
-        try {
-            //Opens scores file
-            var scoresFile = new File("scores.txt");
-            //Checks if scores file exists
-            if (scoresFile.createNewFile()) {
-                //If not, creates scores file and populates it with a default list
-                var writer = new FileWriter(scoresFile);
-                for (int i = 10; i > 0; i--) {
-                    writer.write("David:" + i+ "000" + "\n");
-                }
-                writer.close();
-                //Returns default local high score
-                return "10000";
-            } //Otherwise, reads the first line in the scores file to find the highest local high score
-            else {
-                var reader = new Scanner(scoresFile);
-                var line = reader.nextLine();
-                var splitLine = line.split(":");
-                //Returns the highest local high score
-                return splitLine[1];
-            }
-        } //Catches exception in case it was not possible to open the scores file
-        //Or create the scores file in the event of it not already existing
-        //Or read from the scores file
-        catch (IOException e) {
-            logger.info("Not able to open scores file / create scores file / read scores file");
-            e.printStackTrace();
-            //Returns 0 as it was not possible to get the highest local high score
-            return "0";
-        }
+        return String.valueOf(gameWindow.getScoreStore().getHighScore());
     }
 
     /**
@@ -415,36 +397,45 @@ public class ChallengeScene extends BaseScene {
 
     /**
      * Animates the timer bar
+     * The timer bar follows the time left on the game's clock, so it needs no resetting when the clock restarts
      * @return the animation
      */
-    public Transition animateTimeBar() {
+    public AnimationTimer animateTimeBar() {
         logger.info("Animating timer bar");
 
-        //Creates colour change part of animation
-        var fill = new FillTransition(new Duration((game.getTimerDelay())/2), timerBar, Color.DARKGREEN, Color.YELLOW);
-        var fill2 = new FillTransition(new Duration((game.getTimerDelay())/3), timerBar, Color.YELLOW, Color.RED);
-        var fiilSequential = new SequentialTransition(fill, fill2);
-
-        //Creates size change part of animation
-        var scale = new ScaleTransition(new Duration(game.getTimerDelay()), timerBar);
-        scale.setToX(0);
-        var move = new TranslateTransition(new Duration(game.getTimerDelay()), timerBar);
-        move.setToX(-(gameWindow.getWidth()-20)/2);
-
-        //Puts the animation together and returns it
-        return new ParallelTransition(fiilSequential, scale, move);
+        return new AnimationTimer() {
+            /**
+             * Updates the timer bar each frame
+             * @param now
+             *            The timestamp of the current frame given in nanoseconds. This
+             *            value will be the same for all {@code AnimationTimers} called
+             *            during one frame.
+             */
+            @Override
+            public void handle(long now) {
+                var clock = game.getClock();
+                var delay = clock.getDelay();
+                var elapsed = delay == 0 ? 0 : 1 - (double) clock.getRemaining() / delay;
+                updateTimerBar(elapsed);
+            }
+        };
     }
 
     /**
-     * Handles resetting the timer bar
+     * Updates the size and colour of the timer bar
+     * @param elapsed fraction of the timer delay that has passed, between 0 and 1
      */
-    public void resetTimerBar() {
-        logger.info("Resetting timer bar");
-        timerBarAnimation.pause();
-        timerBar.setScaleX(1);
-        timerBar.setTranslateX(0);
-        timerBarAnimation = this.animateTimeBar();
-        timerBarAnimation.play();
+    private void updateTimerBar(double elapsed) {
+        //Shrinks the timer bar towards its centre as time passes
+        timerBar.setScaleX(1 - elapsed);
+        timerBar.setTranslateX(-(gameWindow.getWidth()-20) / 2.0 * elapsed);
+
+        //Changes the colour from green to yellow over the first half, then from yellow to red over the next third
+        if (elapsed < 0.5) {
+            timerBar.setFill(Color.DARKGREEN.interpolate(Color.YELLOW, elapsed / 0.5));
+        } else {
+            timerBar.setFill(Color.YELLOW.interpolate(Color.RED, Math.min(1, (elapsed - 0.5) * 3)));
+        }
     }
 
     /**
@@ -489,7 +480,7 @@ public class ChallengeScene extends BaseScene {
         else if (event.getCode() == KeyCode.ENTER) {
             this.handleEnterKey();
         } else if (event.getCode() == KeyCode.X) {
-            game.blockClicked(board.getBlock(x, y));
+            game.blockClicked(x, y);
             board.getBlock(x, y).hoverOver();
         } //Swap current game piece with the following game piece if SPACE or R keys are pressed
         else if (event.getCode() == KeyCode.SPACE || event.getCode() == KeyCode.R) {
@@ -523,7 +514,7 @@ public class ChallengeScene extends BaseScene {
         logger.info("Handing Enter key being pressed");
 
         //Places current game piece at current aim
-        game.blockClicked(board.getBlock(x, y));
+        game.blockClicked(x, y);
         board.getBlock(x, y).hoverOver();
     }
 
@@ -539,7 +530,9 @@ public class ChallengeScene extends BaseScene {
 
         //Loads scores scene
         var scoresScene = new ScoresScene(gameWindow);
-        scoresScene.setOnScoreRequested(() -> game.getNewScoreProperty().get());
+        scoresScene.setOnScoreRequested(() -> game.getScore());
+        var gameRecord = GameRecord.of(game, GameRecord.Mode.CHALLENGE, game.getPieceGenerator().getSeed());
+        scoresScene.setOnGameRecordRequested(() -> gameRecord);
         gameWindow.loadScene(scoresScene);
     }
 
@@ -550,11 +543,12 @@ public class ChallengeScene extends BaseScene {
     public void cleanUpGame() {
         logger.info("Cleaning up Game");
 
-        //Clears all the listeners and shuts down the timer
-        game.getTimer().shutdownNow();
-        game.setOnGameLoop(null);
-        game.setLineClearedListener(null);
+        //Clears all the listeners and stops the timer
+        game.stop();
+        gameWindow.getReplayArchive().save(game.getReplayRecorder());
+        timerBarAnimation.stop();
         game.setNextPieceListener(null);
+        observableGame.detach();
         levelText.textProperty().unbind();
         livesText.textProperty().unbind();
         multiplierText.textProperty().unbind();
@@ -15,12 +15,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.game.Multimedia;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.Message;
+import uk.ac.soton.comp1206.network.Subscription;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -38,6 +41,11 @@ public class LobbyScene extends BaseScene {
      */
     private final Communicator communicator = gameWindow.getCommunicator();
 
+    /**
+     * The handles of the listeners this scene added to the communicator, cancelled when the player leaves it
+     */
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
     /**
      * Timer used to request current channels from the server using the communicator
      */
@@ -138,30 +146,25 @@ public class LobbyScene extends BaseScene {
         //Adds keyboard support to this scene
         scene.setOnKeyPressed(this::keyboardSupport);
 
-        //Handles receiving a message from the communicator
-        communicator.addListener((communication) -> Platform.runLater(() -> {
-            var messageSplit = communication.split(" ", 2);
-            switch (messageSplit[0]) {
-                //If message received are the current channels, populates the channels list display with them
-                case "CHANNELS" -> {if (messageSplit.length == 2) this.addChannels(messageSplit[1]);}
-                //If message received is confirmation of having joined a channel, joins that channel's lobby
-                case "JOIN" -> this.joinChannel(messageSplit[1]);
-                //If message received is the player's name in the lobby of the channel that they are currently in, updates String storing it
-                case "NICK" -> this.updateNick(messageSplit[1]);
-                //If message received is the names of the players in the lobby of the channel that the player is currently in, updates their display
-                case "USERS" -> this.updatePlayers(messageSplit[1]);
-                //If message received is a message sent to the chat of the lobby of the channel that the player is currently in, adds message to the chat
-                case "MSG" -> this.updateChat(messageSplit[1]);
-                //If message received is confirmation of having left a channel, leaves that channel's lobby
-                case "PARTED" -> this.leaveChannel();
-                //If message received is confirmation of the player being the host of the channel that they are currently in, creates and adds a start game button to the channel's lobby
-                case "HOST" -> this.makeHost();
-                //If message received is confirmation of the game starting, loads the multiplayer scene
-                case "START" -> this.startGame();
-                //If message received is an error, displays error alert
-                case "ERROR" -> this.sendErrorAlert(messageSplit[1]);
-            }
-        }));
+        //Handles receiving the messages the lobby needs from the communicator
+        //If message received are the current channels, populates the channels list display with them
+        subscriptions.add(communicator.subscribe(Message.Channels.class, (channels) -> {if (!channels.channels().isEmpty()) this.addChannels(channels.channels());}));
+        //If message received is confirmation of having joined a channel, joins that channel's lobby
+        subscriptions.add(communicator.subscribe(Message.Join.class, (join) -> this.joinChannel(join.channel())));
+        //If message received is the player's name in the lobby of the channel that they are currently in, updates String storing it
+        subscriptions.add(communicator.subscribe(Message.Nick.class, (nick) -> this.updateNick(nick.nick())));
+        //If message received is the names of the players in the lobby of the channel that the player is currently in, updates their display
+        subscriptions.add(communicator.subscribe(Message.Users.class, (users) -> this.updatePlayers(users.users())));
+        //If message received is a message sent to the chat of the lobby of the channel that the player is currently in, adds message to the chat
+        subscriptions.add(communicator.subscribe(Message.Msg.class, (msg) -> this.updateChat(msg.player(), msg.text())));
+        //If message received is confirmation of having left a channel, leaves that channel's lobby
+        subscriptions.add(communicator.subscribe(Message.Parted.class, (parted) -> this.leaveChannel()));
+        //If message received is confirmation of the player being the host of the channel that they are currently in, creates and adds a start game button to the channel's lobby
+        subscriptions.add(communicator.subscribe(Message.Host.class, (host) -> this.makeHost()));
+        //If message received is confirmation of the game starting, loads the multiplayer scene
+        subscriptions.add(communicator.subscribe(Message.Start.class, (start) -> this.startGame()));
+        //If message received is an error, displays error alert
+        subscriptions.add(communicator.subscribe(Message.Error.class, (error) -> this.sendErrorAlert(error.reason())));
 
         //Makes channel timer request current channels from the server using the communicator
         channelTimer.scheduleAtFixedRate(() -> Platform.runLater(() -> communicator.send("LIST")), 0, 4, TimeUnit.SECONDS);
@@ -461,20 +464,11 @@ public class LobbyScene extends BaseScene {
 
     /**
      * Adds a message received from the communicator to the channel's lobby's chat
-     * @param messageReceived the message received
-     */
-    public void updateChat(String messageReceived) {
-        logger.info("Adding " + messageReceived + " to channel lobby chat");
-
-        //Splits received message into player name and message
-        var messageSplit = messageReceived.split(":");
-        var playerName = messageSplit[0];
-        String message;
-        if (messageSplit.length == 2) {
-            message = messageSplit[1];
-        } else {
-            message = " ";
-        }
+     * @param playerName the name of the player who sent the message
+     * @param message the message received
+     */
+    public void updateChat(String playerName, String message) {
+        logger.info("Adding " + playerName + ":" + message + " to channel lobby chat");
 
         //Create a Text to display the message
         var date = new Text("\n[" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm")) + "]");
@@ -571,7 +565,7 @@ public class LobbyScene extends BaseScene {
         Multimedia.playAudio("sounds/rotate.wav");
 
         //Starts the multiplayer challenge
-        channelTimer.shutdownNow();
+        this.cleanUp();
         var multiplayerScene = new MultiplayerScene(gameWindow);
         multiplayerScene.setOnNameRequested(() -> nickname);
         gameWindow.loadScene(multiplayerScene);
@@ -616,11 +610,21 @@ public class LobbyScene extends BaseScene {
                 communicator.send("PART");
             } //Otherwise, leaves the scene
             else {
-                channelTimer.shutdownNow();
+                this.cleanUp();
                 Multimedia.getMusicPlayer().stop();
                 Multimedia.playAudio("sounds/rotate.wav");
                 gameWindow.startMenu();
             }
         }
     }
+
+    /**
+     * Stops requesting the current channels and removes this scene's listeners from the communicator
+     */
+    private void cleanUp() {
+        logger.info("Cleaning up Lobby");
+        channelTimer.shutdownNow();
+        subscriptions.forEach(Subscription::cancel);
+        subscriptions.clear();
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package uk.ac.soton.comp1206.scene;
 
 import javafx.animation.*;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.image.Image;
@@ -15,6 +16,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.App;
 import uk.ac.soton.comp1206.game.Multimedia;
+import uk.ac.soton.comp1206.network.ConnectionState;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -31,6 +33,11 @@ public class MenuScene extends BaseScene {
      */
     private ImageView titleImage;
 
+    /**
+     * Shows the state of the connection to the server
+     */
+    private Text connectionStatus;
+
     /**
      * Creates a new menu scene
      * @param gameWindow the Game Window this will be displayed in
@@ -90,6 +97,13 @@ public class MenuScene extends BaseScene {
         //Binds the howToPlayButton action to the startInstructions() method in the menu
         howToPlayButton.setOnMouseClicked(this::startInstructions);
 
+        //Creates a Text UI component to be used as a button to watch the last game again
+        var replayButton = new Text("Replay");
+        replayButton.getStyleClass().add("menu-item");
+
+        //Binds the replayButton action to the startReplay() method in the menu
+        replayButton.setOnMouseClicked(this::startReplay);
+
         //Creates a Text UI component to be used as a button to exit the game
         var exitButton = new Text("Exit");
         exitButton.getStyleClass().add("menu-item");
@@ -100,9 +114,16 @@ public class MenuScene extends BaseScene {
         //Creates a button list using VBox
         var buttonList = new VBox();
         buttonList.setSpacing(10);
-        buttonList.getChildren().addAll(playButton, multiplayerButton, howToPlayButton, exitButton);
+        buttonList.getChildren().addAll(playButton, multiplayerButton, howToPlayButton, replayButton, exitButton);
         buttonList.setAlignment(Pos.CENTER);
         mainPane.setBottom(buttonList);
+
+        //Creates a Text UI component to show the state of the connection to the server
+        connectionStatus = new Text();
+        connectionStatus.getStyleClass().add("connection-status");
+        var statusBar = new HBox(connectionStatus);
+        statusBar.setAlignment(Pos.TOP_RIGHT);
+        mainPane.setTop(statusBar);
     }
 
     /**
@@ -117,6 +138,25 @@ public class MenuScene extends BaseScene {
 
         //Adds keyboard support to this scene
         scene.setOnKeyPressed(this::keyboardSupport);
+
+        //Shows the state of the connection to the server, which changes on the communicator's threads
+        var communicator = gameWindow.getCommunicator();
+        communicator.setOnConnectionStateChanged((state) -> Platform.runLater(() -> this.showConnectionState(state)));
+        this.showConnectionState(communicator.getState());
+    }
+
+    /**
+     * Shows the state of the connection to the server
+     * @param state the connection state
+     */
+    public void showConnectionState(ConnectionState state) {
+        connectionStatus.setText(switch (state) {
+            case IDLE -> "Offline - connects when you play online";
+            case CONNECTING -> "Connecting to server...";
+            case CONNECTED -> "Connected to server";
+            case RECONNECTING -> "Server unreachable, retrying...";
+            case CLOSED -> "Disconnected";
+        });
     }
 
     /**
@@ -169,13 +209,26 @@ public class MenuScene extends BaseScene {
         gameWindow.startInstructions();
     }
 
+    /**
+     * Handles when the Replay button is pressed
+     * @param event event
+     */
+    public void startReplay(MouseEvent event) {
+        Multimedia.playAudio("sounds/rotate.wav");
+        gameWindow.startReplay();
+    }
+
     /**
      * Handles when the Exit button is pressed
      * @param event event
      */
     public void exit(MouseEvent event) {
         Multimedia.playAudio("sounds/rotate.wav");
-        gameWindow.getCommunicator().send("QUIT");
+
+        //Only says goodbye to the server if it was ever needed, rather than connecting just to quit
+        if (gameWindow.getCommunicator().getState() != ConnectionState.IDLE) {
+            gameWindow.getCommunicator().send("QUIT");
+        }
         App.getInstance().shutdown();
     }
 
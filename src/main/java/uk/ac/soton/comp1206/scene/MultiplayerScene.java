@@ -1,10 +1,13 @@
 package uk.ac.soton.comp1206.scene;
 
 import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
@@ -12,11 +15,17 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBoardsList;
 import uk.ac.soton.comp1206.component.Leaderboard;
+import uk.ac.soton.comp1206.component.PieceBoard;
 import uk.ac.soton.comp1206.event.NameRequestedListener;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
 import uk.ac.soton.comp1206.game.Multimedia;
 import uk.ac.soton.comp1206.game.MultiplayerGame;
+import uk.ac.soton.comp1206.storage.GameRecord;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
+import java.util.ArrayList;
+
 /**
  * The Multi Player challenge scene.
  * Holds the UI for the multi player challenge mode in the game.
@@ -25,6 +34,11 @@ public class MultiplayerScene extends ChallengeScene {
 
     private static final Logger logger = LogManager.getLogger(MultiplayerScene.class);
 
+    /**
+     * The most game pieces shown after the following game piece
+     */
+    private static final int MAX_UPCOMING_PIECES = 4;
+
     /**
      * The player's name
      */
@@ -50,6 +64,11 @@ public class MultiplayerScene extends ChallengeScene {
      */
     private TextField chatField;
 
+    /**
+     * Piece boards displaying the game pieces buffered after the following game piece
+     */
+    private final ArrayList<PieceBoard> upcomingPieceBoards = new ArrayList<>();
+
 
     /**
      * Creates a new Multi Player challenge scene
@@ -70,6 +89,16 @@ public class MultiplayerScene extends ChallengeScene {
         game = new MultiplayerGame(5, 5, gameWindow);
     }
 
+    /**
+     * Gets the seed the game's replay is recorded with
+     * The server deals the pieces, so there is no seed, and the replay holds every piece dealt instead
+     * @return 0
+     */
+    @Override
+    protected long recordedSeed() {
+        return 0;
+    }
+
     /**
      * Builds the Challenge window
      */
@@ -94,11 +123,24 @@ public class MultiplayerScene extends ChallengeScene {
         leaderboardHeading.getStyleClass().add("heading");
         leaderboard = new Leaderboard();
         leaderboard.getPlayerNameProperty().bind(playerName);
-        leaderboard.getScoreProperty().bind(game.getNewScoreProperty());
+        leaderboard.getScoreProperty().bind(observableGame.getNewScoreProperty());
         leaderboard.getScoresListProperty().bind(((MultiplayerGame)game).getLeaderboardEntriesProperty());
         leaderboard.getLifeStatusesProperty().bind(((MultiplayerGame)game).getLifeStatusesProperty());
         leaderboardContainer.getChildren().addAll(leaderboardHeading, leaderboard);
 
+        //Creates piece boards to display the game pieces the server has already dealt after the following game piece
+        var upcomingPieces = new HBox();
+        upcomingPieces.setAlignment(Pos.CENTER);
+        upcomingPieces.setSpacing(5);
+        upcomingPieces.setPadding(new Insets(10, 0, 0, 0));
+        for (int i = 0; i < Math.min(((MultiplayerGame)game).getLookahead(), MAX_UPCOMING_PIECES); i++) {
+            var pieceBoard = new PieceBoard(new Grid(3, 3), 40, 40);
+            upcomingPieceBoards.add(pieceBoard);
+            upcomingPieces.getChildren().add(pieceBoard);
+        }
+        incomingPieces.getChildren().add(upcomingPieces);
+        ((MultiplayerGame)game).getUpcomingPiecesProperty().addListener((ListChangeListener<? super GamePiece>) change -> this.updateUpcomingPieceBoards());
+
         //Displays the leaderboard and the current and following game pieces' piece boards
         rightSideBar.getChildren().addAll(leaderboardContainer, incomingPieces);
 
@@ -127,6 +169,16 @@ public class MultiplayerScene extends ChallengeScene {
         mainPane.setCenter(boardAndChat);
     }
 
+    /**
+     * Displays the game pieces buffered after the following game piece, leaving a piece board empty until its game piece is dealt
+     */
+    public void updateUpcomingPieceBoards() {
+        var upcomingPieces = ((MultiplayerGame)game).getUpcomingPiecesProperty();
+        for (int i = 0; i < upcomingPieceBoards.size(); i++) {
+            upcomingPieceBoards.get(i).setPieceToDisplay(i < upcomingPieces.size() ? upcomingPieces.get(i) : null);
+        }
+    }
+
     /**
      * Sets a listener to handle an event when player's name is requested
      * @param listener the listener to add
@@ -213,7 +265,7 @@ public class MultiplayerScene extends ChallengeScene {
             this.sendMessage(chatField.getText());
         } //Otherwise, places current game piece at current aim if ENTER or X keys are pressed
         else {
-            game.blockClicked(board.getBlock(x, y));
+            game.blockClicked(x, y);
             board.getBlock(x, y).hoverOver();
         }
     }
@@ -233,8 +285,11 @@ public class MultiplayerScene extends ChallengeScene {
         //Loads scores scene
         var scoresScene = new ScoresScene(gameWindow);
         scoresScene.setOnNameRequested(() -> playerName);
-        scoresScene.setOnScoreRequested(() -> game.getNewScoreProperty().get());
+        scoresScene.setOnScoreRequested(() -> game.getScore());
         scoresScene.setOnMultiplayerScores(() -> ((MultiplayerGame)game).getLeaderboardEntriesProperty());
+        //The server deals the pieces, so there is no seed to record
+        var gameRecord = GameRecord.of(game, GameRecord.Mode.MULTIPLAYER, 0).withPlayer(playerName.get());
+        scoresScene.setOnGameRecordRequested(() -> gameRecord);
         gameWindow.loadScene(scoresScene);
     }
 
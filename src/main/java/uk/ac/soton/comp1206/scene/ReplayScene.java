@@ -0,0 +1,349 @@
+package uk.ac.soton.comp1206.scene;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.binding.Bindings;
+import javafx.beans.value.ObservableStringValue;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Slider;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.component.GameBoard;
+import uk.ac.soton.comp1206.component.ObservableGame;
+import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.Multimedia;
+import uk.ac.soton.comp1206.replay.Replay;
+import uk.ac.soton.comp1206.replay.ReplayPlayer;
+import uk.ac.soton.comp1206.ui.GamePane;
+import uk.ac.soton.comp1206.ui.GameWindow;
+
+/**
+ * The Replay scene.
+ * Plays the last game back at between 1x and 64x speed, and can jump to any move in it.
+ */
+public class ReplayScene extends BaseScene {
+
+    private static final Logger logger = LogManager.getLogger(ReplayScene.class);
+
+    /**
+     * The slowest playback speed
+     */
+    private static final int MIN_SPEED = 1;
+
+    /**
+     * The fastest playback speed
+     */
+    private static final int MAX_SPEED = 64;
+
+    /**
+     * The number of moves the LEFT and RIGHT keys jump by
+     */
+    private static final int SEEK_MOVES = 10;
+
+    /**
+     * BorderPane used to display the main contents of this scene
+     */
+    private BorderPane mainPane;
+
+    /**
+     * Text displaying the time played back, the speed and whether playback is paused
+     */
+    private Text statusText;
+
+    /**
+     * Slider showing the move played back, which can be dragged to jump to another move
+     */
+    private Slider positionSlider;
+
+    /**
+     * The player moving the replayed game through the replay, or null until the replay is loaded
+     */
+    private ReplayPlayer player;
+
+    /**
+     * Adapter exposing the replayed game's state as properties
+     */
+    private ObservableGame observableGame;
+
+    /**
+     * Current game piece's piece board
+     */
+    private PieceBoard currentPieceBoard;
+
+    /**
+     * Next game piece's piece board
+     */
+    private PieceBoard followingPieceBoard;
+
+    /**
+     * Drives playback every frame
+     */
+    private AnimationTimer playback;
+
+    /**
+     * The time played back, in milliseconds since the game started
+     */
+    private double time;
+
+    /**
+     * The playback speed
+     */
+    private int speed = MIN_SPEED;
+
+    /**
+     * Whether playback is paused
+     */
+    private boolean paused;
+
+    /**
+     * Whether the slider is being moved by playback rather than by the player
+     */
+    private boolean updatingSlider;
+
+    /**
+     * Whether the player has left this scene
+     */
+    private boolean closed;
+
+    /**
+     * Creates a new Replay scene
+     * @param gameWindow the Game Window this will be displayed in
+     */
+    public ReplayScene(GameWindow gameWindow) {
+        super(gameWindow);
+        logger.info("Creating Replay Scene");
+    }
+
+    /**
+     * Initialises the scene and starts loading the replay
+     */
+    @Override
+    public void initialise() {
+        logger.info("Initialising Replay");
+
+        //Adds keyboard support to this scene
+        scene.setOnKeyPressed(this::keyboardSupport);
+
+        gameWindow.getReplayArchive().loadLatest(this::replayLoaded);
+    }
+
+    /**
+     * Builds the replay layout, which shows the game once the replay is loaded
+     */
+    @Override
+    public void build() {
+        logger.info("Building " + this.getClass().getName());
+
+        root = new GamePane(gameWindow.getWidth(),gameWindow.getHeight());
+
+        var replayPane = new StackPane();
+        replayPane.setMaxWidth(gameWindow.getWidth());
+        replayPane.setMaxHeight(gameWindow.getHeight());
+        replayPane.getStyleClass().add("challenge-background");
+        root.getChildren().add(replayPane);
+
+        mainPane = new BorderPane();
+        mainPane.setPadding(new Insets(10, 10, 10, 10));
+        replayPane.getChildren().add(mainPane);
+
+        var title = new Text("Replay");
+        title.getStyleClass().add("title");
+        BorderPane.setAlignment(title, Pos.CENTER);
+        mainPane.setTop(title);
+
+        statusText = new Text("Loading replay...");
+        statusText.getStyleClass().add("heading");
+        mainPane.setCenter(statusText);
+    }
+
+    /**
+     * Handles the replay being loaded, showing the game and starting playback
+     * @param replay the replay, or null if there isn't one
+     */
+    private void replayLoaded(Replay replay) {
+        if (closed) {
+            return;
+        }
+        if (replay == null) {
+            statusText.setText("No replay to watch yet");
+            return;
+        }
+
+        player = new ReplayPlayer(replay);
+        var game = player.getGame();
+        observableGame = new ObservableGame(game);
+
+        var board = new GameBoard(game.getGrid(),gameWindow.getWidth()/2,gameWindow.getWidth()/2);
+        mainPane.setCenter(board);
+
+        //Handles a line of game blocks in the game board being cleared
+        observableGame.setLineClearedListener(board::fadeOut);
+
+        //Creates a sidebar showing the score, level, lives and incoming pieces of the replayed game
+        var sideBar = new VBox();
+        sideBar.setSpacing(15);
+        sideBar.setAlignment(Pos.CENTER);
+        sideBar.getChildren().addAll(
+                this.stat("Score", Bindings.convert(observableGame.getScoreProperty())),
+                this.stat("Level", Bindings.convert(observableGame.getLevelProperty())),
+                this.stat("Lives", Bindings.convert(observableGame.getLivesProperty())),
+                this.stat("Multiplier", Bindings.concat(observableGame.getMultiplierProperty().asString(), "x")));
+        currentPieceBoard = new PieceBoard(new Grid(3, 3),130, 130);
+        followingPieceBoard = new PieceBoard(new Grid(3, 3),80, 80);
+        sideBar.getChildren().addAll(currentPieceBoard, followingPieceBoard);
+        mainPane.setRight(sideBar);
+
+        //Handles updating the current and following game pieces' piece boards
+        game.setNextPieceListener(this::updatePieceBoards);
+
+        //Creates a slider to show and jump to the move being played back
+        positionSlider = new Slider(0, player.getMoveCount(), 0);
+        positionSlider.valueProperty().addListener((observable, oldValue, newValue) -> {if (!updatingSlider) this.seek(newValue.intValue());});
+        var controls = new VBox(statusText, positionSlider);
+        controls.setAlignment(Pos.CENTER);
+        controls.setSpacing(5);
+        mainPane.setBottom(controls);
+
+        player.start();
+        playback = new AnimationTimer() {
+            private long lastFrame;
+
+            /**
+             * Plays back the moves made since the last frame, at the playback speed
+             * @param now the timestamp of the current frame given in nanoseconds
+             */
+            @Override
+            public void handle(long now) {
+                if (lastFrame != 0 && !paused) {
+                    time += (now - lastFrame) / 1_000_000.0 * speed;
+                    if (player.advanceTo((long) time)) {
+                        paused = true;
+                    }
+                }
+                lastFrame = now;
+                updateStatus();
+            }
+        };
+        playback.start();
+    }
+
+    /**
+     * Creates a heading and a value bound to a property of the replayed game
+     * @param heading the heading
+     * @param value the value
+     * @return the UI component
+     */
+    private VBox stat(String heading, ObservableStringValue value) {
+        var box = new VBox();
+        box.setAlignment(Pos.CENTER);
+        var headingText = new Text(heading);
+        headingText.getStyleClass().add("heading");
+        var valueText = new Text();
+        valueText.getStyleClass().add("level");
+        valueText.textProperty().bind(value);
+        box.getChildren().addAll(headingText, valueText);
+        return box;
+    }
+
+    /**
+     * Handles updating the current and following game pieces' piece boards
+     * @param currentPiece the current game piece the player had
+     * @param followingPiece the next game piece the player would be given
+     */
+    private void updatePieceBoards(GamePiece currentPiece, GamePiece followingPiece) {
+        currentPieceBoard.setPieceToDisplay(currentPiece);
+        followingPieceBoard.setPieceToDisplay(followingPiece);
+    }
+
+    /**
+     * Jumps to just before a move, carrying on playback from when it was made
+     * @param move the move's index
+     */
+    private void seek(int move) {
+        player.seek(move);
+        time = player.getTime();
+        this.updateStatus();
+    }
+
+    /**
+     * Shows the time played back, the speed and the move being played back
+     */
+    private void updateStatus() {
+        statusText.setText(String.format("%s / %s   %dx%s", formatTime((long) Math.min(time, player.getDuration())),
+                formatTime(player.getDuration()), speed, paused ? "   Paused" : ""));
+        updatingSlider = true;
+        positionSlider.setValue(player.getPosition());
+        updatingSlider = false;
+    }
+
+    /**
+     * Formats a time as minutes and seconds
+     * @param millis the time in milliseconds
+     * @return the formatted time
+     */
+    private static String formatTime(long millis) {
+        var seconds = millis / 1000;
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    /**
+     * Handles a key being pressed
+     * @param event the event
+     */
+    public void keyboardSupport(KeyEvent event) {
+        logger.info("Handling a key being pressed");
+
+        //Returns to the menuScene if the ESC key is pressed
+        if (event.getCode() == KeyCode.ESCAPE) {
+            Multimedia.playAudio("sounds/rotate.wav");
+            this.cleanUp();
+            gameWindow.startMenu();
+            return;
+        }
+        if (player == null) {
+            return;
+        }
+
+        //Pauses or resumes playback if SPACE is pressed, starting again from the beginning once the end is reached
+        if (event.getCode() == KeyCode.SPACE) {
+            if (paused && player.getPosition() == player.getMoveCount()) {
+                this.seek(0);
+            }
+            paused = !paused;
+        } //Doubles the playback speed if UP ARROW is pressed
+        else if (event.getCode() == KeyCode.UP) {
+            speed = Math.min(MAX_SPEED, speed * 2);
+        } //Halves the playback speed if DOWN ARROW is pressed
+        else if (event.getCode() == KeyCode.DOWN) {
+            speed = Math.max(MIN_SPEED, speed / 2);
+        } //Jumps back a few moves if LEFT ARROW is pressed
+        else if (event.getCode() == KeyCode.LEFT) {
+            this.seek(player.getPosition() - SEEK_MOVES);
+        } //Jumps forward a few moves if RIGHT ARROW is pressed
+        else if (event.getCode() == KeyCode.RIGHT) {
+            this.seek(player.getPosition() + SEEK_MOVES);
+        }
+        this.updateStatus();
+    }
+
+    /**
+     * Stops playback and clears the listeners
+     */
+    private void cleanUp() {
+        logger.info("Cleaning up Replay");
+        closed = true;
+        if (playback != null) {
+            playback.stop();
+            player.getGame().setNextPieceListener(null);
+            observableGame.detach();
+        }
+    }
+}
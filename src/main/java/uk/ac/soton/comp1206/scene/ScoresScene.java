@@ -1,5 +1,6 @@
 package uk.ac.soton.comp1206.scene;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.beans.property.ListProperty;
 import javafx.beans.property.SimpleIntegerProperty;
@@ -19,25 +20,31 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
+import javafx.util.Duration;
 import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.ScoresList;
+import uk.ac.soton.comp1206.event.GameRecordRequestedListener;
 import uk.ac.soton.comp1206.event.MultiplayerScoresListener;
 import uk.ac.soton.comp1206.event.NameRequestedListener;
 import uk.ac.soton.comp1206.event.ScoreRequestedListener;
 import uk.ac.soton.comp1206.game.Multimedia;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.Message;
+import uk.ac.soton.comp1206.network.Subscription;
+import uk.ac.soton.comp1206.storage.GameRecord;
+import uk.ac.soton.comp1206.storage.ScoreIndex;
+import uk.ac.soton.comp1206.storage.ScoreStore;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
-import java.io.*;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Scanner;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * The Scores scene.
@@ -47,6 +54,21 @@ public class ScoresScene extends BaseScene {
 
     private static final Logger logger = LogManager.getLogger(ScoresScene.class);
 
+    /**
+     * How long to wait for the online high scores before showing the scores without them
+     */
+    private static final Duration ONLINE_SCORES_TIMEOUT = Duration.seconds(3);
+
+    /**
+     * The number of latest games the player's statistics show
+     */
+    private static final int RECENT_GAMES = 5;
+
+    /**
+     * How far the latest games' average must be from the player's overall average to count as a trend
+     */
+    private static final double TREND_MARGIN = 0.05;
+
     /**
      * BorderPane that contains the scores scene contents
      */
@@ -99,6 +121,16 @@ public class ScoresScene extends BaseScene {
      */
     private NameRequestedListener nameRequestedListener;
 
+    /**
+     * The listener to call when last game's record is requested
+     */
+    private GameRecordRequestedListener gameRecordRequestedListener;
+
+    /**
+     * The player last game was recorded as being played by, or null if it wasn't recorded
+     */
+    private String recordedPlayer;
+
     /**
      * Last game's final score
      */
@@ -109,6 +141,11 @@ public class ScoresScene extends BaseScene {
      */
     private TextField promptTextField;
 
+    /**
+     * Whether last game's score is a new local high score, so the name entered into the prompt is saved with it
+     */
+    private boolean localHighScore;
+
     /**
      * Name entered into the prompt if player is prompted
      */
@@ -120,23 +157,35 @@ public class ScoresScene extends BaseScene {
     private ScheduledExecutorService scoreboardTimer;
 
     /**
-     * Comparator used to sort a scores list
+     * Index of the online high scores, used to rank last game's score against them
      */
-    private final Comparator<Pair<String, Integer>> scoreSorter = (pair1, pair2) -> {
-        if (pair1.getValue() > pair2.getValue()) {
-            return -1;
-        } else if (pair1.getValue().equals(pair2.getValue())) {
-            return 0;
-        } else {
-            return 1;
-        }
-    };
+    private final ScoreIndex remoteScoresIndex = new ScoreIndex(ScoreStore.TOP_SCORES);
 
     /**
      * The communicator
      */
     private final Communicator communicator = gameWindow.getCommunicator();
 
+    /**
+     * The handles of the listeners this scene added to the communicator, cancelled when the player leaves it
+     */
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    /**
+     * Whether the prompt or scoreboard has been shown, with or without the online high scores
+     */
+    private boolean scoresShown;
+
+    /**
+     * Shows the scores without the online high scores if the server doesn't send them in time
+     */
+    private final PauseTransition onlineScoresTimeout = new PauseTransition(ONLINE_SCORES_TIMEOUT);
+
+    /**
+     * The online scores' heading, which says when the scores are offline
+     */
+    private Text remoteScoresHeading;
+
     /**
      * Creates a new Scores scene
      *
@@ -162,19 +211,43 @@ public class ScoresScene extends BaseScene {
         //Adds keyboard support to this scene
         scene.setOnKeyPressed(this::keyboardSupport);
 
-        //Handles receiving a message from the communicator
-        communicator.addListener((communication) -> Platform.runLater(() -> {
-            var messageSplit = communication.split(" ", 2);
-            switch (messageSplit[0]) {
-                //If message received are the online high scores, populates the remote scores list with them
-                case "HISCORES" -> this.checkToPrompt(messageSplit[1]);
-                //If message received is confirmation of a high score being successfully submitted to the server, logs it
-                case "NEWSCORE" -> logger.info("New high score successfully submitted to server");
-            }
-        }));
+        //Handles receiving the messages the scores need from the communicator
+        //If message received are the online high scores, populates the remote scores list with them
+        subscriptions.add(communicator.subscribe(Message.HiScores.class, (hiScores) -> this.onlineScoresReceived(hiScores.scores())));
+        //If message received is confirmation of a high score being successfully submitted to the server, logs it
+        subscriptions.add(communicator.subscribe(Message.NewScore.class, (newScore) -> logger.info("New high score successfully submitted to server")));
 
-        //Requests online high scores from server
+        //Requests online high scores from server, showing the local scores on their own if they don't arrive in time
         communicator.send("HISCORES");
+        onlineScoresTimeout.setOnFinished((event) -> this.onlineScoresUnavailable());
+        onlineScoresTimeout.play();
+    }
+
+    /**
+     * Handles the online high scores arriving from the server
+     * If the scores were already shown without them, only the online scores list is updated
+     * @param onlineScores the online high scores received
+     */
+    public void onlineScoresReceived(String onlineScores) {
+        onlineScoresTimeout.stop();
+        if (!scoresShown) {
+            this.checkToPrompt(onlineScores);
+            return;
+        }
+        this.loadOnlineScores(onlineScores);
+        if (remoteScoresHeading != null) {
+            remoteScoresHeading.setText("Online Scores");
+        }
+    }
+
+    /**
+     * Shows the local scores without the online high scores, as the server didn't send them in time
+     */
+    public void onlineScoresUnavailable() {
+        logger.info("Online high scores unavailable, showing local scores only");
+        if (!scoresShown) {
+            this.checkToPrompt("");
+        }
     }
 
     /**
@@ -229,12 +302,21 @@ public class ScoresScene extends BaseScene {
      */
     public void setOnNameRequested(NameRequestedListener listener) { this.nameRequestedListener = listener;}
 
+    /**
+     * Sets a listener to handle an event when last game's record is requested
+     * @param listener the listener to add
+     */
+    public void setOnGameRecordRequested(GameRecordRequestedListener listener) {
+        this.gameRecordRequestedListener = listener;
+    }
+
     /**
      * Checks if prompting the player is needed and either displays a prompt or the scoreboard depending on so
      * @param onlineScores the online high scores received from the server
      */
     public void checkToPrompt(String onlineScores) {
         logger.info("Checking if prompting player is needed");
+        scoresShown = true;
 
         //Checks if there was a last game and if it was multiplayer
         if (multiplayerScoresListener != null) {
@@ -249,66 +331,25 @@ public class ScoresScene extends BaseScene {
         //Stores the online high scores received from the server
         this.loadOnlineScores(onlineScores);
 
-        //Displays a prompt if there was a last game AND last game wasn't a multiplayer game AND if last game's score beats any of the local scores
-        if (scoreRequestedListener != null && multiplayerScoresListener == null && this.checkScore(localScoresWrapper)) {
-            this.buildPrompt();
+        //Displays a prompt if there was a last game AND last game wasn't a multiplayer game, so the game is recorded for the player who played it
+        if (scoreRequestedListener != null && multiplayerScoresListener == null) {
+            this.buildPrompt(this.checkScore());
         }
-        //Otherwise, displays the scoreboard
+        //Otherwise, records last game as played by the multiplayer name, if there was one, and displays the scoreboard
         else {
+            if (multiplayerScoresListener != null) {
+                this.recordGame(nameRequestedListener.nameRequested().get());
+            }
             this.buildScoreBoard();
         }
     }
 
     /**
-     * Populates the local scores list using the local high scores stored in the scores file
+     * Populates the local scores list using the local high scores kept by the score store
      */
     public void loadScores() {
-        //Opens scores file and creates a reader to read it
-        try {
-            var scoresFile = new File("scores.txt");
-            var reader = new Scanner(scoresFile);
-            //Clears local scores list
-            localScoresWrapper.clear();
-            //Reads each line in the file and stores each line's player name and score as a pair in the local scores list
-            while (reader.hasNextLine()) {
-                var line = reader.nextLine();
-                var splitLine = line.split(":");
-                var name = splitLine[0];
-                var score = Integer.parseInt(splitLine[1]);
-                localScoresWrapper.add(new Pair<>(name, score));
-            }
-            logger.info("Loading local scores");
-            //Closes the file reader
-            reader.close();
-        //Catches exception in case scores file was not found
-        } catch (FileNotFoundException e) {
-            logger.info("Scores file not found / Not able to read from scores file");
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * Writes each player name and score pair in an ordered list to the scores file
-     * @param orderedList the ordered list
-     */
-    public void writeScores(ListProperty<Pair<String, Integer>> orderedList) {
-        //Opens scores file and creates writer to write to it
-        try {
-            var scoresFile = new File("scores.txt");
-            var writer = new FileWriter(scoresFile);
-            //Writes each player name and score pair in the ordered list to the scores file
-            //Where each pair is in a new line in the file
-            for (Pair<String, Integer> scorePair : orderedList) {
-                writer.write(scorePair.getKey() + ":" + scorePair.getValue() + "\n");
-            }
-            logger.info("Scores file written to");
-            //Closes the file writer
-            writer.close();
-        //Catches exception in case it was not possible to write to it
-        } catch (IOException e) {
-            logger.info("Scores file not found / Not able to write to scores file");
-            e.printStackTrace();
-        }
+        logger.info("Loading local scores");
+        localScoresWrapper.setAll(gameWindow.getScoreStore().getScores());
     }
 
     /**
@@ -318,17 +359,22 @@ public class ScoresScene extends BaseScene {
     public void loadOnlineScores(String onlineScores) {
         logger.info("Loading online high scores");
 
-        //Clears the remote scores list
-        remoteScoresWrapper.clear();
+        //Clears the remote scores index
+        remoteScoresIndex.clear();
+        if (onlineScores.isBlank()) {
+            remoteScoresWrapper.clear();
+            return;
+        }
 
         //Stores each online high score received in a string array
         var onlineScoresSplit = onlineScores.split("\n");
 
-        //Stores each online high score's score and player name as a pair in the remote scores list
+        //Indexes each online high score's score and player name, then shows them all in the remote scores list at once
         for (var onlineScore: onlineScoresSplit) {
             var onlineScoreSplit = onlineScore.split(":");
-            remoteScoresWrapper.add(new Pair<>(onlineScoreSplit[0], Integer.parseInt(onlineScoreSplit[1])));
+            remoteScoresIndex.insert(onlineScoreSplit[0], Integer.parseInt(onlineScoreSplit[1]));
         }
+        remoteScoresWrapper.setAll(remoteScoresIndex.top(ScoreStore.TOP_SCORES));
     }
 
     /**
@@ -342,50 +388,60 @@ public class ScoresScene extends BaseScene {
     }
 
     /**
-     * Checks if last game's score is higher than any of the scores in an ordered list
-     * @return true if last game's score is higher and false if not
+     * Checks if last game's score makes it into the local high scores
+     * @return true if it does and false if not
      */
-    public boolean checkScore(ListProperty<Pair<String, Integer>> orderedList) {
+    public boolean checkScore() {
         //Gets last game's score and stores it
         finalScore.set(scoreRequestedListener.scoreRequested());
 
-        //Loops through each score in the ordered list
-        for (var scorePair: orderedList) {
-            //Returns true if last game's score is higher than any of the scores
-            if (finalScore.get() > scorePair.getValue()) {
-                logger.info("Score beats a score");
-                return true;
-            }
-        }
-        //Returns false if last game's score is not higher than any of the scores
-        logger.info("Score beats no score");
-        return false;
+        var qualifies = gameWindow.getScoreStore().wouldQualify(finalScore.get());
+        logger.info(qualifies ? "Score is a local high score" : "Score is not a local high score");
+        return qualifies;
     }
 
     /**
-     * Builds and displays the new high score prompt
+     * Checks if last game's score makes it into the online high scores
+     * Scores are never sent when the online high scores weren't received, as there is nothing to compare them with
+     * @return true if it does and false if not
      */
-    public void buildPrompt() {
+    public boolean checkOnlineScore() {
+        var qualifies = remoteScoresIndex.size() > 0 && remoteScoresIndex.wouldQualify(finalScore.get());
+        logger.info(qualifies ? "Score is an online high score" : "Score is not an online high score");
+        return qualifies;
+    }
+
+    /**
+     * Builds and displays the prompt for the player's name, filled in with the last challenge player
+     * @param newHighScore whether last game's score is a new local high score
+     */
+    public void buildPrompt(boolean newHighScore) {
         logger.info("Building prompt");
+        this.localHighScore = newHighScore;
 
         //Creates a prompt
         var prompt = new VBox();
         prompt.setTranslateY(-75);
         prompt.setAlignment(Pos.CENTER);
         prompt.setSpacing(10);
-        var promptHeading = new Text("New High Score!");
+        var promptHeading = new Text(newHighScore ? "New High Score!" : "Who played?");
         promptHeading.getStyleClass().add("title");
         promptTextField = new TextField();
         promptTextField.setPromptText("Enter your name here");
+        var lastPlayer = gameWindow.getStatisticsStore().getLastPlayer(GameRecord.Mode.CHALLENGE);
+        if (lastPlayer != null) {
+            promptTextField.setText(lastPlayer);
+            promptTextField.selectAll();
+        }
         prompt.getChildren().addAll(promptHeading, promptTextField);
         mainPane.setCenter(prompt);
 
-        //Handles player entering their name to register a new local high score
+        //Handles player entering their name to record the game and register a new local high score
         promptTextField.setOnKeyPressed((event) -> {if (event.getCode() == KeyCode.ENTER && !promptTextField.getText().isBlank()) this.updateScores();});
     }
 
     /**
-     * Updates the local scores and, if needed, the online scores and displays the scoreboard
+     * Records last game for the player and, if it is a new high score, updates the local and online scores, then displays the scoreboard
      */
     public void updateScores() {
         logger.info("Updating local and online scores");
@@ -396,17 +452,20 @@ public class ScoresScene extends BaseScene {
         //Stores the player's name and their score last game in a pair
         var newHighScore = new Pair<>(playerName.get(), finalScore.get());
 
-        //Updates the local scores list and the scores stored in the scores file
-        localScoresWrapper.add(newHighScore);
-        localScoresWrapper.sort(scoreSorter);
-        localScoresWrapper.remove(localScoresWrapper.get(10));
-        this.writeScores(localScoresWrapper);
+        //Records last game as played by the player
+        this.recordGame(playerName.get());
+        if (!localHighScore) {
+            this.buildScoreBoard();
+            return;
+        }
+
+        //Updates the local scores list with the scores kept by the score store, which saves the new score in the background
+        localScoresWrapper.setAll(gameWindow.getScoreStore().add(newHighScore.getKey(), newHighScore.getValue()));
 
         //Updates the remote scores list and sends the player's score to the server if it beats any of the online high scores
-        if (this.checkScore(remoteScoresWrapper)) {
-            remoteScoresWrapper.add(newHighScore);
-            remoteScoresWrapper.sort(scoreSorter);
-            remoteScoresWrapper.remove(remoteScoresWrapper.get(10));
+        if (this.checkOnlineScore()) {
+            remoteScoresIndex.insert(newHighScore.getKey(), newHighScore.getValue());
+            remoteScoresWrapper.setAll(remoteScoresIndex.top(ScoreStore.TOP_SCORES));
             this.writeOnlineScore(newHighScore.getKey(), newHighScore.getValue());
         }
 
@@ -452,7 +511,7 @@ public class ScoresScene extends BaseScene {
         //Creates online score list container
         var remoteScoresContainer = new VBox();
         remoteScoresContainer.setAlignment(Pos.CENTER);
-        var remoteScoresHeading = new Text("Online Scores");
+        remoteScoresHeading = new Text(remoteScoresWrapper.isEmpty() ? "Online Scores (offline)" : "Online Scores");
         remoteScoresHeading.getStyleClass().add("heading");
         var remoteScoresList = new ScoresList();
         remoteScoresList.getPlayerNameProperty().bind(playerName);
@@ -466,6 +525,11 @@ public class ScoresScene extends BaseScene {
         //Adds scoreboard heading and score lists container to scoreboard container
         scoreBoard.getChildren().addAll(scoreBoardHeading, scoreLists);
 
+        //Adds the player's personal best and how their latest games compare, if last game was recorded
+        if (recordedPlayer != null) {
+            scoreBoard.getChildren().add(this.buildStatistics());
+        }
+
         //Sets ScoresScene to returns to the MenuScene after displaying the scoreboard for 15 seconds
         scoreboardTimer = Executors.newSingleThreadScheduledExecutor();
         scoreboardTimer.scheduleAtFixedRate(() -> Platform.runLater(this::endScoresScene), 15, 15, TimeUnit.SECONDS);
@@ -474,6 +538,55 @@ public class ScoresScene extends BaseScene {
         mainPane.setCenter(scoreBoard);
     }
 
+    /**
+     * Records last game in the statistics, if there was a last game
+     * @param player the player who played it
+     */
+    public void recordGame(String player) {
+        if (gameRecordRequestedListener == null || player == null || player.isBlank()) {
+            return;
+        }
+        logger.info("Recording game played by {}", player);
+        gameWindow.getStatisticsStore().record(gameRecordRequestedListener.gameRecordRequested().withPlayer(player));
+        recordedPlayer = player;
+    }
+
+    /**
+     * Builds the recorded player's statistics in last game's mode: their personal best, and their latest scores against their average
+     * @return the statistics
+     */
+    public VBox buildStatistics() {
+        var statisticsStore = gameWindow.getStatisticsStore();
+        var mode = multiplayerScoresListener != null ? GameRecord.Mode.MULTIPLAYER : GameRecord.Mode.CHALLENGE;
+        var best = statisticsStore.getPersonalBest(recordedPlayer, mode);
+        var average = statisticsStore.getAverageScore(recordedPlayer, mode);
+        var recentScores = statisticsStore.getRecentScores(recordedPlayer, mode, RECENT_GAMES);
+
+        var statistics = new VBox();
+        statistics.setAlignment(Pos.CENTER);
+        var bestText = new Text(String.format("%s's best: %d in %d games, average %.0f", recordedPlayer, best.score(),
+                statisticsStore.getGamesPlayed(recordedPlayer, mode), average));
+        bestText.getStyleClass().add("statistics");
+        statistics.getChildren().add(bestText);
+
+        //Compares the latest games with every game, once there are enough games to tell
+        if (recentScores.size() > 1) {
+            var recentAverage = recentScores.stream().mapToInt(Integer::intValue).average().orElse(0);
+            String trend;
+            if (recentAverage > average * (1 + TREND_MARGIN)) {
+                trend = "trending up";
+            } else if (recentAverage < average * (1 - TREND_MARGIN)) {
+                trend = "trending down";
+            } else {
+                trend = "holding steady";
+            }
+            var recentText = new Text("Last " + recentScores.size() + ": " + recentScores.stream().map(String::valueOf).collect(Collectors.joining(", ")) + " - " + trend);
+            recentText.getStyleClass().add("statistics");
+            statistics.getChildren().add(recentText);
+        }
+        return statistics;
+    }
+
     /**
      * Handles exiting this scene
      */
@@ -483,6 +596,9 @@ public class ScoresScene extends BaseScene {
         //Cleans up this scene and loads the menu scene
         Multimedia.getMusicPlayer().stop();
         this.setOnScoreRequested(null);
+        subscriptions.forEach(Subscription::cancel);
+        subscriptions.clear();
+        onlineScoresTimeout.stop();
         if (scoreboardTimer != null) {
             scoreboardTimer.shutdownNow();
         }
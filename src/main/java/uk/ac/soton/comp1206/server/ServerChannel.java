@@ -0,0 +1,205 @@
+package uk.ac.soton.comp1206.server;
+
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A ServerChannel is a lobby players can join and, once its host starts it, the game they play together.
+ * Every player in a game is dealt the same sequence of game pieces from the channel's seed, so a game is fair.
+ */
+public class ServerChannel {
+
+    /**
+     * The channel's name
+     */
+    private final String name;
+
+    /**
+     * The players in the channel, in the order they joined
+     */
+    private final List<ServerPlayer> players = new ArrayList<>();
+
+    /**
+     * The player who can start the game
+     */
+    private ServerPlayer host;
+
+    /**
+     * Whether the game has started
+     */
+    private boolean started;
+
+    /**
+     * The seed every player's game pieces are dealt from
+     */
+    private long seed;
+
+    /**
+     * Creates a new channel
+     * @param name the channel's name
+     */
+    public ServerChannel(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds a player to the channel, making them the host if nobody else is
+     * @param player the player
+     */
+    public void add(ServerPlayer player) {
+        players.add(player);
+        player.setChannel(this);
+        if (host == null) {
+            host = player;
+        }
+    }
+
+    /**
+     * Removes a player from the channel, passing the host on to the next player if they were the host
+     * @param player the player
+     * @return the new host, or null if the host didn't change
+     */
+    public ServerPlayer remove(ServerPlayer player) {
+        players.remove(player);
+        player.setChannel(null);
+        if (player != host) {
+            return null;
+        }
+        host = players.isEmpty() ? null : players.get(0);
+        return host;
+    }
+
+    /**
+     * Starts the game, putting every player at the start with the same pieces
+     * @param seed the seed the game pieces are dealt from
+     */
+    public void start(long seed) {
+        this.started = true;
+        this.seed = seed;
+        for (var player : players) {
+            player.startGame(PieceGenerator.uniform(seed));
+        }
+    }
+
+    /**
+     * Sends a message to every connected player in the channel
+     * @param message the message
+     */
+    public void broadcast(String message) {
+        for (var player : players) {
+            player.send(message);
+        }
+    }
+
+    /**
+     * Sends a message to every connected player in the channel but one
+     * @param message the message
+     * @param except the player not to send it to
+     */
+    public void broadcast(String message, ServerPlayer except) {
+        for (var player : players) {
+            if (player != except) {
+                player.send(message);
+            }
+        }
+    }
+
+    /**
+     * Finds a disconnected player with the given name, who a reconnecting client can take the place of
+     * @param nick the name
+     * @return the player, or null if there isn't one
+     */
+    public ServerPlayer findDisconnected(String nick) {
+        for (var player : players) {
+            if (player.getConnection() == null && player.getNick().equals(nick)) {
+                return player;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if every player in the channel is disconnected
+     * @return true if nobody is connected
+     */
+    public boolean isAbandoned() {
+        for (var player : players) {
+            if (player.getConnection() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the USERS message body: every player's name, one per line
+     * @return the names
+     */
+    public String getUsers() {
+        var users = new StringBuilder();
+        for (var player : players) {
+            if (!users.isEmpty()) {
+                users.append('\n');
+            }
+            users.append(player.getNick());
+        }
+        return users.toString();
+    }
+
+    /**
+     * Gets the SCORES message body: every player's name, score and lives, one per line
+     * @return the scores
+     */
+    public String getScores() {
+        var scores = new StringBuilder();
+        for (var player : players) {
+            if (!scores.isEmpty()) {
+                scores.append('\n');
+            }
+            scores.append(player.getScoreEntry());
+        }
+        return scores.toString();
+    }
+
+    /**
+     * Gets the players in the channel, in the order they joined
+     * @return the players
+     */
+    public List<ServerPlayer> getPlayers() {
+        return players;
+    }
+
+    /**
+     * Gets the channel's name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the player who can start the game
+     * @return the host
+     */
+    public ServerPlayer getHost() {
+        return host;
+    }
+
+    /**
+     * Checks whether the game has started
+     * @return true if it has started
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Gets the seed the game pieces are dealt from
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,241 @@
+package uk.ac.soton.comp1206.server;
+
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+import uk.ac.soton.comp1206.network.BoardCodec;
+
+/**
+ * A ServerPlayer is the server's record of one player: their name, the channel they are in and how their game is going.
+ * A player in a game that has started outlives their connection, so a client which reconnects can take their place again.
+ */
+public class ServerPlayer {
+
+    /**
+     * The number of lives every player starts a game with
+     */
+    static final int STARTING_LIVES = 3;
+
+    /**
+     * The connection to the player, or null while they are disconnected
+     */
+    private WebSocketConnection connection;
+
+    /**
+     * The player's name
+     */
+    private String nick;
+
+    /**
+     * The channel the player is in, or null if they aren't in one
+     */
+    private ServerChannel channel;
+
+    /**
+     * The player's score in the current game
+     */
+    private int score;
+
+    /**
+     * The player's number of lives in the current game
+     */
+    private int lives = STARTING_LIVES;
+
+    /**
+     * Whether the player has died in the current game
+     */
+    private boolean dead;
+
+    /**
+     * The player's latest board values, kept up to date by their BOARD and BOARDDELTA messages
+     */
+    private final int[] board = new int[Grid.MAX_BLOCKS];
+
+    /**
+     * The number of values in the player's board, or 0 if they haven't sent one
+     */
+    private int boardLength;
+
+    /**
+     * Whether the player asked to be sent BOARDDELTA messages
+     */
+    private boolean boardDelta;
+
+    /**
+     * Deals the player's game pieces
+     */
+    private PieceGenerator pieces;
+
+    /**
+     * Creates a new player on a connection
+     * @param connection the connection to the player
+     * @param nick the player's starting name
+     * @param pieces deals the player's game pieces until a game starts
+     */
+    public ServerPlayer(WebSocketConnection connection, String nick, PieceGenerator pieces) {
+        this.connection = connection;
+        this.nick = nick;
+        this.pieces = pieces;
+    }
+
+    /**
+     * Sends a message to the player, if they are connected
+     * @param message the message
+     */
+    public void send(String message) {
+        if (connection != null) {
+            connection.send(message);
+        }
+    }
+
+    /**
+     * Puts the player at the start of a new game
+     * @param pieces deals the player's game pieces in the new game
+     */
+    public void startGame(PieceGenerator pieces) {
+        this.pieces = pieces;
+        score = 0;
+        lives = STARTING_LIVES;
+        dead = false;
+    }
+
+    /**
+     * Replaces the player's board with the values from a BOARD message
+     * @param values the board values, separated by spaces
+     */
+    public void setBoard(String values) {
+        boardLength = BoardCodec.readBoard(values, 0, board);
+    }
+
+    /**
+     * Updates the player's board with the index and value pairs from a BOARDDELTA message
+     * @param pairs the number of pairs
+     * @param cells the pairs, each index followed by its value
+     */
+    public void updateBoard(int pairs, int[] cells) {
+        for (int i = 0; i < pairs; i++) {
+            var index = cells[i * 2];
+            if (index >= board.length) {
+                throw new IllegalArgumentException("No such block: " + index);
+            }
+            board[index] = cells[i * 2 + 1];
+            boardLength = Math.max(boardLength, index + 1);
+        }
+    }
+
+    /**
+     * Gets the player's board as the body of a BOARD message
+     * @return the player's name and every board value
+     */
+    public String getBoardMessage() {
+        var message = new StringBuilder(nick).append(':');
+        BoardCodec.writeBoard(message, board, boardLength);
+        //Drops the space written before the first value
+        if (boardLength > 0) {
+            message.deleteCharAt(nick.length() + 1);
+        }
+        return message.toString();
+    }
+
+    /**
+     * Checks whether the player asked to be sent BOARDDELTA messages
+     * @return true if they did
+     */
+    public boolean isBoardDelta() {
+        return boardDelta;
+    }
+
+    /**
+     * Sets whether the player asked to be sent BOARDDELTA messages
+     * @param boardDelta true if they did
+     */
+    public void setBoardDelta(boolean boardDelta) {
+        this.boardDelta = boardDelta;
+    }
+
+    /**
+     * Deals the player's next game piece
+     * @return the game piece value
+     */
+    public int nextPiece() {
+        return pieces.next();
+    }
+
+    /**
+     * Gets the player's entry in the SCORES message
+     * @return the player's name, score and number of lives or DEAD
+     */
+    public String getScoreEntry() {
+        return nick + ":" + score + ":" + (dead ? "DEAD" : lives);
+    }
+
+    /**
+     * Gets the connection to the player
+     * @return the connection, or null while they are disconnected
+     */
+    public WebSocketConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Sets the connection to the player
+     * @param connection the connection, or null when they disconnect
+     */
+    public void setConnection(WebSocketConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Gets the player's name
+     * @return name
+     */
+    public String getNick() {
+        return nick;
+    }
+
+    /**
+     * Sets the player's name
+     * @param nick name
+     */
+    public void setNick(String nick) {
+        this.nick = nick;
+    }
+
+    /**
+     * Gets the channel the player is in
+     * @return the channel, or null if they aren't in one
+     */
+    public ServerChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Sets the channel the player is in
+     * @param channel the channel, or null when they leave
+     */
+    public void setChannel(ServerChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Sets the player's score
+     * @param score score
+     */
+    public void setScore(int score) {
+        this.score = score;
+    }
+
+    /**
+     * Sets the player's number of lives
+     * @param lives lives
+     */
+    public void setLives(int lives) {
+        this.lives = lives;
+    }
+
+    /**
+     * Marks the player as dead in the current game
+     */
+    public void die() {
+        this.dead = true;
+    }
+}
@@ -0,0 +1,717 @@
+package uk.ac.soton.comp1206.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+import uk.ac.soton.comp1206.network.BoardCodec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The TetrECSServer is a WebSocket server speaking the same protocol as the university's TetrECS server.
+ * It lets multiplayer run over a LAN or on one machine, and stands in for the real server when testing throughput.
+ * Every socket is non-blocking and served by a single selector thread, which also owns all the channel and player state,
+ * so the protocol handling needs no locks.
+ * A client can ask for BOARDDELTA messages with FEATURES, and is sent other players' board deltas as they arrive,
+ * while everyone else is sent the full BOARD that a delta works out to.
+ * <p>
+ * Usage: TetrECSServer [--bind ADDRESS] [--port N] [--seed N]
+ */
+public class TetrECSServer {
+
+    private static final Logger logger = LogManager.getLogger(TetrECSServer.class);
+
+    /**
+     * The port the server listens on unless told otherwise
+     */
+    public static final int DEFAULT_PORT = 9700;
+
+    /**
+     * The number of high scores kept
+     */
+    private static final int MAX_HISCORES = 10;
+
+    /**
+     * The address the server listens on
+     */
+    private final InetSocketAddress address;
+
+    /**
+     * Seeds each player's and each game's game pieces
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The selector every socket is registered with
+     */
+    private Selector selector;
+
+    /**
+     * The socket new connections are accepted on
+     */
+    private ServerSocketChannel serverSocket;
+
+    /**
+     * The player on each connection
+     */
+    private final Map<WebSocketConnection, ServerPlayer> players = new HashMap<>();
+
+    /**
+     * The open channels, in the order they were created
+     */
+    private final Map<String, ServerChannel> channels = new LinkedHashMap<>();
+
+    /**
+     * The high scores, highest first
+     */
+    private final List<HiScore> hiScores = new ArrayList<>();
+
+    /**
+     * The number given to the next guest's name
+     */
+    private int nextGuest = 1;
+
+    /**
+     * Messages decoded from the current socket, reused for every read
+     */
+    private final List<String> received = new ArrayList<>();
+
+    /**
+     * Index and value pairs read from a BOARDDELTA message, reused for every message
+     */
+    private final int[] deltaPairs = new int[Grid.MAX_BLOCKS * 2];
+
+    /**
+     * The number of clients connected
+     */
+    private volatile int connections;
+
+    /**
+     * The number of messages received from clients
+     */
+    private final AtomicLong messagesReceived = new AtomicLong();
+
+    /**
+     * A name and score in the high scores
+     * @param name the player's name
+     * @param score the score
+     */
+    private record HiScore(String name, int score) {}
+
+    /**
+     * Creates a new server which will listen on the given address
+     * @param address the address to listen on, with port 0 for any free port
+     * @param seed the seed every player's game pieces are derived from
+     */
+    public TetrECSServer(InetSocketAddress address, long seed) {
+        this.address = address;
+        this.random = new SplittableRandom(seed);
+
+        //Starts with a full table of high scores for players to beat
+        for (int i = MAX_HISCORES; i > 0; i--) {
+            hiScores.add(new HiScore("TetrECS", i * 1000));
+        }
+    }
+
+    /**
+     * Runs the server from the command line
+     * @param args commandline arguments
+     * @throws IOException if the server can't listen on the address
+     */
+    public static void main(String[] args) throws IOException {
+        var bind = "0.0.0.0";
+        var port = DEFAULT_PORT;
+        var seed = System.nanoTime();
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            var value = args[++i];
+            switch (args[i - 1]) {
+                case "--bind" -> bind = value;
+                case "--port" -> port = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+        new TetrECSServer(new InetSocketAddress(bind, port), seed).start();
+    }
+
+    /**
+     * Starts listening and serves clients on a new thread until the server is stopped
+     * @throws IOException if the server can't listen on the address
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverSocket = ServerSocketChannel.open();
+        serverSocket.bind(address);
+        serverSocket.configureBlocking(false);
+        serverSocket.register(selector, SelectionKey.OP_ACCEPT);
+        logger.info("Listening on {}", serverSocket.getLocalAddress());
+
+        var thread = new Thread(this::serve, "tetrecs-server");
+        thread.start();
+    }
+
+    /**
+     * Stops the server, disconnecting every client
+     */
+    public void stop() {
+        logger.info("Stopping server");
+        try {
+            selector.close();
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.error("Unable to stop server: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the port the server is listening on, which is useful when it was started on any free port
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.socket().getLocalPort();
+    }
+
+    /**
+     * Gets the number of clients connected
+     * @return number of clients
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Gets the number of messages received from clients
+     * @return number of messages
+     */
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+
+    /**
+     * Waits for sockets to be ready and serves them until the selector is closed
+     */
+    private void serve() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                var keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    var key = keys.next();
+                    keys.remove();
+                    this.serve(key);
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            logger.info("Server stopped");
+        } catch (IOException e) {
+            logger.error("Server failed: {}", e.getMessage(), e);
+        } finally {
+            for (var connection : players.keySet()) {
+                connection.closeSocket();
+            }
+        }
+    }
+
+    /**
+     * Serves one socket that is ready
+     * @param key the socket's key
+     */
+    private void serve(SelectionKey key) {
+        if (key.isValid() && key.isAcceptable()) {
+            this.accept();
+            return;
+        }
+        var connection = (WebSocketConnection) key.attachment();
+        try {
+            if (key.isValid() && key.isReadable()) {
+                if (!connection.read(received)) {
+                    this.disconnect(key, connection);
+                    return;
+                }
+                for (var message : received) {
+                    messagesReceived.incrementAndGet();
+                    this.receive(players.get(connection), message);
+                }
+                received.clear();
+            }
+            if (key.isValid() && key.isWritable() && !connection.write()) {
+                this.disconnect(key, connection);
+            }
+        } catch (IOException e) {
+            logger.info("Lost {}: {}", connection, e.getMessage());
+            received.clear();
+            this.disconnect(key, connection);
+        }
+    }
+
+    /**
+     * Accepts a new client, who starts as a guest outside any channel
+     */
+    private void accept() {
+        try {
+            var socket = serverSocket.accept();
+            if (socket == null) {
+                return;
+            }
+            socket.configureBlocking(false);
+            socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            var key = socket.register(selector, SelectionKey.OP_READ);
+            var connection = new WebSocketConnection(socket, key);
+            key.attach(connection);
+            players.put(connection, new ServerPlayer(connection, "Guest" + nextGuest++, PieceGenerator.uniform(random.nextLong())));
+            connections = players.size();
+            logger.info("Accepted {}", connection);
+        } catch (IOException e) {
+            logger.error("Unable to accept client: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Closes a client's socket and takes them out of their channel
+     * A player in a game that has started keeps their place, so they can take it again if they reconnect
+     * @param key the socket's key
+     * @param connection the connection
+     */
+    private void disconnect(SelectionKey key, WebSocketConnection connection) {
+        logger.info("Disconnected {}", connection);
+        key.cancel();
+        connection.closeSocket();
+
+        var player = players.remove(connection);
+        connections = players.size();
+        if (player == null) {
+            return;
+        }
+        var channel = player.getChannel();
+        if (channel != null && channel.isStarted()) {
+            player.setConnection(null);
+            if (channel.isAbandoned()) {
+                channels.remove(channel.getName());
+            }
+        } else if (channel != null) {
+            this.leave(player);
+        }
+    }
+
+    /**
+     * Handles one message from a player
+     * @param player the player
+     * @param message the message
+     */
+    private void receive(ServerPlayer player, String message) {
+        logger.debug("Received from {}: {}", player.getNick(), message);
+        var space = message.indexOf(' ');
+        var command = space == -1 ? message : message.substring(0, space);
+        var body = space == -1 ? "" : message.substring(space + 1);
+        switch (command) {
+            case "LIST" -> this.list(player);
+            case "CREATE" -> this.create(player, body.trim());
+            case "JOIN" -> this.join(player, body.trim());
+            case "PART" -> this.part(player);
+            case "NICK" -> this.nick(player, body.trim());
+            case "USERS" -> this.users(player);
+            case "MSG" -> this.msg(player, body);
+            case "START" -> this.start(player);
+            case "PIECE" -> player.send("PIECE " + player.nextPiece());
+            case "SCORES" -> this.scores(player);
+            case "BOARD" -> this.board(player, body);
+            case "BOARDDELTA" -> this.boardDelta(player, body);
+            case "FEATURES" -> this.features(player, body);
+            case "SCORE" -> this.score(player, body.trim());
+            case "LIVES" -> this.lives(player, body.trim());
+            case "DIE" -> this.die(player);
+            case "HISCORES" -> this.hiScores(player);
+            case "HISCORE" -> this.hiScore(player, body.trim());
+            case "QUIT" -> this.quit(player);
+            default -> player.send("ERROR Unknown command: " + command);
+        }
+    }
+
+    /**
+     * Sends a player the channels they can join
+     * @param player the player
+     */
+    private void list(ServerPlayer player) {
+        var list = new StringBuilder("CHANNELS");
+        var first = true;
+        for (var channel : channels.values()) {
+            if (!channel.isStarted()) {
+                list.append(first ? ' ' : '\n').append(channel.getName());
+                first = false;
+            }
+        }
+        player.send(list.toString());
+    }
+
+    /**
+     * Creates a channel with the player as its host
+     * @param player the player
+     * @param name the channel's name
+     */
+    private void create(ServerPlayer player, String name) {
+        if (player.getChannel() != null) {
+            player.send("ERROR You are already in a channel");
+        } else if (!isValidName(name)) {
+            player.send("ERROR Invalid channel name");
+        } else if (channels.containsKey(name)) {
+            player.send("ERROR Channel " + name + " already exists");
+        } else {
+            logger.info("{} created channel {}", player.getNick(), name);
+            var channel = new ServerChannel(name);
+            channels.put(name, channel);
+            this.enter(player, channel);
+        }
+    }
+
+    /**
+     * Adds the player to a channel, or puts them back in their place in a game they were disconnected from
+     * @param player the player
+     * @param name the channel's name
+     */
+    private void join(ServerPlayer player, String name) {
+        var channel = channels.get(name);
+        if (player.getChannel() != null) {
+            player.send("ERROR You are already in a channel");
+        } else if (channel == null) {
+            player.send("ERROR No such channel: " + name);
+        } else if (!channel.isStarted()) {
+            this.enter(player, channel);
+        } else {
+            //A player can only join a game that has started by taking the place they lost when they disconnected
+            var previous = channel.findDisconnected(player.getNick());
+            if (previous == null) {
+                player.send("ERROR Game in " + name + " has already started");
+                return;
+            }
+            logger.info("{} resumed in channel {}", player.getNick(), name);
+            var connection = player.getConnection();
+            previous.setConnection(connection);
+            players.put(connection, previous);
+            previous.send("JOIN " + name);
+            channel.broadcast("SCORES " + channel.getScores());
+        }
+    }
+
+    /**
+     * Puts the player in a lobby and tells everyone in it
+     * @param player the player
+     * @param channel the channel
+     */
+    private void enter(ServerPlayer player, ServerChannel channel) {
+        channel.add(player);
+        player.send("JOIN " + channel.getName());
+        player.send("NICK " + player.getNick());
+        if (channel.getHost() == player) {
+            player.send("HOST");
+        }
+        channel.broadcast("USERS " + channel.getUsers());
+    }
+
+    /**
+     * Takes the player out of their channel
+     * @param player the player
+     */
+    private void part(ServerPlayer player) {
+        if (player.getChannel() == null) {
+            player.send("ERROR You are not in a channel");
+            return;
+        }
+        this.leave(player);
+        player.send("PARTED");
+    }
+
+    /**
+     * Takes the player out of their channel, handing the host on and closing the channel once it is empty
+     * @param player the player
+     */
+    private void leave(ServerPlayer player) {
+        var channel = player.getChannel();
+        var newHost = channel.remove(player);
+        if (channel.getHost() == null || channel.isAbandoned()) {
+            logger.info("Closing channel {}", channel.getName());
+            channels.remove(channel.getName());
+            return;
+        }
+        if (newHost != null && !channel.isStarted()) {
+            newHost.send("HOST");
+        }
+        channel.broadcast(channel.isStarted() ? "SCORES " + channel.getScores() : "USERS " + channel.getUsers());
+    }
+
+    /**
+     * Changes the player's name
+     * @param player the player
+     * @param nick the new name
+     */
+    private void nick(ServerPlayer player, String nick) {
+        if (!isValidName(nick)) {
+            player.send("ERROR Invalid name");
+            return;
+        }
+        var old = player.getNick();
+        player.setNick(nick);
+        player.send("NICK " + nick);
+
+        var channel = player.getChannel();
+        if (channel != null) {
+            channel.broadcast("NICK " + old + ":" + nick, player);
+            channel.broadcast("USERS " + channel.getUsers());
+        }
+    }
+
+    /**
+     * Sends the player the names of everyone in their channel
+     * @param player the player
+     */
+    private void users(ServerPlayer player) {
+        var channel = player.getChannel();
+        if (channel == null) {
+            player.send("ERROR You are not in a channel");
+        } else {
+            player.send("USERS " + channel.getUsers());
+        }
+    }
+
+    /**
+     * Sends a chat message to everyone in the player's channel
+     * @param player the player
+     * @param text the message
+     */
+    private void msg(ServerPlayer player, String text) {
+        var channel = player.getChannel();
+        if (channel == null) {
+            player.send("ERROR You are not in a channel");
+        } else {
+            channel.broadcast("MSG " + player.getNick() + ":" + text);
+        }
+    }
+
+    /**
+     * Starts the game in the player's channel, if they are its host
+     * @param player the player
+     */
+    private void start(ServerPlayer player) {
+        var channel = player.getChannel();
+        if (channel == null || channel.getHost() != player) {
+            player.send("ERROR Only the host can start the game");
+        } else if (channel.isStarted()) {
+            player.send("ERROR The game has already started");
+        } else {
+            logger.info("Starting game in channel {}", channel.getName());
+            channel.start(random.nextLong());
+            channel.broadcast("START");
+        }
+    }
+
+    /**
+     * Sends the player everyone's scores and lives in their channel
+     * @param player the player
+     */
+    private void scores(ServerPlayer player) {
+        var channel = player.getChannel();
+        if (channel == null) {
+            player.send("ERROR You are not in a channel");
+        } else {
+            player.send("SCORES " + channel.getScores());
+        }
+    }
+
+    /**
+     * Records the player's game board and sends it to everyone else in their channel
+     * @param player the player
+     * @param board the board values
+     */
+    private void board(ServerPlayer player, String board) {
+        try {
+            player.setBoard(board);
+        } catch (IllegalArgumentException e) {
+            player.send("ERROR Invalid board: " + e.getMessage());
+            return;
+        }
+        var channel = player.getChannel();
+        if (channel != null) {
+            channel.broadcast("BOARD " + player.getNick() + ":" + board, player);
+        }
+    }
+
+    /**
+     * Updates the player's game board with the blocks that changed and sends the change to everyone else in their channel
+     * Players who asked for board deltas are sent the delta, and everyone else the full board
+     * @param player the player
+     * @param delta the changed blocks, as index and value pairs
+     */
+    private void boardDelta(ServerPlayer player, String delta) {
+        try {
+            player.updateBoard(BoardCodec.readDelta(delta, 0, deltaPairs), deltaPairs);
+        } catch (IllegalArgumentException e) {
+            player.send("ERROR Invalid board delta: " + e.getMessage());
+            return;
+        }
+        var channel = player.getChannel();
+        if (channel == null) {
+            return;
+        }
+        var deltaMessage = "BOARDDELTA " + player.getNick() + ":" + delta;
+        String boardMessage = null;
+        for (var other : channel.getPlayers()) {
+            if (other == player) {
+                continue;
+            }
+            if (other.isBoardDelta()) {
+                other.send(deltaMessage);
+            } else {
+                if (boardMessage == null) {
+                    boardMessage = "BOARD " + player.getBoardMessage();
+                }
+                other.send(boardMessage);
+            }
+        }
+    }
+
+    /**
+     * Agrees to the optional features the player asked for that this server supports
+     * @param player the player
+     * @param features the feature names, separated by spaces
+     */
+    private void features(ServerPlayer player, String features) {
+        var agreed = new StringBuilder("FEATURES");
+        player.setBoardDelta(false);
+        for (var feature : features.split(" ")) {
+            if (feature.equals(BoardCodec.BOARD_DELTA)) {
+                player.setBoardDelta(true);
+                agreed.append(' ').append(feature);
+            }
+        }
+        player.send(agreed.toString());
+    }
+
+    /**
+     * Updates the player's score and sends everyone in their channel the new scores
+     * @param player the player
+     * @param score the score
+     */
+    private void score(ServerPlayer player, String score) {
+        try {
+            player.setScore(Integer.parseInt(score));
+        } catch (NumberFormatException e) {
+            player.send("ERROR Invalid score: " + score);
+            return;
+        }
+        this.broadcastScores(player);
+    }
+
+    /**
+     * Updates the player's number of lives and sends everyone in their channel the new scores
+     * @param player the player
+     * @param lives the number of lives
+     */
+    private void lives(ServerPlayer player, String lives) {
+        try {
+            player.setLives(Integer.parseInt(lives));
+        } catch (NumberFormatException e) {
+            player.send("ERROR Invalid lives: " + lives);
+            return;
+        }
+        this.broadcastScores(player);
+    }
+
+    /**
+     * Marks the player as dead and sends everyone in their channel the new scores
+     * @param player the player
+     */
+    private void die(ServerPlayer player) {
+        player.die();
+        this.broadcastScores(player);
+    }
+
+    /**
+     * Sends everyone in the player's channel the scores, if the channel's game has started
+     * @param player the player
+     */
+    private void broadcastScores(ServerPlayer player) {
+        var channel = player.getChannel();
+        if (channel != null && channel.isStarted()) {
+            channel.broadcast("SCORES " + channel.getScores());
+        }
+    }
+
+    /**
+     * Sends the player the high scores
+     * @param player the player
+     */
+    private void hiScores(ServerPlayer player) {
+        var message = new StringBuilder("HISCORES ");
+        for (int i = 0; i < hiScores.size(); i++) {
+            if (i > 0) {
+                message.append('\n');
+            }
+            message.append(hiScores.get(i).name()).append(':').append(hiScores.get(i).score());
+        }
+        player.send(message.toString());
+    }
+
+    /**
+     * Adds a score to the high scores, if it is high enough
+     * @param player the player
+     * @param entry the name and score, as "name:score"
+     */
+    private void hiScore(ServerPlayer player, String entry) {
+        var colon = entry.lastIndexOf(':');
+        int score;
+        try {
+            score = Integer.parseInt(entry.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            player.send("ERROR Invalid high score: " + entry);
+            return;
+        }
+        var name = entry.substring(0, Math.max(colon, 0));
+        if (colon == -1 || !isValidName(name)) {
+            player.send("ERROR Invalid high score: " + entry);
+            return;
+        }
+
+        //Keeps the table in order, with a new score below any equal score already there
+        var index = 0;
+        while (index < hiScores.size() && hiScores.get(index).score() >= score) {
+            index++;
+        }
+        hiScores.add(index, new HiScore(name, score));
+        if (hiScores.size() > MAX_HISCORES) {
+            hiScores.remove(MAX_HISCORES);
+        }
+        player.send("NEWSCORE " + name + ":" + score);
+    }
+
+    /**
+     * Disconnects the player
+     * @param player the player
+     */
+    private void quit(ServerPlayer player) {
+        var connection = player.getConnection();
+        if (player.getChannel() != null) {
+            this.leave(player);
+        }
+        connection.close(1000);
+    }
+
+    /**
+     * Checks a player or channel name won't break the protocol
+     * @param name the name
+     * @return true if the name can be used
+     */
+    private static boolean isValidName(String name) {
+        return !name.isEmpty() && name.length() <= 32 && name.indexOf(':') == -1 && name.indexOf('\n') == -1;
+    }
+}
@@ -0,0 +1,419 @@
+package uk.ac.soton.comp1206.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A WebSocketConnection is one client's non-blocking socket, speaking the WebSocket protocol.
+ * It answers the opening HTTP handshake, then decodes the client's frames into text messages and encodes messages to it as frames.
+ * Every method is called on the server's selector thread, so nothing here is synchronised.
+ */
+public class WebSocketConnection {
+
+    private static final Logger logger = LogManager.getLogger(WebSocketConnection.class);
+
+    /**
+     * The GUID every WebSocket handshake key is combined with
+     */
+    private static final String HANDSHAKE_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /**
+     * The largest handshake or message a client may send, in bytes
+     */
+    private static final int MAX_MESSAGE_BYTES = 64 * 1024;
+
+    /**
+     * The most bytes that can be waiting to be written to a client before it is treated as too slow and closed
+     */
+    private static final int MAX_OUTPUT_BYTES = 1024 * 1024;
+
+    private static final int OPCODE_CONTINUATION = 0x0;
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+
+    /**
+     * The socket to the client
+     */
+    private final SocketChannel socket;
+
+    /**
+     * The key the socket is registered with on the server's selector
+     */
+    private final SelectionKey key;
+
+    /**
+     * Bytes read from the client which haven't been decoded yet
+     */
+    private ByteBuffer input = ByteBuffer.allocate(4096);
+
+    /**
+     * Frames waiting to be written to the client
+     */
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+
+    /**
+     * The number of bytes in the output which haven't been written yet
+     */
+    private int outputBytes;
+
+    /**
+     * The text message being put together from fragments, or null if there isn't one
+     */
+    private ByteBuffer fragments;
+
+    /**
+     * Whether the opening handshake has been answered
+     */
+    private boolean open;
+
+    /**
+     * Whether the connection is closing, so nothing more is read and it closes once its output is written
+     */
+    private boolean closing;
+
+    /**
+     * Creates a new connection for a socket accepted by the server
+     * @param socket the socket
+     * @param key the key the socket is registered with
+     */
+    public WebSocketConnection(SocketChannel socket, SelectionKey key) {
+        this.socket = socket;
+        this.key = key;
+    }
+
+    /**
+     * Reads everything the client has sent and decodes any complete text messages
+     * @param messages list to add the decoded messages to
+     * @return false if the client has gone and the connection should be closed
+     * @throws IOException if the socket fails
+     */
+    public boolean read(List<String> messages) throws IOException {
+        if (closing) {
+            //Nothing more is read, so stops the selector reporting the socket as readable
+            key.interestOps(SelectionKey.OP_WRITE);
+            return true;
+        }
+        if (!input.hasRemaining()) {
+            if (input.capacity() >= MAX_MESSAGE_BYTES + 14) {
+                logger.error("Closing {}: message too large", this);
+                this.close(1009);
+                return true;
+            }
+            input = ByteBuffer.allocate(input.capacity() * 2).put(input.flip());
+        }
+        if (socket.read(input) == -1) {
+            return false;
+        }
+
+        input.flip();
+        if (!open) {
+            this.handshake();
+        }
+        while (open && !closing && this.decodeFrame(messages)) {
+            //Keeps decoding until no complete frame is left
+        }
+        input.compact();
+        return true;
+    }
+
+    /**
+     * Sends a text message to the client
+     * @param message the message
+     */
+    public void send(String message) {
+        this.queueFrame(OPCODE_TEXT, ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes as many waiting frames as the socket will take
+     * @return false if the connection has finished closing
+     * @throws IOException if the socket fails
+     */
+    public boolean write() throws IOException {
+        while (!output.isEmpty()) {
+            var frame = output.peek();
+            outputBytes -= socket.write(frame);
+            if (frame.hasRemaining()) {
+                return true;
+            }
+            output.poll();
+        }
+        if (closing) {
+            return false;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        return true;
+    }
+
+    /**
+     * Starts closing the connection, sending the client a close frame first
+     * @param status the close status code
+     */
+    public void close(int status) {
+        if (closing) {
+            return;
+        }
+        if (open) {
+            this.queueFrame(OPCODE_CLOSE, ByteBuffer.allocate(2).putShort(0, (short) status));
+        }
+        key.interestOps(SelectionKey.OP_WRITE);
+        closing = true;
+    }
+
+    /**
+     * Closes the socket straight away, without a closing handshake
+     */
+    public void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.error("Unable to close {}: {}", this, e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the address of the client
+     * @return the address, or null if the socket is closed
+     */
+    public String getAddress() {
+        try {
+            return String.valueOf(socket.getRemoteAddress());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Answers the opening HTTP handshake once the whole request has been read
+     */
+    private void handshake() {
+        var request = this.takeHeaders();
+        if (request == null) {
+            return;
+        }
+
+        //Finds the key the client sent, which the answer has to prove it saw
+        String clientKey = null;
+        for (var line : request.split("\r\n")) {
+            var colon = line.indexOf(':');
+            if (colon != -1 && line.substring(0, colon).trim().toLowerCase(Locale.ROOT).equals("sec-websocket-key")) {
+                clientKey = line.substring(colon + 1).trim();
+            }
+        }
+        if (clientKey == null) {
+            logger.error("Rejecting {}: not a WebSocket handshake", this);
+            this.queue(ByteBuffer.wrap("HTTP/1.1 400 Bad Request\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII)));
+            this.close(1002);
+            return;
+        }
+
+        var response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey(clientKey) + "\r\n\r\n";
+        this.queue(ByteBuffer.wrap(response.getBytes(StandardCharsets.US_ASCII)));
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        open = true;
+    }
+
+    /**
+     * Takes the HTTP headers off the input if all of them have arrived
+     * @return the headers, or null if they haven't all arrived
+     */
+    private String takeHeaders() {
+        for (int i = input.position(); i + 3 < input.limit(); i++) {
+            if (input.get(i) == '\r' && input.get(i + 1) == '\n' && input.get(i + 2) == '\r' && input.get(i + 3) == '\n') {
+                var headers = new byte[i - input.position()];
+                input.get(headers);
+                input.position(i + 4);
+                return new String(headers, StandardCharsets.US_ASCII);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes one frame from the input if it has all arrived
+     * @param messages list to add a completed text message to
+     * @return true if a frame was decoded
+     */
+    private boolean decodeFrame(List<String> messages) {
+        var start = input.position();
+        if (input.remaining() < 2) {
+            return false;
+        }
+        var first = input.get(start) & 0xFF;
+        var second = input.get(start + 1) & 0xFF;
+        var fin = (first & 0x80) != 0;
+        var opcode = first & 0x0F;
+        var masked = (second & 0x80) != 0;
+
+        //Works out how long the frame is from its length field
+        long length = second & 0x7F;
+        var header = 2;
+        if (length == 126) {
+            if (input.remaining() < 4) {
+                return false;
+            }
+            length = input.getShort(start + 2) & 0xFFFF;
+            header = 4;
+        } else if (length == 127) {
+            if (input.remaining() < 10) {
+                return false;
+            }
+            length = input.getLong(start + 2);
+            header = 10;
+        }
+        if (!masked || length < 0 || length > MAX_MESSAGE_BYTES) {
+            logger.error("Closing {}: bad or oversized frame", this);
+            this.close(masked ? 1009 : 1002);
+            return false;
+        }
+        if (input.remaining() < header + 4 + length) {
+            return false;
+        }
+
+        //Unmasks the payload
+        var mask = start + header;
+        var payload = new byte[(int) length];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (input.get(mask + 4 + i) ^ input.get(mask + (i & 3)));
+        }
+        input.position(mask + 4 + payload.length);
+
+        switch (opcode) {
+            case OPCODE_TEXT, OPCODE_CONTINUATION -> this.addFragment(opcode, fin, payload, messages);
+            case OPCODE_PING -> this.queueFrame(OPCODE_PONG, ByteBuffer.wrap(payload));
+            case OPCODE_CLOSE -> this.close(1000);
+            case OPCODE_PONG -> {}
+            default -> {
+                logger.error("Closing {}: unsupported opcode {}", this, opcode);
+                this.close(1003);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a text frame to the message being put together, completing the message on its final frame
+     * @param opcode the frame's opcode
+     * @param fin whether this is the final frame of the message
+     * @param payload the frame's payload
+     * @param messages list to add a completed message to
+     */
+    private void addFragment(int opcode, boolean fin, byte[] payload, List<String> messages) {
+        if (opcode == OPCODE_TEXT && fin && fragments == null) {
+            messages.add(new String(payload, StandardCharsets.UTF_8));
+            return;
+        }
+        if ((opcode == OPCODE_TEXT) != (fragments == null)) {
+            logger.error("Closing {}: unexpected fragment", this);
+            this.close(1002);
+            return;
+        }
+        if (fragments == null) {
+            fragments = ByteBuffer.allocate(MAX_MESSAGE_BYTES);
+        }
+        if (fragments.remaining() < payload.length) {
+            logger.error("Closing {}: message too large", this);
+            this.close(1009);
+            return;
+        }
+        fragments.put(payload);
+        if (fin) {
+            messages.add(new String(fragments.array(), 0, fragments.position(), StandardCharsets.UTF_8));
+            fragments = null;
+        }
+    }
+
+    /**
+     * Encodes a frame and queues it to be written
+     * @param opcode the frame's opcode
+     * @param payload the frame's payload
+     */
+    private void queueFrame(int opcode, ByteBuffer payload) {
+        if (closing) {
+            return;
+        }
+        var length = payload.remaining();
+        var header = length < 126 ? 2 : length <= 0xFFFF ? 4 : 10;
+        var frame = ByteBuffer.allocate(header + length);
+        frame.put((byte) (0x80 | opcode));
+        if (length < 126) {
+            frame.put((byte) length);
+        } else if (length <= 0xFFFF) {
+            frame.put((byte) 126).putShort((short) length);
+        } else {
+            frame.put((byte) 127).putLong(length);
+        }
+        frame.put(payload).flip();
+
+        //A client that has let this much build up isn't reading, so is closed rather than held in memory
+        if (outputBytes + frame.remaining() > MAX_OUTPUT_BYTES) {
+            logger.error("Closing {}: {} bytes waiting to be written", this, outputBytes);
+            this.dropUnstartedOutput();
+            this.close(1008);
+            return;
+        }
+        this.queue(frame);
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Adds bytes to the output, counting them towards the limit
+     * @param bytes the bytes
+     */
+    private void queue(ByteBuffer bytes) {
+        outputBytes += bytes.remaining();
+        output.add(bytes);
+    }
+
+    /**
+     * Drops every waiting frame except one that has been partly written, which has to be finished so the client can read what follows it
+     */
+    private void dropUnstartedOutput() {
+        var first = output.peek();
+        output.clear();
+        outputBytes = 0;
+        if (first != null && first.position() > 0) {
+            this.queue(first);
+        }
+    }
+
+    /**
+     * Works out the answer to a handshake key
+     * @param clientKey the key the client sent
+     * @return the key to send back
+     */
+    private static String acceptKey(String clientKey) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-1").digest((clientKey + HANDSHAKE_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the string representation of this connection
+     * @return the client's address
+     */
+    @Override
+    public String toString() {
+        return "WebSocketConnection(" + this.getAddress() + ")";
+    }
+}
@@ -0,0 +1,100 @@
+package uk.ac.soton.comp1206.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A Distribution summarises one statistic collected over many simulated games.
+ * The samples are held in a primitive array, one per game, and sorted once to read off the percentiles.
+ */
+public class Distribution {
+
+    /**
+     * The name of the statistic
+     */
+    private final String name;
+
+    /**
+     * The samples, sorted into ascending order
+     */
+    private final long[] sorted;
+
+    /**
+     * The mean of the samples
+     */
+    private final double mean;
+
+    /**
+     * The standard deviation of the samples
+     */
+    private final double deviation;
+
+    /**
+     * Creates a new distribution from the given samples
+     * @param name the name of the statistic
+     * @param samples one sample per game, which is not modified
+     */
+    public Distribution(String name, long[] samples) {
+        if (samples.length == 0) {
+            throw new IllegalArgumentException("No samples for " + name);
+        }
+        this.name = name;
+        this.sorted = samples.clone();
+        Arrays.sort(sorted);
+
+        var sum = 0.0;
+        for (var sample : sorted) {
+            sum += sample;
+        }
+        mean = sum / sorted.length;
+        var squares = 0.0;
+        for (var sample : sorted) {
+            squares += (sample - mean) * (sample - mean);
+        }
+        deviation = Math.sqrt(squares / sorted.length);
+    }
+
+    /**
+     * Gets the mean of the samples
+     * @return the mean
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Gets the standard deviation of the samples
+     * @return the standard deviation
+     */
+    public double getDeviation() {
+        return deviation;
+    }
+
+    /**
+     * Gets a percentile of the samples, using the nearest rank
+     * @param percentile the percentile between 0 and 100
+     * @return the sample at that percentile
+     */
+    public long getPercentile(double percentile) {
+        var rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Gets the heading line matching the rows returned by toString
+     * @return the heading
+     */
+    public static String heading() {
+        return String.format("%-16s %12s %12s %10s %10s %10s %10s %10s %10s",
+                "statistic", "mean", "stddev", "min", "p10", "p50", "p90", "p99", "max");
+    }
+
+    /**
+     * Returns a summary of this distribution as one row of a table
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return String.format("%-16s %12.2f %12.2f %10d %10d %10d %10d %10d %10d",
+                name, mean, deviation, sorted[0], getPercentile(10), getPercentile(50), getPercentile(90), getPercentile(99), sorted[sorted.length - 1]);
+    }
+}
@@ -0,0 +1,87 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * The Greedy Policy tries every position, rotation and swap, and plays the move that scores the most straight away.
+ * Ties are broken in favour of the move that leaves the remaining rows and columns closest to full.
+ * Every move is evaluated on the grid's bitboard, so nothing is placed until the move is chosen.
+ */
+public class GreedyPolicy implements PlacementPolicy {
+
+    /**
+     * Chooses the valid move with the best immediate score
+     * @param game the game to choose a move for
+     * @param placement the placement to fill in with the chosen move
+     * @return true if a move was chosen
+     */
+    @Override
+    public boolean choose(Game game, Placement placement) {
+        var grid = game.getGrid();
+        var occupied = grid.getOccupied();
+        var best = Long.MIN_VALUE;
+        for (int swap = 0; swap < 2; swap++) {
+            var piece = swap == 0 ? game.getCurrentPiece() : game.getFollowingPiece();
+            for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                var rotated = piece.rotate(rotation);
+                for (int y = 0; y < grid.getRows(); y++) {
+                    for (int x = 0; x < grid.getCols(); x++) {
+                        var mask = grid.getPieceMask(rotated, x, y);
+                        if (mask == Grid.OUT_OF_BOUNDS || (occupied & mask) != 0) continue;
+
+                        var value = evaluate(grid, occupied | mask);
+                        if (value > best) {
+                            best = value;
+                            placement.set(swap == 1, rotation, x, y);
+                        }
+                    }
+                }
+            }
+        }
+        return best != Long.MIN_VALUE;
+    }
+
+    /**
+     * Scores the grid that a move would leave behind
+     * @param grid the grid being played on
+     * @param occupied the occupied blocks after the move, before any lines are cleared
+     * @return the value of the move, higher being better
+     */
+    private static long evaluate(Grid grid, long occupied) {
+        //Finds the lines the move would complete, in the same way as Game scores them
+        var lines = 0;
+        var clearMask = 0L;
+        for (int y = 0; y < grid.getRows(); y++) {
+            var rowMask = grid.getRowMask(y);
+            if ((occupied & rowMask) == rowMask) {
+                clearMask |= rowMask;
+                lines++;
+            }
+        }
+        for (int x = 0; x < grid.getCols(); x++) {
+            var colMask = grid.getColMask(x);
+            if ((occupied & colMask) == colMask) {
+                clearMask |= colMask;
+                lines++;
+            }
+        }
+        var score = (long) lines * Long.bitCount(clearMask);
+
+        //Rewards rows and columns which are nearly full, squaring the counts so that one full line beats two half lines
+        var remaining = occupied & ~clearMask;
+        var shape = 0L;
+        for (int y = 0; y < grid.getRows(); y++) {
+            var count = Long.bitCount(remaining & grid.getRowMask(y));
+            shape += (long) count * count;
+        }
+        for (int x = 0; x < grid.getCols(); x++) {
+            var count = Long.bitCount(remaining & grid.getColMask(x));
+            shape += (long) count * count;
+        }
+
+        //Immediate score always comes first, and the shape of the grid only breaks ties
+        return score * 10000 + shape;
+    }
+}
@@ -0,0 +1,46 @@
+package uk.ac.soton.comp1206.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A Latency Recorder collects round trip times from many threads, to be summarised as a Distribution afterwards.
+ */
+public class LatencyRecorder {
+
+    /**
+     * The recorded times in microseconds
+     */
+    private long[] samples = new long[1024];
+
+    /**
+     * The number of recorded times
+     */
+    private int size;
+
+    /**
+     * Records one round trip
+     * @param nanos the round trip time in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos / 1000;
+    }
+
+    /**
+     * Gets the number of round trips recorded
+     * @return number of round trips
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets a copy of the recorded times
+     * @return the times in microseconds
+     */
+    public synchronized long[] toArray() {
+        return Arrays.copyOf(samples, size);
+    }
+}
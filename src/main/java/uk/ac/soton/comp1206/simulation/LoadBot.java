@@ -0,0 +1,477 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameClock;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceBuffer;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+import uk.ac.soton.comp1206.network.BoardCodec;
+import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.Message;
+import uk.ac.soton.comp1206.network.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Load Bot is one headless multiplayer client, used by the LoadGenerator to put a server under load.
+ * It plays like a MultiplayerGame: it asks the server for every game piece, and sends its board and score after every placement.
+ * Each tick it places one game piece with its PlacementPolicy, and every so often it chats or asks for the scores.
+ * It times how long the server takes to answer each PIECE and SCORES request.
+ * The server also sends SCORES whenever a score in the channel changes, so each SCORES request is sent between two LIST requests,
+ * and is only timed if exactly one SCORES message arrives between their answers.
+ */
+public class LoadBot {
+
+    /**
+     * The number of game pieces requested before a game starts, as a MultiplayerGame does
+     */
+    private static final int STARTING_PIECES = 3;
+
+    /**
+     * The bot's connection to the server
+     */
+    private final Communicator communicator;
+
+    /**
+     * The handles of the listeners this bot added to the communicator, cancelled when it disconnects
+     */
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    /**
+     * The bot's name
+     */
+    private final String nick;
+
+    /**
+     * Chooses where each game piece is placed
+     */
+    private final PlacementPolicy policy;
+
+    /**
+     * The number of ticks between chat messages, or 0 for none
+     */
+    private final int chatEvery;
+
+    /**
+     * The number of ticks between SCORES requests, or 0 for none
+     */
+    private final int scoresEvery;
+
+    /**
+     * Records the round trip of every PIECE request
+     */
+    private final LatencyRecorder pieceLatency;
+
+    /**
+     * Records the round trip of every SCORES request that could be timed
+     */
+    private final LatencyRecorder scoresLatency;
+
+    /**
+     * When each unanswered PIECE request was sent, oldest first
+     */
+    private final Queue<Long> pieceRequests = new ConcurrentLinkedQueue<>();
+
+    /**
+     * When the SCORES request being timed was sent, or 0 if there isn't one
+     */
+    private long scoresSent;
+
+    /**
+     * The number of CHANNELS answers received out of the two either side of the SCORES request being timed
+     */
+    private int scoresMarkers;
+
+    /**
+     * The number of SCORES messages received between the two CHANNELS answers
+     */
+    private int scoresCandidates;
+
+    /**
+     * When the last SCORES message between the two CHANNELS answers arrived
+     */
+    private long scoresArrived;
+
+    /**
+     * The number of SCORES requests which couldn't be timed because other SCORES messages arrived alongside their answer
+     */
+    private final AtomicLong untimedScores = new AtomicLong();
+
+    /**
+     * Game piece values dealt by the server which haven't been played yet
+     */
+    private final PieceBuffer dealt = new PieceBuffer(8);
+
+    /**
+     * Released once the server confirms the bot has joined its channel
+     */
+    private final CountDownLatch joined = new CountDownLatch(1);
+
+    /**
+     * Whether the game in the bot's channel has started
+     */
+    private volatile boolean started;
+
+    /**
+     * The game being played, or null between games
+     */
+    private Game game;
+
+    /**
+     * The move chosen on each tick, reused
+     */
+    private final Placement placement = new Placement();
+
+    /**
+     * The number of ticks played
+     */
+    private int ticks;
+
+    /**
+     * Whether the server agreed to BOARDDELTA messages
+     */
+    private volatile boolean boardDelta;
+
+    /**
+     * The board last sent to the server, and the board now, reused
+     */
+    private final int[] sentBoard = new int[25];
+    private final int[] currentBoard = new int[25];
+
+    /**
+     * The score last sent to the server
+     */
+    private int sentScore = -1;
+
+    /**
+     * The number of game pieces placed
+     */
+    private final AtomicLong piecesPlaced = new AtomicLong();
+
+    /**
+     * The number of ticks skipped because the server hadn't dealt a game piece yet
+     */
+    private final AtomicLong starvedTicks = new AtomicLong();
+
+    /**
+     * The number of ERROR messages received
+     */
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Creates a new bot and connects it to the server
+     * @param server the server to connect to
+     * @param nick the bot's name
+     * @param policy chooses where each game piece is placed
+     * @param chatEvery the number of ticks between chat messages, or 0 for none
+     * @param scoresEvery the number of ticks between SCORES requests, or 0 for none
+     * @param boardDelta whether to ask the server for BOARDDELTA messages
+     * @param pieceLatency records the round trip of every PIECE request
+     * @param scoresLatency records the round trip of every SCORES request that could be timed
+     */
+    public LoadBot(String server, String nick, PlacementPolicy policy, int chatEvery, int scoresEvery, boolean boardDelta,
+                   LatencyRecorder pieceLatency, LatencyRecorder scoresLatency) {
+        this.nick = nick;
+        this.policy = policy;
+        this.chatEvery = chatEvery;
+        this.scoresEvery = scoresEvery;
+        this.pieceLatency = pieceLatency;
+        this.scoresLatency = scoresLatency;
+
+        //Messages are handled straight away on the communicator's reading thread
+        this.communicator = new Communicator(server);
+        subscriptions.add(communicator.subscribe(Message.Piece.class, this::pieceReceived));
+        subscriptions.add(communicator.subscribe(Message.Scores.class, (scores) -> this.scoresReceived()));
+        subscriptions.add(communicator.subscribe(Message.Channels.class, (channels) -> this.channelsReceived()));
+        subscriptions.add(communicator.subscribe(Message.Join.class, (join) -> joined.countDown()));
+        subscriptions.add(communicator.subscribe(Message.Start.class, (start) -> this.gameStarted()));
+        subscriptions.add(communicator.subscribe(Message.Error.class, (error) -> errors.incrementAndGet()));
+        subscriptions.add(communicator.subscribe(Message.Features.class, (features) -> this.boardDelta = features.supports(BoardCodec.BOARD_DELTA)));
+        communicator.send("NICK " + nick);
+        if (boardDelta) {
+            communicator.send("FEATURES " + BoardCodec.BOARD_DELTA);
+        }
+    }
+
+    /**
+     * Creates a channel, with this bot as its host
+     * @param channel the channel's name
+     */
+    public void create(String channel) {
+        communicator.send("CREATE " + channel);
+    }
+
+    /**
+     * Joins a channel
+     * @param channel the channel's name
+     */
+    public void join(String channel) {
+        communicator.send("JOIN " + channel);
+    }
+
+    /**
+     * Waits for the server to confirm the bot has joined its channel
+     * @param timeout how long to wait in milliseconds
+     * @return true if the bot joined in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitJoined(long timeout) throws InterruptedException {
+        return joined.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts the game in the bot's channel, which only works if it is the host
+     */
+    public void startGame() {
+        communicator.send("START");
+    }
+
+    /**
+     * Plays one tick: places a game piece, or loses a life if none can be placed, and chats or asks for the scores when due
+     */
+    public synchronized void tick() {
+        if (!started) {
+            return;
+        }
+        ticks++;
+        if (chatEvery > 0 && ticks % chatEvery == 0) {
+            communicator.send("MSG Tick " + ticks + " from " + nick);
+        }
+        if (scoresEvery > 0 && ticks % scoresEvery == 0) {
+            this.requestScores();
+        }
+
+        //A game needs its current and following piece, and every move after that needs one more
+        if (game == null) {
+            if (dealt.size() < 2) {
+                starvedTicks.incrementAndGet();
+                return;
+            }
+            game = new BotGame();
+            game.start();
+            sentScore = -1;
+            //Makes sure the first board of a game differs everywhere, so it is sent in full
+            Arrays.fill(sentBoard, -1);
+        }
+        if (dealt.isEmpty()) {
+            starvedTicks.incrementAndGet();
+            return;
+        }
+
+        if (policy.choose(game, placement)) {
+            if (placement.isSwap()) {
+                game.swapCurrentPiece();
+            }
+            if (placement.getRotation() != 0) {
+                game.rotateCurrentPiece(placement.getRotation());
+            }
+            game.blockClicked(placement.getX(), placement.getY());
+            piecesPlaced.incrementAndGet();
+            this.sendBoard();
+            if (game.getScore() != sentScore) {
+                sentScore = game.getScore();
+                communicator.send("SCORE " + sentScore);
+            }
+        } else {
+            //Nothing fits, so the bot waits out the timer and loses a life, starting a new game once it runs out
+            game.gameLoop();
+            communicator.send("LIVES " + Math.max(game.getLives(), 0));
+            if (game.getLives() < 0) {
+                game = null;
+            }
+        }
+        this.request("PIECE", pieceRequests);
+    }
+
+    /**
+     * Disconnects the bot
+     */
+    public void close() {
+        subscriptions.forEach(Subscription::cancel);
+        subscriptions.clear();
+        communicator.close();
+    }
+
+    /**
+     * Gets the bot's connection to the server
+     * @return the communicator
+     */
+    public Communicator getCommunicator() {
+        return communicator;
+    }
+
+    /**
+     * Gets the number of game pieces placed
+     * @return number of game pieces
+     */
+    public long getPiecesPlaced() {
+        return piecesPlaced.get();
+    }
+
+    /**
+     * Gets the number of ticks skipped because the server hadn't dealt a game piece yet
+     * @return number of ticks
+     */
+    public long getStarvedTicks() {
+        return starvedTicks.get();
+    }
+
+    /**
+     * Gets the number of ERROR messages received
+     * @return number of errors
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Gets the number of PIECE and SCORES requests still waiting for an answer
+     * @return number of requests
+     */
+    public synchronized int getUnanswered() {
+        return pieceRequests.size() + (scoresSent != 0 ? 1 : 0);
+    }
+
+    /**
+     * Gets the number of SCORES requests which were answered but couldn't be timed
+     * @return number of requests
+     */
+    public long getUntimedScores() {
+        return untimedScores.get();
+    }
+
+    /**
+     * Handles the game in the bot's channel starting by asking for the first game pieces
+     */
+    private void gameStarted() {
+        started = true;
+        for (int i = 0; i < STARTING_PIECES; i++) {
+            this.request("PIECE", pieceRequests);
+        }
+    }
+
+    /**
+     * Handles the server dealing a game piece
+     * @param piece the message
+     */
+    private void pieceReceived(Message.Piece piece) {
+        this.answered(pieceRequests, pieceLatency);
+        synchronized (this) {
+            dealt.add(piece.value());
+        }
+    }
+
+    /**
+     * Sends a request and remembers when it was sent
+     * @param request the request
+     * @param requests the times of the unanswered requests of the same kind
+     */
+    private void request(String request, Queue<Long> requests) {
+        requests.add(System.nanoTime());
+        communicator.send(request);
+    }
+
+    /**
+     * Sends a SCORES request between two LIST requests, unless the last one is still being timed
+     * The server answers a client's requests in order, so the answer is one of the SCORES messages between the two CHANNELS answers
+     */
+    private void requestScores() {
+        if (scoresSent != 0) {
+            return;
+        }
+        scoresSent = System.nanoTime();
+        scoresMarkers = 0;
+        communicator.send("LIST");
+        communicator.send("SCORES");
+        communicator.send("LIST");
+    }
+
+    /**
+     * Handles a SCORES message, which is a candidate for the answer if it arrived between the two CHANNELS answers
+     */
+    private void scoresReceived() {
+        var now = System.nanoTime();
+        synchronized (this) {
+            if (scoresSent != 0 && scoresMarkers == 1) {
+                scoresCandidates++;
+                scoresArrived = now;
+            }
+        }
+    }
+
+    /**
+     * Handles a CHANNELS answer, which opens or closes the window the SCORES answer arrives in
+     * The round trip is only recorded if the answer was the only SCORES message in the window, as a push can't be told apart from it
+     */
+    private synchronized void channelsReceived() {
+        if (scoresSent == 0) {
+            return;
+        }
+        scoresMarkers++;
+        if (scoresMarkers == 1) {
+            scoresCandidates = 0;
+            return;
+        }
+        if (scoresCandidates == 1) {
+            scoresLatency.record(scoresArrived - scoresSent);
+        } else {
+            untimedScores.incrementAndGet();
+        }
+        scoresSent = 0;
+    }
+
+    /**
+     * Records the round trip of the oldest unanswered request of a kind
+     * @param requests the times of the unanswered requests
+     * @param latency records the round trip
+     */
+    private void answered(Queue<Long> requests, LatencyRecorder latency) {
+        var sent = requests.poll();
+        if (sent != null) {
+            latency.record(System.nanoTime() - sent);
+        }
+    }
+
+    /**
+     * Sends the bot's board to the server, in the same format as a MultiplayerGame
+     * Only the blocks that changed are sent if the server agreed to board deltas, unless most of them did
+     */
+    private void sendBoard() {
+        var length = BoardCodec.readGrid(game.getGrid(), currentBoard);
+        var message = new StringBuilder();
+        var changed = BoardCodec.writeUpdate(message, sentBoard, currentBoard, length, boardDelta);
+        if (changed > 0) {
+            communicator.send(message.toString());
+            System.arraycopy(currentBoard, 0, sentBoard, 0, length);
+        }
+    }
+
+    /**
+     * A game dealt its pieces by the server, on a manual clock the bot's ticks stand in for
+     */
+    private class BotGame extends Game {
+
+        /**
+         * Creates a new 5 x 5 game
+         */
+        BotGame() {
+            super(5, 5, GameClock.manual(), PieceGenerator.uniform(0));
+        }
+
+        /**
+         * Creates a new game piece from the next value the server dealt
+         * @return game piece created
+         */
+        @Override
+        public GamePiece spawnPiece() {
+            return GamePiece.createPiece(dealt.remove());
+        }
+    }
+}
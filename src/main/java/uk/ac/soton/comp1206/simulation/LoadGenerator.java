@@ -0,0 +1,258 @@
+package uk.ac.soton.comp1206.simulation;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import uk.ac.soton.comp1206.server.TetrECSServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Load Generator connects many LoadBots to a server, puts them in channels and has them play for a while,
+ * then prints how long the server took to answer their PIECE and SCORES requests.
+ * It is used to find how many players a server and its channels can take before they fall over.
+ * A server of "local" starts a TetrECSServer in the same process to test against, dealing game pieces from the given seed.
+ * <p>
+ * Usage: LoadGenerator [--server URL|local] [--bots N] [--channel-size N] [--rate TICKS_PER_SECOND] [--chat-every TICKS]
+ * [--scores-every TICKS] [--board-delta true|false] [--duration SECONDS] [--ramp MILLIS] [--threads N] [--seed N]
+ */
+public class LoadGenerator {
+
+    private static final Logger logger = LogManager.getLogger(LoadGenerator.class);
+
+    /**
+     * How long to wait for the server to confirm a bot has joined its channel
+     */
+    private static final long JOIN_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * The server to connect the bots to, or "local" for a server in this process
+     */
+    private String server = "ws://127.0.0.1:" + TetrECSServer.DEFAULT_PORT;
+
+    /**
+     * The number of bots to connect
+     */
+    private int bots = 100;
+
+    /**
+     * The number of bots in each channel
+     */
+    private int channelSize = 4;
+
+    /**
+     * The number of ticks each bot plays per second
+     */
+    private double rate = 5;
+
+    /**
+     * The number of ticks between each bot's chat messages, or 0 for none
+     */
+    private int chatEvery = 20;
+
+    /**
+     * The number of ticks between each bot's SCORES requests, or 0 for none
+     */
+    private int scoresEvery = 10;
+
+    /**
+     * Whether the bots ask the server for BOARDDELTA messages
+     */
+    private boolean boardDelta = true;
+
+    /**
+     * How long the bots play for in seconds
+     */
+    private int duration = 30;
+
+    /**
+     * The pause between connecting each bot in milliseconds
+     */
+    private long ramp = 10;
+
+    /**
+     * The number of threads the bots' ticks are played on
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The seed the local server deals every player's game pieces from, ignored when testing against another server
+     * The bots play a greedy policy, which has no randomness of its own
+     */
+    private long seed = 0;
+
+    /**
+     * Runs the load generator from the command line
+     * @param args commandline arguments
+     * @throws IOException if the local server can't be started
+     * @throws InterruptedException if interrupted while the bots are playing
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        //Logging every message would cost more than sending it
+        Configurator.setRootLevel(Level.WARN);
+
+        var generator = new LoadGenerator();
+        generator.parseArguments(args);
+        generator.run();
+        System.exit(0);
+    }
+
+    /**
+     * Reads the options from the command line
+     * @param args commandline arguments
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            var value = args[++i];
+            switch (args[i - 1]) {
+                case "--server" -> server = value;
+                case "--bots" -> bots = Integer.parseInt(value);
+                case "--channel-size" -> channelSize = Integer.parseInt(value);
+                case "--rate" -> rate = Double.parseDouble(value);
+                case "--chat-every" -> chatEvery = Integer.parseInt(value);
+                case "--scores-every" -> scoresEvery = Integer.parseInt(value);
+                case "--board-delta" -> boardDelta = Boolean.parseBoolean(value);
+                case "--duration" -> duration = Integer.parseInt(value);
+                case "--ramp" -> ramp = Long.parseLong(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+        if (bots <= 0 || channelSize <= 0 || rate <= 0) {
+            throw new IllegalArgumentException("--bots, --channel-size and --rate must be positive");
+        }
+    }
+
+    /**
+     * Connects the bots, has them play for the duration and prints the results
+     * @throws IOException if the local server can't be started
+     * @throws InterruptedException if interrupted while the bots are playing
+     */
+    private void run() throws IOException, InterruptedException {
+        TetrECSServer localServer = null;
+        if (server.equals("local")) {
+            localServer = new TetrECSServer(new InetSocketAddress("127.0.0.1", 0), seed);
+            localServer.start();
+            server = "ws://127.0.0.1:" + localServer.getPort();
+        }
+
+        var pieceLatency = new LatencyRecorder();
+        var scoresLatency = new LatencyRecorder();
+        var players = new ArrayList<LoadBot>();
+        var run = Long.toHexString(System.nanoTime());
+        System.out.printf("Connecting %d bots to %s in channels of %d%n", bots, server, channelSize);
+        var connectStart = System.nanoTime();
+
+        //Fills one channel at a time: its host creates it, the rest join it, then the host starts the game
+        for (int first = 0; first < bots; first += channelSize) {
+            var channel = "load-" + run + "-" + (first / channelSize);
+            var members = new ArrayList<LoadBot>();
+            for (int i = first; i < Math.min(first + channelSize, bots); i++) {
+                var bot = new LoadBot(server, "bot" + i, new GreedyPolicy(), chatEvery, scoresEvery, boardDelta, pieceLatency, scoresLatency);
+                if (i == first) {
+                    bot.create(channel);
+                } else {
+                    bot.join(channel);
+                }
+                if (!bot.awaitJoined(JOIN_TIMEOUT_MILLIS)) {
+                    logger.warn("bot{} didn't join {} in time", i, channel);
+                }
+                members.add(bot);
+                TimeUnit.MILLISECONDS.sleep(ramp);
+            }
+            members.get(0).startGame();
+            players.addAll(members);
+        }
+        System.out.printf("Connected in %d ms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart));
+
+        //Spreads the bots' ticks evenly across each tick period, so they don't all arrive at the server together
+        var period = (long) (1_000_000 / rate);
+        var scheduler = Executors.newScheduledThreadPool(threads);
+        for (int i = 0; i < players.size(); i++) {
+            scheduler.scheduleAtFixedRate(players.get(i)::tick, period * i / players.size(), period, TimeUnit.MICROSECONDS);
+        }
+        System.out.printf("Playing for %d seconds at %.1f ticks per second per bot%n", duration, rate);
+        this.report(players, localServer, pieceLatency, scoresLatency);
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+
+        this.printResults(players, pieceLatency, scoresLatency);
+        for (var bot : players) {
+            bot.close();
+        }
+        if (localServer != null) {
+            localServer.stop();
+        }
+    }
+
+    /**
+     * Prints the progress once a second until the duration has passed
+     * @param players the bots
+     * @param localServer the local server, or null if testing another server
+     * @param pieceLatency the PIECE round trips
+     * @param scoresLatency the SCORES round trips
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void report(List<LoadBot> players, TetrECSServer localServer, LatencyRecorder pieceLatency, LatencyRecorder scoresLatency) throws InterruptedException {
+        var lastSent = 0L;
+        for (int second = 1; second <= duration; second++) {
+            TimeUnit.SECONDS.sleep(1);
+            var sent = 0L;
+            var queued = 0;
+            for (var bot : players) {
+                sent += bot.getCommunicator().getMessagesSent();
+                queued += bot.getCommunicator().getQueueDepth();
+            }
+            System.out.printf("%4ds  sent %7d/s  queued %6d  PIECE answers %8d  SCORES answers %8d%s%n",
+                    second, sent - lastSent, queued, pieceLatency.size(), scoresLatency.size(),
+                    localServer == null ? "" : "  server connections " + localServer.getConnections());
+            lastSent = sent;
+        }
+    }
+
+    /**
+     * Prints the totals and round trip distributions
+     * @param players the bots
+     * @param pieceLatency the PIECE round trips
+     * @param scoresLatency the SCORES round trips
+     */
+    private void printResults(List<LoadBot> players, LatencyRecorder pieceLatency, LatencyRecorder scoresLatency) {
+        var sent = 0L;
+        var pieces = 0L;
+        var starved = 0L;
+        var errors = 0L;
+        var reconnects = 0L;
+        var unanswered = 0L;
+        var untimed = 0L;
+        for (var bot : players) {
+            sent += bot.getCommunicator().getMessagesSent();
+            reconnects += bot.getCommunicator().getReconnects();
+            pieces += bot.getPiecesPlaced();
+            starved += bot.getStarvedTicks();
+            errors += bot.getErrors();
+            unanswered += bot.getUnanswered();
+            untimed += bot.getUntimedScores();
+        }
+        System.out.printf("%nMessages sent %d (%.0f/s), pieces placed %d, starved ticks %d, errors %d, reconnects %d, unanswered requests %d,"
+                + " untimed SCORES requests %d%n%n", sent, sent / (double) duration, pieces, starved, errors, reconnects, unanswered, untimed);
+
+        System.out.println(Distribution.heading());
+        if (pieceLatency.size() > 0) {
+            System.out.println(new Distribution("PIECE rtt (us)", pieceLatency.toArray()));
+        }
+        if (scoresLatency.size() > 0) {
+            System.out.println(new Distribution("SCORES rtt (us)", scoresLatency.toArray()));
+        }
+    }
+}
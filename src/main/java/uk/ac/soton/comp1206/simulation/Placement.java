@@ -0,0 +1,74 @@
+package uk.ac.soton.comp1206.simulation;
+
+/**
+ * A Placement is a move chosen by a PlacementPolicy: whether to swap pieces, how far to rotate, and where to place the piece.
+ * It is mutable so that a single instance can be reused for every move of a simulated game.
+ */
+public class Placement {
+
+    /**
+     * Whether the current game piece is swapped with the following game piece first
+     */
+    private boolean swap;
+
+    /**
+     * The number of times to rotate the game piece before placing it
+     */
+    private int rotation;
+
+    /**
+     * The column to place the centre of the game piece in
+     */
+    private int x;
+
+    /**
+     * The row to place the centre of the game piece in
+     */
+    private int y;
+
+    /**
+     * Sets every part of this placement
+     * @param swap whether to swap the current and following game pieces first
+     * @param rotation number of times to rotate the game piece
+     * @param x column to place the centre of the game piece in
+     * @param y row to place the centre of the game piece in
+     */
+    public void set(boolean swap, int rotation, int x, int y) {
+        this.swap = swap;
+        this.rotation = rotation;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Checks whether the current game piece is swapped with the following game piece first
+     * @return true if the pieces are swapped
+     */
+    public boolean isSwap() {
+        return swap;
+    }
+
+    /**
+     * Gets the number of times to rotate the game piece before placing it
+     * @return number of rotations
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Gets the column to place the centre of the game piece in
+     * @return column
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Gets the row to place the centre of the game piece in
+     * @return row
+     */
+    public int getY() {
+        return y;
+    }
+}
@@ -0,0 +1,18 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.Game;
+
+/**
+ * A Placement Policy decides where a simulated player places each game piece.
+ * A policy may keep state, such as a random number generator, so each simulated game is given its own instance.
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Chooses the next move for the given game
+     * @param game the game to choose a move for
+     * @param placement the placement to fill in with the chosen move
+     * @return true if a move was chosen, or false if neither game piece can be placed anywhere
+     */
+    boolean choose(Game game, Placement placement);
+}
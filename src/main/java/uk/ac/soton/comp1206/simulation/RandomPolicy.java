@@ -0,0 +1,59 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.SplittableRandom;
+
+/**
+ * The Random Policy places a game piece at a uniformly random valid position, in a random rotation, possibly after a swap.
+ * It is the baseline a weaker player would reach and is useful for checking how forgiving the timer and scoring are.
+ */
+public class RandomPolicy implements PlacementPolicy {
+
+    /**
+     * The random number generator used to pick between valid moves
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Creates a new random policy
+     * @param seed seed for the random number generator
+     */
+    public RandomPolicy(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Chooses a valid move uniformly at random, picking each one with equal probability in a single pass
+     * @param game the game to choose a move for
+     * @param placement the placement to fill in with the chosen move
+     * @return true if a move was chosen
+     */
+    @Override
+    public boolean choose(Game game, Placement placement) {
+        var grid = game.getGrid();
+        var occupied = grid.getOccupied();
+        var seen = 0;
+        for (int swap = 0; swap < 2; swap++) {
+            var piece = swap == 0 ? game.getCurrentPiece() : game.getFollowingPiece();
+            for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                var rotated = piece.rotate(rotation);
+                for (int y = 0; y < grid.getRows(); y++) {
+                    for (int x = 0; x < grid.getCols(); x++) {
+                        var mask = grid.getPieceMask(rotated, x, y);
+                        if (mask == Grid.OUT_OF_BOUNDS || (occupied & mask) != 0) continue;
+
+                        //Keeps this move with probability 1/seen, which leaves every move equally likely
+                        seen++;
+                        if (random.nextInt(seen) == 0) {
+                            placement.set(swap == 1, rotation, x, y);
+                        }
+                    }
+                }
+            }
+        }
+        return seen > 0;
+    }
+}
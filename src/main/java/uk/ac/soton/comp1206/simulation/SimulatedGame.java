@@ -0,0 +1,68 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameClock;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+/**
+ * A Simulated Game is a headless Game played to the end by a PlacementPolicy.
+ * Its game pieces come from a seeded PieceGenerator, so a game can be replayed exactly from its seed.
+ * It runs on a manual clock and keeps its own simulated time, so a game which would take minutes to play finishes in microseconds.
+ */
+public class SimulatedGame extends Game {
+
+    /**
+     * The simulated time that has passed in milliseconds
+     */
+    private long survivalTime;
+
+    /**
+     * Creates a new simulated game with the specified rows and columns
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param pieceGenerator the generator the game pieces are dealt from
+     */
+    public SimulatedGame(int cols, int rows, PieceGenerator pieceGenerator) {
+        super(cols, rows, GameClock.manual(), pieceGenerator);
+    }
+
+    /**
+     * Plays this game until every life is lost or the piece limit is reached
+     * Each placement takes the given thinking time, while a turn with no possible placement waits out the whole timer and loses a life.
+     * A thinking time longer than the timer also loses a life, as the player would not have placed in time.
+     * @param policy the policy choosing each move
+     * @param thinkTime simulated time taken to place a game piece in milliseconds
+     * @param maxPieces the number of placements after which the game is stopped
+     */
+    public void play(PlacementPolicy policy, long thinkTime, int maxPieces) {
+        this.start();
+        var placement = new Placement();
+        while (this.getLives() >= 0 && this.getPiecesPlaced() < maxPieces) {
+            var delay = this.getTimerDelay();
+            if (thinkTime < delay && policy.choose(this, placement)) {
+                survivalTime += thinkTime;
+                if (placement.isSwap()) {
+                    this.swapCurrentPiece();
+                }
+                if (placement.getRotation() != 0) {
+                    this.rotateCurrentPiece(placement.getRotation());
+                }
+                if (!this.blockClicked(placement.getX(), placement.getY())) {
+                    throw new IllegalStateException("Policy chose a placement that can't be played");
+                }
+            } else {
+                survivalTime += delay;
+                this.gameLoop();
+            }
+        }
+        this.stop();
+    }
+
+    /**
+     * Gets the simulated time that has passed
+     * @return time in milliseconds
+     */
+    public long getSurvivalTime() {
+        return survivalTime;
+    }
+}
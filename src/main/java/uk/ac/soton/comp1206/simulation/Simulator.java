@@ -0,0 +1,327 @@
+package uk.ac.soton.comp1206.simulation;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+import uk.ac.soton.comp1206.replay.Replay;
+import uk.ac.soton.comp1206.storage.ReplayArchive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Simulator plays a batch of headless games in parallel and prints the distributions of their results.
+ * It is used to tune the scoring and timer without playing the game by hand.
+ * Every game is seeded from the batch seed and its own index, so a batch gives the same results on any number of threads.
+ * <p>
+ * Usage: Simulator [--games N] [--threads N] [--seed N] [--policy greedy|random] [--generator uniform|bag|weighted|replay] [--weights W1,...,W15] [--replay FILE|DIRECTORY] [--think MILLIS] [--max-pieces N] [--size N]
+ */
+public class Simulator {
+
+    private static final Logger logger = LogManager.getLogger(Simulator.class);
+
+    /**
+     * The number of games to play
+     */
+    private int games = 10000;
+
+    /**
+     * The number of threads to play the games on
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The seed that every game's seed is derived from
+     */
+    private long seed = 0;
+
+    /**
+     * The name of the policy the games are played with
+     */
+    private String policy = "greedy";
+
+    /**
+     * The name of the piece generator the games are dealt from
+     */
+    private String generator = "uniform";
+
+    /**
+     * The weight of each piece for the weighted generator
+     */
+    private int[] weights;
+
+    /**
+     * The replays whose game pieces the replay generator deals first, taking turns between games
+     */
+    private List<Replay> replays;
+
+    /**
+     * Simulated time taken to place each game piece in milliseconds
+     */
+    private long thinkTime = 1000;
+
+    /**
+     * The number of placements after which a game is stopped
+     */
+    private int maxPieces = 10000;
+
+    /**
+     * The number of rows and columns in each game
+     */
+    private int size = 5;
+
+    /**
+     * The final score of each game
+     */
+    private long[] scores;
+
+    /**
+     * The final level of each game
+     */
+    private long[] levels;
+
+    /**
+     * The number of lines cleared in each game
+     */
+    private long[] lines;
+
+    /**
+     * The number of game pieces placed in each game
+     */
+    private long[] pieces;
+
+    /**
+     * The simulated time each game lasted in milliseconds
+     */
+    private long[] survivalTimes;
+
+    /**
+     * Runs the simulator from the command line
+     * @param args commandline arguments
+     */
+    public static void main(String[] args) {
+        //Logging every placement would cost far more than playing it
+        Configurator.setRootLevel(Level.WARN);
+
+        var simulator = new Simulator();
+        simulator.parseArguments(args);
+        simulator.run();
+    }
+
+    /**
+     * Reads the options from the command line
+     * @param args commandline arguments
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            var value = args[++i];
+            switch (args[i - 1]) {
+                case "--games" -> games = Integer.parseInt(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--policy" -> policy = value;
+                case "--generator" -> generator = value;
+                case "--weights" -> weights = parseWeights(value);
+                case "--replay" -> replays = readReplays(value);
+                case "--think" -> thinkTime = Long.parseLong(value);
+                case "--max-pieces" -> maxPieces = Integer.parseInt(value);
+                case "--size" -> size = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+        //Checks the policy and generator straight away rather than on every worker thread
+        this.createPolicy(0);
+        this.createGenerator(0);
+    }
+
+    /**
+     * Plays every game across the worker threads and prints the results
+     */
+    private void run() {
+        scores = new long[games];
+        levels = new long[games];
+        lines = new long[games];
+        pieces = new long[games];
+        survivalTimes = new long[games];
+
+        System.out.printf("Playing %d games with the %s policy and %s pieces on %d threads (seed %d)%n", games, policy, generator, threads, seed);
+        var start = System.nanoTime();
+
+        //Each worker plays every game whose index matches its own, writing the results into its own slots of the arrays
+        var executor = Executors.newFixedThreadPool(threads);
+        var workers = new ArrayList<Future<?>>();
+        for (int worker = 0; worker < threads; worker++) {
+            var first = worker;
+            workers.add(executor.submit(() -> this.playGames(first, threads)));
+        }
+        try {
+            for (var future : workers) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Simulation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        var elapsed = System.nanoTime() - start;
+        System.out.printf("Finished in %d ms (%.0f games/s)%n%n",
+                TimeUnit.NANOSECONDS.toMillis(elapsed), games / (elapsed / 1e9));
+        System.out.println(Distribution.heading());
+        System.out.println(new Distribution("score", scores));
+        System.out.println(new Distribution("level", levels));
+        System.out.println(new Distribution("lines cleared", lines));
+        System.out.println(new Distribution("pieces placed", pieces));
+        System.out.println(new Distribution("survival (s)", toSeconds(survivalTimes)));
+
+        var capped = 0;
+        for (var placed : pieces) {
+            if (placed >= maxPieces) capped++;
+        }
+        if (capped > 0) {
+            System.out.printf("%n%d games reached the limit of %d pieces and were stopped%n", capped, maxPieces);
+        }
+    }
+
+    /**
+     * Plays a share of the games on the current thread
+     * @param first index of the first game to play
+     * @param step distance between the indexes of the games to play
+     */
+    private void playGames(int first, int step) {
+        for (int i = first; i < games; i += step) {
+            var gameSeed = mix(seed, i);
+            var game = new SimulatedGame(size, size, this.createGenerator(gameSeed));
+            game.play(this.createPolicy(gameSeed), thinkTime, maxPieces);
+
+            scores[i] = game.getScore();
+            levels[i] = game.getLevel();
+            lines[i] = game.getLinesCleared();
+            pieces[i] = game.getPiecesPlaced();
+            survivalTimes[i] = game.getSurvivalTime();
+        }
+        logger.info("Worker {} finished", first);
+    }
+
+    /**
+     * Creates a new instance of the chosen policy for one game
+     * @param gameSeed the game's seed
+     * @return the policy
+     */
+    private PlacementPolicy createPolicy(long gameSeed) {
+        return switch (policy) {
+            case "greedy" -> new GreedyPolicy();
+            case "random" -> new RandomPolicy(~gameSeed);
+            default -> throw new IllegalArgumentException("Unknown policy: " + policy);
+        };
+    }
+
+    /**
+     * Creates a new instance of the chosen piece generator for one game
+     * @param gameSeed the game's seed
+     * @return the piece generator
+     */
+    private PieceGenerator createGenerator(long gameSeed) {
+        return switch (generator) {
+            case "uniform" -> PieceGenerator.uniform(gameSeed);
+            case "bag" -> PieceGenerator.bag(gameSeed);
+            case "weighted" -> {
+                if (weights == null) {
+                    throw new IllegalArgumentException("The weighted generator needs --weights");
+                }
+                yield PieceGenerator.weighted(gameSeed, weights);
+            }
+            case "replay" -> {
+                if (replays == null) {
+                    throw new IllegalArgumentException("The replay generator needs --replay");
+                }
+                yield replays.get((int) Long.remainderUnsigned(gameSeed, replays.size())).toPieceGenerator(gameSeed);
+            }
+            default -> throw new IllegalArgumentException("Unknown generator: " + generator);
+        };
+    }
+
+    /**
+     * Reads the replays whose game pieces are dealt before uniform ones by the replay generator
+     * A directory is read as a replay archive, streaming through every replay in it in the order they were saved
+     * @param path a replay file, or a replay archive's directory
+     * @return the replays
+     */
+    private static List<Replay> readReplays(String path) {
+        try {
+            if (!Files.isDirectory(Path.of(path))) {
+                return List.of(Replay.read(Path.of(path)));
+            }
+            var replays = new ArrayList<Replay>();
+            var archive = ReplayArchive.openReadOnly(Path.of(path));
+            archive.scan((id, replay) -> replays.add(Replay.read(replay)));
+            archive.close();
+            if (replays.isEmpty()) {
+                throw new IllegalArgumentException("No replays in " + path);
+            }
+            return replays;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Couldn't read replay " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a comma separated list of piece weights
+     * @param value the list of weights
+     * @return one weight per piece number
+     */
+    private static int[] parseWeights(String value) {
+        var split = value.split(",");
+        if (split.length != GamePiece.PIECES) {
+            throw new IllegalArgumentException("Expected " + GamePiece.PIECES + " weights but got " + split.length);
+        }
+        var parsed = new int[split.length];
+        for (int i = 0; i < split.length; i++) {
+            parsed[i] = Integer.parseInt(split[i].trim());
+        }
+        return parsed;
+    }
+
+    /**
+     * Derives a game's seed from the batch seed and the game's index
+     * @param seed the batch seed
+     * @param index the game's index
+     * @return the game's seed
+     */
+    private static long mix(long seed, int index) {
+        //SplitMix64 finaliser, so neighbouring indexes give unrelated seeds
+        var z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Converts times in milliseconds into whole seconds
+     * @param millis the times in milliseconds
+     * @return the times in seconds
+     */
+    private static long[] toSeconds(long[] millis) {
+        var seconds = new long[millis.length];
+        for (int i = 0; i < millis.length; i++) {
+            seconds[i] = millis[i] / 1000;
+        }
+        return seconds;
+    }
+}
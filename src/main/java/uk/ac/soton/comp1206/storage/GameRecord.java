@@ -0,0 +1,55 @@
+package uk.ac.soton.comp1206.storage;
+
+import uk.ac.soton.comp1206.game.Game;
+
+/**
+ * A Game Record is how one finished game went, as kept by the StatisticsStore.
+ * @param player the player's name, or null if it isn't known yet
+ * @param mode the mode the game was played in
+ * @param score the final score
+ * @param level the level reached
+ * @param lines the number of lines cleared
+ * @param pieces the number of game pieces placed
+ * @param durationMillis how long the game lasted in milliseconds
+ * @param seed the seed the game pieces were dealt from, or 0 if they were dealt by the server
+ * @param finishedAt when the game finished, in milliseconds since the epoch
+ */
+public record GameRecord(String player, Mode mode, int score, int level, int lines, int pieces, long durationMillis, long seed, long finishedAt) {
+
+    /**
+     * The modes a game can be played in
+     */
+    public enum Mode {
+
+        /**
+         * The single player challenge
+         */
+        CHALLENGE,
+
+        /**
+         * A multiplayer game, whose pieces are dealt by the server
+         */
+        MULTIPLAYER
+    }
+
+    /**
+     * Records a game which has just finished
+     * @param game the game
+     * @param mode the mode it was played in
+     * @param seed the seed its pieces were dealt from, or 0 if they were dealt by the server
+     * @return the record, without a player
+     */
+    public static GameRecord of(Game game, Mode mode, long seed) {
+        return new GameRecord(null, mode, game.getScore(), game.getLevel(), game.getLinesCleared(), game.getPiecesPlaced(),
+                game.getDurationMillis(), seed, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a copy of the record played by the given player
+     * @param player the player's name
+     * @return the copy
+     */
+    public GameRecord withPlayer(String player) {
+        return new GameRecord(player, mode, score, level, lines, pieces, durationMillis, seed, finishedAt);
+    }
+}
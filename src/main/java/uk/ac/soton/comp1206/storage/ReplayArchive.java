@@ -0,0 +1,440 @@
+package uk.ac.soton.comp1206.storage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.ReplayLoadedListener;
+import uk.ac.soton.comp1206.replay.Replay;
+import uk.ac.soton.comp1206.replay.ReplayRecorder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The Replay Archive keeps the replay of every game played on this machine, appended one after another into a few large segment files.
+ * Each segment is memory mapped, and an index in memory maps each replay's id to its segment, offset and length,
+ * so a replay is read as a slice of the mapping without being copied, and every replay can be scanned in the order it was saved.
+ * Each replay is stored after a header holding its length, its id and a checksum, and the length is written last,
+ * so if the game stops part way through saving a replay it is cut off the end of the last segment when the archive is next opened.
+ * Replays are saved on the archive's own thread, so finishing a game never waits on the disk.
+ */
+public class ReplayArchive {
+
+    private static final Logger logger = LogManager.getLogger(ReplayArchive.class);
+
+    /**
+     * The directory's name
+     */
+    static final String DIRECTORY = "replays";
+
+    /**
+     * The first bytes of each segment, "TRA" followed by the format version
+     */
+    static final int MAGIC = 0x54524101;
+
+    /**
+     * The size each segment file is created with, unless a replay needs more
+     */
+    static final int SEGMENT_SIZE = 8 << 20;
+
+    /**
+     * The size of each segment's header: the magic number and the segment's number
+     */
+    private static final int SEGMENT_HEADER = 8;
+
+    /**
+     * The size of the header before each replay: its length, its id and its checksum
+     */
+    private static final int ENTRY_HEADER = 16;
+
+    /**
+     * How long closing the archive waits for the replays still being saved
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 2;
+
+    /**
+     * The directory the segments are kept in
+     */
+    private final Path directory;
+
+    /**
+     * Whether replays can be saved, or the archive is only being read, such as by the simulator
+     */
+    private final boolean writable;
+
+    /**
+     * The mapping of each segment, in order, locked by the archive
+     */
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * The segment and offset of each replay, by id - 1, as (segment &lt;&lt; 32 | offset), locked by the archive
+     */
+    private long[] locations = new long[256];
+
+    /**
+     * The length of each replay, by id - 1, locked by the archive
+     */
+    private int[] lengths = new int[256];
+
+    /**
+     * The number of replays, which is also the id of the latest, locked by the archive
+     */
+    private int count;
+
+    /**
+     * The position the next replay is saved at in the last segment, only used on the archive's thread
+     */
+    private int writePosition;
+
+    /**
+     * The number the next segment file is given, only used on the archive's thread
+     */
+    private int nextSegmentNumber;
+
+    /**
+     * Runs the replay loaded listeners, on the calling thread unless set otherwise
+     */
+    private volatile Executor dispatcher = Runnable::run;
+
+    /**
+     * Runs every write of the segments, and every load that must wait for them, in the order they were asked for
+     */
+    private final ExecutorService io = Executors.newSingleThreadExecutor((runnable) -> {
+        var thread = new Thread(runnable, "replay-archive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a new replay archive and starts opening its segments in the background
+     * @param directory the directory the replays directory is kept in
+     */
+    public ReplayArchive(Path directory) {
+        this(directory.resolve(DIRECTORY), true);
+        io.execute(this::load);
+    }
+
+    /**
+     * Creates a new replay archive
+     * @param directory the directory the segments are kept in
+     * @param writable whether replays can be saved
+     */
+    private ReplayArchive(Path directory, boolean writable) {
+        this.directory = directory;
+        this.writable = writable;
+    }
+
+    /**
+     * Opens the replays in a directory to be read, straight away and without saving any, such as from the simulator
+     * @param directory the directory the segments are kept in
+     * @return the archive
+     */
+    public static ReplayArchive openReadOnly(Path directory) {
+        var archive = new ReplayArchive(directory, false);
+        archive.load();
+        return archive;
+    }
+
+    /**
+     * Saves a finished game's replay in the background
+     * @param recorder the recorder the game was recorded to, which nothing else may record to afterwards
+     */
+    public void save(ReplayRecorder recorder) {
+        if (!writable) {
+            throw new IllegalStateException("Replay archive is read only");
+        }
+        io.execute(() -> this.append(recorder.toBytes(true)));
+    }
+
+    /**
+     * Reads the most recently saved replay in the background, after any still being saved
+     * @param listener the listener to give the replay to
+     */
+    public void loadLatest(ReplayLoadedListener listener) {
+        io.execute(() -> {
+            Replay replay = null;
+            var latest = this.getLatestId();
+            if (latest != 0) {
+                try {
+                    replay = Replay.read(this.read(latest));
+                } catch (IllegalArgumentException e) {
+                    logger.error("Couldn't load replay {}: {}", latest, e.getMessage());
+                }
+            }
+            var loaded = replay;
+            dispatcher.execute(() -> listener.replayLoaded(loaded));
+        });
+    }
+
+    /**
+     * Reads a replay without copying it
+     * @param id the replay's id
+     * @return a read only slice of the segment holding the replay, or null if there is no such replay
+     */
+    public synchronized ByteBuffer read(long id) {
+        if (id < 1 || id > count) {
+            return null;
+        }
+        var location = locations[(int) id - 1];
+        return segments.get((int) (location >>> 32)).slice((int) location, lengths[(int) id - 1]).asReadOnlyBuffer();
+    }
+
+    /**
+     * Reads every replay in the order it was saved, which is the order they are laid out in the segments
+     * Replays saved during the scan aren't visited
+     * @param visitor the visitor to give each replay to
+     */
+    public void scan(Visitor visitor) {
+        var latest = this.getLatestId();
+        for (long id = 1; id <= latest; id++) {
+            visitor.visit(id, this.read(id));
+        }
+    }
+
+    /**
+     * Gets the id of the most recently saved replay, which is also the number of replays
+     * @return the id, or 0 if there are no replays
+     */
+    public synchronized long getLatestId() {
+        return count;
+    }
+
+    /**
+     * Sets the executor the replay loaded listeners are run through, such as Platform::runLater
+     * @param dispatcher the executor
+     */
+    public void setDispatcher(Executor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Waits for the replays still being saved, then stops the archive's thread
+     * The segments stay mapped until nothing refers to them any more
+     */
+    public void close() {
+        logger.info("Closing replay archive");
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.error("Replay archive didn't finish saving in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Maps every segment and indexes the replays in them, then imports any replays saved one per file by an earlier version
+     */
+    private void load() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            var files = new ArrayList<Path>();
+            try (var list = Files.list(directory)) {
+                list.filter((file) -> file.getFileName().toString().matches("segment-\\d+\\.dat")).sorted().forEach(files::add);
+            }
+            for (int i = 0; i < files.size(); i++) {
+                this.loadSegment(files.get(i), i == files.size() - 1);
+            }
+            logger.info("Loaded {} replays from {} segments", this.getLatestId(), files.size());
+        } catch (IOException e) {
+            logger.error("Couldn't load replays: {}", e.getMessage());
+        }
+
+        if (writable) {
+            this.importReplayFiles();
+        }
+    }
+
+    /**
+     * Maps a segment and indexes the replays in it
+     * @param file the segment file
+     * @param last whether it is the last segment, the only one a replay could have been cut off in
+     * @throws IOException if the segment couldn't be mapped
+     */
+    private void loadSegment(Path file, boolean last) throws IOException {
+        var number = Integer.parseInt(file.getFileName().toString().replaceAll("\\D", ""));
+        nextSegmentNumber = Math.max(nextSegmentNumber, number + 1);
+
+        MappedByteBuffer segment;
+        try (var channel = FileChannel.open(file, writable ? new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[] {StandardOpenOption.READ})) {
+            segment = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (segment.capacity() < SEGMENT_HEADER || segment.getInt(0) != MAGIC) {
+            logger.error("{} isn't a replay segment, moving it aside", file);
+            if (writable) {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".bad"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return;
+        }
+
+        synchronized (this) {
+            segments.add(segment);
+        }
+        var segmentIndex = segments.size() - 1;
+        var position = SEGMENT_HEADER;
+        //Replays are only ever saved to the last segment, so any before it count as full
+        writePosition = segment.capacity();
+        while (position + ENTRY_HEADER <= segment.capacity()) {
+            var length = segment.getInt(position);
+            if (length <= 0 || length > segment.capacity() - position - ENTRY_HEADER || segment.getLong(position + 4) != this.getLatestId() + 1) {
+                break;
+            }
+            //Only the last segment was being written to, so only its checksums need checking
+            if (last && segment.getInt(position + 12) != checksum(segment, position + ENTRY_HEADER, length)) {
+                break;
+            }
+            this.index(segmentIndex, position + ENTRY_HEADER, length);
+            position += ENTRY_HEADER + length;
+        }
+
+        if (last) {
+            writePosition = position;
+            //Clears a replay cut off part way through saving, so nothing after the next replay saved looks like one
+            if (writable && position + 4 <= segment.capacity() && segment.getInt(position) != 0) {
+                logger.warn("Cutting off a damaged replay at {} in {}", position, file);
+                segment.put(position, new byte[segment.capacity() - position]);
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * Imports the replays saved one per file by an earlier version, deleting each file once it is in a segment
+     */
+    private void importReplayFiles() {
+        var files = new ArrayList<Path>();
+        try (var list = Files.list(directory)) {
+            list.filter((file) -> file.getFileName().toString().matches("replay-\\d+\\.trpl")).sorted().forEach(files::add);
+        } catch (IOException e) {
+            logger.error("Couldn't list replay files: {}", e.getMessage());
+            return;
+        }
+        for (var file : files) {
+            try {
+                if (this.append(Files.readAllBytes(file))) {
+                    Files.delete(file);
+                }
+            } catch (IOException e) {
+                logger.error("Couldn't import {}: {}", file, e.getMessage());
+            }
+        }
+        if (!files.isEmpty()) {
+            logger.info("Imported {} replay files", files.size());
+        }
+    }
+
+    /**
+     * Appends a replay to the last segment, starting a new segment if it doesn't fit, then indexes it
+     * @param replay the replay
+     * @return true if it was saved
+     */
+    private boolean append(byte[] replay) {
+        var needed = ENTRY_HEADER + replay.length;
+        try {
+            if (segments.isEmpty() || writePosition + needed > segments.get(segments.size() - 1).capacity()) {
+                this.createSegment(Math.max(SEGMENT_SIZE, SEGMENT_HEADER + needed));
+            }
+        } catch (IOException e) {
+            logger.error("Couldn't create replay segment: {}", e.getMessage());
+            return false;
+        }
+
+        var segmentIndex = segments.size() - 1;
+        var segment = segments.get(segmentIndex);
+        var position = writePosition;
+        segment.putLong(position + 4, this.getLatestId() + 1);
+        segment.putInt(position + 12, checksum(ByteBuffer.wrap(replay), 0, replay.length));
+        segment.put(position + ENTRY_HEADER, replay);
+        //The length goes in last, so the replay only counts once the rest of it is there
+        segment.putInt(position, replay.length);
+        segment.force(position, needed);
+
+        writePosition += needed;
+        this.index(segmentIndex, position + ENTRY_HEADER, replay.length);
+        logger.info("Saved replay {} at {} in segment {}", this.getLatestId(), position, segmentIndex);
+        return true;
+    }
+
+    /**
+     * Creates and maps a new segment, which replays are then saved to
+     * @param size the segment's size
+     * @throws IOException if the segment couldn't be created
+     */
+    private void createSegment(int size) throws IOException {
+        Files.createDirectories(directory);
+        var file = directory.resolve(String.format("segment-%05d.dat", nextSegmentNumber));
+        MappedByteBuffer segment;
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, nextSegmentNumber);
+        segment.force(0, SEGMENT_HEADER);
+        nextSegmentNumber++;
+        writePosition = SEGMENT_HEADER;
+        synchronized (this) {
+            segments.add(segment);
+        }
+        logger.info("Created replay segment {}", file);
+    }
+
+    /**
+     * Adds a replay to the index, giving it the next id
+     * @param segment the segment's index
+     * @param offset the replay's offset in the segment
+     * @param length the replay's length
+     */
+    private synchronized void index(int segment, int offset, int length) {
+        if (count == locations.length) {
+            locations = Arrays.copyOf(locations, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        locations[count] = (long) segment << 32 | offset;
+        lengths[count] = length;
+        count++;
+    }
+
+    /**
+     * Calculates the checksum of part of a buffer
+     * @param buffer the buffer
+     * @param offset the position of the first byte
+     * @param length the number of bytes
+     * @return the checksum
+     */
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        var crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A Visitor is given each replay in turn when the archive is scanned
+     */
+    public interface Visitor {
+
+        /**
+         * Handles a replay
+         * @param id the replay's id
+         * @param replay a read only slice of the segment holding the replay
+         */
+        void visit(long id, ByteBuffer replay);
+    }
+}
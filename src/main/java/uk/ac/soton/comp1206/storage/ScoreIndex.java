@@ -0,0 +1,304 @@
+package uk.ac.soton.comp1206.storage;
+
+import javafx.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A Score Index keeps up to a fixed number of scores in order, best first, as a skip list.
+ * Each link in the skip list remembers how many scores it jumps over, so inserting a score, finding the rank a score would take
+ * and reaching the score at a rank all take logarithmic time, however many scores are kept.
+ * Equal scores keep the order they were inserted in, and once the index is full the lowest score is dropped.
+ * It isn't thread safe, so whoever owns it must keep it to one thread or lock around it.
+ */
+public class ScoreIndex {
+
+    /**
+     * The most levels a score can be linked on, plenty for a million scores
+     */
+    private static final int MAX_LEVEL = 20;
+
+    /**
+     * The most scores kept
+     */
+    private final int capacity;
+
+    /**
+     * The node before the best score, linked on every level
+     */
+    private final Node head = new Node(null, 0, MAX_LEVEL);
+
+    /**
+     * Picks the level of each new score
+     */
+    private final Random random = new Random();
+
+    /**
+     * The number of levels in use
+     */
+    private int level = 1;
+
+    /**
+     * The number of scores kept
+     */
+    private int size;
+
+    /**
+     * Creates a new empty score index
+     * @param capacity the most scores kept
+     */
+    public ScoreIndex(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Inserts a score after any equal scores, dropping the lowest score if the index is full
+     * @param name the player's name
+     * @param score the score
+     * @return the score's rank, from 1 for the best, or -1 if it was too low to keep
+     */
+    public int insert(String name, int score) {
+        if (size == capacity && !this.wouldQualify(score)) {
+            return -1;
+        }
+
+        //Finds the last node on each level before the new score, and the rank of each of those nodes
+        var update = new Node[MAX_LEVEL];
+        var rank = new int[MAX_LEVEL];
+        var node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (node.next[i] != null && node.next[i].score >= score) {
+                rank[i] += node.span[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        var newLevel = this.randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = newLevel;
+        }
+
+        //Links the new score in, splitting the span of each link it goes under
+        var inserted = new Node(name, score, newLevel);
+        for (int i = 0; i < newLevel; i++) {
+            inserted.next[i] = update[i].next[i];
+            update[i].next[i] = inserted;
+            inserted.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = newLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+
+        if (size > capacity) {
+            this.removeAt(size);
+        }
+        return rank[0] + 1;
+    }
+
+    /**
+     * Checks whether a score would be kept if it was inserted now
+     * @param score the score
+     * @return true if it would be kept
+     */
+    public boolean wouldQualify(int score) {
+        return this.rankOf(score) <= capacity;
+    }
+
+    /**
+     * Checks whether a score would be among the best scores if it was inserted now
+     * @param score the score
+     * @param count the number of best scores
+     * @return true if it would be among them
+     */
+    public boolean wouldQualify(int score, int count) {
+        return this.rankOf(score) <= Math.min(count, capacity);
+    }
+
+    /**
+     * Finds the rank a score would take if it was inserted now, after any equal scores
+     * @param score the score
+     * @return the rank, from 1 for the best
+     */
+    public int rankOf(int score) {
+        var rank = 0;
+        var node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].score >= score) {
+                rank += node.span[i];
+                node = node.next[i];
+            }
+        }
+        return rank + 1;
+    }
+
+    /**
+     * Gets the score at a rank
+     * @param rank the rank, from 1 for the best
+     * @return the player's name and score
+     */
+    public Pair<String, Integer> get(int rank) {
+        if (rank < 1 || rank > size) {
+            throw new IndexOutOfBoundsException("No score at rank " + rank + " of " + size);
+        }
+        var traversed = 0;
+        var node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && traversed + node.span[i] <= rank) {
+                traversed += node.span[i];
+                node = node.next[i];
+            }
+            if (traversed == rank) {
+                break;
+            }
+        }
+        return new Pair<>(node.name, node.score);
+    }
+
+    /**
+     * Gets the best scores
+     * @param count the number of scores
+     * @return up to that many scores, best first
+     */
+    public List<Pair<String, Integer>> top(int count) {
+        var top = new ArrayList<Pair<String, Integer>>(Math.min(count, size));
+        var node = head.next[0];
+        while (node != null && top.size() < count) {
+            top.add(new Pair<>(node.name, node.score));
+            node = node.next[0];
+        }
+        return top;
+    }
+
+    /**
+     * Gets the best score
+     * @return the score, or 0 if there are none
+     */
+    public int getHighScore() {
+        return size == 0 ? 0 : head.next[0].score;
+    }
+
+    /**
+     * Gets the number of scores kept
+     * @return number of scores
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the most scores kept
+     * @return number of scores
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Removes every score
+     */
+    public void clear() {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+        size = 0;
+    }
+
+    /**
+     * Removes the score at a rank
+     * @param rank the rank, from 1 for the best
+     */
+    private void removeAt(int rank) {
+        var update = new Node[MAX_LEVEL];
+        var traversed = 0;
+        var node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && traversed + node.span[i] < rank) {
+                traversed += node.span[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        //Unlinks the score, joining the spans either side of it
+        var removed = node.next[0];
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == removed) {
+                update[i].span[i] += removed.span[i] - 1;
+                update[i].next[i] = removed.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+    }
+
+    /**
+     * Picks a level for a new score, each level half as likely as the one below
+     * @return the level, from 1
+     */
+    private int randomLevel() {
+        var newLevel = 1;
+        while (newLevel < MAX_LEVEL && random.nextBoolean()) {
+            newLevel++;
+        }
+        return newLevel;
+    }
+
+    /**
+     * A score in the skip list
+     */
+    private static class Node {
+
+        /**
+         * The player's name
+         */
+        private final String name;
+
+        /**
+         * The score
+         */
+        private final int score;
+
+        /**
+         * The next score on each level the score is linked on
+         */
+        private final Node[] next;
+
+        /**
+         * How many scores each link moves forward by
+         */
+        private final int[] span;
+
+        /**
+         * Creates a new node
+         * @param name the player's name
+         * @param score the score
+         * @param level the number of levels it is linked on
+         */
+        private Node(String name, int score, int level) {
+            this.name = name;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+}
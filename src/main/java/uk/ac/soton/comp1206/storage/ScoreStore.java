@@ -0,0 +1,484 @@
+package uk.ac.soton.comp1206.storage;
+
+import javafx.util.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.ScoresChangedListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The Score Store keeps the local high scores, up to HISTORY of them, both in memory and on disk.
+ * In memory they are held in a ScoreIndex, so ranking a score stays cheap however many are kept.
+ * Reading and adding scores only touches the copy in memory, and every file is read and written on the store's own thread,
+ * so the JavaFX thread never waits on the disk.
+ * On disk, a snapshot holds the scores as they were when it was written, and a log holds every score added since, one record per line.
+ * A record is only ever appended, and carries a checksum, so a crash part way through writing one loses only that record.
+ * Once enough records are logged, the snapshot is rewritten to a temporary file and renamed over the old one, then the log is emptied.
+ * Every record and snapshot is numbered, so records already in the snapshot are skipped if the game stops before the log is emptied.
+ */
+public class ScoreStore {
+
+    private static final Logger logger = LogManager.getLogger(ScoreStore.class);
+
+    /**
+     * The number of high scores shown, and which a new score must make it into to be a high score
+     */
+    public static final int TOP_SCORES = 10;
+
+    /**
+     * The number of scores kept, the lowest being dropped once there are more
+     */
+    public static final int HISTORY = 10_000;
+
+    /**
+     * The number of records logged before the snapshot is rewritten
+     */
+    static final int COMPACT_AFTER = 16;
+
+    /**
+     * The snapshot's file name
+     */
+    static final String SNAPSHOT_FILE = "scores.snapshot";
+
+    /**
+     * The log's file name
+     */
+    static final String LOG_FILE = "scores.log";
+
+    /**
+     * The scores file written by earlier versions, read once if there is no snapshot yet
+     */
+    static final String LEGACY_FILE = "scores.txt";
+
+    /**
+     * How long closing the store waits for the scores still being written
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 2;
+
+    /**
+     * The directory the files are kept in
+     */
+    private final Path directory;
+
+    /**
+     * Every score kept, locked by the store
+     */
+    private final ScoreIndex index = new ScoreIndex(HISTORY);
+
+    /**
+     * The best TOP_SCORES scores, best first, replaced as a whole whenever they change so they can be read from any thread
+     */
+    private volatile List<Pair<String, Integer>> topScores = List.of();
+
+    /**
+     * The scores as far as the files know, which trail the ones in memory until every record is written, only used on the store's thread
+     * The snapshot is written from these, so it holds exactly the records numbered up to it
+     */
+    private final ScoreIndex persisted = new ScoreIndex(HISTORY);
+
+    /**
+     * The listener to call when the scores change
+     */
+    private volatile ScoresChangedListener scoresChangedListener;
+
+    /**
+     * Runs the scores changed listener, on the calling thread unless set otherwise
+     */
+    private volatile Executor dispatcher = Runnable::run;
+
+    /**
+     * Runs every read and write of the files, in the order they were asked for
+     */
+    private final ExecutorService io = Executors.newSingleThreadExecutor((runnable) -> {
+        var thread = new Thread(runnable, "score-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The number of the last record written, only used on the store's thread
+     */
+    private long lastRecord;
+
+    /**
+     * The number of records in the log, only used on the store's thread
+     */
+    private int loggedRecords;
+
+    /**
+     * Whether the log ended in a damaged or unfinished record when it was loaded, only used on the store's thread
+     */
+    private boolean logDamaged;
+
+    /**
+     * Creates a new score store and starts loading the scores in the background
+     * @param directory the directory the files are kept in
+     */
+    public ScoreStore(Path directory) {
+        this.directory = directory;
+        io.execute(this::load);
+    }
+
+    /**
+     * Gets the high scores
+     * @return the best TOP_SCORES scores, best first, which are empty until the store has loaded
+     */
+    public List<Pair<String, Integer>> getScores() {
+        return topScores;
+    }
+
+    /**
+     * Gets the best high score
+     * @return the score, or 0 if there are none
+     */
+    public int getHighScore() {
+        var current = topScores;
+        return current.isEmpty() ? 0 : current.get(0).getValue();
+    }
+
+    /**
+     * Checks whether a score would make it into the high scores
+     * @param score the score
+     * @return true if it would be among the best TOP_SCORES scores
+     */
+    public synchronized boolean wouldQualify(int score) {
+        return index.wouldQualify(score, TOP_SCORES);
+    }
+
+    /**
+     * Finds the rank a score would take among every score kept
+     * @param score the score
+     * @return the rank, from 1 for the best
+     */
+    public synchronized int rankOf(int score) {
+        return index.rankOf(score);
+    }
+
+    /**
+     * Gets the number of scores kept
+     * @return number of scores
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Adds a score, keeping it in memory straight away and writing it to the log in the background
+     * @param name the player's name
+     * @param score the score
+     * @return the high scores with the new score, best first
+     */
+    public List<Pair<String, Integer>> add(String name, int score) {
+        var entry = new Pair<>(name.replaceAll("[\\r\\n]", " "), score);
+        var updated = this.merge(List.of(entry));
+        io.execute(() -> this.append(entry));
+        return updated;
+    }
+
+    /**
+     * Sets a listener to handle an event when the scores change, once for each batch of changes
+     * @param listener the listener to add
+     */
+    public void setOnScoresChanged(ScoresChangedListener listener) {
+        this.scoresChangedListener = listener;
+    }
+
+    /**
+     * Sets the executor the scores changed listener is run through, such as Platform::runLater
+     * @param dispatcher the executor
+     */
+    public void setDispatcher(Executor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Waits for the scores still being written, then stops the store's thread
+     */
+    public void close() {
+        logger.info("Closing score store");
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.error("Score store didn't finish writing in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a batch of scores to the ones in memory, then tells the listener once
+     * Scores added before the files were loaded are kept, as the order scores are merged in makes no difference
+     * @param entries the scores to add, best first so equal scores keep their order
+     * @return the high scores afterwards
+     */
+    private List<Pair<String, Integer>> merge(List<Pair<String, Integer>> entries) {
+        List<Pair<String, Integer>> updated;
+        synchronized (this) {
+            for (var entry : entries) {
+                index.insert(entry.getKey(), entry.getValue());
+            }
+            updated = List.copyOf(index.top(TOP_SCORES));
+            topScores = updated;
+        }
+        var listener = scoresChangedListener;
+        if (listener != null) {
+            dispatcher.execute(() -> listener.scoresChanged(updated));
+        }
+        return updated;
+    }
+
+    /**
+     * Reads the snapshot, or the legacy scores file if there isn't one, then replays the log on top
+     */
+    private void load() {
+        var snapshot = directory.resolve(SNAPSHOT_FILE);
+        var loaded = new ArrayList<Pair<String, Integer>>();
+        var needsSnapshot = false;
+        try {
+            if (Files.exists(snapshot)) {
+                lastRecord = readSnapshot(snapshot, loaded);
+            } else {
+                readLegacy(directory.resolve(LEGACY_FILE), loaded);
+                needsSnapshot = true;
+            }
+            var replayed = this.replayLog(loaded);
+            logger.info("Loaded {} scores and {} logged records", loaded.size() - replayed, replayed);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to load scores: {}", e.getMessage());
+        }
+        for (var entry : loaded) {
+            persisted.insert(entry.getKey(), entry.getValue());
+        }
+        this.merge(loaded);
+        //A damaged log is compacted straight away, so new records aren't appended after the damage
+        if (needsSnapshot || logDamaged || loggedRecords >= COMPACT_AFTER) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Reads a snapshot's scores
+     * @param snapshot the snapshot file
+     * @param loaded the list the scores are added to
+     * @return the number of the last record in the snapshot
+     * @throws IOException if the snapshot can't be read
+     */
+    private static long readSnapshot(Path snapshot, List<Pair<String, Integer>> loaded) throws IOException {
+        var lines = Files.readAllLines(snapshot, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).startsWith("#")) {
+            throw new IOException("Snapshot has no header: " + snapshot);
+        }
+        for (var line : lines.subList(1, lines.size())) {
+            var entry = parseEntry(line);
+            if (entry != null) {
+                loaded.add(entry);
+            }
+        }
+        return Long.parseLong(lines.get(0).substring(1));
+    }
+
+    /**
+     * Reads the scores file written by earlier versions, or the default scores if there isn't one
+     * @param legacy the legacy scores file
+     * @param loaded the list the scores are added to
+     * @throws IOException if the file exists but can't be read
+     */
+    private static void readLegacy(Path legacy, List<Pair<String, Integer>> loaded) throws IOException {
+        if (!Files.exists(legacy)) {
+            logger.info("No scores found, using the default scores");
+            for (int i = 10; i > 0; i--) {
+                loaded.add(new Pair<>("David", i * 1000));
+            }
+            return;
+        }
+        logger.info("Importing scores from {}", legacy);
+        for (var line : Files.readAllLines(legacy, StandardCharsets.UTF_8)) {
+            var entry = parseEntry(line);
+            if (entry != null) {
+                loaded.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Adds every intact record in the log newer than the snapshot to the scores, stopping at the first damaged one
+     * @param loaded the list the scores are added to
+     * @return the number of records added
+     * @throws IOException if the log exists but can't be read
+     */
+    private int replayLog(List<Pair<String, Integer>> loaded) throws IOException {
+        var log = directory.resolve(LOG_FILE);
+        if (!Files.exists(log)) {
+            return 0;
+        }
+        var content = Files.readString(log, StandardCharsets.UTF_8);
+        var replayed = 0;
+        var start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            var line = content.substring(start, end);
+            start = end + 1;
+            loggedRecords++;
+            var record = parseRecord(line);
+            if (record == null) {
+                logger.error("Ignoring damaged score record: {}", line);
+                logDamaged = true;
+                break;
+            }
+            if (record.number() > lastRecord) {
+                loaded.add(record.entry());
+                lastRecord = record.number();
+                replayed++;
+            }
+        }
+        if (!logDamaged && start < content.length()) {
+            logger.error("Ignoring unfinished score record at the end of the log");
+            logDamaged = true;
+        }
+        return replayed;
+    }
+
+    /**
+     * Appends a score to the log, forcing it to disk, and compacts the log once it is long enough
+     * @param entry the score
+     */
+    private void append(Pair<String, Integer> entry) {
+        var line = formatRecord(lastRecord + 1, entry);
+        try (var log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            var buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            log.force(false);
+            lastRecord++;
+            loggedRecords++;
+            persisted.insert(entry.getKey(), entry.getValue());
+        } catch (IOException e) {
+            logger.error("Unable to log score: {}", e.getMessage());
+            return;
+        }
+        if (loggedRecords >= COMPACT_AFTER) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Writes the scores in memory to a new snapshot, renames it over the old one, then empties the log
+     */
+    private void compact() {
+        logger.info("Compacting scores after {} logged records", loggedRecords);
+        var snapshot = new StringBuilder("#").append(lastRecord).append('\n');
+        for (var entry : persisted.top(persisted.size())) {
+            snapshot.append(entry.getKey()).append(':').append(entry.getValue()).append('\n');
+        }
+        var target = directory.resolve(SNAPSHOT_FILE);
+        var temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            try (var file = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var buffer = ByteBuffer.wrap(snapshot.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    file.write(buffer);
+                }
+                file.force(true);
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            //The snapshot is numbered, so if the game stops before this the records already in it are skipped
+            Files.deleteIfExists(directory.resolve(LOG_FILE));
+            loggedRecords = 0;
+            logDamaged = false;
+        } catch (IOException e) {
+            logger.error("Unable to compact scores: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Formats a score as a log record: its number, the player's name and the score, followed by a checksum of them
+     * @param number the record's number
+     * @param entry the score
+     * @return the record, ending in a new line
+     */
+    static String formatRecord(long number, Pair<String, Integer> entry) {
+        var record = number + ":" + entry.getKey() + ":" + entry.getValue();
+        return record + ":" + Long.toHexString(checksum(record)) + "\n";
+    }
+
+    /**
+     * Parses a log record
+     * @param line the record, without its new line
+     * @return the record, or null if it is damaged
+     */
+    static Record parseRecord(String line) {
+        var checksumStart = line.lastIndexOf(':');
+        var numberEnd = line.indexOf(':');
+        if (checksumStart <= numberEnd) {
+            return null;
+        }
+        var record = line.substring(0, checksumStart);
+        try {
+            if (Long.parseLong(line.substring(checksumStart + 1), 16) != checksum(record)) {
+                return null;
+            }
+            var entry = parseEntry(record.substring(numberEnd + 1));
+            return entry == null ? null : new Record(Long.parseLong(record.substring(0, numberEnd)), entry);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a player's name and score separated by a colon, where the name may contain colons itself
+     * @param line the name and score
+     * @return the score, or null if the line isn't one
+     */
+    private static Pair<String, Integer> parseEntry(String line) {
+        var separator = line.lastIndexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            return new Pair<>(line.substring(0, separator), Integer.parseInt(line.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Works out the checksum of a record
+     * @param record the record, without its checksum
+     * @return the checksum
+     */
+    private static long checksum(String record) {
+        var crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /**
+     * A score read back from the log
+     * @param number the record's number
+     * @param entry the player's name and score
+     */
+    record Record(long number, Pair<String, Integer> entry) {
+    }
+}
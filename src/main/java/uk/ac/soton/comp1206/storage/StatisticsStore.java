@@ -0,0 +1,511 @@
+package uk.ac.soton.comp1206.storage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The Statistics Store keeps a record of every game played on this machine, and answers questions about them from indexes in memory.
+ * Games are indexed by player, with each player's best and total score in each mode kept up to date, and by when they finished.
+ * On disk they are appended to a compact binary file on the store's own thread, so recording a game never waits on the disk.
+ * The file starts with a header, followed by entries which each have a type, a body and a checksum of both.
+ * A player entry gives a player's name the next number, and each game entry refers to its player by number, so names aren't repeated.
+ * If the game stops part way through writing an entry, the damaged entry is cut off the end of the file when it is next loaded.
+ */
+public class StatisticsStore {
+
+    private static final Logger logger = LogManager.getLogger(StatisticsStore.class);
+
+    /**
+     * The statistics file's name
+     */
+    static final String FILE = "statistics.dat";
+
+    /**
+     * The first bytes of the file, "TST" followed by the format version
+     */
+    static final int MAGIC = 0x54535401;
+
+    /**
+     * The type of an entry naming a player
+     */
+    private static final byte PLAYER_ENTRY = 1;
+
+    /**
+     * The type of an entry recording a game
+     */
+    private static final byte GAME_ENTRY = 2;
+
+    /**
+     * How long closing the store waits for the games still being written
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 2;
+
+    /**
+     * The file the games are kept in
+     */
+    private final Path file;
+
+    /**
+     * Every game, in the order they were recorded, locked by the store
+     */
+    private final List<GameRecord> games = new ArrayList<>();
+
+    /**
+     * Each player's games and totals, by name, locked by the store
+     */
+    private final Map<String, PlayerStatistics> players = new HashMap<>();
+
+    /**
+     * Every game, by when it finished, locked by the store
+     */
+    private final NavigableMap<Long, List<GameRecord>> gamesByDate = new TreeMap<>();
+
+    /**
+     * The number each player's name was given in the file, only used on the store's thread
+     */
+    private final Map<String, Integer> playerNumbers = new HashMap<>();
+
+    /**
+     * Runs every read and write of the file, in the order they were asked for
+     */
+    private final ExecutorService io = Executors.newSingleThreadExecutor((runnable) -> {
+        var thread = new Thread(runnable, "statistics-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a new statistics store and starts loading the games in the background
+     * @param directory the directory the file is kept in
+     */
+    public StatisticsStore(Path directory) {
+        this.file = directory.resolve(FILE);
+        io.execute(this::load);
+    }
+
+    /**
+     * Records a finished game, indexing it straight away and writing it to the file in the background
+     * A game recorded before the file has finished loading is still indexed after every game in the file
+     * @param game the game, which must have a player
+     */
+    public void record(GameRecord game) {
+        if (game.player() == null) {
+            throw new IllegalArgumentException("Game has no player");
+        }
+        this.index(List.of(game));
+        io.execute(() -> this.append(game));
+    }
+
+    /**
+     * Gets every game a player has played
+     * @param player the player's name
+     * @return the games, oldest first
+     */
+    public synchronized List<GameRecord> getGames(String player) {
+        var statistics = players.get(player);
+        return statistics == null ? List.of() : List.copyOf(statistics.games);
+    }
+
+    /**
+     * Gets a player's best game in a mode
+     * @param player the player's name
+     * @param mode the mode
+     * @return the game with the highest score, or null if they haven't played the mode
+     */
+    public synchronized GameRecord getPersonalBest(String player, GameRecord.Mode mode) {
+        var totals = this.totalsFor(player, mode);
+        return totals == null ? null : totals.best;
+    }
+
+    /**
+     * Gets the number of games a player has played in a mode
+     * @param player the player's name
+     * @param mode the mode
+     * @return number of games
+     */
+    public synchronized int getGamesPlayed(String player, GameRecord.Mode mode) {
+        var totals = this.totalsFor(player, mode);
+        return totals == null ? 0 : totals.games;
+    }
+
+    /**
+     * Gets a player's average score in a mode
+     * @param player the player's name
+     * @param mode the mode
+     * @return the average score, or 0 if they haven't played the mode
+     */
+    public synchronized double getAverageScore(String player, GameRecord.Mode mode) {
+        var totals = this.totalsFor(player, mode);
+        return totals == null ? 0 : totals.totalScore / (double) totals.games;
+    }
+
+    /**
+     * Gets a player's latest scores in a mode
+     * @param player the player's name
+     * @param mode the mode
+     * @param count the most scores to get
+     * @return up to that many scores, oldest first
+     */
+    public synchronized List<Integer> getRecentScores(String player, GameRecord.Mode mode, int count) {
+        var statistics = players.get(player);
+        if (statistics == null) {
+            return List.of();
+        }
+        var scores = new ArrayList<Integer>();
+        for (int i = statistics.games.size() - 1; i >= 0 && scores.size() < count; i--) {
+            var game = statistics.games.get(i);
+            if (game.mode() == mode) {
+                scores.add(game.score());
+            }
+        }
+        Collections.reverse(scores);
+        return scores;
+    }
+
+    /**
+     * Gets every game which finished in a period
+     * @param from the start of the period, in milliseconds since the epoch
+     * @param to the end of the period, in milliseconds since the epoch, not included
+     * @return the games, in the order they finished
+     */
+    public synchronized List<GameRecord> getGamesBetween(long from, long to) {
+        var between = new ArrayList<GameRecord>();
+        for (var finished : gamesByDate.subMap(from, true, to, false).values()) {
+            between.addAll(finished);
+        }
+        return between;
+    }
+
+    /**
+     * Gets the player of the latest game recorded in a mode
+     * @param mode the mode
+     * @return the player's name, or null if no games have been recorded in the mode
+     */
+    public synchronized String getLastPlayer(GameRecord.Mode mode) {
+        for (int i = games.size() - 1; i >= 0; i--) {
+            if (games.get(i).mode() == mode) {
+                return games.get(i).player();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of games recorded
+     * @return number of games
+     */
+    public synchronized int size() {
+        return games.size();
+    }
+
+    /**
+     * Waits for the games still being written, then stops the store's thread
+     */
+    public void close() {
+        logger.info("Closing statistics store");
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.error("Statistics store didn't finish writing in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds games to the indexes
+     * @param recorded the games
+     */
+    private synchronized void index(List<GameRecord> recorded) {
+        for (var game : recorded) {
+            games.add(game);
+            players.computeIfAbsent(game.player(), (player) -> new PlayerStatistics()).add(game);
+            gamesByDate.computeIfAbsent(game.finishedAt(), (finishedAt) -> new ArrayList<>(1)).add(game);
+        }
+    }
+
+    /**
+     * Adds the games loaded from the file to the indexes, ahead of any games recorded while they were loading
+     * @param loaded the games, oldest first
+     */
+    private synchronized void indexLoaded(List<GameRecord> loaded) {
+        games.addAll(0, loaded);
+        var byPlayer = new HashMap<String, List<GameRecord>>();
+        var byDate = new HashMap<Long, List<GameRecord>>();
+        for (var game : loaded) {
+            byPlayer.computeIfAbsent(game.player(), (player) -> new ArrayList<>()).add(game);
+            byDate.computeIfAbsent(game.finishedAt(), (finishedAt) -> new ArrayList<>(1)).add(game);
+        }
+        byPlayer.forEach((player, older) -> players.computeIfAbsent(player, (name) -> new PlayerStatistics()).addOlder(older));
+        byDate.forEach((finishedAt, older) -> gamesByDate.computeIfAbsent(finishedAt, (key) -> new ArrayList<>(1)).addAll(0, older));
+    }
+
+    /**
+     * Gets a player's totals in a mode
+     * @param player the player's name
+     * @param mode the mode
+     * @return the totals, or null if they haven't played the mode
+     */
+    private ModeTotals totalsFor(String player, GameRecord.Mode mode) {
+        var statistics = players.get(player);
+        return statistics == null ? null : statistics.totals.get(mode);
+    }
+
+    /**
+     * Reads every intact entry in the file, cutting off any damaged entry at the end
+     */
+    private void load() {
+        if (!Files.exists(file)) {
+            logger.info("No statistics found");
+            return;
+        }
+        var loaded = new ArrayList<GameRecord>();
+        try {
+            var buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC) {
+                logger.error("Not a statistics file, moving it aside: {}", file);
+                Files.move(file, file.resolveSibling(FILE + ".bad"), StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+            var names = new ArrayList<String>();
+            var intact = buffer.position();
+            while (buffer.hasRemaining()) {
+                var game = readEntry(buffer, names);
+                if (game == null && buffer.position() == intact) {
+                    break;
+                }
+                if (game != null) {
+                    loaded.add(game);
+                }
+                intact = buffer.position();
+            }
+            for (int i = 0; i < names.size(); i++) {
+                playerNumbers.put(names.get(i), i);
+            }
+            if (intact < buffer.limit()) {
+                logger.error("Cutting off {} damaged bytes at the end of the statistics", buffer.limit() - intact);
+                try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(intact);
+                }
+            }
+            logger.info("Loaded {} games played by {} players", loaded.size(), names.size());
+        } catch (IOException e) {
+            logger.error("Unable to load statistics: {}", e.getMessage());
+        }
+        this.indexLoaded(loaded);
+    }
+
+    /**
+     * Reads one entry, leaving the buffer where it started if the entry is damaged
+     * @param buffer the file's contents, positioned at the entry
+     * @param names the players named so far, in number order, which a player entry adds to
+     * @return the game if it was a game entry, or null if it was a player entry or is damaged
+     */
+    private static GameRecord readEntry(ByteBuffer buffer, List<String> names) {
+        var start = buffer.position();
+        try {
+            var type = buffer.get();
+            String name = null;
+            GameRecord game = null;
+            if (type == PLAYER_ENTRY) {
+                var bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                name = new String(bytes, StandardCharsets.UTF_8);
+            } else if (type == GAME_ENTRY) {
+                var player = buffer.getInt();
+                var mode = GameRecord.Mode.values()[buffer.get()];
+                game = new GameRecord(names.get(player), mode, buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                        buffer.getLong(), buffer.getLong(), buffer.getLong());
+            } else {
+                throw new IllegalStateException("Unknown entry type " + type);
+            }
+            var end = buffer.position();
+            var crc = new CRC32();
+            crc.update(buffer.array(), start, end - start);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                throw new IllegalStateException("Checksum doesn't match");
+            }
+            if (name != null) {
+                names.add(name);
+            }
+            return game;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalStateException e) {
+            buffer.position(start);
+            return null;
+        }
+    }
+
+    /**
+     * Appends a game to the file, naming its player first if they are new, and forces it to disk
+     * @param game the game
+     */
+    private void append(GameRecord game) {
+        try {
+            var bytes = new ByteArrayOutputStream();
+            var newFile = !Files.exists(file);
+            if (newFile) {
+                new DataOutputStream(bytes).writeInt(MAGIC);
+            }
+            var player = playerNumbers.get(game.player());
+            if (player == null) {
+                player = playerNumbers.size();
+                var name = game.player().getBytes(StandardCharsets.UTF_8);
+                writeEntry(bytes, PLAYER_ENTRY, (data) -> {
+                    data.writeShort(Math.min(name.length, 0xFFFF));
+                    data.write(name, 0, Math.min(name.length, 0xFFFF));
+                });
+            }
+            var number = player;
+            writeEntry(bytes, GAME_ENTRY, (data) -> {
+                data.writeInt(number);
+                data.writeByte(game.mode().ordinal());
+                data.writeInt(game.score());
+                data.writeInt(game.level());
+                data.writeInt(game.lines());
+                data.writeInt(game.pieces());
+                data.writeLong(game.durationMillis());
+                data.writeLong(game.seed());
+                data.writeLong(game.finishedAt());
+            });
+
+            try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                var buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            playerNumbers.putIfAbsent(game.player(), number);
+        } catch (IOException e) {
+            logger.error("Unable to record game: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes an entry: its type, its body and a checksum of both
+     * @param bytes where the entry is written
+     * @param type the entry's type
+     * @param body writes the entry's body
+     * @throws IOException never, as the bytes are written to memory
+     */
+    private static void writeEntry(ByteArrayOutputStream bytes, byte type, EntryWriter body) throws IOException {
+        var entry = new ByteArrayOutputStream();
+        var data = new DataOutputStream(entry);
+        data.writeByte(type);
+        body.write(data);
+        var crc = new CRC32();
+        crc.update(entry.toByteArray());
+        data.writeInt((int) crc.getValue());
+        entry.writeTo(bytes);
+    }
+
+    /**
+     * Writes the body of an entry
+     */
+    private interface EntryWriter {
+
+        /**
+         * Writes the body
+         * @param data where the body is written
+         * @throws IOException if it can't be written
+         */
+        void write(DataOutputStream data) throws IOException;
+    }
+
+    /**
+     * One player's games and their totals in each mode
+     */
+    private static class PlayerStatistics {
+
+        /**
+         * The player's games, oldest first
+         */
+        private final List<GameRecord> games = new ArrayList<>();
+
+        /**
+         * The player's totals in each mode they have played
+         */
+        private final Map<GameRecord.Mode, ModeTotals> totals = new EnumMap<>(GameRecord.Mode.class);
+
+        /**
+         * Adds one of the player's games
+         * @param game the game
+         */
+        private void add(GameRecord game) {
+            games.add(game);
+            this.addToTotals(game, false);
+        }
+
+        /**
+         * Adds games the player played before any of their games already added
+         * @param older the games, oldest first
+         */
+        private void addOlder(List<GameRecord> older) {
+            games.addAll(0, older);
+            //Goes newest first, so the oldest of equal best scores is kept, as it is when games are added in order
+            for (int i = older.size() - 1; i >= 0; i--) {
+                this.addToTotals(older.get(i), true);
+            }
+        }
+
+        /**
+         * Adds a game to the player's totals in its mode
+         * @param game the game
+         * @param older whether the game is older than every game already counted, so it takes the best from an equal score
+         */
+        private void addToTotals(GameRecord game, boolean older) {
+            var modeTotals = totals.computeIfAbsent(game.mode(), (mode) -> new ModeTotals());
+            modeTotals.games++;
+            modeTotals.totalScore += game.score();
+            if (modeTotals.best == null || game.score() > modeTotals.best.score() || (older && game.score() == modeTotals.best.score())) {
+                modeTotals.best = game;
+            }
+        }
+    }
+
+    /**
+     * A player's totals in one mode
+     */
+    private static class ModeTotals {
+
+        /**
+         * The number of games played
+         */
+        private int games;
+
+        /**
+         * The sum of every game's score
+         */
+        private long totalScore;
+
+        /**
+         * The game with the highest score
+         */
+        private GameRecord best;
+    }
+}
@@ -2,6 +2,8 @@ package uk.ac.soton.comp1206.ui;
 
 import javafx.application.Platform;
 import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
@@ -9,18 +11,42 @@ import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.App;
+import uk.ac.soton.comp1206.component.DebugOverlay;
+import uk.ac.soton.comp1206.game.GameSound;
+import uk.ac.soton.comp1206.game.Multimedia;
 import uk.ac.soton.comp1206.network.Communicator;
 import uk.ac.soton.comp1206.scene.*;
+import uk.ac.soton.comp1206.server.TetrECSServer;
+import uk.ac.soton.comp1206.storage.ReplayArchive;
+import uk.ac.soton.comp1206.storage.ScoreStore;
+import uk.ac.soton.comp1206.storage.StatisticsStore;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 /**
  * The GameWindow is the single window for the game where everything takes place.
  * To move between screens in the game, we simply change the scene.
  * The GameWindow has methods to launch each of the different parts of the game by switching scenes.
+ * In any scene, F3 shows or hides the communicator's metrics and F4 dumps them to a file in the working directory.
  */
 public class GameWindow {
 
     private static final Logger logger = LogManager.getLogger(GameWindow.class);
 
+    /**
+     * The server the game connects to unless the tetrecs.server property says otherwise
+     */
+    private static final String DEFAULT_SERVER = "ws://ofb-labs.soton.ac.uk:9700";
+
+    /**
+     * The tetrecs.server value which makes the game start its own server to connect to
+     */
+    private static final String LOCAL_SERVER = "local";
+
     private final int width;
     private final int height;
 
@@ -31,6 +57,26 @@ public class GameWindow {
 
     final Communicator communicator;
 
+    /**
+     * The local high scores, loaded in the background as the game starts
+     */
+    private final ScoreStore scoreStore;
+
+    /**
+     * The record of every game played, loaded in the background as the game starts
+     */
+    private final StatisticsStore statisticsStore;
+
+    /**
+     * The replay of every game played
+     */
+    private final ReplayArchive replayArchive;
+
+    /**
+     * Shows the communicator's metrics on top of every scene
+     */
+    private final DebugOverlay debugOverlay;
+
     /**
      * Creates a new GameWindow attached to the given stage with the specified width and height
      * @param stage stage
@@ -52,13 +98,42 @@ public class GameWindow {
         //Setup default scene
         setupDefaultScene();
 
-        //Setup communicator
-        communicator = new Communicator("ws://ofb-labs.soton.ac.uk:9700");
+        //Setup score store, which reads the local high scores from the working directory on its own thread
+        scoreStore = new ScoreStore(Path.of(""));
+        scoreStore.setDispatcher(Platform::runLater);
+        statisticsStore = new StatisticsStore(Path.of(""));
+        replayArchive = new ReplayArchive(Path.of(""));
+        replayArchive.setDispatcher(Platform::runLater);
+
+        //Setup communicator, which only connects once something needs the server, so startup never waits on the network
+        communicator = new Communicator(serverAddress());
+        communicator.setDispatcher(Platform::runLater);
+        debugOverlay = new DebugOverlay(communicator);
 
         //Go to menu
         startMenu();
     }
 
+    /**
+     * Works out which server to connect to from the tetrecs.server property
+     * A value of "local" starts a TetrECSServer inside the game on a free port, so multiplayer works without the university server
+     * @return the web socket address of the server
+     */
+    private String serverAddress() {
+        var server = System.getProperty("tetrecs.server", DEFAULT_SERVER);
+        if (!server.equals(LOCAL_SERVER)) {
+            return server;
+        }
+        try {
+            var localServer = new TetrECSServer(new InetSocketAddress("127.0.0.1", 0), System.nanoTime());
+            localServer.start();
+            return "ws://127.0.0.1:" + localServer.getPort();
+        } catch (IOException e) {
+            logger.error("Unable to start local server, using {}: {}", DEFAULT_SERVER, e.getMessage());
+            return DEFAULT_SERVER;
+        }
+    }
+
     /**
      * Sets up the font and any other resources we need
      */
@@ -69,6 +144,12 @@ public class GameWindow {
         Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-Regular.ttf"),32);
         Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-Bold.ttf"),32);
         Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-ExtraBold.ttf"),32);
+
+        //Decodes the sound effects now, so they play without a delay the first time
+        for (var sound : GameSound.values()) {
+            Multimedia.preloadAudio(sound.getFile());
+        }
+        Multimedia.preloadAudio("sounds/explode.wav");
     }
 
     /**
@@ -93,6 +174,11 @@ public class GameWindow {
      */
     public void startMultiplayer() { loadScene(new LobbyScene(this)); }
 
+    /**
+     * Displays the replay of the last game played
+     */
+    public void startReplay() { loadScene(new ReplayScene(this)); }
+
     /**
      * Sets up the default settings for the stage itself (the window), such as the title and minimum width and height.
      */
@@ -116,11 +202,52 @@ public class GameWindow {
         currentScene = newScene;
         scene = newScene.setScene();
         stage.setScene(scene);
+        this.addDebugKeys(scene);
 
         //Initialise the scene when ready
         Platform.runLater(() -> currentScene.initialise());
     }
 
+    /**
+     * Moves the debug overlay onto a scene and handles the keys that show it and dump the metrics
+     * The keys are filtered before the scene's own key handling, so they work in every scene
+     * @param scene the scene
+     */
+    private void addDebugKeys(Scene scene) {
+        ((Pane) scene.getRoot()).getChildren().add(debugOverlay);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, (event) -> {
+            if (event.getCode() == KeyCode.F3) {
+                debugOverlay.toggle();
+                event.consume();
+            } else if (event.getCode() == KeyCode.F4) {
+                this.dumpMetrics();
+                event.consume();
+            }
+        });
+    }
+
+    /**
+     * Dumps the communicator's metrics to a new file in the working directory, named after the current time
+     */
+    private void dumpMetrics() {
+        var file = Path.of("tetrecs-metrics-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".txt");
+        try {
+            communicator.dumpMetrics(file);
+        } catch (IOException e) {
+            logger.error("Unable to dump communicator metrics to {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Finishes writing the local high scores, statistics and replays before the game exits
+     */
+    public void close() {
+        logger.info("Closing game window");
+        scoreStore.close();
+        statisticsStore.close();
+        replayArchive.close();
+    }
+
     /**
      * Sets up the default scene (an empty black scene) when no scene is loaded
      */
@@ -134,7 +261,8 @@ public class GameWindow {
      */
     public void cleanup() {
         logger.info("Clearing up previous scene");
-        communicator.clearListeners();
+        communicator.setOnConnectionStateChanged(null);
+        scoreStore.setOnScoresChanged(null);
     }
 
     /**
@@ -168,4 +296,28 @@ public class GameWindow {
     public Communicator getCommunicator() {
         return communicator;
     }
+
+    /**
+     * Gets the local high scores
+     * @return score store
+     */
+    public ScoreStore getScoreStore() {
+        return scoreStore;
+    }
+
+    /**
+     * Gets the record of every game played
+     * @return statistics store
+     */
+    public StatisticsStore getStatisticsStore() {
+        return statisticsStore;
+    }
+
+    /**
+     * Gets the replay of every game played
+     * @return replay archive
+     */
+    public ReplayArchive getReplayArchive() {
+        return replayArchive;
+    }
 }
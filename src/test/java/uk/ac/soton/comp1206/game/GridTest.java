@@ -0,0 +1,180 @@
+package uk.ac.soton.comp1206.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the Grid finds and clears full rows and columns from its counts
+ */
+class GridTest {
+
+    /**
+     * Fills a row
+     * @param grid the grid
+     * @param y the row
+     * @param value the value to fill it with
+     */
+    private static void fillRow(Grid grid, int y, int value) {
+        for (int x = 0; x < grid.getCols(); x++) {
+            grid.set(x, y, value);
+        }
+    }
+
+    /**
+     * Fills a column
+     * @param grid the grid
+     * @param x the column
+     * @param value the value to fill it with
+     */
+    private static void fillCol(Grid grid, int x, int value) {
+        for (int y = 0; y < grid.getRows(); y++) {
+            grid.set(x, y, value);
+        }
+    }
+
+    /**
+     * Gets the blocks that were cleared
+     * @param cleared the cleared blocks
+     * @return each block as "x,y"
+     */
+    private static Set<String> blocks(ClearedBlocks cleared) {
+        var blocks = new HashSet<String>();
+        for (int i = 0; i < cleared.size(); i++) {
+            blocks.add(cleared.getX(i) + "," + cleared.getY(i));
+        }
+        assertEquals(cleared.size(), blocks.size(), "a block was cleared twice");
+        return blocks;
+    }
+
+    /**
+     * Checks the bitboard has a bit set for exactly the blocks with a value
+     * @param grid the grid
+     */
+    private static void assertOccupiedMatchesValues(Grid grid) {
+        var expected = 0L;
+        for (int y = 0; y < grid.getRows(); y++) {
+            for (int x = 0; x < grid.getCols(); x++) {
+                if (grid.get(x, y) != 0) {
+                    expected |= 1L << (y * grid.getCols() + x);
+                }
+            }
+        }
+        assertEquals(expected, grid.getOccupied());
+    }
+
+    /**
+     * Checks a full row is cleared and nothing else is
+     */
+    @Test
+    void clearsSingleRow() {
+        var grid = new Grid(5, 4);
+        var cleared = new ClearedBlocks(grid);
+        grid.set(0, 0, 3);
+        fillRow(grid, 2, 1);
+
+        assertEquals(1, grid.clearLines(cleared));
+        assertEquals(1, cleared.getLines());
+        assertEquals(Set.of("0,2", "1,2", "2,2", "3,2", "4,2"), blocks(cleared));
+        assertEquals(3, grid.get(0, 0));
+        for (int x = 0; x < 5; x++) {
+            assertEquals(0, grid.get(x, 2));
+        }
+        assertOccupiedMatchesValues(grid);
+    }
+
+    /**
+     * Checks a full column is cleared and nothing else is
+     */
+    @Test
+    void clearsSingleColumn() {
+        var grid = new Grid(5, 4);
+        var cleared = new ClearedBlocks(grid);
+        grid.set(4, 3, 2);
+        fillCol(grid, 1, 1);
+
+        assertEquals(1, grid.clearLines(cleared));
+        assertEquals(Set.of("1,0", "1,1", "1,2", "1,3"), blocks(cleared));
+        assertEquals(2, grid.get(4, 3));
+        assertOccupiedMatchesValues(grid);
+    }
+
+    /**
+     * Checks a full row and column crossing each other count as two lines, with the block they share cleared once
+     */
+    @Test
+    void clearsCrossingRowAndColumnOnce() {
+        var grid = new Grid(5, 5);
+        var cleared = new ClearedBlocks(grid);
+        fillRow(grid, 1, 1);
+        fillCol(grid, 3, 2);
+
+        assertEquals(2, grid.clearLines(cleared));
+        assertEquals(2, cleared.getLines());
+        var blocks = blocks(cleared);
+        assertEquals(9, blocks.size());
+        assertTrue(blocks.contains("3,1"));
+        assertEquals(0, grid.getOccupied());
+    }
+
+    /**
+     * Checks changing the value of blocks in a line that is already full doesn't count them again,
+     * so the line is cleared once and can be filled and cleared again afterwards
+     */
+    @Test
+    void clearsWhenCountsAlreadyFull() {
+        var grid = new Grid(5, 5);
+        var cleared = new ClearedBlocks(grid);
+        fillRow(grid, 4, 1);
+        fillRow(grid, 4, 2);
+        fillRow(grid, 4, 3);
+
+        assertEquals(1, grid.clearLines(cleared));
+        assertEquals(5, cleared.size());
+        assertEquals(0, grid.clearLines(cleared));
+        assertEquals(0, cleared.size());
+
+        //The counts went back to 0, so the row is only full again once every block is filled
+        for (int x = 0; x < 4; x++) {
+            grid.set(x, 4, 1);
+        }
+        assertEquals(0, grid.clearLines(cleared));
+        grid.set(4, 4, 1);
+        assertEquals(1, grid.clearLines(cleared));
+        assertOccupiedMatchesValues(grid);
+    }
+
+    /**
+     * Checks a line emptied and filled again before lines are cleared is still found
+     */
+    @Test
+    void clearsLineRefilledBeforeClearing() {
+        var grid = new Grid(4, 3);
+        var cleared = new ClearedBlocks(grid);
+        fillCol(grid, 0, 1);
+        grid.set(0, 1, 0);
+        assertEquals(0, grid.clearLines(cleared));
+        grid.set(0, 1, 5);
+        assertEquals(1, grid.clearLines(cleared));
+        assertEquals(Set.of("0,0", "0,1", "0,2"), blocks(cleared));
+    }
+
+    /**
+     * Checks every row and column of a full grid is cleared at once
+     */
+    @Test
+    void clearsFullGrid() {
+        var grid = new Grid(4, 3);
+        var cleared = new ClearedBlocks(grid);
+        for (int y = 0; y < 3; y++) {
+            fillRow(grid, y, y + 1);
+        }
+        assertEquals(7, grid.clearLines(cleared));
+        assertEquals(12, cleared.size());
+        assertEquals(0, grid.getOccupied());
+    }
+}
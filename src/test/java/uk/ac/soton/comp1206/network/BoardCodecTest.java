@@ -0,0 +1,163 @@
+package uk.ac.soton.comp1206.network;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the Board Codec writes boards and board deltas that read back to the same values
+ */
+class BoardCodecTest {
+
+    /**
+     * The number of blocks on a 5x5 board
+     */
+    private static final int CELLS = 25;
+
+    /**
+     * Reads back a BOARD or BOARDDELTA message onto the board it was written against
+     * @param message the message
+     * @param previous the board the message was written against
+     * @return the board the message describes
+     */
+    private static int[] apply(String message, int[] previous) {
+        var board = previous.clone();
+        if (message.startsWith(BoardCodec.BOARD_DELTA)) {
+            var pairs = new int[CELLS * 2];
+            var count = BoardCodec.readDelta(message, BoardCodec.BOARD_DELTA.length(), pairs);
+            for (int i = 0; i < count; i++) {
+                board[pairs[i * 2]] = pairs[i * 2 + 1];
+            }
+        } else {
+            assertEquals(CELLS, BoardCodec.readBoard(message, "BOARD".length(), board));
+        }
+        return board;
+    }
+
+    /**
+     * Writes a full board and checks every value reads back
+     */
+    @Test
+    void fullBoardRoundTrips() {
+        var random = new Random(1206);
+        var board = new int[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            board[i] = random.nextInt(16);
+        }
+        var message = new StringBuilder("BOARD");
+        BoardCodec.writeBoard(message, board, CELLS);
+
+        var read = new int[CELLS];
+        assertEquals(CELLS, BoardCodec.readBoard(message.toString(), 5, read));
+        assertArrayEquals(board, read);
+    }
+
+    /**
+     * Writes a delta between two equal boards and checks nothing needs sending
+     */
+    @Test
+    void emptyDeltaSendsNothing() {
+        var board = new int[CELLS];
+        board[3] = 7;
+        var message = new StringBuilder();
+        assertEquals(0, BoardCodec.writeUpdate(message, board, board.clone(), CELLS, true));
+        assertEquals(BoardCodec.BOARD_DELTA, message.toString());
+        assertEquals(0, BoardCodec.readDelta(message.toString(), BoardCodec.BOARD_DELTA.length(), new int[CELLS * 2]));
+    }
+
+    /**
+     * Checks a delta is sent while no more than a third of the values changed, and the full board once more did
+     */
+    @Test
+    void deltaFallsBackToFullBoardPastAThird() {
+        var previous = new int[CELLS];
+        for (var changed = 1; changed <= CELLS; changed++) {
+            var current = previous.clone();
+            for (int i = 0; i < changed; i++) {
+                current[CELLS - 1 - i] = i % 9 + 1;
+            }
+            var message = new StringBuilder();
+            assertEquals(changed, BoardCodec.writeUpdate(message, previous, current, CELLS, true));
+            var expected = changed * 3 > CELLS ? "BOARD " : BoardCodec.BOARD_DELTA + " ";
+            assertEquals(expected, message.substring(0, expected.length()), changed + " changed values");
+            assertArrayEquals(current, apply(message.toString(), previous));
+        }
+
+        //8 of 25 values is within a third, 9 is not
+        var current = previous.clone();
+        for (int i = 0; i < 8; i++) {
+            current[i] = 1;
+        }
+        var message = new StringBuilder();
+        BoardCodec.writeUpdate(message, previous, current, CELLS, true);
+        assertEquals(BoardCodec.BOARD_DELTA + " 0=1 1=1 2=1 3=1 4=1 5=1 6=1 7=1", message.toString());
+        current[8] = 1;
+        BoardCodec.writeUpdate(message, previous, current, CELLS, true);
+        assertEquals("BOARD 1 1 1 1 1 1 1 1 1 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0", message.toString());
+    }
+
+    /**
+     * Checks the full board is always sent when board deltas aren't in use, even if nothing changed
+     */
+    @Test
+    void fullBoardWithoutDeltas() {
+        var board = new int[CELLS];
+        var message = new StringBuilder();
+        assertEquals(CELLS, BoardCodec.writeUpdate(message, board, board, CELLS, false));
+        assertEquals("BOARD" + " 0".repeat(CELLS), message.toString());
+    }
+
+    /**
+     * Checks a grid is read going down each column in turn, so a delta index is the column times the rows plus the row
+     */
+    @Test
+    void gridIsReadColumnByColumn() {
+        var grid = new Grid(3, 4);
+        grid.set(2, 1, 5);
+        grid.set(0, 3, 8);
+        var previous = new int[12];
+        var current = new int[12];
+        assertEquals(12, BoardCodec.readGrid(grid, current));
+        assertEquals(5, current[2 * 4 + 1]);
+        assertEquals(8, current[3]);
+
+        var message = new StringBuilder();
+        assertEquals(2, BoardCodec.writeUpdate(message, previous, current, 12, true));
+        assertEquals(BoardCodec.BOARD_DELTA + " 3=8 9=5", message.toString());
+    }
+
+    /**
+     * Checks extra spaces are skipped and a board with fewer values than expected stops early
+     */
+    @Test
+    void readsAroundSpaces() {
+        var board = new int[CELLS];
+        assertEquals(3, BoardCodec.readBoard("BOARD  1   22 3  ", 5, board));
+        assertArrayEquals(new int[] {1, 22, 3}, Arrays.copyOf(board, 3));
+
+        var pairs = new int[4];
+        assertEquals(2, BoardCodec.readDelta(" 4=1  10=12 11=3", 0, pairs));
+        assertArrayEquals(new int[] {4, 1, 10, 12}, pairs);
+    }
+
+    /**
+     * Checks malformed boards and deltas are rejected
+     */
+    @Test
+    void malformedInputThrows() {
+        var board = new int[CELLS];
+        var pairs = new int[CELLS * 2];
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.readBoard("BOARD 1 x 2", 5, board));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.readBoard("BOARD -1", 5, board));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.readDelta("3", 0, pairs));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.readDelta("3:4", 0, pairs));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.readDelta("3=", 0, pairs));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.readDelta("=4", 0, pairs));
+    }
+}
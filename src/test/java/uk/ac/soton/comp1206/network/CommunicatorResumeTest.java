@@ -0,0 +1,449 @@
+package uk.ac.soton.comp1206.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.soton.comp1206.server.TetrECSServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Tests a Communicator resumes its place in a multiplayer game on a TetrECSServer after its connection drops mid-game,
+ * and the server sends board deltas to the players who asked for them and full boards to everyone else
+ */
+class CommunicatorResumeTest {
+
+    /**
+     * The address everything listens on, with any free port
+     */
+    private static final String HOST = "127.0.0.1";
+
+    /**
+     * How long to wait for any one message or connection state
+     */
+    private static final long TIMEOUT_SECONDS = 10;
+
+    /**
+     * The number of values on a 5x5 board
+     */
+    private static final int CELLS = 25;
+
+    /**
+     * The server, started on any free port for every test
+     */
+    private TetrECSServer server;
+
+    /**
+     * Passes one player's connection through to the server, so it can be dropped without the server stopping
+     */
+    private Relay relay;
+
+    /**
+     * The clients connected in the test, closed after it
+     */
+    private final List<Client> clients = new ArrayList<>();
+
+    /**
+     * Starts the server and the relay in front of it
+     * @throws IOException if either can't listen
+     */
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new TetrECSServer(new InetSocketAddress(HOST, 0), 1206);
+        server.start();
+        relay = new Relay(server.getPort());
+    }
+
+    /**
+     * Closes the clients, the relay and the server
+     */
+    @AfterEach
+    void stopServer() {
+        clients.forEach((client) -> client.communicator.close());
+        relay.close();
+        server.stop();
+    }
+
+    /**
+     * Makes a full board message body with the given values and every other value 0
+     * @param values pairs of index and value
+     * @return the values, separated by spaces
+     */
+    private static String board(int... values) {
+        var board = new int[CELLS];
+        for (int i = 0; i < values.length; i += 2) {
+            board[values[i]] = values[i + 1];
+        }
+        var message = new StringBuilder();
+        BoardCodec.writeBoard(message, board, CELLS);
+        return message.substring(1);
+    }
+
+    /**
+     * Connects a new client
+     * @param port the port to connect to
+     * @return the client
+     */
+    private Client connect(int port) {
+        var client = new Client(port);
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * Asks for game pieces and waits for every one of them
+     * @param client the client
+     * @param count the number of game pieces
+     * @return the game pieces, in the order they were dealt
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static List<String> pieces(Client client, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            client.communicator.send("PIECE");
+        }
+        var pieces = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            pieces.add(client.next("PIECE"));
+        }
+        return pieces;
+    }
+
+    /**
+     * Checks a player dropped mid-game keeps their place, board, score, lives and game pieces on the server,
+     * and takes them back with the same name when the Communicator reconnects
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    void resumesAfterConnectionDrops() throws InterruptedException {
+        var alice = this.connect(relay.getPort());
+        var bob = this.connect(server.getPort());
+        var carol = this.connect(server.getPort());
+
+        //Alice and Bob ask for board deltas, and Carol is sent full boards
+        alice.communicator.send("FEATURES " + BoardCodec.BOARD_DELTA);
+        bob.communicator.send("FEATURES " + BoardCodec.BOARD_DELTA);
+        assertEquals(BoardCodec.BOARD_DELTA, alice.next("FEATURES"));
+        assertEquals(BoardCodec.BOARD_DELTA, bob.next("FEATURES"));
+
+        alice.communicator.send("NICK alice");
+        alice.communicator.send("CREATE resume");
+        assertEquals("resume", alice.next("JOIN"));
+        bob.communicator.send("NICK bob");
+        bob.communicator.send("JOIN resume");
+        carol.communicator.send("NICK carol");
+        carol.communicator.send("JOIN resume");
+        assertEquals("resume", bob.next("JOIN"));
+        assertEquals("resume", carol.next("JOIN"));
+        bob.until("USERS", (users) -> users.split("\n").length == 3);
+        alice.communicator.send("START");
+        for (var client : clients) {
+            client.next("START");
+        }
+
+        //Every player is dealt the same pieces, so Bob's show which of them Alice should have been dealt
+        var expectedPieces = pieces(bob, 5);
+        var alicePieces = pieces(alice, 3);
+
+        alice.communicator.send("BOARD " + board(0, 1));
+        assertEquals("alice:" + board(0, 1), bob.next("BOARD"));
+        assertEquals("alice:" + board(0, 1), carol.next("BOARD"));
+        alice.communicator.send(BoardCodec.BOARD_DELTA + " 3=2 7=4");
+        assertEquals("alice:3=2 7=4", bob.next(BoardCodec.BOARD_DELTA));
+        assertEquals("alice:" + board(0, 1, 3, 2, 7, 4), carol.next("BOARD"));
+        alice.communicator.send("SCORE 100");
+        alice.communicator.send("LIVES 2");
+        bob.until("SCORES", (scores) -> scores.contains("alice:100:2"));
+
+        //The server keeps Alice's place while she is gone
+        relay.drop();
+        alice.awaitState(ConnectionState.RECONNECTING);
+        bob.communicator.send("SCORES");
+        bob.until("SCORES", (scores) -> scores.contains("alice:100:2") && scores.split("\n").length == 3);
+
+        //Game pieces asked for while disconnected are held, and dealt after the session is resumed
+        alice.communicator.send("PIECE");
+        alice.communicator.send("PIECE");
+        alice.awaitState(ConnectionState.CONNECTED);
+        assertEquals("resume", alice.next("JOIN"));
+        alicePieces.add(alice.next("PIECE"));
+        alicePieces.add(alice.next("PIECE"));
+        assertEquals(expectedPieces, alicePieces);
+        assertEquals(1, alice.communicator.getReconnects());
+
+        //The resumed board is sent in full, folding in the delta sent before the drop
+        assertEquals("alice:" + board(0, 1, 3, 2, 7, 4), bob.next("BOARD"));
+        assertEquals("alice:" + board(0, 1, 3, 2, 7, 4), carol.next("BOARD"));
+        bob.communicator.send("SCORES");
+        var scores = bob.until("SCORES", (entries) -> entries.contains("alice:100:2"));
+        assertEquals(3, scores.split("\n").length);
+        assertFalse(scores.contains("Guest"), scores);
+
+        //Deltas after the resume still go to each player in the form they asked for
+        alice.communicator.send(BoardCodec.BOARD_DELTA + " 0=0");
+        assertEquals("alice:0=0", bob.next(BoardCodec.BOARD_DELTA));
+        assertEquals("alice:" + board(3, 2, 7, 4), carol.next("BOARD"));
+    }
+
+    /**
+     * Checks a board delta from a player who didn't ask for them is sent as a delta to the players who did,
+     * and the whole board to the rest, with the delta applied to the last full board the server has
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    void boardDeltaFansOutByFeature() throws InterruptedException {
+        var alice = this.connect(server.getPort());
+        var bob = this.connect(server.getPort());
+        var carol = this.connect(server.getPort());
+        bob.communicator.send("FEATURES " + BoardCodec.BOARD_DELTA);
+        assertEquals(BoardCodec.BOARD_DELTA, bob.next("FEATURES"));
+        carol.communicator.send("FEATURES");
+        assertEquals("", carol.next("FEATURES"));
+
+        alice.communicator.send("NICK alice");
+        alice.communicator.send("CREATE fanout");
+        assertEquals("fanout", alice.next("JOIN"));
+        bob.communicator.send("JOIN fanout");
+        carol.communicator.send("JOIN fanout");
+        bob.next("JOIN");
+        carol.next("JOIN");
+        alice.until("USERS", (users) -> users.split("\n").length == 3);
+        alice.communicator.send("START");
+        for (var client : clients) {
+            client.next("START");
+        }
+
+        alice.communicator.send(BoardCodec.BOARD_DELTA + " 24=9");
+        assertEquals("alice:24=9", bob.next(BoardCodec.BOARD_DELTA));
+        assertEquals("alice:" + board(24, 9), carol.next("BOARD"));
+        alice.communicator.send("BOARD " + board(1, 1));
+        alice.communicator.send(BoardCodec.BOARD_DELTA + " 2=2");
+        assertEquals("alice:" + board(1, 1), bob.next("BOARD"));
+        assertEquals("alice:2=2", bob.next(BoardCodec.BOARD_DELTA));
+        assertEquals("alice:" + board(1, 1), carol.next("BOARD"));
+        assertEquals("alice:" + board(1, 1, 2, 2), carol.next("BOARD"));
+    }
+
+    /**
+     * A Communicator and every message it has received, kept by command
+     */
+    private static class Client {
+
+        /**
+         * The client's communicator
+         */
+        private final Communicator communicator;
+
+        /**
+         * The body of every message received that hasn't been looked at yet, by command
+         */
+        private final Map<String, BlockingQueue<String>> received = new ConcurrentHashMap<>();
+
+        /**
+         * Every connection state the communicator has gone into that hasn't been looked at yet
+         */
+        private final BlockingQueue<ConnectionState> states = new LinkedBlockingQueue<>();
+
+        /**
+         * Creates a new client, which connects when it sends its first message
+         * @param port the port to connect to
+         */
+        Client(int port) {
+            communicator = new Communicator("ws://" + HOST + ":" + port);
+            communicator.addListener(this::receive);
+            communicator.setOnConnectionStateChanged(states::add);
+        }
+
+        /**
+         * Keeps a message received from the server
+         * @param message the message
+         */
+        private void receive(String message) {
+            var space = message.indexOf(' ');
+            var command = space == -1 ? message : message.substring(0, space);
+            this.queue(command).add(space == -1 ? "" : message.substring(space + 1));
+        }
+
+        /**
+         * Gets the messages received with a command
+         * @param command the command
+         * @return the bodies of the messages
+         */
+        private BlockingQueue<String> queue(String command) {
+            return received.computeIfAbsent(command, (key) -> new LinkedBlockingQueue<>());
+        }
+
+        /**
+         * Waits for the next message with a command
+         * @param command the command
+         * @return the message's body
+         * @throws InterruptedException if interrupted while waiting
+         */
+        String next(String command) throws InterruptedException {
+            var body = this.queue(command).poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull(body, "No " + command + " received");
+            return body;
+        }
+
+        /**
+         * Waits for a message with a command that matches, skipping any that don't
+         * @param command the command
+         * @param matches checks the message's body
+         * @return the message's body
+         * @throws InterruptedException if interrupted while waiting
+         */
+        String until(String command, Predicate<String> matches) throws InterruptedException {
+            while (true) {
+                var body = this.next(command);
+                if (matches.test(body)) {
+                    return body;
+                }
+            }
+        }
+
+        /**
+         * Waits for the communicator to go into a connection state
+         * @param state the state
+         * @throws InterruptedException if interrupted while waiting
+         */
+        void awaitState(ConnectionState state) throws InterruptedException {
+            while (true) {
+                var next = states.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                assertNotNull(next, "Communicator didn't become " + state);
+                if (next == state) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Relays TCP connections to the server, and can drop them all without warning either end
+     */
+    private static class Relay {
+
+        /**
+         * The socket clients connect to
+         */
+        private final ServerSocket listener;
+
+        /**
+         * The port of the server connections are relayed to
+         */
+        private final int target;
+
+        /**
+         * Both ends of every connection being relayed
+         */
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+        /**
+         * Creates a new relay on any free port and starts accepting connections
+         * @param target the port of the server
+         * @throws IOException if it can't listen
+         */
+        Relay(int target) throws IOException {
+            this.target = target;
+            listener = new ServerSocket();
+            listener.bind(new InetSocketAddress(HOST, 0));
+            start(this::accept, "relay");
+        }
+
+        /**
+         * Gets the port clients connect to
+         * @return the port
+         */
+        int getPort() {
+            return listener.getLocalPort();
+        }
+
+        /**
+         * Closes every connection being relayed, so the client and the server each just see their socket close
+         */
+        void drop() {
+            for (var socket : sockets) {
+                closeQuietly(socket);
+            }
+            sockets.clear();
+        }
+
+        /**
+         * Stops accepting connections and drops the ones being relayed
+         */
+        void close() {
+            closeQuietly(listener);
+            this.drop();
+        }
+
+        /**
+         * Accepts connections until the relay is closed, connecting each to the server
+         */
+        private void accept() {
+            try {
+                while (true) {
+                    var client = listener.accept();
+                    var upstream = new Socket(HOST, target);
+                    sockets.add(client);
+                    sockets.add(upstream);
+                    start(() -> copy(client, upstream), "relay-up");
+                    start(() -> copy(upstream, client), "relay-down");
+                }
+            } catch (IOException e) {
+                //The relay was closed
+            }
+        }
+
+        /**
+         * Copies bytes from one socket to the other until either closes, then closes both
+         * @param from the socket to read
+         * @param to the socket to write
+         */
+        private static void copy(Socket from, Socket to) {
+            try {
+                from.getInputStream().transferTo(to.getOutputStream());
+            } catch (IOException e) {
+                //The connection was dropped
+            }
+            closeQuietly(from);
+            closeQuietly(to);
+        }
+
+        /**
+         * Starts a daemon thread
+         * @param task what the thread runs
+         * @param name the thread's name
+         */
+        private static void start(Runnable task, String name) {
+            var thread = new Thread(task, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Closes a socket, ignoring any error
+         * @param socket the socket
+         */
+        private static void closeQuietly(AutoCloseable socket) {
+            try {
+                socket.close();
+            } catch (Exception e) {
+                //Already closed
+            }
+        }
+    }
+}
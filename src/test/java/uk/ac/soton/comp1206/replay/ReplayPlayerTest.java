@@ -0,0 +1,170 @@
+package uk.ac.soton.comp1206.replay;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameClock;
+import uk.ac.soton.comp1206.game.GameSnapshot;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests a recorded game plays back to exactly the same states, however the Replay Player gets to each move
+ */
+class ReplayPlayerTest {
+
+    /**
+     * Describes everything a snapshot holds, so two snapshots can be compared
+     * @param snapshot the snapshot
+     * @return the description
+     */
+    private static String describe(GameSnapshot snapshot) {
+        return Arrays.toString(snapshot.values()) + " score " + snapshot.score() + " level " + snapshot.level()
+                + " lives " + snapshot.lives() + " multiplier " + snapshot.multiplier() + " lines " + snapshot.linesCleared()
+                + " pieces " + snapshot.piecesPlaced() + " current " + snapshot.currentPiece().getValue() + "/" + snapshot.currentPiece().getRotation()
+                + " following " + snapshot.followingPiece().getValue() + "/" + snapshot.followingPiece().getRotation();
+    }
+
+    /**
+     * A game recorded while making random moves
+     * @param recorder the recorder the game was recorded to
+     * @param states the game's state before its first move and after each move that was recorded
+     */
+    private record Recorded(ReplayRecorder recorder, List<String> states) {
+    }
+
+    /**
+     * Plays a seeded game with random rotations, swaps, placements and timer expiries, recording it
+     * @param seed the seed the game pieces and moves are picked from
+     * @param moves the number of moves to try, some of which can't be played and aren't recorded
+     * @return the recorded game
+     */
+    private static Recorded play(long seed, int moves) {
+        var random = new Random(seed);
+        var game = new Game(5, 5, GameClock.manual(), PieceGenerator.uniform(seed));
+        var recorder = new ReplayRecorder(5, 5, seed);
+        game.setReplayRecorder(recorder);
+        game.start();
+
+        var states = new ArrayList<String>();
+        states.add(describe(game.snapshot()));
+        for (int i = 0; i < moves; i++) {
+            var move = random.nextInt(10);
+            if (move == 0) {
+                game.rotateCurrentPiece(random.nextInt(4));
+            } else if (move == 1) {
+                game.swapCurrentPiece();
+            } else if (move == 2) {
+                game.gameLoop();
+            } else if (!game.blockClicked(random.nextInt(5), random.nextInt(5))) {
+                continue;
+            }
+            states.add(describe(game.snapshot()));
+        }
+        game.stop();
+        //Nothing is recorded once the game has stopped
+        game.rotateCurrentPiece(1);
+        return new Recorded(recorder, states);
+    }
+
+    /**
+     * Checks a replay decodes the same whether it was compressed or not, and deals the recorded pieces
+     */
+    @Test
+    void decodesCompressedAndUncompressed() {
+        var recorded = play(1206, 300);
+        var plain = Replay.read(recorded.recorder().toBytes(false));
+        var compressed = Replay.read(recorded.recorder().toBytes(true));
+
+        for (var replay : List.of(plain, compressed)) {
+            assertEquals(5, replay.getCols());
+            assertEquals(5, replay.getRows());
+            assertEquals(1206, replay.getSeed());
+            assertEquals(recorded.states().size() - 1, replay.getMoveCount());
+        }
+        assertEquals(plain.getPieceCount(), compressed.getPieceCount());
+        var pieces = compressed.toPieceGenerator(0);
+        for (int i = 0; i < plain.getPieceCount(); i++) {
+            assertEquals(plain.getPiece(i), compressed.getPiece(i));
+            assertEquals(plain.getPiece(i), pieces.next());
+        }
+        for (int move = 0; move < plain.getMoveCount(); move++) {
+            assertEquals(plain.getType(move), compressed.getType(move));
+            assertEquals(plain.getTime(move), compressed.getTime(move));
+        }
+    }
+
+    /**
+     * Checks playing a replay to the end, and seeking to every move either side of each snapshot, gives the recorded game's states
+     */
+    @Test
+    void seekingMatchesRecordedGame() {
+        for (long seed = 1; seed <= 20; seed++) {
+            var recorded = play(seed, 400);
+            var states = recorded.states();
+            for (var compress : new boolean[] {false, true}) {
+                var player = new ReplayPlayer(Replay.read(recorded.recorder().toBytes(compress)));
+                player.start();
+                assertEquals(states.get(0), describe(player.getGame().snapshot()));
+
+                assertTrue(player.advanceTo(Long.MAX_VALUE));
+                assertEquals(states.get(states.size() - 1), describe(player.getGame().snapshot()), "end of seed " + seed);
+
+                //Backwards from the end, across every snapshot boundary
+                for (int move = player.getMoveCount(); move >= 0; move -= 31) {
+                    player.seek(move);
+                    assertEquals(move, player.getPosition());
+                    assertEquals(states.get(move), describe(player.getGame().snapshot()), "move " + move + " of seed " + seed);
+                }
+                //Forwards, either side of each snapshot
+                for (int boundary = 0; boundary <= player.getMoveCount(); boundary += 32) {
+                    for (var move : new int[] {boundary - 1, boundary, boundary + 1}) {
+                        if (move >= 0 && move <= player.getMoveCount()) {
+                            player.seek(move);
+                            assertEquals(states.get(move), describe(player.getGame().snapshot()), "move " + move + " of seed " + seed);
+                        }
+                    }
+                }
+                player.seek(player.getMoveCount());
+                assertEquals(states.get(states.size() - 1), describe(player.getGame().snapshot()));
+            }
+        }
+    }
+
+    /**
+     * Checks a replay can be read from part of a larger buffer, without changing the buffer
+     */
+    @Test
+    void readsFromBufferSlice() {
+        var bytes = play(7, 50).recorder().toBytes(true);
+        var buffer = ByteBuffer.allocate(bytes.length + 10);
+        buffer.position(5);
+        buffer.put(bytes);
+        buffer.position(5).limit(5 + bytes.length);
+
+        assertEquals(7, Replay.read(buffer).getSeed());
+        assertEquals(5, buffer.position());
+        assertEquals(5 + bytes.length, buffer.limit());
+    }
+
+    /**
+     * Checks damaged or truncated replays are rejected
+     */
+    @Test
+    void rejectsDamagedReplays() {
+        var bytes = play(3, 100).recorder().toBytes(true);
+        assertThrows(IllegalArgumentException.class, () -> Replay.read(new byte[] {1, 2, 3}));
+        assertThrows(IllegalArgumentException.class, () -> Replay.read(Arrays.copyOf(bytes, bytes.length / 2)));
+        var wrongVersion = bytes.clone();
+        wrongVersion[4] = 99;
+        assertThrows(IllegalArgumentException.class, () -> Replay.read(wrongVersion));
+    }
+}
@@ -0,0 +1,252 @@
+package uk.ac.soton.comp1206.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.soton.comp1206.replay.Replay;
+import uk.ac.soton.comp1206.replay.ReplayRecorder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the Replay Archive saves, indexes and recovers replays across its segments
+ */
+class ReplayArchiveTest {
+
+    /**
+     * The directory the replays directory is kept in, emptied for every test
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Records a short game
+     * @param seed the seed the game is recorded with, which tells the replays apart
+     * @return the recorder
+     */
+    private static ReplayRecorder record(long seed) {
+        var recorder = new ReplayRecorder(5, 5, seed);
+        recorder.start();
+        recorder.piece(3);
+        recorder.rotate(1);
+        recorder.place(2, 2);
+        recorder.end();
+        return recorder;
+    }
+
+    /**
+     * Makes a replay file's worth of bytes, different for each value of fill
+     * @param length the number of bytes
+     * @param fill the value the bytes are based on
+     * @return the bytes
+     */
+    private static byte[] bytes(int length, int fill) {
+        var bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (fill + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Copies a replay out of the archive
+     * @param replay the read only slice holding the replay
+     * @return the replay's bytes
+     */
+    private static byte[] toArray(ByteBuffer replay) {
+        var bytes = new byte[replay.remaining()];
+        replay.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Gets the seed of every replay in an archive, in the order they were saved
+     * @param archive the archive
+     * @return the seeds
+     */
+    private static List<Long> seeds(ReplayArchive archive) {
+        var seeds = new ArrayList<Long>();
+        archive.scan((id, replay) -> {
+            assertEquals(seeds.size() + 1, id);
+            seeds.add(Replay.read(replay).getSeed());
+        });
+        return seeds;
+    }
+
+    /**
+     * Lists the segment files in the replays directory
+     * @return the segment files, in order
+     * @throws IOException if the directory can't be listed
+     */
+    private List<Path> segmentFiles() throws IOException {
+        try (var list = Files.list(directory.resolve(ReplayArchive.DIRECTORY))) {
+            return list.filter((file) -> file.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    /**
+     * Checks saved replays can be loaded back, the latest in the background and every one by scanning
+     */
+    @Test
+    void savesAndLoadsReplays() {
+        var archive = new ReplayArchive(directory);
+        archive.save(record(11));
+        archive.save(record(22));
+        var latest = new AtomicReference<Replay>();
+        archive.loadLatest(latest::set);
+        archive.close();
+
+        assertEquals(22, latest.get().getSeed());
+        assertEquals(2, archive.getLatestId());
+        assertEquals(List.of(11L, 22L), seeds(archive));
+        assertNull(archive.read(0));
+        assertNull(archive.read(3));
+    }
+
+    /**
+     * Checks ids carry on from the replays already saved when the archive is opened again, and a read only archive sees them all
+     */
+    @Test
+    void idsContinueWhenReopened() {
+        var archive = new ReplayArchive(directory);
+        for (long seed = 1; seed <= 3; seed++) {
+            archive.save(record(seed));
+        }
+        archive.close();
+
+        var reopened = new ReplayArchive(directory);
+        reopened.save(record(4));
+        reopened.save(record(5));
+        reopened.close();
+
+        var readOnly = ReplayArchive.openReadOnly(directory.resolve(ReplayArchive.DIRECTORY));
+        assertEquals(5, readOnly.getLatestId());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), seeds(readOnly));
+        assertThrows(IllegalStateException.class, () -> readOnly.save(record(6)));
+    }
+
+    /**
+     * Checks a read only archive of a directory that doesn't exist has no replays
+     */
+    @Test
+    void readOnlyWithoutReplays() {
+        var archive = ReplayArchive.openReadOnly(directory.resolve("missing"));
+        assertEquals(0, archive.getLatestId());
+        assertEquals(List.of(), seeds(archive));
+    }
+
+    /**
+     * Checks replay files saved by an earlier version are imported in order and deleted,
+     * each going in a new segment when it doesn't fit in the last one, and ids carry on across the segments
+     * @throws IOException if a file can't be written or listed
+     */
+    @Test
+    void importsReplayFilesAcrossSegments() throws IOException {
+        var replays = directory.resolve(ReplayArchive.DIRECTORY);
+        Files.createDirectories(replays);
+        var half = ReplayArchive.SEGMENT_SIZE / 2 + 1;
+        var contents = List.of(bytes(half, 1), bytes(half, 2), bytes(ReplayArchive.SEGMENT_SIZE + 1, 3));
+        for (int i = 0; i < contents.size(); i++) {
+            Files.write(replays.resolve("replay-170000000000" + i + ".trpl"), contents.get(i));
+        }
+
+        var archive = new ReplayArchive(directory);
+        archive.save(record(4));
+        archive.close();
+
+        //Two halves don't fit one segment, the large file gets a segment its own size, and the replay saved after it starts another
+        var segments = this.segmentFiles();
+        assertEquals(4, segments.size());
+        assertEquals(ReplayArchive.SEGMENT_SIZE, Files.size(segments.get(0)));
+        assertEquals(ReplayArchive.SEGMENT_SIZE + 1 + 8 + 16, Files.size(segments.get(2)));
+        try (var list = Files.list(replays)) {
+            assertFalse(list.anyMatch((file) -> file.toString().endsWith(".trpl")));
+        }
+
+        var readOnly = ReplayArchive.openReadOnly(replays);
+        assertEquals(4, readOnly.getLatestId());
+        for (int i = 0; i < contents.size(); i++) {
+            assertArrayEquals(contents.get(i), toArray(readOnly.read(i + 1)));
+        }
+        assertEquals(4, Replay.read(readOnly.read(4)).getSeed());
+    }
+
+    /**
+     * Checks a replay cut off part way through saving, with its length written but not all of its bytes, is dropped and cleared,
+     * and the next replay is saved in its place
+     * @throws IOException if the segment can't be read or written
+     */
+    @Test
+    void cutOffReplayIsDroppedAndCleared() throws IOException {
+        var archive = new ReplayArchive(directory);
+        archive.save(record(1));
+        archive.close();
+        var first = toArray(archive.read(1));
+
+        //Writes a header for replay 2 whose checksum doesn't match its bytes, as if only some of its pages reached the disk
+        var segment = this.segmentFiles().get(0);
+        var position = 8 + 16 + first.length;
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var header = ByteBuffer.allocate(16 + 40);
+            header.putInt(40).putLong(2).putInt(12345).put(bytes(40, 7)).flip();
+            channel.write(header, position);
+        }
+
+        var reopened = new ReplayArchive(directory);
+        reopened.close();
+        assertEquals(1, reopened.getLatestId());
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            var cleared = ByteBuffer.allocate(16 + 40);
+            channel.read(cleared, position);
+            assertArrayEquals(new byte[16 + 40], cleared.array());
+        }
+
+        var again = new ReplayArchive(directory);
+        again.save(record(2));
+        again.close();
+        var readOnly = ReplayArchive.openReadOnly(directory.resolve(ReplayArchive.DIRECTORY));
+        assertEquals(List.of(1L, 2L), seeds(readOnly));
+        assertEquals(1, this.segmentFiles().size());
+    }
+
+    /**
+     * Checks a replay whose length was never written, or is longer than the segment, doesn't count
+     * @throws IOException if the segment can't be written
+     */
+    @Test
+    void replayWithoutValidLengthIsIgnored() throws IOException {
+        var archive = new ReplayArchive(directory);
+        archive.save(record(1));
+        archive.close();
+        var first = toArray(archive.read(1));
+
+        var segment = this.segmentFiles().get(0);
+        var position = 8 + 16 + first.length;
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var header = ByteBuffer.allocate(16);
+            header.putInt(0).putLong(2).putInt(0).flip();
+            channel.write(header, position);
+        }
+        assertEquals(1, ReplayArchive.openReadOnly(directory.resolve(ReplayArchive.DIRECTORY)).getLatestId());
+
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, ReplayArchive.SEGMENT_SIZE), position);
+        }
+        var readOnly = ReplayArchive.openReadOnly(directory.resolve(ReplayArchive.DIRECTORY));
+        assertEquals(1, readOnly.getLatestId());
+        assertArrayEquals(first, toArray(readOnly.read(1)));
+    }
+}
@@ -0,0 +1,175 @@
+package uk.ac.soton.comp1206.storage;
+
+import javafx.util.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the Score Index against a plain sorted list of the same scores
+ */
+class ScoreIndexTest {
+
+    /**
+     * Inserts a score into the sorted list the same way the index should, after any equal scores
+     * @param model the sorted list, best first
+     * @param capacity the most scores kept
+     * @param name the player's name
+     * @param score the score
+     * @return the score's rank, from 1 for the best, or -1 if it was too low to keep
+     */
+    private static int insert(List<Pair<String, Integer>> model, int capacity, String name, int score) {
+        var rank = rankOf(model, score);
+        if (rank > capacity) {
+            return -1;
+        }
+        model.add(rank - 1, new Pair<>(name, score));
+        if (model.size() > capacity) {
+            model.remove(model.size() - 1);
+        }
+        return rank;
+    }
+
+    /**
+     * Finds the rank a score would take in the sorted list
+     * @param model the sorted list, best first
+     * @param score the score
+     * @return the rank, from 1 for the best
+     */
+    private static int rankOf(List<Pair<String, Integer>> model, int score) {
+        var rank = 1;
+        for (var entry : model) {
+            if (entry.getValue() >= score) {
+                rank++;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Checks every way of reading the index gives the same scores as the sorted list
+     * @param index the index
+     * @param model the sorted list, best first
+     */
+    private static void assertMatches(ScoreIndex index, List<Pair<String, Integer>> model) {
+        assertEquals(model.size(), index.size());
+        assertEquals(model, index.top(Integer.MAX_VALUE));
+        for (int rank = 1; rank <= model.size(); rank++) {
+            assertEquals(model.get(rank - 1), index.get(rank));
+        }
+        assertEquals(model.isEmpty() ? 0 : model.get(0).getValue(), index.getHighScore());
+    }
+
+    /**
+     * Inserts random scores with many ties and checks the ranks, scores and best scores match the sorted list
+     */
+    @Test
+    void randomInsertsMatchSortedList() {
+        var random = new Random(1206);
+        for (var capacity : new int[] {1, 2, 10, 100}) {
+            var index = new ScoreIndex(capacity);
+            var model = new ArrayList<Pair<String, Integer>>();
+            for (int i = 0; i < 2000; i++) {
+                //Scores are picked from a small range so there are plenty of ties
+                var score = random.nextInt(50) * 100;
+                assertEquals(rankOf(model, score), index.rankOf(score));
+                assertEquals(insert(model, capacity, "player" + i, score), index.insert("player" + i, score));
+                if (i % 50 == 0) {
+                    assertMatches(index, model);
+                }
+            }
+            assertMatches(index, model);
+            assertEquals(model.subList(0, Math.min(5, model.size())), index.top(5));
+        }
+    }
+
+    /**
+     * Checks equal scores are kept in the order they were inserted
+     */
+    @Test
+    void tiesKeepInsertionOrder() {
+        var index = new ScoreIndex(10);
+        index.insert("first", 500);
+        index.insert("second", 500);
+        index.insert("better", 600);
+        assertEquals(4, index.insert("third", 500));
+
+        assertEquals(List.of(new Pair<>("better", 600), new Pair<>("first", 500), new Pair<>("second", 500), new Pair<>("third", 500)),
+                index.top(10));
+    }
+
+    /**
+     * Checks the lowest score is dropped once the index is full, and a score too low to keep isn't inserted
+     */
+    @Test
+    void lowestScoreIsDroppedAtCapacity() {
+        var index = new ScoreIndex(3);
+        index.insert("a", 300);
+        index.insert("b", 200);
+        index.insert("c", 100);
+
+        assertEquals(-1, index.insert("d", 50));
+        assertEquals(2, index.insert("e", 250));
+        assertEquals(3, index.size());
+        assertEquals(List.of(new Pair<>("a", 300), new Pair<>("e", 250), new Pair<>("b", 200)), index.top(10));
+
+        //An equal score goes after the lowest score, so it isn't kept either
+        assertEquals(-1, index.insert("f", 200));
+        assertEquals(new Pair<>("b", 200), index.get(3));
+    }
+
+    /**
+     * Checks a score equal to the lowest kept score doesn't qualify once the index is full, but one point more does
+     */
+    @Test
+    void wouldQualifyAtTheBoundary() {
+        var index = new ScoreIndex(3);
+        assertTrue(index.wouldQualify(0));
+        index.insert("a", 300);
+        index.insert("b", 200);
+        assertTrue(index.wouldQualify(0));
+
+        index.insert("c", 100);
+        assertFalse(index.wouldQualify(99));
+        assertFalse(index.wouldQualify(100));
+        assertTrue(index.wouldQualify(101));
+
+        assertFalse(index.wouldQualify(200, 2));
+        assertTrue(index.wouldQualify(201, 2));
+        assertTrue(index.wouldQualify(101, 10));
+        assertFalse(index.wouldQualify(100, 10));
+    }
+
+    /**
+     * Checks reading a rank with no score, or creating an index with no capacity, throws
+     */
+    @Test
+    void getOutsideTheScoresThrows() {
+        var index = new ScoreIndex(3);
+        index.insert("a", 300);
+        assertThrows(IndexOutOfBoundsException.class, () -> index.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.get(2));
+        assertThrows(IllegalArgumentException.class, () -> new ScoreIndex(0));
+    }
+
+    /**
+     * Checks clearing the index removes every score and it can be used again
+     */
+    @Test
+    void clearRemovesEveryScore() {
+        var index = new ScoreIndex(5);
+        for (int i = 0; i < 20; i++) {
+            index.insert("player" + i, i);
+        }
+        index.clear();
+        assertMatches(index, List.of());
+        assertEquals(1, index.insert("again", 10));
+    }
+}
@@ -0,0 +1,175 @@
+package uk.ac.soton.comp1206.storage;
+
+import javafx.util.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the Score Store loads its snapshot, log and legacy file back correctly, including after a crash
+ */
+class ScoreStoreTest {
+
+    /**
+     * The directory the store's files are kept in, emptied for every test
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Opens a store on the test directory and waits for it to finish loading
+     * @return the store, closed so every file it was going to write has been written
+     */
+    private ScoreStore load() {
+        var store = new ScoreStore(directory);
+        store.close();
+        return store;
+    }
+
+    /**
+     * Writes a file in the test directory
+     * @param name the file's name
+     * @param content the file's content
+     * @throws IOException if the file can't be written
+     */
+    private void write(String name, String content) throws IOException {
+        Files.writeString(directory.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a file in the test directory
+     * @param name the file's name
+     * @return the file's content
+     * @throws IOException if the file can't be read
+     */
+    private String read(String name) throws IOException {
+        return Files.readString(directory.resolve(name), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks the default scores are used, and written to a snapshot, when there are no files
+     * @throws IOException if the snapshot can't be read
+     */
+    @Test
+    void defaultScoresWithoutFiles() throws IOException {
+        var store = this.load();
+        assertEquals(10, store.size());
+        assertEquals(new Pair<>("David", 10000), store.getScores().get(0));
+        assertTrue(read(ScoreStore.SNAPSHOT_FILE).startsWith("#0\n"));
+    }
+
+    /**
+     * Checks the legacy scores file is imported into a snapshot once, and ignored after that
+     * @throws IOException if a file can't be written or read
+     */
+    @Test
+    void importsLegacyFileOnce() throws IOException {
+        write(ScoreStore.LEGACY_FILE, "Alice:500\nnot a score\nB:o:b:300\n");
+        var store = this.load();
+        assertEquals(List.of(new Pair<>("Alice", 500), new Pair<>("B:o:b", 300)), store.getScores());
+        assertEquals("#0\nAlice:500\nB:o:b:300\n", read(ScoreStore.SNAPSHOT_FILE));
+
+        write(ScoreStore.LEGACY_FILE, "Carol:900\n");
+        assertEquals(List.of(new Pair<>("Alice", 500), new Pair<>("B:o:b", 300)), this.load().getScores());
+    }
+
+    /**
+     * Checks an unfinished last record is dropped and the log is compacted straight away, so nothing is appended after it
+     * @throws IOException if a file can't be written or read
+     */
+    @Test
+    void tornLastRecordIsDroppedAndCompacted() throws IOException {
+        write(ScoreStore.SNAPSHOT_FILE, "#0\nAlice:100\n");
+        var torn = ScoreStore.formatRecord(2, new Pair<>("Carol", 300));
+        write(ScoreStore.LOG_FILE, ScoreStore.formatRecord(1, new Pair<>("Bob", 200)) + torn.substring(0, torn.length() - 4));
+
+        var store = this.load();
+        assertEquals(List.of(new Pair<>("Bob", 200), new Pair<>("Alice", 100)), store.getScores());
+        assertFalse(Files.exists(directory.resolve(ScoreStore.LOG_FILE)));
+        assertEquals("#1\nBob:200\nAlice:100\n", read(ScoreStore.SNAPSHOT_FILE));
+    }
+
+    /**
+     * Checks a record with a bad checksum stops the log being replayed, even if intact records follow it
+     * @throws IOException if a file can't be written or read
+     */
+    @Test
+    void badChecksumStopsReplay() throws IOException {
+        write(ScoreStore.SNAPSHOT_FILE, "#0\n");
+        var damaged = ScoreStore.formatRecord(2, new Pair<>("Carol", 300)).replace("Carol", "Karol");
+        write(ScoreStore.LOG_FILE, ScoreStore.formatRecord(1, new Pair<>("Bob", 200)) + damaged
+                + ScoreStore.formatRecord(3, new Pair<>("Dave", 400)));
+
+        var store = this.load();
+        assertEquals(List.of(new Pair<>("Bob", 200)), store.getScores());
+        assertFalse(Files.exists(directory.resolve(ScoreStore.LOG_FILE)));
+        assertTrue(read(ScoreStore.SNAPSHOT_FILE).startsWith("#1\n"));
+    }
+
+    /**
+     * Checks records already in the snapshot are skipped, as they are when the game stops between writing a snapshot and emptying the log
+     * @throws IOException if a file can't be written
+     */
+    @Test
+    void recordsInSnapshotAreSkipped() throws IOException {
+        write(ScoreStore.SNAPSHOT_FILE, "#2\nBob:200\nAlice:100\n");
+        write(ScoreStore.LOG_FILE, ScoreStore.formatRecord(1, new Pair<>("Alice", 100))
+                + ScoreStore.formatRecord(2, new Pair<>("Bob", 200))
+                + ScoreStore.formatRecord(3, new Pair<>("Carol", 300)));
+
+        var store = this.load();
+        assertEquals(List.of(new Pair<>("Carol", 300), new Pair<>("Bob", 200), new Pair<>("Alice", 100)), store.getScores());
+
+        //New records carry on from the last one in the log
+        var reopened = new ScoreStore(directory);
+        reopened.add("Dave", 50);
+        reopened.close();
+        assertTrue(read(ScoreStore.LOG_FILE).endsWith(ScoreStore.formatRecord(4, new Pair<>("Dave", 50))));
+        assertEquals(4, this.load().size());
+    }
+
+    /**
+     * Checks the log is compacted into the snapshot once enough records are logged, and nothing is lost
+     * @throws IOException if the snapshot can't be read
+     */
+    @Test
+    void compactsAfterEnoughRecords() throws IOException {
+        write(ScoreStore.SNAPSHOT_FILE, "#0\n");
+        var store = new ScoreStore(directory);
+        for (int i = 1; i <= ScoreStore.COMPACT_AFTER; i++) {
+            store.add("Player " + i, i * 10);
+        }
+        store.close();
+
+        assertFalse(Files.exists(directory.resolve(ScoreStore.LOG_FILE)));
+        assertTrue(read(ScoreStore.SNAPSHOT_FILE).startsWith("#" + ScoreStore.COMPACT_AFTER + "\n"));
+        var reopened = this.load();
+        assertEquals(ScoreStore.COMPACT_AFTER, reopened.size());
+        assertEquals(new Pair<>("Player " + ScoreStore.COMPACT_AFTER, ScoreStore.COMPACT_AFTER * 10), reopened.getScores().get(0));
+    }
+
+    /**
+     * Checks a record reads back as written, and damaged records are rejected
+     */
+    @Test
+    void recordsRoundTrip() {
+        var line = ScoreStore.formatRecord(7, new Pair<>("A:B", 123));
+        var record = ScoreStore.parseRecord(line.substring(0, line.length() - 1));
+        assertEquals(7, record.number());
+        assertEquals(new Pair<>("A:B", 123), record.entry());
+
+        assertNull(ScoreStore.parseRecord(""));
+        assertNull(ScoreStore.parseRecord("7:A:B:123"));
+        assertNull(ScoreStore.parseRecord(line.substring(0, line.length() - 2)));
+    }
+}
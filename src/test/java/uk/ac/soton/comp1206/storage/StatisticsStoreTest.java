@@ -0,0 +1,92 @@
+package uk.ac.soton.comp1206.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests the Statistics Store keeps every index oldest first, even when games are recorded while the file is loading
+ */
+class StatisticsStoreTest {
+
+    /**
+     * The number of games written to the file before it is loaded again, enough that loading takes a moment
+     */
+    private static final int SAVED_GAMES = 200;
+
+    /**
+     * The directory the statistics file is kept in, emptied for every test
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Makes a challenge game
+     * @param player the player
+     * @param score the score
+     * @param finishedAt when the game finished
+     * @return the game
+     */
+    private static GameRecord game(String player, int score, long finishedAt) {
+        return new GameRecord(player, GameRecord.Mode.CHALLENGE, score, 1, 2, 3, 1000, 1206, finishedAt);
+    }
+
+    /**
+     * Checks games recorded straight after the store is opened come after every game loaded from the file
+     */
+    @Test
+    void recordedGamesFollowLoadedGames() {
+        var store = new StatisticsStore(directory);
+        for (int i = 0; i < SAVED_GAMES; i++) {
+            store.record(game(i % 2 == 0 ? "Alice" : "Bob", 100, i));
+        }
+        store.close();
+
+        var reopened = new StatisticsStore(directory);
+        var latest = game("Alice", 100, SAVED_GAMES);
+        reopened.record(latest);
+        reopened.record(game("Carol", 50, SAVED_GAMES + 1));
+        reopened.close();
+
+        assertEquals(SAVED_GAMES + 2, reopened.size());
+        assertEquals("Carol", reopened.getLastPlayer(GameRecord.Mode.CHALLENGE));
+        var alice = reopened.getGames("Alice");
+        assertEquals(SAVED_GAMES / 2 + 1, alice.size());
+        for (int i = 1; i < alice.size(); i++) {
+            assertEquals(alice.get(i - 1).finishedAt() + 2, alice.get(i).finishedAt());
+        }
+        assertSame(latest, alice.get(alice.size() - 1));
+
+        //Every score is equal, so the best is the oldest game, however the games were added
+        assertEquals(0, reopened.getPersonalBest("Alice", GameRecord.Mode.CHALLENGE).finishedAt());
+        assertEquals(List.of(100, 100, 100), reopened.getRecentScores("Alice", GameRecord.Mode.CHALLENGE, 3));
+        assertEquals(SAVED_GAMES + 2, reopened.getGamesBetween(0, SAVED_GAMES + 2).size());
+        assertEquals(SAVED_GAMES, reopened.getGamesBetween(SAVED_GAMES, SAVED_GAMES + 2).get(0).finishedAt());
+    }
+
+    /**
+     * Checks a game recorded while loading that finished at the same moment as a loaded game is listed after it
+     */
+    @Test
+    void sameFinishTimeKeepsLoadedGameFirst() {
+        var store = new StatisticsStore(directory);
+        for (int i = 0; i < SAVED_GAMES; i++) {
+            store.record(game("Alice", i, 5));
+        }
+        store.close();
+
+        var reopened = new StatisticsStore(directory);
+        reopened.record(game("Bob", 999, 5));
+        reopened.close();
+
+        var finished = reopened.getGamesBetween(5, 6);
+        assertEquals(SAVED_GAMES + 1, finished.size());
+        assertEquals(0, finished.get(0).score());
+        assertEquals("Bob", finished.get(SAVED_GAMES).player());
+    }
+}